@@ -0,0 +1,28 @@
+package com.diwa.dao;
+
+/**
+ * Proporciona a {@link JPQLGenerator} información sobre las asociaciones de las entidades del dominio. Permite generar
+ * consultas COUNT sin los joins que no afectan al número de resultados.
+ */
+public interface AssociationInspector {
+
+    /**
+     * Indica si el atributo indicado es una asociación a una única entidad (ManyToOne u OneToOne), de tal forma que un
+     * LEFT JOIN sobre él no modifica el número de filas.
+     *
+     * @param owner Clase de la entidad que contiene el atributo.
+     * @param property Nombre del atributo.
+     * @return Cierto si es una asociación a una única entidad; falso si es una colección o no se conoce.
+     */
+    boolean isToOne(Class<?> owner, String property);
+
+    /**
+     * Devuelve la clase de la entidad asociada mediante el atributo indicado. En el caso de las colecciones es la clase
+     * de sus elementos.
+     *
+     * @param owner Clase de la entidad que contiene el atributo.
+     * @param property Nombre del atributo.
+     * @return Clase de la entidad asociada o null si el atributo no es una asociación a una entidad o no se conoce.
+     */
+    Class<?> getAssociatedType(Class<?> owner, String property);
+}
@@ -0,0 +1,73 @@
+package com.diwa.dao;
+
+import com.diwa.dao.shared.aggregate.Aggregate;
+import com.diwa.dao.shared.entity.FetchJoin;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Versión asíncrona de las operaciones de lectura de {@link DAO}. Cada operación se ejecuta en otro thread, en su
+ * propia sesión de sólo lectura y su propia transacción, por lo que no tiene en cuenta los cambios de la transacción
+ * en curso que no se hayan confirmado, y varias operaciones se pueden ejecutar a la vez.
+ * <p>
+ * Las entidades devueltas están desasociadas de la sesión, por lo que las asociaciones lazy que se vayan a utilizar
+ * han de obtenerse mediante fetches.
+ * <p>
+ * Al cancelar el future se cancela la consulta en curso en la BD.
+ *
+ * @param <T> Clase de la entidad del dominio a la que representa el DAO.
+ * @param <PK> Clase a la que corresponde la primary key de la entidad del dominio.
+ */
+public interface AsyncDAO<T, PK extends Serializable> {
+
+    /**
+     * @see DAO#read(Serializable, FetchJoin...)
+     */
+    CompletableFuture<T> read(PK id, FetchJoin... fetch);
+
+    /**
+     * @see DAO#readAll(Collection, FetchJoin...)
+     */
+    CompletableFuture<List<T>> readAll(Collection<PK> ids, FetchJoin... fetch);
+
+    /**
+     * @see DAO#count(SearchInfo)
+     */
+    CompletableFuture<Long> count(SearchInfo searchInfo);
+
+    /**
+     * @see DAO#aggregate(Aggregate, String, SearchInfo)
+     */
+    CompletableFuture<Number> aggregate(Aggregate aggregate, String field, SearchInfo searchInfo);
+
+    /**
+     * @see DAO#find(SearchInfo)
+     */
+    CompletableFuture<SearchResult<T>> find(SearchInfo searchInfo);
+
+    /**
+     * @see DAO#findWithoutCount(SearchInfo)
+     */
+    CompletableFuture<List<T>> findWithoutCount(SearchInfo searchInfo);
+
+    /**
+     * @see DAO#findSingle(SearchInfo)
+     */
+    CompletableFuture<T> findSingle(SearchInfo searchInfo);
+
+    /**
+     * @see DAO#findProjection(SearchInfo, String...)
+     */
+    CompletableFuture<SearchResult<Object[]>> findProjection(SearchInfo searchInfo, String... fields);
+
+    /**
+     * @see DAO#findProjection(SearchInfo, Class, String...)
+     */
+    <R> CompletableFuture<SearchResult<R>> findProjection(SearchInfo searchInfo, Class<R> resultClass,
+            String... fields);
+}
@@ -0,0 +1,341 @@
+package com.diwa.dao;
+
+import com.diwa.dao.shared.aggregate.Aggregate;
+import com.diwa.dao.shared.entity.FetchJoin;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.hibernate.HibernateException;
+import org.hibernate.QueryTimeoutException;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.sql.SQLTimeoutException;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Implementación de {@link AsyncDAO} que delega en un {@link DAOImpl}. Cada operación se ejecuta en el executor
+ * indicado mediante {@link DAOImpl#callInNewSession(Supplier, int, AtomicReference)}.
+ * <p>
+ * <code>
+ *      AsyncDAO< Persona, Integer > personas = new AsyncDAOImpl< Persona, Integer >(personaDao);
+ *      CompletableFuture< Long > total = personas.count(searchInfo);
+ * </code>
+ *
+ * @param <T> Clase de la entidad del dominio a la que representa el DAO.
+ * @param <PK> Clase a la que corresponde la primary key de la entidad del dominio.
+ */
+public class AsyncDAOImpl<T, PK extends Serializable> implements AsyncDAO<T, PK> {
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDAOImpl.class);
+
+    /**
+     * DAO en el que se delegan las operaciones.
+     */
+    private final DAOImpl<T, PK> dao;
+
+    /**
+     * Executor en el que se ejecutan las operaciones.
+     */
+    private Executor executor;
+
+    /**
+     * Tiempo máximo, en segundos, de cada operación. Si es menor o igual que 0 no se limita.
+     */
+    private int timeout = 0;
+
+    /**
+     * Constructor. Las operaciones se ejecutan en el executor por defecto ({@link #getDefaultExecutor()}).
+     *
+     * @param dao DAO en el que se delegan las operaciones.
+     */
+    public AsyncDAOImpl(final DAOImpl<T, PK> dao) {
+        this(dao, getDefaultExecutor());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dao DAO en el que se delegan las operaciones.
+     * @param executor Executor en el que se ejecutan las operaciones. El número de operaciones que se ejecutan a la
+     *            vez está limitado además por el número de conexiones del pool.
+     */
+    public AsyncDAOImpl(final DAOImpl<T, PK> dao, final Executor executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    /**
+     * Devuelve el executor compartido por defecto: un thread virtual por operación si la JVM los soporta (Java 21 o
+     * superior) o, en otro caso, un pool de threads daemon que crece bajo demanda.
+     */
+    public static ExecutorService getDefaultExecutor() {
+        return SharedExecutors.EXECUTOR;
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<T> read(final PK id, final FetchJoin... fetch) {
+        return submit(new Supplier<T>() {
+            @Override
+            public T get() {
+                return dao.read(id, fetch);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<List<T>> readAll(final Collection<PK> ids, final FetchJoin... fetch) {
+        return submit(new Supplier<List<T>>() {
+            @Override
+            public List<T> get() {
+                return dao.readAll(ids, fetch);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<Long> count(final SearchInfo searchInfo) {
+        return submit(new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return dao.count(searchInfo);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<Number> aggregate(final Aggregate aggregate, final String field,
+            final SearchInfo searchInfo) {
+        return submit(new Supplier<Number>() {
+            @Override
+            public Number get() {
+                return dao.aggregate(aggregate, field, searchInfo);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<SearchResult<T>> find(final SearchInfo searchInfo) {
+        return submit(new Supplier<SearchResult<T>>() {
+            @Override
+            public SearchResult<T> get() {
+                return dao.find(searchInfo);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<List<T>> findWithoutCount(final SearchInfo searchInfo) {
+        return submit(new Supplier<List<T>>() {
+            @Override
+            public List<T> get() {
+                return dao.findWithoutCount(searchInfo);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<T> findSingle(final SearchInfo searchInfo) {
+        return submit(new Supplier<T>() {
+            @Override
+            public T get() {
+                return dao.findSingle(searchInfo);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public CompletableFuture<SearchResult<Object[]>> findProjection(final SearchInfo searchInfo,
+            final String... fields) {
+        return submit(new Supplier<SearchResult<Object[]>>() {
+            @Override
+            public SearchResult<Object[]> get() {
+                return dao.findProjection(searchInfo, fields);
+            }
+        });
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public <R> CompletableFuture<SearchResult<R>> findProjection(final SearchInfo searchInfo,
+            final Class<R> resultClass, final String... fields) {
+        return submit(new Supplier<SearchResult<R>>() {
+            @Override
+            public SearchResult<R> get() {
+                return dao.findProjection(searchInfo, resultClass, fields);
+            }
+        });
+    }
+
+    /**
+     * Ejecuta la operación en el executor, en una sesión de sólo lectura independiente. Si el future se cancela antes
+     * de empezar, la operación no se ejecuta; si se cancela durante la ejecución, se cancela la consulta en curso.
+     * <p>
+     * Además del query timeout de las sentencias JDBC, al superar el tiempo máximo el future termina con una
+     * {@link QueryTimeoutException} y se cancela la consulta en curso, para los drivers que no respetan el query
+     * timeout.
+     */
+    protected <R> CompletableFuture<R> submit(final Supplier<R> operation) {
+        final AtomicReference<Session> session = new AtomicReference<Session>();
+        final CompletableFuture<R> future = new CompletableFuture<R>() {
+            @Override
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                if (cancelled) {
+                    cancelQuery(session.get());
+                }
+                return cancelled;
+            }
+        };
+        if (timeout > 0) {
+            final ScheduledFuture<?> watchdog = SharedExecutors.TIMEOUTS.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    String message = "Operation exceeded " + timeout + " s";
+                    if (future.completeExceptionally(new QueryTimeoutException(message,
+                            new SQLTimeoutException(message), null))) {
+                        cancelQuery(session.get());
+                    }
+                }
+            }, timeout, TimeUnit.SECONDS);
+            future.whenComplete(new BiConsumer<R, Throwable>() {
+                @Override
+                public void accept(final R result, final Throwable error) {
+                    watchdog.cancel(false);
+                }
+            });
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(dao.callInNewSession(operation, timeout, session));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Cancela la consulta en curso de la sesión de una operación.
+     */
+    protected void cancelQuery(final Session session) {
+        if (session != null && session.isOpen()) {
+            try {
+                session.cancelQuery();
+            } catch (HibernateException e) {
+                logger.debug("Could not cancel query", e);
+            }
+        }
+    }
+
+    /**
+     * @return DAO en el que se delegan las operaciones.
+     */
+    public DAOImpl<T, PK> getDao() {
+        return dao;
+    }
+
+    /**
+     * @return Executor en el que se ejecutan las operaciones.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Establece el executor en el que se ejecutan las operaciones.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @return Tiempo máximo, en segundos, de cada operación.
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Establece el tiempo máximo, en segundos, de cada operación. Se aplica como timeout de la transacción de la
+     * operación, que hibernate traslada al query timeout de cada sentencia JDBC, de tal forma que la BD cancela la
+     * consulta y el future termina con una {@link QueryTimeoutException}. Si es menor o igual que 0 (por defecto) no
+     * se limita.
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Crea los executors compartidos la primera vez que se utilizan.
+     */
+    private static final class SharedExecutors {
+
+        private static final ExecutorService EXECUTOR = createDefaultExecutor();
+
+        /**
+         * Controla el tiempo máximo de las operaciones.
+         */
+        private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("async-dao-timeout").build());
+
+        private static ExecutorService createDefaultExecutor() {
+            try {
+                // Java 21 o superior
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                logger.debug("Virtual threads not available, using a cached thread pool");
+                return Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("async-dao-%d").build());
+            }
+        }
+    }
+}
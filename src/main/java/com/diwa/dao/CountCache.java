@@ -0,0 +1,422 @@
+package com.diwa.dao;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache del número de resultados de las consultas COUNT de los DAO (ver {@link DAOImpl#setCountCache(CountCache)}).
+ * La clave de cada entrada es la entidad y la sentencia COUNT generada, incluidos los valores de sus parámetros.
+ * <p>
+ * Las entradas se consideran vigentes durante el tiempo indicado en el constructor. Las entradas caducadas sólo se
+ * utilizan en las búsquedas {@link com.diwa.dao.shared.search.CountMode#APPROXIMATE}. Los DAO que comparten la cache
+ * invalidan las entradas de su entidad cada vez que la modifican y, dentro de una transacción de Spring, de nuevo al
+ * terminar la transacción; los cambios realizados por otros medios sólo se reflejan al caducar las entradas.
+ * <p>
+ * Registra el número de aciertos y fallos y la antigüedad de los valores servidos.
+ */
+public class CountCache {
+
+    /**
+     * Número máximo de entradas por defecto.
+     */
+    public static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /**
+     * Tiempo, en milisegundos, durante el que una entrada se considera vigente.
+     */
+    private final long ttl;
+
+    /**
+     * Entradas de la cache.
+     */
+    private final Cache<Key, Entry> entries;
+
+    /**
+     * Generación de cada entidad. Forma parte de la clave, de tal forma que al invalidar una entidad sus entradas dejan
+     * de ser accesibles y se descartan cuando la cache alcanza su tamaño máximo.
+     */
+    private final ConcurrentMap<Class<?>, AtomicLong> generations = new ConcurrentHashMap<Class<?>, AtomicLong>();
+
+    /**
+     * Consultas COUNT que se están calculando en segundo plano.
+     */
+    private final Map<Key, Boolean> loading = new ConcurrentHashMap<Key, Boolean>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong staleHitCount = new AtomicLong();
+
+    private final AtomicLong estimateCount = new AtomicLong();
+
+    private final AtomicLong totalStaleness = new AtomicLong();
+
+    private final AtomicLong maxStaleness = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param ttl Tiempo, en milisegundos, durante el que una entrada se considera vigente.
+     */
+    public CountCache(final long ttl) {
+        this(ttl, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ttl Tiempo, en milisegundos, durante el que una entrada se considera vigente.
+     * @param maximumSize Número máximo de entradas.
+     */
+    public CountCache(final long ttl, final int maximumSize) {
+        this.ttl = ttl;
+        this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * Devuelve el número de resultados de la consulta si está en la cache y no ha caducado.
+     *
+     * @return Número de resultados o null si no está en la cache o ha caducado.
+     */
+    public Long get(final Class<?> type, final JPQLResult count) {
+        Entry entry = entries.getIfPresent(new Key(type, getGeneration(type), count));
+        if (entry == null || entry.getAge() > ttl) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        recordStaleness(entry.getAge());
+        return entry.getValue();
+    }
+
+    /**
+     * Devuelve la entrada de la consulta aunque haya caducado.
+     *
+     * @return Entrada de la cache o null si no está en la cache.
+     */
+    public Entry getAny(final Class<?> type, final JPQLResult count) {
+        Entry entry = entries.getIfPresent(new Key(type, getGeneration(type), count));
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (entry.getAge() > ttl) {
+            staleHitCount.incrementAndGet();
+        } else {
+            hitCount.incrementAndGet();
+        }
+        recordStaleness(entry.getAge());
+        return entry;
+    }
+
+    /**
+     * Almacena el número de resultados de la consulta. Si la entidad se ha modificado desde que se empezó a calcular,
+     * el valor no será accesible. Tampoco se almacena si la transacción actual ha modificado la entidad o alguna de las
+     * entidades de su jerarquía, ya que el valor incluye cambios que aún no se han confirmado.
+     *
+     * @param generation Generación de la entidad ({@link #getGeneration(Class)}) antes de empezar a calcular el número
+     *            de resultados.
+     */
+    public void put(final Class<?> type, final JPQLResult count, final long value, final long generation) {
+        if (generation == getGeneration(type) && !isPending(type)) {
+            entries.put(new Key(type, generation, count), new Entry(value, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Indica si la transacción actual ha invalidado la entidad o alguna de las entidades de su jerarquía.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean isPending(final Class<?> type) {
+        Set<Class<?>> pending = (Set<Class<?>>) TransactionSynchronizationManager.getResource(this);
+        if (pending != null) {
+            for (Class<?> pendingType : pending) {
+                if (pendingType.isAssignableFrom(type) || type.isAssignableFrom(pendingType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Generación actual de la entidad, que cambia cada vez que se invalida.
+     */
+    public long getGeneration(final Class<?> type) {
+        return generationOf(type).get();
+    }
+
+    private AtomicLong generationOf(final Class<?> type) {
+        AtomicLong generation = generations.get(type);
+        if (generation == null) {
+            AtomicLong created = new AtomicLong();
+            generation = generations.putIfAbsent(type, created);
+            if (generation == null) {
+                generation = created;
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * Invalida las entradas de la entidad indicada y de sus entidades padre e hijas, ya que las consultas de una
+     * entidad padre cuentan entidades hijas. Si existe una transacción de Spring activa, las entradas se invalidan de
+     * nuevo al terminar la transacción, tanto si se confirma como si se deshace: los valores calculados mientras tanto
+     * por otras transacciones no incluyen sus cambios.
+     */
+    public void invalidate(final Class<?> type) {
+        nextGeneration(type);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            getPendingTypes().add(type);
+        }
+    }
+
+    /**
+     * Devuelve las entidades invalidadas en la transacción actual. La primera vez registra la sincronización que las
+     * invalida al terminar la transacción.
+     */
+    @SuppressWarnings("unchecked")
+    private Set<Class<?>> getPendingTypes() {
+        Set<Class<?>> pending = (Set<Class<?>>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            final Set<Class<?>> types = new HashSet<Class<?>>();
+            TransactionSynchronizationManager.bindResource(this, types);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(CountCache.this);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(CountCache.this, types);
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CountCache.this);
+                    for (Class<?> type : types) {
+                        nextGeneration(type);
+                    }
+                }
+            });
+            pending = types;
+        }
+        return pending;
+    }
+
+    /**
+     * Cambia la generación de la entidad y de sus entidades padre e hijas, de tal forma que sus entradas dejan de ser
+     * accesibles.
+     */
+    private void nextGeneration(final Class<?> type) {
+        generationOf(type);
+        for (Map.Entry<Class<?>, AtomicLong> generation : generations.entrySet()) {
+            Class<?> cached = generation.getKey();
+            if (cached.isAssignableFrom(type) || type.isAssignableFrom(cached)) {
+                generation.getValue().incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Elimina todas las entradas.
+     */
+    public void invalidateAll() {
+        entries.invalidateAll();
+    }
+
+    /**
+     * Marca la consulta como en cálculo en segundo plano.
+     *
+     * @return Falso si ya se estaba calculando.
+     */
+    public boolean startLoading(final Class<?> type, final JPQLResult count) {
+        return loading.put(new Key(type, -1, count), Boolean.TRUE) == null;
+    }
+
+    /**
+     * Indica que ha terminado el cálculo en segundo plano de la consulta.
+     */
+    public void endLoading(final Class<?> type, final JPQLResult count) {
+        loading.remove(new Key(type, -1, count));
+    }
+
+    /**
+     * Registra que se ha servido una estimación del número de resultados por no estar la consulta en la cache.
+     */
+    public void recordEstimate() {
+        estimateCount.incrementAndGet();
+    }
+
+    private void recordStaleness(final long age) {
+        totalStaleness.addAndGet(age);
+        long max = maxStaleness.get();
+        while (age > max && !maxStaleness.compareAndSet(max, age)) {
+            max = maxStaleness.get();
+        }
+    }
+
+    /**
+     * @return Tiempo, en milisegundos, durante el que una entrada se considera vigente.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return Número de entradas.
+     */
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Número de valores vigentes servidos.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return Número de consultas que no estaban en la cache o cuya entrada había caducado (salvo en el modo
+     *         aproximado).
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return Número de valores caducados servidos en el modo aproximado.
+     */
+    public long getStaleHitCount() {
+        return staleHitCount.get();
+    }
+
+    /**
+     * @return Número de estimaciones servidas en el modo aproximado.
+     */
+    public long getEstimateCount() {
+        return estimateCount.get();
+    }
+
+    /**
+     * @return Proporción de consultas servidas desde la cache, vigentes o caducadas.
+     */
+    public double getHitRate() {
+        long hits = hitCount.get() + staleHitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     * @return Antigüedad media, en milisegundos, de los valores servidos.
+     */
+    public double getAverageStaleness() {
+        long hits = hitCount.get() + staleHitCount.get();
+        return hits == 0 ? 0 : (double) totalStaleness.get() / hits;
+    }
+
+    /**
+     * @return Antigüedad máxima, en milisegundos, de los valores servidos.
+     */
+    public long getMaxStaleness() {
+        return maxStaleness.get();
+    }
+
+    /**
+     * Pone a cero las estadísticas.
+     */
+    public void resetStatistics() {
+        hitCount.set(0);
+        missCount.set(0);
+        staleHitCount.set(0);
+        estimateCount.set(0);
+        totalStaleness.set(0);
+        maxStaleness.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CountCache[size=%d, hits=%d, stale=%d, misses=%d, estimates=%d, hitRate=%.2f,"
+                + " avgStaleness=%.0fms, maxStaleness=%dms]", size(), getHitCount(), getStaleHitCount(),
+                getMissCount(), getEstimateCount(), getHitRate(), getAverageStaleness(), getMaxStaleness());
+    }
+
+    /**
+     * Número de resultados almacenado y el instante en el que se almacenó.
+     */
+    public static final class Entry {
+
+        private final long value;
+
+        private final long timestamp;
+
+        private Entry(final long value, final long timestamp) {
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        /**
+         * @return Número de resultados.
+         */
+        public long getValue() {
+            return value;
+        }
+
+        /**
+         * @return Antigüedad de la entrada en milisegundos.
+         */
+        public long getAge() {
+            return Math.max(System.currentTimeMillis() - timestamp, 0);
+        }
+    }
+
+    /**
+     * Clave de la cache: entidad y su generación, sentencia y valores de los parámetros.
+     */
+    private static final class Key {
+
+        private final Class<?> type;
+
+        private final long generation;
+
+        private final String query;
+
+        private final Map<String, Serializable> parameters;
+
+        private Key(final Class<?> type, final long generation, final JPQLResult count) {
+            this.type = type;
+            this.generation = generation;
+            this.query = count.getQuery();
+            this.parameters = count.getParameters();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(type, generation, query, parameters);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return type.equals(other.type) && generation == other.generation && query.equals(other.query)
+                    && Objects.equal(parameters, other.parameters);
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package com.diwa.dao;
+
+import com.diwa.dao.shared.criteria.Criteria;
+import com.diwa.dao.shared.criteria.conditional.BetweenConditional;
+import com.diwa.dao.shared.criteria.conditional.CaseSensitiveConditional;
+import com.diwa.dao.shared.criteria.conditional.Conditional;
+import com.diwa.dao.shared.criteria.conditional.ConditionalOperator;
+import com.diwa.dao.shared.criteria.conditional.EmptyConditional;
+import com.diwa.dao.shared.criteria.conditional.FieldComparison;
+import com.diwa.dao.shared.criteria.conditional.InConditional;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.criteria.conditional.NullConditional;
+import com.diwa.dao.shared.criteria.conditional.ValueComparison;
+import com.diwa.dao.shared.criteria.logical.GroupLogical;
+import com.diwa.dao.shared.criteria.logical.LogicalOperator;
+import com.diwa.dao.shared.criteria.logical.NotLogical;
+import com.diwa.dao.shared.entity.Entity;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Normaliza y simplifica los criterios de una búsqueda antes de generar su sentencia JPQL (ver
+ * {@link JPQLGenerator#setCriteriaOptimization(boolean)}). Las transformaciones conservan el resultado de la búsqueda
+ * según la lógica de tres valores de SQL:
+ * <ul>
+ * <li>Los grupos AND dentro de un AND y los grupos OR dentro de un OR se integran en el grupo que los contiene, y los
+ * grupos de un único criterio se sustituyen por el criterio.</li>
+ * <li>Se eliminan los criterios repetidos de cada grupo y los valores repetidos de cada IN.</li>
+ * <li>Las igualdades y los IN de un OR sobre el mismo atributo se unen en un único IN.</li>
+ * <li>Los NOT se desplazan hacia las condiciones: se eliminan las dobles negaciones, se aplican las leyes de De Morgan
+ * y las condiciones se sustituyen por su complementaria cuando existe (por ejemplo NOT IS NULL por IS NOT NULL o NOT
+ * &lt; por &gt;=).</li>
+ * <li>Se detectan los AND que no pueden cumplirse nunca: una condición junto con su complementaria, IS NULL junto con
+ * cualquier comparación del mismo atributo, IN vacíos, igualdades a valores diferentes o rangos disjuntos.</li>
+ * </ul>
+ * Los valores sólo se comparan entre sí cuando la comparación de la BD coincide con seguridad con la de Java: números
+ * enteros, booleanos y enumerados (estos últimos sólo en igualdades). Las cadenas y las fechas no se comparan, ya que
+ * el resultado depende de la collation y de la precisión de la columna.
+ * <p>
+ * Los criterios indicados no se modifican: los criterios que cambian se sustituyen por otros nuevos. Los criterios
+ * personalizados y los grupos vacíos se mantienen tal cual.
+ */
+public class CriteriaOptimizer {
+
+    /**
+     * Criterio que se cumple siempre. Sólo se utiliza durante la optimización.
+     */
+    private static final Criteria TRUE = new Constant();
+
+    /**
+     * Criterio que no se cumple nunca. Sólo se utiliza durante la optimización.
+     */
+    private static final Criteria FALSE = new Constant();
+
+    /**
+     * Optimiza los criterios de una búsqueda, que se unen mediante AND.
+     *
+     * @param criterias Criterios de la búsqueda.
+     * @return Criterios optimizados, la misma lista indicada si no se ha podido simplificar o null si los criterios no
+     *         pueden cumplirse nunca.
+     */
+    public List<Criteria> optimize(final List<Criteria> criterias) {
+        if (criterias.isEmpty()) {
+            return criterias;
+        }
+        Criteria optimized = simplifyGroup(LogicalOperator.AND, criterias);
+        List<Criteria> result;
+        if (optimized == FALSE) {
+            return null;
+        } else if (optimized == TRUE) {
+            result = Collections.emptyList();
+        } else if (isGroup(optimized, LogicalOperator.AND)) {
+            result = new ArrayList<Criteria>(((GroupLogical) optimized).getContitionals());
+        } else {
+            result = Collections.singletonList(optimized);
+        }
+        return result.equals(criterias) ? criterias : result;
+    }
+
+    /**
+     * Simplifica el criterio indicado.
+     *
+     * @return Criterio simplificado, que puede ser {@link #TRUE} o {@link #FALSE}.
+     */
+    protected Criteria simplify(final Criteria criteria) {
+        if (criteria instanceof InConditional) {
+            return simplifyIn((InConditional) criteria);
+        } else if (criteria instanceof NotLogical) {
+            Criteria expresion = ((NotLogical) criteria).getExpresion();
+            return expresion == null ? criteria : negate(simplify(expresion));
+        } else if (isGroup(criteria, LogicalOperator.AND) || isGroup(criteria, LogicalOperator.OR)) {
+            GroupLogical group = (GroupLogical) criteria;
+            return simplifyGroup(group.getOperator(), group.getContitionals());
+        }
+        return criteria;
+    }
+
+    /**
+     * Indica si el criterio es un grupo no vacío de criterios unidos mediante el operador indicado.
+     */
+    private static boolean isGroup(final Criteria criteria, final LogicalOperator operator) {
+        if (criteria == null || criteria.getClass() != GroupLogical.class) {
+            return false;
+        }
+        GroupLogical group = (GroupLogical) criteria;
+        return group.getOperator() == operator && group.getContitionals() != null
+                && !group.getContitionals().isEmpty();
+    }
+
+    /**
+     * Elimina los valores repetidos del IN. Un IN sin valores no se cumple nunca.
+     */
+    private Criteria simplifyIn(final InConditional in) {
+        List<? extends Serializable> values = in.getValues();
+        if (values == null || values.isEmpty()) {
+            return FALSE;
+        }
+        Set<Serializable> distinct = new LinkedHashSet<Serializable>(values);
+        if (distinct.size() == values.size()) {
+            return in;
+        }
+        return in(in, new ArrayList<Serializable>(distinct), in.isCaseSensitive());
+    }
+
+    /**
+     * Simplifica el grupo de criterios unidos mediante el operador indicado.
+     *
+     * @return Criterio simplificado, que puede ser {@link #TRUE}, {@link #FALSE}, uno de los criterios o un nuevo
+     *         grupo.
+     */
+    private Criteria simplifyGroup(final LogicalOperator operator, final Collection<Criteria> criterias) {
+        List<Criteria> simplified = new ArrayList<Criteria>(criterias.size());
+        for (Criteria criteria : criterias) {
+            simplified.add(simplify(criteria));
+        }
+        return combine(operator, simplified);
+    }
+
+    /**
+     * Une mediante el operador indicado los criterios simplificados indicados.
+     *
+     * @return Criterio simplificado, que puede ser {@link #TRUE}, {@link #FALSE}, uno de los criterios o un nuevo
+     *         grupo.
+     */
+    private Criteria combine(final LogicalOperator operator, final List<Criteria> criterias) {
+        // Elemento neutro y elemento absorbente del operador
+        Criteria neutral = operator == LogicalOperator.AND ? TRUE : FALSE;
+        Criteria absorbing = operator == LogicalOperator.AND ? FALSE : TRUE;
+        Set<Criteria> flattened = new LinkedHashSet<Criteria>();
+        for (Criteria criteria : criterias) {
+            if (criteria == absorbing) {
+                return absorbing;
+            } else if (isGroup(criteria, operator)) {
+                flattened.addAll(((GroupLogical) criteria).getContitionals());
+            } else if (criteria != neutral) {
+                flattened.add(criteria);
+            }
+        }
+        List<Criteria> result;
+        if (operator == LogicalOperator.OR) {
+            if (isTautology(flattened)) {
+                return TRUE;
+            }
+            result = mergeEqualities(flattened);
+        } else {
+            if (isContradiction(flattened)) {
+                return FALSE;
+            }
+            result = new ArrayList<Criteria>(flattened);
+        }
+        if (result.isEmpty()) {
+            return neutral;
+        } else if (result.size() == 1) {
+            return result.get(0);
+        }
+        return operator == LogicalOperator.AND ? GroupLogical.and(result) : GroupLogical.or(result);
+    }
+
+    /**
+     * Devuelve la negación del criterio simplificado indicado, desplazando el NOT hacia las condiciones.
+     */
+    private Criteria negate(final Criteria criteria) {
+        if (criteria == TRUE) {
+            return FALSE;
+        } else if (criteria == FALSE) {
+            return TRUE;
+        } else if (criteria instanceof NotLogical && ((NotLogical) criteria).getExpresion() != null) {
+            return ((NotLogical) criteria).getExpresion();
+        } else if (isGroup(criteria, LogicalOperator.AND) || isGroup(criteria, LogicalOperator.OR)) {
+            GroupLogical group = (GroupLogical) criteria;
+            // De Morgan: NOT (a AND b) = NOT a OR NOT b
+            List<Criteria> negated = new ArrayList<Criteria>(group.getContitionals().size());
+            for (Criteria c : group.getContitionals()) {
+                negated.add(negate(c));
+            }
+            return combine(group.getOperator() == LogicalOperator.AND ? LogicalOperator.OR : LogicalOperator.AND,
+                    negated);
+        } else if (criteria instanceof Conditional) {
+            Conditional complement = complement((Conditional) criteria);
+            if (complement != null) {
+                return complement;
+            }
+        }
+        return new NotLogical(criteria);
+    }
+
+    /**
+     * Devuelve la condición complementaria de la indicada, que se cumple si y sólo si la indicada no se cumple (o, si
+     * alguna de las dos es desconocida, también lo es la otra).
+     *
+     * @return Condición complementaria o null si no existe.
+     */
+    protected Conditional complement(final Conditional conditional) {
+        ConditionalOperator operator = conditional.getOperator();
+        if (conditional.getClass() == ValueComparison.class) {
+            ValueComparison comparison = (ValueComparison) conditional;
+            Conditional result;
+            String name = comparison.getName();
+            Serializable value = comparison.getValue();
+            Entity entity = comparison.getEntity();
+            switch (operator) {
+            case EQ:
+                result = ValueComparison.ne(name, value, entity);
+                break;
+            case NE:
+                result = ValueComparison.eq(name, value, entity);
+                break;
+            case LT:
+                result = ValueComparison.ge(name, value, entity);
+                break;
+            case GE:
+                result = ValueComparison.lt(name, value, entity);
+                break;
+            case GT:
+                result = ValueComparison.le(name, value, entity);
+                break;
+            case LE:
+                result = ValueComparison.gt(name, value, entity);
+                break;
+            default:
+                return null;
+            }
+            ((CaseSensitiveConditional) result).setCaseSensitive(comparison.isCaseSensitive());
+            return result;
+        } else if (conditional.getClass() == NullConditional.class) {
+            return operator == ConditionalOperator.IS_NULL
+                    ? NullConditional.isNotNull(conditional.getName(), conditional.getEntity())
+                    : NullConditional.isNull(conditional.getName(), conditional.getEntity());
+        } else if (conditional.getClass() == EmptyConditional.class) {
+            return operator == ConditionalOperator.IS_EMPTY
+                    ? EmptyConditional.isNotEmpty(conditional.getName(), conditional.getEntity())
+                    : EmptyConditional.isEmpty(conditional.getName(), conditional.getEntity());
+        }
+        return null;
+    }
+
+    /**
+     * Indica si el OR de los criterios indicados se cumple siempre, es decir, si contiene una condición que nunca es
+     * desconocida (IS NULL o IS EMPTY) junto con su complementaria.
+     */
+    private boolean isTautology(final Set<Criteria> criterias) {
+        for (Criteria c : criterias) {
+            if (c instanceof NullConditional || c instanceof EmptyConditional) {
+                Conditional complement = complement((Conditional) c);
+                if (complement != null && criterias.contains(complement)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Une las igualdades y los IN sobre el mismo atributo de un OR en un único IN, en la posición del primero de
+     * ellos.
+     */
+    private List<Criteria> mergeEqualities(final Set<Criteria> criterias) {
+        Map<List<Object>, List<Conditional>> byField = new HashMap<List<Object>, List<Conditional>>();
+        for (Criteria c : criterias) {
+            List<Object> key = equalityKey(c);
+            if (key != null) {
+                List<Conditional> equalities = byField.get(key);
+                if (equalities == null) {
+                    equalities = new ArrayList<Conditional>();
+                    byField.put(key, equalities);
+                }
+                equalities.add((Conditional) c);
+            }
+        }
+        List<Criteria> result = new ArrayList<Criteria>(criterias.size());
+        for (Criteria c : criterias) {
+            List<Object> key = equalityKey(c);
+            List<Conditional> equalities = key == null ? null : byField.get(key);
+            if (equalities == null || equalities.size() == 1) {
+                result.add(c);
+            } else if (equalities.get(0) == c) {
+                Set<Serializable> values = new LinkedHashSet<Serializable>();
+                for (Conditional e : equalities) {
+                    if (e instanceof InConditional) {
+                        values.addAll(((InConditional) e).getValues());
+                    } else {
+                        values.add(((ValueComparison) e).getValue());
+                    }
+                }
+                result.add(in(equalities.get(0), new ArrayList<Serializable>(values), (Boolean) key.get(2)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Devuelve la clave del atributo de una igualdad o de un IN que se puede unir con otros del mismo atributo:
+     * entidad, atributo y si se distinguen mayúsculas.
+     *
+     * @return Clave del atributo o null si el criterio no se puede unir.
+     */
+    private static List<Object> equalityKey(final Criteria criteria) {
+        if (criteria.getClass() == ValueComparison.class) {
+            ValueComparison comparison = (ValueComparison) criteria;
+            if (comparison.getOperator() != ConditionalOperator.EQ || comparison.getValue() == null) {
+                return null;
+            }
+            return Arrays.<Object> asList(comparison.getEntity(), comparison.getName(), comparison.isCaseSensitive());
+        } else if (criteria.getClass() == InConditional.class) {
+            InConditional in = (InConditional) criteria;
+            return Arrays.<Object> asList(in.getEntity(), in.getName(), in.isCaseSensitive());
+        }
+        return null;
+    }
+
+    /**
+     * Crea un IN sobre el mismo atributo que la condición indicada.
+     */
+    private static InConditional in(final Conditional conditional, final List<Serializable> values,
+            final boolean caseSensitive) {
+        InConditional in = new InConditional(conditional.getName(), conditional.getEntity(), values);
+        in.setCaseSensitive(caseSensitive);
+        return in;
+    }
+
+    /**
+     * Indica si el AND de los criterios indicados no puede cumplirse nunca.
+     */
+    private boolean isContradiction(final Set<Criteria> criterias) {
+        Map<List<Object>, Domain> domains = new LinkedHashMap<List<Object>, Domain>();
+        Set<List<Object>> nullFields = new LinkedHashSet<List<Object>>();
+        Set<List<Object>> comparedFields = new LinkedHashSet<List<Object>>();
+        for (Criteria c : criterias) {
+            if (c instanceof NotLogical && criterias.contains(((NotLogical) c).getExpresion())) {
+                return true;
+            }
+            if (!(c instanceof Conditional)) {
+                continue;
+            }
+            Conditional conditional = (Conditional) c;
+            Conditional complement = complement(conditional);
+            if (complement != null && criterias.contains(complement)) {
+                return true;
+            }
+            List<Object> field = Arrays.<Object> asList(conditional.getEntity(), conditional.getName());
+            if (conditional instanceof NullConditional) {
+                if (conditional.getOperator() == ConditionalOperator.IS_NULL) {
+                    nullFields.add(field);
+                }
+            } else if (conditional instanceof ValueComparison || conditional instanceof InConditional
+                    || conditional instanceof BetweenConditional || conditional instanceof LikeConditional
+                    || conditional instanceof FieldComparison) {
+                // Cualquier comparación con un valor nulo es desconocida
+                comparedFields.add(field);
+                Domain domain = domains.get(field);
+                if (domain == null) {
+                    domain = new Domain();
+                    domains.put(field, domain);
+                }
+                if (!domain.restrict(conditional)) {
+                    return true;
+                }
+            }
+        }
+        nullFields.retainAll(comparedFields);
+        return !nullFields.isEmpty();
+    }
+
+    /**
+     * Convierte el valor indicado en un valor que se puede comparar de forma segura con otros valores del mismo
+     * atributo: números enteros, booleanos y enumerados.
+     *
+     * @return Valor normalizado (los números enteros se convierten en BigInteger) o null si no se puede comparar.
+     */
+    private static Object normalize(final Serializable value) {
+        if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            return BigInteger.valueOf(((Number) value).longValue());
+        } else if (value instanceof BigInteger || value instanceof Boolean || value instanceof Enum) {
+            return value;
+        }
+        return null;
+    }
+
+    /**
+     * Valores posibles de un atributo según las condiciones de un AND: conjunto de valores permitidos y rango.
+     */
+    private static final class Domain {
+
+        /**
+         * Valores permitidos o null si no se restringen.
+         */
+        private Set<Object> allowed;
+
+        private BigInteger lower;
+
+        private boolean lowerInclusive;
+
+        private BigInteger upper;
+
+        private boolean upperInclusive;
+
+        /**
+         * Restringe los valores posibles según la condición indicada. Las condiciones que no se pueden evaluar de forma
+         * segura no restringen los valores.
+         *
+         * @return Falso si el atributo no puede tomar ningún valor.
+         */
+        boolean restrict(final Conditional conditional) {
+            if (conditional.getClass() == ValueComparison.class) {
+                Object value = normalize(((ValueComparison) conditional).getValue());
+                if (value == null) {
+                    return true;
+                }
+                switch (conditional.getOperator()) {
+                case EQ:
+                    restrictTo(Collections.singleton(value));
+                    break;
+                case GT:
+                case GE:
+                    if (value instanceof BigInteger) {
+                        restrictLower((BigInteger) value, conditional.getOperator() == ConditionalOperator.GE);
+                    }
+                    break;
+                case LT:
+                case LE:
+                    if (value instanceof BigInteger) {
+                        restrictUpper((BigInteger) value, conditional.getOperator() == ConditionalOperator.LE);
+                    }
+                    break;
+                default:
+                    break;
+                }
+            } else if (conditional.getClass() == InConditional.class) {
+                Set<Object> values = new LinkedHashSet<Object>();
+                for (Serializable v : ((InConditional) conditional).getValues()) {
+                    Object value = normalize(v);
+                    if (value == null) {
+                        return true;
+                    }
+                    values.add(value);
+                }
+                restrictTo(values);
+            } else if (conditional.getClass() == BetweenConditional.class) {
+                BetweenConditional between = (BetweenConditional) conditional;
+                Object value1 = normalize(between.getValue1());
+                Object value2 = normalize(between.getValue2());
+                if (value1 instanceof BigInteger && value2 instanceof BigInteger) {
+                    restrictLower((BigInteger) value1, true);
+                    restrictUpper((BigInteger) value2, true);
+                }
+            }
+            return !isEmpty();
+        }
+
+        private void restrictTo(final Set<Object> values) {
+            if (allowed == null) {
+                allowed = new LinkedHashSet<Object>(values);
+            } else {
+                allowed.retainAll(values);
+            }
+        }
+
+        private void restrictLower(final BigInteger value, final boolean inclusive) {
+            int cmp = lower == null ? 1 : value.compareTo(lower);
+            if (cmp > 0 || (cmp == 0 && !inclusive)) {
+                lower = value;
+                lowerInclusive = inclusive;
+            }
+        }
+
+        private void restrictUpper(final BigInteger value, final boolean inclusive) {
+            int cmp = upper == null ? -1 : value.compareTo(upper);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                upper = value;
+                upperInclusive = inclusive;
+            }
+        }
+
+        private boolean isEmpty() {
+            if (lower != null && upper != null) {
+                int cmp = lower.compareTo(upper);
+                if (cmp > 0 || (cmp == 0 && !(lowerInclusive && upperInclusive))) {
+                    return true;
+                }
+            }
+            if (allowed == null) {
+                return false;
+            }
+            for (Iterator<Object> it = allowed.iterator(); it.hasNext();) {
+                Object value = it.next();
+                if (value instanceof BigInteger && !inRange((BigInteger) value)) {
+                    it.remove();
+                }
+            }
+            return allowed.isEmpty();
+        }
+
+        private boolean inRange(final BigInteger value) {
+            if (lower != null) {
+                int cmp = value.compareTo(lower);
+                if (cmp < 0 || (cmp == 0 && !lowerInclusive)) {
+                    return false;
+                }
+            }
+            if (upper != null) {
+                int cmp = value.compareTo(upper);
+                if (cmp > 0 || (cmp == 0 && !upperInclusive)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Criterio constante (siempre cierto o siempre falso) utilizado durante la optimización. Se compara por identidad.
+     */
+    private static final class Constant implements Criteria {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
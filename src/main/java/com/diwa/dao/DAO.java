@@ -11,8 +11,11 @@ import org.hibernate.transform.ResultTransformer;
 
 import java.io.Serializable;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Interfaz que han de implementar las diferentes implementaciones del DAO.
@@ -46,11 +49,34 @@ public interface DAO<T, PK extends Serializable> {
 
     /**
      * Inserta/Actualiza en la BD la información sobre cada uno de los objetos que componen la lista indicada.
+     * <p>
+     * Las implementaciones pueden sincronizar y vaciar la sesión cada cierto número de entidades para limitar el
+     * tamaño de la cache de primer nivel. En ese caso las entidades devueltas quedan desasociadas de la sesión.
      *
      * @param entities Conjunto de entidades del dominio que va a ser insertada/actualizada.
      */
     Collection<T> save(Collection<T> entities);
 
+    /**
+     * Inserta en la BD todas las entidades que devuelve el iterador mediante una sesión sin estado, sin cache de primer
+     * nivel, dirty checking ni cascadas. Cada bloque de entidades se confirma en su propia transacción, independiente
+     * de la transacción en curso. No se mantiene ninguna referencia a las entidades insertadas.
+     *
+     * @param entities Iterador sobre las entidades del dominio que van a ser insertadas.
+     * @return Número de entidades insertadas.
+     */
+    long insertAll(Iterator<T> entities);
+
+    /**
+     * Inserta en la BD todas las entidades que devuelve el iterador, notificando el progreso tras cada bloque. Ver
+     * {@link #insertAll(Iterator)}.
+     *
+     * @param entities Iterador sobre las entidades del dominio que van a ser insertadas.
+     * @param listener Listener al que se notifica el progreso tras confirmar cada bloque. Puede ser null.
+     * @return Número de entidades insertadas.
+     */
+    long insertAll(Iterator<T> entities, InsertProgressListener listener);
+
     /**
      * Actualiza en la BD el atributo indicado con el valor pasado para aquellos registros que cumplan con los criterios
      * de búsqueda.
@@ -74,10 +100,11 @@ public interface DAO<T, PK extends Serializable> {
     void update(Map<String, Serializable> attribute, SearchInfo searchInfo);
 
     /**
-     * Elimina una entidad de la BD. Cuando este método es llamado se lanza el evento DELETE de JPA.
+     * Elimina una entidad de la BD.
      * <p>
-     * Este método carga la entidad que coincide con el identificador indicado y posteriormente llama al método
-     * delete(T). @see {@link DAO#delete(Serializable)}.
+     * Si la entidad no tiene cascadas, colecciones, versión ni callbacks de borrado de JPA se elimina mediante una
+     * sentencia DELETE sin cargarla previamente (ver {@link #delete(SearchInfo)}). En caso contrario este método carga la entidad que coincide con el
+     * identificador indicado, la elimina y se lanza el evento DELETE de JPA.
      *
      * @param id Clave primaria de la entidad a borrar.
      */
@@ -92,13 +119,32 @@ public interface DAO<T, PK extends Serializable> {
     void delete(T entity);
 
     /**
-     * Elimina cada una de las entidades que pertenecen al conjunto indicado. Cuando este método es llamado se lanza el
-     * evento DELETE de JPA para cada una de al entidades que pertenecen al conjunto.
+     * Elimina cada una de las entidades que pertenecen al conjunto indicado mediante sentencias
+     * <code>DELETE ... WHERE id IN (...)</code>, sin cargar las entidades. Ver {@link #delete(SearchInfo)}. Si la
+     * entidad tiene cascadas, colecciones, versión o callbacks de borrado de JPA se elimina cada entidad mediante
+     * {@link #delete(Object)}.
      *
      * @param entities Conjunto de entidades de dominio que van a ser eliminadas de la BD.
      */
     void delete(Collection<T> entities);
 
+    /**
+     * Elimina de la BD los registros que cumplan con los criterios de búsqueda mediante una única sentencia DELETE.
+     * Antes de ejecutarla se envían a la BD los cambios pendientes de la sesión y, tras ejecutarla, se desasocian de la
+     * sesión las entidades eliminadas.
+     * <p>
+     * NOTA: Cuando esta sentencia es llamada no se lanza ningún evento JPA (<code>@PreRemove</code>,
+     * <code>@PostRemove</code>) ni se comprueba la versión (<code>@Version</code>). Si la entidad tiene cascadas o
+     * colecciones no se ejecuta la sentencia DELETE: se cargan las entidades que cumplen los criterios y se elimina
+     * cada una de ellas, de forma que Hibernate aplica las cascadas y elimina los registros de las colecciones. Lo
+     * mismo ocurre si la búsqueda tiene entidades relacionadas, ya que una sentencia DELETE no admite joins.
+     *
+     * @param searchInfo SearchInfo que contiene los criterios de búsqueda que han de cumplir los registros que van a
+     *            ser eliminados
+     * @return Número de registros eliminados.
+     */
+    int delete(SearchInfo searchInfo);
+
     /**
      * Permite ejecutar una query en lenguaje JPQL a través del DAO.
      *
@@ -126,6 +172,27 @@ public interface DAO<T, PK extends Serializable> {
      */
     T read(PK id, FetchJoin... fetch);
 
+    /**
+     * Carga los objetos correspondientes a los identificadores indicados aplicando los fetches indicados. Los objetos
+     * que ya se encuentran en la sesión no se vuelven a consultar; el resto se cargan mediante consultas
+     * <code>id IN (...)</code>. Los identificadores que no existen en la BD se omiten.
+     *
+     * @param ids Claves primarias de los objetos.
+     * @param fetch Fetches que van a se aplicados a la hora de cargar los objetos.
+     * @return Objetos almacenados en la BD en el mismo orden que los identificadores indicados.
+     */
+    List<T> readAll(Collection<PK> ids, FetchJoin... fetch);
+
+    /**
+     * Carga los objetos correspondientes a los identificadores indicados. Ver {@link #readAll(Collection, FetchJoin...)}.
+     *
+     * @param ids Claves primarias de los objetos.
+     * @param policy Comportamiento cuando alguno de los identificadores no existe en la BD.
+     * @param fetch Fetches que van a se aplicados a la hora de cargar los objetos.
+     * @return Objetos almacenados en la BD en el mismo orden que los identificadores indicados.
+     */
+    List<T> readAll(Collection<PK> ids, MissingIdPolicy policy, FetchJoin... fetch);
+
     /**
      * Refresca una entidad que ha podido cambiar. Cuando este método es llamado se sincroniza la sesión con la BD, a su
      * vez se lanza el evento REFRESH de JPA.
@@ -235,7 +302,8 @@ public interface DAO<T, PK extends Serializable> {
 
     /**
      * Lista las entidades que hay en la BD, para la entidad del dominio asociada al DAO y que coinciden con los
-     * criterios que contiene el searchInfo.
+     * criterios que contiene el searchInfo. El número total de resultados se obtiene según el modo indicado en
+     * {@link SearchInfo#getCountMode()}.
      *
      * @param searchInfo Contiene un conjunto de criterios de búsquedas
      * @return Entidades que hay para la entidad del dominio asociada al DAO y que cumplen los criterios indicados en el
@@ -253,6 +321,37 @@ public interface DAO<T, PK extends Serializable> {
      */
     List<T> findWithoutCount(SearchInfo searchInfo);
 
+    /**
+     * Obtiene únicamente los atributos indicados de las entidades que coinciden con los criterios que contiene el
+     * searchInfo, sin cargar las entidades en la sesión. La búsqueda se pagina y el número total de resultados se
+     * obtiene de la misma forma que en {@link #find(SearchInfo)}. No se aplican los fetches.
+     * <p>
+     * Se obtiene una fila por cada entidad, y el número total de resultados se corresponde con ellas: si la búsqueda
+     * es DISTINCT y sus joins pueden duplicar filas la sentencia utiliza <code>SELECT DISTINCT</code> sobre los
+     * atributos y el identificador de la entidad. Las rutas como <code>role.name</code> se resuelven mediante LEFT
+     * JOIN, por lo que el valor es nulo si alguna de las asociaciones de la ruta lo es.
+     *
+     * @param searchInfo Contiene un conjunto de criterios de búsquedas
+     * @param fields Atributos a obtener, que pueden ser rutas a través de asociaciones a una única entidad como
+     *            <code>role.name</code>.
+     * @return Valores de los atributos indicados de cada entidad, en el mismo orden que los atributos.
+     */
+    SearchResult<Object[]> findProjection(SearchInfo searchInfo, String... fields);
+
+    /**
+     * Obtiene los atributos indicados de las entidades que coinciden con los criterios que contiene el searchInfo y
+     * construye con ellos un objeto de la clase indicada por cada entidad (<code>SELECT NEW</code>).
+     *
+     * @param searchInfo Contiene un conjunto de criterios de búsquedas
+     * @param resultClass Clase del resultado, con un constructor público cuyos parámetros corresponden a los atributos
+     *            indicados.
+     * @param fields Atributos a obtener, que pueden ser rutas a través de asociaciones a una única entidad como
+     *            <code>role.name</code>.
+     * @return Objetos construidos a partir de los atributos de cada entidad.
+     * @see #findProjection(SearchInfo, String...)
+     */
+    <R> SearchResult<R> findProjection(SearchInfo searchInfo, Class<R> resultClass, String... fields);
+
     /**
      * Devuelve un único objeto que coincida con los criterios de búsqueda. En el caso de que exista mas de un objeto o
      * ninguno coincida con los criterios de búsqueda lanzará una excepción.
@@ -304,4 +403,31 @@ public interface DAO<T, PK extends Serializable> {
      * searchMapScroll.
      */
     ScrollResult<Serializable> findQueryScroll(final Query query, ResultTransformer transformer);
+
+    /**
+     * Recorre las entidades que coinciden con los criterios que contiene el searchInfo sin mantenerlas todas en
+     * memoria. Las entidades se obtienen de la BD por bloques a medida que se consumen y se desasocian de la sesión
+     * periódicamente, por lo que no deben utilizarse sus asociaciones lazy fuera del procesamiento de cada elemento.
+     * <p>
+     * El stream ha de cerrarse, por ejemplo mediante try-with-resources, para liberar el cursor y la conexión.
+     *
+     * @param searchInfo Contiene un conjunto de criterios de búsquedas.
+     * @return Stream secuencial de las entidades, en el orden de la búsqueda.
+     */
+    Stream<T> stream(SearchInfo searchInfo);
+
+    /**
+     * Recorre en paralelo las entidades que coinciden con los criterios que contiene el searchInfo. Las entidades se
+     * dividen en particiones por rangos de la clave primaria, y cada partición se recorre en su propio thread y su
+     * propia sesión de sólo lectura, entregando las entidades por bloques. Las entidades de cada bloque se desasocian
+     * de la sesión tras procesarlo. No se tiene en cuenta la paginación del searchInfo.
+     * <p>
+     * El consumidor se invoca de forma concurrente desde varios threads, por lo que ha de ser thread-safe. El orden de
+     * la búsqueda sólo se respeta dentro de cada partición.
+     *
+     * @param searchInfo Contiene un conjunto de criterios de búsquedas.
+     * @param partitions Número máximo de particiones.
+     * @param consumer Procesa cada bloque de entidades.
+     */
+    void parallelScan(SearchInfo searchInfo, int partitions, Consumer<List<T>> consumer);
 }
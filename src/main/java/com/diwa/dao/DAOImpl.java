@@ -3,23 +3,52 @@ package com.diwa.dao;
 import com.diwa.dao.search.ScrollResult;
 import com.diwa.dao.shared.aggregate.Aggregate;
 import com.diwa.dao.shared.criteria.Criteria;
+import com.diwa.dao.shared.criteria.conditional.InConditional;
 import com.diwa.dao.shared.criteria.conditional.ValueComparison;
 import com.diwa.dao.shared.entity.FetchJoin;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchCursor;
 import com.diwa.dao.shared.search.SearchInfo;
 import com.diwa.dao.shared.search.SearchResult;
 import com.diwa.dao.utils.DaoUtils;
+import com.google.common.primitives.Primitives;
 import org.hibernate.*;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
 import org.hibernate.transform.ResultTransformer;
 import org.hibernate.transform.Transformers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.persistence.EntityExistsException;
+import javax.persistence.EntityListeners;
+import javax.persistence.PostRemove;
+import javax.persistence.PreRemove;
 import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Implementación de la interfaz DAO. @see DAO.
@@ -38,6 +67,26 @@ import java.util.Map.Entry;
  */
 public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
 
+    /**
+     * Número de valores por defecto a partir del cual un IN se resuelve mediante varias consultas.
+     */
+    public static final int DEFAULT_IN_CHUNKED_QUERY_THRESHOLD = 10000;
+
+    /**
+     * Número de entidades por defecto de cada transacción de {@link #insertAll(Iterator)}.
+     */
+    public static final int DEFAULT_INSERT_BATCH_SIZE = 1000;
+
+    /**
+     * Número de filas por defecto que {@link #stream(SearchInfo)} obtiene en cada acceso a la BD.
+     */
+    public static final int DEFAULT_STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * Número de entidades por defecto de cada bloque de {@link #parallelScan(SearchInfo, int, Consumer)}.
+     */
+    public static final int DEFAULT_SCAN_BATCH_SIZE = 1000;
+
     /**
      * Clase de la entidad a la que pertenece el DAO.
      */
@@ -58,6 +107,94 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      */
     private boolean useCache = false;
 
+    /**
+     * Indica si las búsquedas cargan las entidades en modo de sólo lectura cuando el SearchInfo no lo indica.
+     */
+    private boolean readOnly = false;
+
+    /**
+     * Número de valores a partir del cual un IN de primer nivel se resuelve ejecutando una consulta por cada trozo de
+     * la lista y uniendo los resultados. Por debajo de este número el IN se resuelve en una única sentencia (ver
+     * {@link JPQLGenerator#setMaxInListSize(int)}). Si es menor o igual que 0 nunca se ejecutan varias consultas.
+     */
+    private int inChunkedQueryThreshold = DEFAULT_IN_CHUNKED_QUERY_THRESHOLD;
+
+    /**
+     * Número de entidades tras el cual {@link #save(Collection)} sincroniza la sesión con la BD y la vacía. Si es menor
+     * o igual que 0 la sesión no se vacía.
+     */
+    private int batchSize = 0;
+
+    /**
+     * Número de filas que {@link #stream(SearchInfo)} obtiene en cada acceso a la BD (JDBC fetch size).
+     */
+    private int streamFetchSize = DEFAULT_STREAM_FETCH_SIZE;
+
+    /**
+     * Número de entidades tras el cual {@link #stream(SearchInfo)} vacía la sesión. Si es menor o igual que 0 se
+     * utiliza {@link #streamFetchSize}.
+     */
+    private int streamClearInterval = 0;
+
+    /**
+     * Número de entidades de cada bloque de {@link #parallelScan(SearchInfo, int, Consumer)}.
+     */
+    private int scanBatchSize = DEFAULT_SCAN_BATCH_SIZE;
+
+    /**
+     * Executor en el que {@link #parallelScan(SearchInfo, int, Consumer)} recorre las particiones. Si es null se crea
+     * un pool con un thread por partición en cada recorrido.
+     */
+    private ExecutorService scanExecutor;
+
+    /**
+     * Comportamiento de {@link #parallelScan(SearchInfo, int, Consumer)} cuando falla alguna partición.
+     */
+    private ScanFailurePolicy scanFailurePolicy = ScanFailurePolicy.FAIL_FAST;
+
+    /**
+     * Indica si las entidades del DAO se pueden eliminar mediante una sentencia DELETE. Se calcula la primera vez que
+     * se necesita.
+     */
+    private Boolean bulkDeletable;
+
+    /**
+     * Información sobre las asociaciones de las entidades. Se crea la primera vez que se necesita.
+     */
+    private transient AssociationInspector associationInspector;
+
+    /**
+     * Executor en el que {@link #find(SearchInfo)} ejecuta la consulta COUNT al mismo tiempo que la consulta de la
+     * página. Si es null ambas consultas se ejecutan de forma secuencial.
+     */
+    private ExecutorService countExecutor;
+
+    /**
+     * Tiempo máximo de espera, en milisegundos, del resultado de la consulta COUNT ejecutada en el executor. Si es
+     * menor o igual que 0 se espera indefinidamente.
+     */
+    private long countTimeout = 0;
+
+    /**
+     * Cache del número de resultados de las consultas COUNT. Si es null no se cachean.
+     */
+    private CountCache countCache;
+
+    /**
+     * Cache de los resultados de las búsquedas. Si es null no se cachean.
+     */
+    private QueryResultCache queryResultCache;
+
+    /**
+     * Agrupa las búsquedas idénticas que se ejecutan a la vez. Si es null cada llamada ejecuta su búsqueda.
+     */
+    private QueryCoalescer queryCoalescer;
+
+    /**
+     * Sesión que utiliza el DAO en el thread actual en lugar de la sesión en curso del SessionFactory.
+     */
+    private final ThreadLocal<Session> sessionOverride = new ThreadLocal<Session>();
+
     /**
      * Logger.
      */
@@ -123,6 +260,7 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
             // if the entity exists then we call merge
             persistedEntity = (T) getSession().merge(entity);
         }
+        invalidateCaches();
         return persistedEntity;
     }
 
@@ -131,12 +269,80 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      */
     public Collection<T> save(final Collection<T> entities) {
         Collection<T> aux = new ArrayList<T>(entities.size());
+        int pending = 0;
         for (T entity : entities) {
             aux.add(save(entity));
+            if (batchSize > 0 && ++pending == batchSize) {
+                flushAndClear();
+                pending = 0;
+            }
+        }
+        if (pending > 0) {
+            flushAndClear();
         }
         return aux;
     }
 
+    /**
+     * {@inheritdoc}
+     */
+    public long insertAll(final Iterator<T> entities) {
+        return insertAll(entities, null);
+    }
+
+    /**
+     * {@inheritdoc}
+     * <p>
+     * Cada transacción incluye {@link #getBatchSize()} entidades o {@link #DEFAULT_INSERT_BATCH_SIZE} si no se ha
+     * establecido. Las sentencias INSERT se agrupan en batches JDBC según <code>hibernate.jdbc.batch_size</code>. Si
+     * se produce un error se deshace la transacción del bloque en curso; los bloques anteriores quedan confirmados.
+     */
+    public long insertAll(final Iterator<T> entities, final InsertProgressListener listener) {
+        int commitSize = batchSize > 0 ? batchSize : DEFAULT_INSERT_BATCH_SIZE;
+        long inserted = 0;
+        StatelessSession session = sessionFactory.openStatelessSession();
+        Transaction transaction = null;
+        try {
+            transaction = session.beginTransaction();
+            int pending = 0;
+            while (entities.hasNext()) {
+                session.insert(entities.next());
+                if (++pending == commitSize) {
+                    transaction.commit();
+                    inserted += pending;
+                    pending = 0;
+                    notifyProgress(listener, inserted);
+                    transaction = session.beginTransaction();
+                }
+            }
+            transaction.commit();
+            if (pending > 0) {
+                inserted += pending;
+                notifyProgress(listener, inserted);
+            }
+            return inserted;
+        } catch (RuntimeException e) {
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+            logger.error("Bulk insert of " + type.getSimpleName() + " failed after " + inserted + " rows", e);
+            throw e;
+        } finally {
+            session.close();
+            invalidateCaches();
+        }
+    }
+
+    /**
+     * Notifica el progreso de una inserción masiva.
+     */
+    private void notifyProgress(final InsertProgressListener listener, final long inserted) {
+        logger.debug("Bulk insert of {}: {} rows committed", type.getSimpleName(), inserted);
+        if (listener != null) {
+            listener.onCommit(inserted);
+        }
+    }
+
     /**
      * {@inheritdoc}
      */
@@ -152,17 +358,31 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      * {@inheritdoc}
      */
     public void update(final Map<String, Serializable> attribute, final SearchInfo searchInfo) {
+        if (generator.isUnsatisfiable(searchInfo)) {
+            return;
+        }
         JPQLResult jpqlResult = generator.update(type, attribute, searchInfo);
         Query query = createQuery(jpqlResult.getQuery());
         addCriteriaParams(query, jpqlResult.getParameters());
         query.executeUpdate();
+        invalidateCaches();
     }
 
     /**
      * {@inheritdoc}
      */
     public void delete(final PK id) {
-        getSession().delete(read(id));
+        if (isBulkDeletable()) {
+            Session session = getSession();
+            session.flush();
+            SearchInfo searchInfo = new SearchInfo();
+            searchInfo.addCriteria(ValueComparison.eq(getClassMetadata().getIdentifierPropertyName(), id));
+            executeDelete(searchInfo);
+            evict(session, Collections.singletonList(id));
+        } else {
+            getSession().delete(read(id));
+            invalidateCaches();
+        }
     }
 
     /**
@@ -176,6 +396,7 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
                 managedEntity = (T) getSession().merge(entity);
             }
             getSession().delete(managedEntity);
+            invalidateCaches();
         }
     }
 
@@ -183,8 +404,164 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      * {@inheritdoc}
      */
     public void delete(final Collection<T> entities) {
+        if (!isBulkDeletable()) {
+            for (T entity : entities) {
+                delete(entity);
+            }
+            return;
+        }
+        ClassMetadata metadata = getClassMetadata();
+        List<Serializable> ids = new ArrayList<Serializable>(entities.size());
         for (T entity : entities) {
-            delete(entity);
+            Serializable id = metadata.getIdentifier(entity, (SessionImplementor) getSession());
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        Session session = getSession();
+        session.flush();
+        int chunkSize = generator.getMaxInListSize() > 0 ? generator.getMaxInListSize() : ids.size();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            SearchInfo searchInfo = new SearchInfo();
+            searchInfo.addCriteria(new InConditional(metadata.getIdentifierPropertyName(),
+                    new ArrayList<Serializable>(ids.subList(from, Math.min(from + chunkSize, ids.size())))));
+            executeDelete(searchInfo);
+        }
+        evict(session, ids);
+    }
+
+    /**
+     * {@inheritdoc}
+     * <p>
+     * Hibernate invalida las regiones de la cache de segundo nivel y de la cache de consultas afectadas por la
+     * sentencia.
+     */
+    public int delete(final SearchInfo searchInfo) {
+        if (generator.isUnsatisfiable(searchInfo)) {
+            return 0;
+        }
+        Session session = getSession();
+        if (!isBulkDeletable() || !searchInfo.getEntities().isEmpty()) {
+            // Hibernate ha de eliminar en memoria las cascadas y los registros de las colecciones. Una sentencia DELETE
+            // tampoco admite joins, por lo que los criterios sobre entidades relacionadas requieren cargar las entidades
+            SearchInfo matching = new SearchInfo();
+            matching.getCriterias().addAll(searchInfo.getCriterias());
+            matching.getEntities().addAll(searchInfo.getEntities());
+            // Los joins a colecciones repiten la entidad una vez por elemento
+            matching.setDistinct(true);
+            matching.setReadOnly(false);
+            List<T> entities = list(matching);
+            for (T entity : entities) {
+                session.delete(entity);
+            }
+            invalidateCaches();
+            return entities.size();
+        }
+        session.flush();
+        List<Serializable> managed = getManagedIds(session);
+        int deleted = executeDelete(searchInfo);
+        if (deleted > 0 && !managed.isEmpty()) {
+            managed.removeAll(findExistingIds(managed));
+            evict(session, managed);
+        }
+        return deleted;
+    }
+
+    /**
+     * Ejecuta la sentencia DELETE de los criterios de búsqueda y devuelve el número de registros eliminados.
+     */
+    private int executeDelete(final SearchInfo searchInfo) {
+        JPQLResult jpqlResult = generator.delete(type, searchInfo);
+        Query query = createQuery(jpqlResult.getQuery());
+        addCriteriaParams(query, jpqlResult.getParameters());
+        int deleted = query.executeUpdate();
+        invalidateCaches();
+        return deleted;
+    }
+
+    /**
+     * Indica si las entidades del DAO se pueden eliminar mediante una sentencia DELETE sin cargarlas previamente. No es
+     * posible cuando la entidad tiene cascadas o colecciones, ya que Hibernate ha de procesarlas en memoria, ni cuando
+     * tiene versión o callbacks de borrado de JPA (<code>@PreRemove</code>, <code>@PostRemove</code> o
+     * <code>@EntityListeners</code>), ya que la sentencia no comprueba la versión ni lanza los eventos.
+     */
+    protected boolean isBulkDeletable() {
+        if (bulkDeletable == null) {
+            ClassMetadata metadata = getClassMetadata();
+            bulkDeletable = metadata instanceof EntityPersister && !((EntityPersister) metadata).hasCascades()
+                    && !((EntityPersister) metadata).hasCollections() && !metadata.isVersioned()
+                    && !hasRemoveCallbacks(type);
+        }
+        return bulkDeletable;
+    }
+
+    /**
+     * Indica si la clase o alguna de sus superclases declara callbacks de borrado de JPA.
+     */
+    private static boolean hasRemoveCallbacks(final Class<?> entityClass) {
+        for (Class<?> current = entityClass; current != null && current != Object.class;
+                current = current.getSuperclass()) {
+            if (current.isAnnotationPresent(EntityListeners.class)) {
+                return true;
+            }
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(PreRemove.class) || method.isAnnotationPresent(PostRemove.class)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve los identificadores de las entidades del tipo del DAO, o de sus subclases, asociadas a la sesión.
+     */
+    private List<Serializable> getManagedIds(final Session session) {
+        EntityPersister persister = (EntityPersister) getClassMetadata();
+        List<Serializable> ids = new ArrayList<Serializable>();
+        for (Entry<Object, EntityEntry> entry : ((SessionImplementor) session).getPersistenceContext()
+                .reentrantSafeEntityEntries()) {
+            if (persister.isSubclassEntityName(entry.getValue().getEntityName())) {
+                ids.add(entry.getValue().getId());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Devuelve cuáles de los identificadores indicados siguen existiendo en la BD.
+     */
+    @SuppressWarnings("unchecked")
+    private Set<Serializable> findExistingIds(final List<Serializable> ids) {
+        String pkName = getClassMetadata().getIdentifierPropertyName();
+        Set<Serializable> existing = new HashSet<Serializable>();
+        int chunkSize = generator.getMaxInListSize() > 0 ? generator.getMaxInListSize() : ids.size();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            SearchInfo searchInfo = new SearchInfo();
+            searchInfo.setDistinct(false);
+            searchInfo.addCriteria(new InConditional(pkName,
+                    new ArrayList<Serializable>(ids.subList(from, Math.min(from + chunkSize, ids.size())))));
+            JPQLResult jpqlResult = generator.findProjection(type, searchInfo, pkName);
+            Query query = createQuery(jpqlResult.getQuery());
+            addCriteriaParams(query, jpqlResult.getParameters());
+            existing.addAll(query.list());
+        }
+        return existing;
+    }
+
+    /**
+     * Desasocia de la sesión las entidades del tipo del DAO, o de sus subclases, con los identificadores indicados, ya
+     * que se han eliminado mediante una sentencia ejecutada directamente sobre la BD.
+     */
+    protected void evict(final Session session, final Collection<? extends Serializable> ids) {
+        SessionImplementor implementor = (SessionImplementor) session;
+        EntityPersister persister = (EntityPersister) getClassMetadata();
+        for (Serializable id : ids) {
+            // La clave de la entidad se compara por la entidad raíz, por lo que incluye las subclases
+            Object entity = implementor.getPersistenceContext().getEntity(implementor.generateEntityKey(id, persister));
+            if (entity != null) {
+                session.evict(entity);
+            }
         }
     }
 
@@ -195,6 +572,22 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
         Query q = createQuery(query.toString());
         addCriteriaParams(q, params);
         q.executeUpdate();
+        invalidateCaches();
+    }
+
+    /**
+     * Elimina de la cache de COUNT y de la cache de resultados las entradas de la entidad del DAO, ya que se ha
+     * modificado. Dentro de una transacción de Spring las entradas se invalidan de nuevo al terminar la transacción
+     * (ver {@link TransactionModifications}).
+     */
+    protected void invalidateCaches() {
+        if (countCache != null) {
+            countCache.invalidate(type);
+        }
+        if (queryResultCache != null) {
+            queryResultCache.invalidate(type);
+        }
+        TransactionModifications.register(type, queryResultCache);
     }
 
     /**
@@ -224,6 +617,82 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
         return findSingle(searchInfo);
     }
 
+    /**
+     * {@inheritdoc}
+     */
+    public List<T> readAll(final Collection<PK> ids, final FetchJoin... fetch) {
+        return readAll(ids, MissingIdPolicy.SKIP, fetch);
+    }
+
+    /**
+     * {@inheritdoc}
+     * <p>
+     * Cada consulta incluye como mucho {@link JPQLGenerator#getMaxInListSize()} identificadores. Las entidades que ya
+     * están en la sesión no se consultan, salvo que alguna de las asociaciones de los fetches indicados no esté
+     * inicializada: en ese caso se incluyen en la consulta, que inicializa sus asociaciones.
+     */
+    public List<T> readAll(final Collection<PK> ids, final MissingIdPolicy policy, final FetchJoin... fetch) {
+        return readAll(ids, policy, null, fetch);
+    }
+
+    /**
+     * Obtiene las entidades con los identificadores indicados cargándolas en el modo de sólo lectura indicado, o
+     * según la configuración del DAO si es null.
+     */
+    @SuppressWarnings("unchecked")
+    private List<T> readAll(final Collection<PK> ids, final MissingIdPolicy policy, final Boolean readOnly,
+            final FetchJoin... fetch) {
+        SessionImplementor session = (SessionImplementor) getSession();
+        EntityPersister persister = (EntityPersister) getClassMetadata();
+        Map<Serializable, T> found = new HashMap<Serializable, T>(ids.size());
+        List<PK> pending = new ArrayList<PK>();
+        for (PK id : new LinkedHashSet<PK>(ids)) {
+            Object entity = session.getPersistenceContext().getEntity(session.generateEntityKey(id, persister));
+            if (entity != null && isFetched(entity, fetch)) {
+                found.put(id, (T) entity);
+            } else {
+                pending.add(id);
+            }
+        }
+        String pkName = DaoUtils.getPrimaryKeyName(type);
+        int chunkSize = generator.getMaxInListSize() > 0 ? generator.getMaxInListSize() : pending.size();
+        for (int from = 0; from < pending.size(); from += chunkSize) {
+            SearchInfo searchInfo = new SearchInfo();
+            searchInfo.getFetches().addAll(Arrays.asList(fetch));
+            // Los fetches sobre colecciones repiten la entidad
+            searchInfo.setDistinct(fetch.length > 0);
+            searchInfo.setReadOnly(readOnly);
+            searchInfo.addCriteria(new InConditional(pkName,
+                    new ArrayList<PK>(pending.subList(from, Math.min(from + chunkSize, pending.size())))));
+            for (T entity : list(searchInfo)) {
+                found.put(persister.getIdentifier(entity, session), entity);
+            }
+        }
+        List<T> result = new ArrayList<T>(ids.size());
+        for (PK id : ids) {
+            T entity = found.get(id);
+            if (entity != null || policy == MissingIdPolicy.NULL) {
+                result.add(entity);
+            } else if (policy == MissingIdPolicy.FAIL) {
+                throw new ObjectNotFoundException(id, type.getName());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Indica si las asociaciones de los fetches indicados ya están inicializadas en la entidad. Los fetches sobre las
+     * asociaciones de otras entidades de la búsqueda no se comprueban, por lo que se consideran sin inicializar.
+     */
+    private boolean isFetched(final Object entity, final FetchJoin... fetch) {
+        for (FetchJoin join : fetch) {
+            if (join.getEntity() != null || !Hibernate.isInitialized(getPropertyValue(entity, join.getName()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * {@inheritdoc}
      */
@@ -271,99 +740,857 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      * {@inheritdoc}
      */
     public Long count(final SearchInfo searchInfo) {
-        JPQLResult jpqlResult = generator.count(type, searchInfo);
-        Query query = createQuery(jpqlResult.getQuery());
-        addCriteriaParams(query, jpqlResult.getParameters());
-        return (Long) query.uniqueResult();
+        final SearchInfo frozen = searchInfo.frozenCopy();
+        if (generator.isUnsatisfiable(frozen)) {
+            // Los criterios no pueden cumplirse nunca: no es necesario acceder a la BD
+            return 0L;
+        }
+        return loadResult(frozen, new Supplier<Long>() {
+            @Override
+            public Long get() {
+                Long cached = getCachedCount(frozen);
+                return cached != null ? cached : loadCount(frozen);
+            }
+        }, "count");
     }
 
     /**
-     * {@inheritdoc}
+     * Obtiene el resultado de la búsqueda mediante el loader, a través de la cache de resultados y del agrupador de
+     * búsquedas simultáneas si el DAO los tiene y la búsqueda no los desactiva. Ambos comparten el valor compartido
+     * del resultado (ver {@link #toShared(Object, boolean)}), del que el resto de llamadas obtienen su propio
+     * resultado. La llamada que ejecuta el loader obtiene directamente su resultado.
+     *
+     * @param operation Operación y sus argumentos, que junto con la huella del SearchInfo forman la clave de la
+     *            búsqueda.
      */
-    public Number aggregate(final Aggregate aggregate, final String field, final SearchInfo searchInfo) {
-        return aggregate(aggregate, field, searchInfo, Number.class);
+    protected <V> V loadResult(final SearchInfo searchInfo, final Supplier<V> loader, final Object... operation) {
+        boolean cacheable = isResultCacheable(searchInfo);
+        boolean coalesced = isCoalesced(searchInfo);
+        if (!cacheable && !coalesced) {
+            return loader.get();
+        }
+        final List<Object> key = new ArrayList<Object>(Arrays.asList(operation));
+        key.add(searchInfo.getFingerprint());
+        // Los recálculos en segundo plano de la cache ejecutan el loader en otra sesión, aunque sea en este thread
+        final Thread caller = Thread.currentThread();
+        final Session callerSession = sessionOverride.get();
+        final AtomicReference<V> own = new AtomicReference<V>();
+        // Las entradas de la cache sólo guardan los identificadores, para no retener las entidades
+        final boolean copies = coalesced && !cacheable;
+        final Supplier<Object> shared = new Supplier<Object>() {
+            @Override
+            public Object get() {
+                V result = loader.get();
+                if (Thread.currentThread() == caller && sessionOverride.get() == callerSession) {
+                    own.set(result);
+                }
+                return toShared(result, copies);
+            }
+        };
+        Supplier<Object> source = shared;
+        if (coalesced) {
+            source = new Supplier<Object>() {
+                @Override
+                public Object get() {
+                    return coalescedResult(key, shared);
+                }
+            };
+        }
+        Object value = cacheable ? cachedResult(key, source) : source.get();
+        return own.get() != null ? own.get() : this.<V> fromShared(value, searchInfo);
     }
 
     /**
-     * {@inheritdoc}
+     * Convierte el resultado de una búsqueda en un valor que puede compartirse entre sesiones: las entidades de find y
+     * findWithoutCount se sustituyen por sus identificadores, y el resto de resultados (COUNT y agregados) se
+     * comparten tal cual.
+     *
+     * @param copies Si es cierto, además se guarda el estado de las entidades, a partir del que el resto de llamadas
+     *            obtienen copias de las entidades sin acceder a la BD (ver {@link #getStates(List)}).
      */
-    @SuppressWarnings("unchecked")
-    public <K extends Serializable> K aggregate(Aggregate aggregate, String field, SearchInfo searchInfo, Class<K> clazz) {
-        JPQLResult jpqlResult = generator.aggregate(type, aggregate, field, searchInfo);
-        Query query = createQuery(jpqlResult.getQuery());
-        addCriteriaParams(query, jpqlResult.getParameters());
-        return (K) query.uniqueResult();
+    protected Object toShared(final Object result, final boolean copies) {
+        if (result instanceof SearchResult) {
+            SearchResult<?> page = (SearchResult<?>) result;
+            return new SharedEntities(getIds(page.getElements()), page,
+                    copies ? getStates(page.getElements()) : null);
+        } else if (result instanceof List) {
+            return new SharedEntities(getIds((List<?>) result), null, copies ? getStates((List<?>) result) : null);
+        }
+        return result;
     }
 
     /**
-     * {@inheritdoc}
+     * Obtiene el resultado de una búsqueda a partir de su valor compartido (ver {@link #toShared(Object, boolean)}).
+     * Si el valor incluye el estado de las entidades se construyen copias desasociadas de cualquier sesión, que
+     * comparten las entidades asociadas de sólo lectura de la llamada que ejecutó la búsqueda. En otro caso las
+     * entidades se cargan en la sesión en curso con los fetches de la entidad de la búsqueda, sin consultar las que ya
+     * están en la sesión, y se omiten las eliminadas desde que se obtuvo el resultado.
      */
-    public SearchResult<T> find(final Map<String, Serializable> propertyValue) {
-        SearchInfo searchInfo = new SearchInfo();
-        for (Entry<String, Serializable> entry : propertyValue.entrySet()) {
-            searchInfo.addCriteria(ValueComparison.eq(entry.getKey(), entry.getValue()));
+    @SuppressWarnings("unchecked")
+    protected <V> V fromShared(final Object shared, final SearchInfo searchInfo) {
+        if (!(shared instanceof SharedEntities)) {
+            return (V) shared;
         }
-        return find(searchInfo);
+        SharedEntities entities = (SharedEntities) shared;
+        List<T> elements;
+        if (entities.states != null) {
+            elements = new ArrayList<T>(entities.states.size());
+            for (EntityState state : entities.states) {
+                elements.add((T) copyOf(state));
+            }
+        } else {
+            List<FetchJoin> fetches = new ArrayList<FetchJoin>();
+            for (FetchJoin fetch : searchInfo.getFetches()) {
+                if (fetch.getEntity() == null) {
+                    fetches.add(fetch);
+                }
+            }
+            elements = readAll((List<PK>) entities.ids, MissingIdPolicy.SKIP, searchInfo.getReadOnly(),
+                    fetches.toArray(new FetchJoin[fetches.size()]));
+        }
+        if (!entities.page) {
+            return (V) elements;
+        }
+        SearchResult<T> result = new SearchResult<T>(elements, entities.totalMatches);
+        result.setHasNext(entities.hasNext);
+        result.setApproximate(entities.approximate);
+        result.setNextCursor(entities.nextCursor);
+        if (entities.countPending) {
+            result.setCountLoader(new SearchResult.CountLoader() {
+                @Override
+                public long count() {
+                    return DAOImpl.this.count(searchInfo);
+                }
+            });
+        }
+        return (V) result;
     }
 
     /**
-     * {@inheritdoc}
+     * Obtiene los identificadores de las entidades indicadas, que pueden no pertenecer a la sesión en curso.
      */
-    public SearchResult<T> find(final String property, final Serializable value) {
-        SearchInfo searchInfo = new SearchInfo();
-        searchInfo.addCriteria(ValueComparison.eq(property, value));
-        return find(searchInfo);
+    private List<Serializable> getIds(final List<?> entities) {
+        ClassMetadata metadata = getClassMetadata();
+        SessionImplementor session = (SessionImplementor) getSession();
+        List<Serializable> ids = new ArrayList<Serializable>(entities.size());
+        for (Object entity : entities) {
+            ids.add(metadata.getIdentifier(entity, session));
+        }
+        return ids;
     }
 
     /**
-     * {@inheritdoc}
+     * Obtiene el estado de las entidades indicadas: los valores de sus atributos, con las colecciones copiadas en
+     * colecciones de Java. Devuelve null si alguna de ellas tiene asociaciones sin inicializar, que sus copias no
+     * podrían cargar, en cuyo caso cada llamada carga las entidades en su propia sesión.
      */
-    public SearchResult<T> find(final Criteria... criteria) {
-        SearchInfo searchInfo = new SearchInfo();
-        searchInfo.getCriterias().addAll(Arrays.asList(criteria));
-        return find(searchInfo);
+    private List<EntityState> getStates(final List<?> entities) {
+        SessionImplementor session = (SessionImplementor) getSession();
+        List<EntityState> states = new ArrayList<EntityState>(entities.size());
+        for (Object element : entities) {
+            if (!Hibernate.isInitialized(element)) {
+                return null;
+            }
+            Object entity = element instanceof HibernateProxy
+                    ? ((HibernateProxy) element).getHibernateLazyInitializer().getImplementation() : element;
+            EntityPersister persister = session.getEntityPersister(null, entity);
+            Object[] values = persister.getPropertyValues(entity);
+            for (int i = 0; i < values.length; i++) {
+                if (!Hibernate.isInitialized(values[i])) {
+                    return null;
+                }
+                values[i] = copyOf(values[i]);
+            }
+            states.add(new EntityState(persister.getEntityName(), persister.getIdentifier(entity, session), values));
+        }
+        return states;
     }
 
     /**
-     * {@inheritdoc}
+     * Construye una copia de la entidad a partir de su estado, sin asociarla a ninguna sesión. Cada copia tiene sus
+     * propias colecciones.
      */
-    public SearchResult<T> findAll() {
-        return find(new SearchInfo());
+    private Object copyOf(final EntityState state) {
+        SessionImplementor session = (SessionImplementor) getSession();
+        EntityPersister persister = session.getFactory().getEntityPersister(state.entityName);
+        Object copy = persister.instantiate(state.id, session);
+        Object[] values = new Object[state.values.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = copyOf(state.values[i]);
+        }
+        persister.setPropertyValues(copy, values);
+        return copy;
     }
 
     /**
-     * {@inheritdoc}
+     * Copia las colecciones, incluidas las de Hibernate, en colecciones de Java con los mismos elementos. El resto de
+     * valores se devuelven tal cual.
      */
-    @SuppressWarnings("unchecked")
-    public SearchResult<T> find(final SearchInfo searchInfo) {
-        JPQLResult jpqlResult = generator.find(type, searchInfo);
-        Query query = createQuery(jpqlResult.getQuery());
-        addCriteriaParams(query, jpqlResult.getParameters());
-
-        Long total = count(searchInfo);
-        int offset = searchInfo.getOffset();
-        int pageSize = searchInfo.getPageSize();
-
-        // TODO Volver a la versión anterior, esta provoca fallos al llegar al final del listado
-        if (offset != -1 && pageSize != -1) {
-            query.setFirstResult(offset);
-            query.setMaxResults(pageSize);
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object copyOf(final Object value) {
+        if (value instanceof SortedMap) {
+            return new TreeMap((SortedMap) value);
+        } else if (value instanceof Map) {
+            return new LinkedHashMap((Map) value);
+        } else if (value instanceof SortedSet) {
+            return new TreeSet((SortedSet) value);
+        } else if (value instanceof Set) {
+            return new LinkedHashSet((Set) value);
+        } else if (value instanceof Collection) {
+            return new ArrayList((Collection) value);
         }
-        return new SearchResult<T>(query.list(), total);
+        return value;
     }
 
     /**
-     * {@inheritdoc}
+     * Indica si la búsqueda se agrupa con las búsquedas idénticas que se ejecutan a la vez. Se agrupan todas salvo las
+     * que indican expresamente que sus entidades no son de sólo lectura y las de las entidades que ha modificado la
+     * transacción en curso, cuyo resultado incluye cambios que el resto de threads no deben ver.
      */
-    @SuppressWarnings("unchecked")
-    public List<T> findWithoutCount(final SearchInfo searchInfo) {
-        JPQLResult jpqlResult = generator.find(type, searchInfo);
-        Query query = createQuery(jpqlResult.getQuery());
-        addCriteriaParams(query, jpqlResult.getParameters());
+    protected boolean isCoalesced(final SearchInfo searchInfo) {
+        return queryCoalescer != null && !Boolean.FALSE.equals(searchInfo.getReadOnly())
+                && !TransactionModifications.isModified(type);
+    }
 
-        int offset = searchInfo.getOffset();
-        int pageSize = searchInfo.getPageSize();
+    /**
+     * Obtiene el valor compartido de la búsqueda idéntica en curso o, si no hay ninguna, ejecuta el loader en la
+     * sesión en curso. El loader devuelve el valor compartido del resultado (ver {@link #toShared(Object, boolean)}),
+     * por lo que las llamadas agrupadas no reciben las entidades de la sesión que ejecuta la búsqueda, sino copias.
+     *
+     * @param key Clave de la búsqueda: operación, sus argumentos y la huella del SearchInfo.
+     */
+    protected <V> V coalescedResult(final List<?> key, final Supplier<V> loader) {
+        return queryCoalescer.execute(type, key, loader);
+    }
 
+    /**
+     * Indica si el resultado de la búsqueda se almacena en la cache de resultados. No se almacenan las búsquedas de las
+     * entidades que ha modificado la transacción en curso, ya que incluyen cambios que aún no se han confirmado.
+     */
+    protected boolean isResultCacheable(final SearchInfo searchInfo) {
+        return queryResultCache != null && !Boolean.FALSE.equals(searchInfo.getCacheable())
+                && !TransactionModifications.isModified(type);
+    }
+
+    /**
+     * Obtiene el resultado de la cache de resultados o, si no está, mediante el loader, que devuelve su valor
+     * compartido (ver {@link #toShared(Object, boolean)}). Las entradas que van a caducar se recalculan en segundo plano
+     * ejecutando el loader en una sesión de sólo lectura independiente.
+     *
+     * @param key Clave de la búsqueda: operación, sus argumentos y la huella del SearchInfo.
+     */
+    protected <V> V cachedResult(final List<?> key, final Supplier<V> loader) {
+        return queryResultCache.get(type, key, loader, new Supplier<V>() {
+            @Override
+            public V get() {
+                return callInNewSession(loader, 0, null);
+            }
+        });
+    }
+
+    /**
+     * Devuelve el número de resultados de la búsqueda almacenado en la cache de COUNT si no ha caducado.
+     *
+     * @return Número de resultados o null si no hay cache, no está en la cache o ha caducado.
+     */
+    protected Long getCachedCount(final SearchInfo searchInfo) {
+        return countCache == null ? null : countCache.get(type, countKey(searchInfo));
+    }
+
+    /**
+     * Ejecuta la consulta COUNT de la búsqueda y almacena el resultado en la cache de COUNT.
+     */
+    protected Long loadCount(final SearchInfo searchInfo) {
+        long generation = countCache != null ? countCache.getGeneration(type) : 0;
+        Long total;
+        InConditional oversized = findOversizedIn(searchInfo);
+        if (oversized != null) {
+            // Cada fila cumple como mucho uno de los trozos (sin valores repetidos), por lo que el total es la suma
+            total = 0L;
+            for (SearchInfo chunk : splitSearchInfo(searchInfo, oversized)) {
+                total += countQuery(chunk);
+            }
+        } else {
+            total = countQuery(searchInfo);
+        }
+        if (countCache != null) {
+            countCache.put(type, countKey(searchInfo), total, generation);
+        }
+        return total;
+    }
+
+    /**
+     * @return Sentencia COUNT de la búsqueda, utilizada como clave de la cache de COUNT.
+     */
+    private JPQLResult countKey(final SearchInfo searchInfo) {
+        return generator.count(type, searchInfo, getAssociationInspector());
+    }
+
+    /**
+     * Ejecuta la consulta COUNT correspondiente a la búsqueda indicada.
+     */
+    protected Long countQuery(final SearchInfo searchInfo) {
+        JPQLResult jpqlResult = generator.count(type, searchInfo, getAssociationInspector());
+        Query query = createQuery(jpqlResult.getQuery());
+        addCriteriaParams(query, jpqlResult.getParameters());
+        return (Long) query.uniqueResult();
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public Number aggregate(final Aggregate aggregate, final String field, final SearchInfo searchInfo) {
+        return aggregate(aggregate, field, searchInfo, Number.class);
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @SuppressWarnings("unchecked")
+    public <K extends Serializable> K aggregate(final Aggregate aggregate, final String field,
+            final SearchInfo searchInfo, final Class<K> clazz) {
+        final SearchInfo frozen = searchInfo.frozenCopy();
+        if (generator.isUnsatisfiable(frozen)) {
+            // Los agregados de un conjunto vacío son nulos
+            return null;
+        }
+        return loadResult(frozen, new Supplier<K>() {
+            @Override
+            public K get() {
+                return aggregateQuery(aggregate, field, frozen);
+            }
+        }, "aggregate", aggregate, field);
+    }
+
+    /**
+     * Ejecuta la consulta del agregado indicado.
+     */
+    @SuppressWarnings("unchecked")
+    protected <K extends Serializable> K aggregateQuery(final Aggregate aggregate, final String field,
+            final SearchInfo searchInfo) {
+        JPQLResult jpqlResult = generator.aggregate(type, aggregate, field, searchInfo);
+        Query query = createQuery(jpqlResult.getQuery());
+        addCriteriaParams(query, jpqlResult.getParameters());
+        return (K) query.uniqueResult();
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public SearchResult<T> find(final Map<String, Serializable> propertyValue) {
+        SearchInfo searchInfo = new SearchInfo();
+        for (Entry<String, Serializable> entry : propertyValue.entrySet()) {
+            searchInfo.addCriteria(ValueComparison.eq(entry.getKey(), entry.getValue()));
+        }
+        return find(searchInfo);
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public SearchResult<T> find(final String property, final Serializable value) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(ValueComparison.eq(property, value));
+        return find(searchInfo);
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public SearchResult<T> find(final Criteria... criteria) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.getCriterias().addAll(Arrays.asList(criteria));
+        return find(searchInfo);
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public SearchResult<T> findAll() {
+        return find(new SearchInfo());
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public SearchResult<T> find(final SearchInfo searchInfo) {
+        // El generador optimiza los criterios de la copia congelada y genera sus sentencias una única vez, también en
+        // el COUNT de la búsqueda
+        final SearchInfo frozen = searchInfo.frozenCopy();
+        if (generator.isUnsatisfiable(frozen)) {
+            return new SearchResult<T>(new ArrayList<T>(), frozen.getCountMode() == CountMode.NONE ? -1 : 0);
+        }
+        return loadResult(frozen, new Supplier<SearchResult<T>>() {
+            @Override
+            public SearchResult<T> get() {
+                return findPage(frozen);
+            }
+        }, "find");
+    }
+
+    /**
+     * Obtiene la página solicitada y el número total de resultados según el modo indicado en la búsqueda.
+     */
+    protected SearchResult<T> findPage(final SearchInfo searchInfo) {
+        SearchResult<T> result;
+        switch (searchInfo.getCountMode()) {
+        case NONE:
+            result = new SearchResult<T>(list(searchInfo), -1);
+            break;
+        case LAZY:
+        case HAS_NEXT:
+            result = findWithNextProbe(searchInfo);
+            break;
+        case APPROXIMATE:
+            result = findApproximate(searchInfo);
+            break;
+        default:
+            if (searchInfo.getAfter() != null) {
+                // Con cursor no se conoce la posición de la página, por lo que hasNext no se puede deducir del total
+                result = findWithNextProbe(searchInfo);
+                result.setTotalMatches(count(searchInfo));
+            } else {
+                result = findExact(searchInfo);
+                int offset = Math.max(searchInfo.getOffset(), 0);
+                result.setHasNext(isPaged(searchInfo)
+                        && offset + result.getElements().size() < result.getTotalMatches());
+            }
+        }
+        List<T> elements = result.getElements();
+        if (isPaged(searchInfo) && elements.size() == searchInfo.getPageSize() && !elements.isEmpty()
+                && (result.hasNext() || searchInfo.getCountMode() == CountMode.NONE) && isMergeable(searchInfo)) {
+            result.setNextCursor(createCursor(searchInfo, elements.get(elements.size() - 1)));
+        }
+        return result;
+    }
+
+    /**
+     * Indica si la búsqueda es paginada, es decir, si tiene establecidos el tamaño de página y el offset o el cursor.
+     */
+    private boolean isPaged(final SearchInfo searchInfo) {
+        return (searchInfo.getOffset() != -1 || searchInfo.getAfter() != null) && searchInfo.getPageSize() != -1;
+    }
+
+    /**
+     * Genera el cursor que permite obtener los elementos posteriores a la entidad indicada, a partir de los valores de
+     * sus atributos de ordenación.
+     * <p>
+     * Sólo se genera si ningún atributo de ordenación admite nulos: la comparación con NULL nunca se cumple y la
+     * posición de los nulos en la ordenación depende de la BD, por lo que el cursor omitiría filas sin avisar.
+     * 
+     * @return Cursor o null si algún atributo de ordenación admite nulos.
+     */
+    protected SearchCursor createCursor(final SearchInfo searchInfo, final T last) {
+        List<Serializable> values = new ArrayList<Serializable>();
+        for (OrderBy key : generator.getSortKeys(searchInfo)) {
+            if (!isNotNullable(key)) {
+                return null;
+            }
+            Object value = getPropertyValue(last, key.getName());
+            if (value == null) {
+                return null;
+            }
+            values.add((Serializable) value);
+        }
+        return new SearchCursor(values);
+    }
+
+    /**
+     * Indica si el atributo de ordenación indicado no admite nulos según los metadatos de Hibernate. Los atributos de
+     * las entidades de los joins se consideran nulables.
+     */
+    protected boolean isNotNullable(final OrderBy key) {
+        if (key.getEntity() != null) {
+            return false;
+        }
+        ClassMetadata metadata = getClassMetadata();
+        if (key.getName().equals(metadata.getIdentifierPropertyName())) {
+            return true;
+        }
+        String[] names = metadata.getPropertyNames();
+        boolean[] nullability = metadata.getPropertyNullability();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(key.getName())) {
+                return !nullability[i];
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve el valor del atributo indicado de una entidad del DAO.
+     */
+    protected Object getPropertyValue(final Object entity, final String property) {
+        ClassMetadata metadata = getClassMetadata();
+        if (property.equals(metadata.getIdentifierPropertyName())) {
+            return getSession().getIdentifier(entity);
+        }
+        Object implementation = entity;
+        if (entity instanceof HibernateProxy) {
+            implementation = ((HibernateProxy) entity).getHibernateLazyInitializer().getImplementation();
+        }
+        return metadata.getPropertyValue(implementation, property);
+    }
+
+    /**
+     * Obtiene la página solicitada sin ejecutar la consulta COUNT ({@link CountMode#HAS_NEXT} y
+     * {@link CountMode#LAZY}). Se obtiene un elemento más que el tamaño de la página para saber si existe una página
+     * siguiente. En el modo LAZY, la consulta COUNT sólo se ejecuta si se solicita el total y éste no se puede deducir
+     * de la propia página.
+     */
+    protected SearchResult<T> findWithNextProbe(final SearchInfo searchInfo) {
+        if (!isPaged(searchInfo)) {
+            List<T> elements = list(searchInfo);
+            return new SearchResult<T>(elements, searchInfo.getCountMode() == CountMode.LAZY ? elements.size() : -1);
+        }
+        int offset = Math.max(searchInfo.getOffset(), 0);
+        int pageSize = searchInfo.getPageSize();
+        List<T> elements = list(searchInfo.withPage(searchInfo.getOffset(), pageSize + 1));
+        boolean hasNext = elements.size() > pageSize;
+        if (hasNext) {
+            elements = new ArrayList<T>(elements.subList(0, pageSize));
+        }
+        SearchResult<T> result = new SearchResult<T>(elements, -1);
+        result.setHasNext(hasNext);
+        if (searchInfo.getCountMode() == CountMode.LAZY) {
+            if (!hasNext && searchInfo.getAfter() == null && (!elements.isEmpty() || offset == 0)) {
+                // La página es la última, por lo que el total se conoce sin ejecutar la consulta COUNT
+                result.setTotalMatches(offset + elements.size());
+            } else {
+                result.setCountLoader(new SearchResult.CountLoader() {
+                    @Override
+                    public long count() {
+                        return DAOImpl.this.count(searchInfo);
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Obtiene la página solicitada y un número total de resultados aproximado ({@link CountMode#APPROXIMATE}). Si la
+     * página es la última el total es exacto. En otro caso, si el DAO tiene cache de COUNT y executor, se devuelve el
+     * valor de la cache aunque haya caducado o, si no está en la cache, el mínimo conocido, y se recalcula en segundo
+     * plano. Sin executor sólo se devuelven valores vigentes de la cache; si no los hay se ejecuta la consulta COUNT.
+     */
+    protected SearchResult<T> findApproximate(final SearchInfo searchInfo) {
+        SearchResult<T> result = findWithNextProbe(searchInfo);
+        int size = result.getElements().size();
+        if (!isPaged(searchInfo)) {
+            result.setTotalMatches(size);
+            return result;
+        }
+        int offset = searchInfo.getAfter() == null ? Math.max(searchInfo.getOffset(), 0) : 0;
+        if (!result.hasNext() && searchInfo.getAfter() == null && (size > 0 || offset == 0)) {
+            result.setTotalMatches(offset + size);
+            return result;
+        }
+        // Número mínimo de resultados que se conoce a partir de la página
+        long known = offset + size + (result.hasNext() ? 1 : 0);
+        if (countCache == null || countExecutor == null) {
+            Long cached = getCachedCount(searchInfo);
+            result.setTotalMatches(cached != null ? Math.max(cached, known) : loadCount(searchInfo));
+            result.setApproximate(cached != null);
+            return result;
+        }
+        CountCache.Entry entry = countCache.getAny(type, countKey(searchInfo));
+        if (entry == null || entry.getAge() > countCache.getTtl()) {
+            refreshCount(searchInfo);
+        }
+        if (entry == null) {
+            countCache.recordEstimate();
+            result.setTotalMatches(known);
+        } else {
+            result.setTotalMatches(Math.max(entry.getValue(), known));
+        }
+        result.setApproximate(true);
+        return result;
+    }
+
+    /**
+     * Ejecuta la consulta COUNT de la búsqueda en el executor, en una sesión independiente, y almacena el resultado en
+     * la cache de COUNT. Si la consulta ya se está ejecutando no se vuelve a lanzar.
+     */
+    protected void refreshCount(final SearchInfo searchInfo) {
+        final JPQLResult key = countKey(searchInfo);
+        if (!countCache.startLoading(type, key)) {
+            return;
+        }
+        final SearchInfo copy = searchInfo.frozenCopy();
+        try {
+            countExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        countInNewSession(copy, new AtomicReference<Session>());
+                    } catch (RuntimeException e) {
+                        logger.warn("Could not refresh the count of " + type.getSimpleName(), e);
+                    } finally {
+                        countCache.endLoading(type, key);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            countCache.endLoading(type, key);
+            logger.debug("Count refresh of {} rejected by the executor", type.getSimpleName());
+        }
+    }
+
+    /**
+     * Obtiene la página solicitada y el número total de resultados ({@link CountMode#EXACT}).
+     */
+    protected SearchResult<T> findExact(final SearchInfo searchInfo) {
+        Long cached = getCachedCount(searchInfo);
+        if (cached != null) {
+            return new SearchResult<T>(list(searchInfo), cached);
+        }
+        if (countExecutor == null) {
+            Long total = loadCount(searchInfo);
+            return new SearchResult<T>(list(searchInfo), total);
+        }
+        final AtomicReference<Session> countSession = new AtomicReference<Session>();
+        Future<Long> total = countExecutor.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return countInNewSession(searchInfo, countSession);
+            }
+        });
+        try {
+            List<T> elements = list(searchInfo);
+            return new SearchResult<T>(elements, awaitCount(total));
+        } finally {
+            cancelCount(total, countSession);
+        }
+    }
+
+    /**
+     * Ejecuta la consulta COUNT en una nueva sesión de sólo lectura, que se publica en la referencia indicada para
+     * poder cancelar la consulta desde otro thread.
+     */
+    protected Long countInNewSession(final SearchInfo searchInfo, final AtomicReference<Session> countSession) {
+        return callInNewSession(new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return loadCount(searchInfo);
+            }
+        }, 0, countSession);
+    }
+
+    /**
+     * Ejecuta la acción en una sesión de sólo lectura independiente de la sesión en curso, que utilizan todas las
+     * consultas del DAO realizadas desde el thread actual durante la acción. Al terminar se deshace la transacción y
+     * se cierra la sesión, por lo que las entidades devueltas quedan desasociadas y no pueden cargar sus asociaciones
+     * lazy.
+     *
+     * @param action Acción a ejecutar.
+     * @param timeout Tiempo máximo de la transacción, en segundos, que hibernate aplica como query timeout de cada
+     *            sentencia JDBC. Si es menor o igual que 0 no se limita.
+     * @param sessionRef Referencia en la que se publica la sesión para poder cancelar sus consultas desde otro thread
+     *            (<code>Session.cancelQuery()</code>). Puede ser null.
+     * @return Resultado de la acción.
+     */
+    public <R> R callInNewSession(final Supplier<R> action, final int timeout,
+            final AtomicReference<Session> sessionRef) {
+        Session session = openReadOnlySession(timeout);
+        if (sessionRef != null) {
+            sessionRef.set(session);
+        }
+        // La acción puede ejecutarse dentro de otra sesión independiente, que se restaura al terminar
+        Session previous = sessionOverride.get();
+        try {
+            sessionOverride.set(session);
+            return action.get();
+        } finally {
+            if (previous != null) {
+                sessionOverride.set(previous);
+            } else {
+                sessionOverride.remove();
+            }
+            closeReadOnlySession(session);
+        }
+    }
+
+    /**
+     * Espera el resultado de la consulta COUNT ejecutada en el executor durante {@link #getCountTimeout()}
+     * milisegundos como máximo.
+     *
+     * @throws QueryTimeoutException Si se supera el tiempo de espera.
+     */
+    private Long awaitCount(final Future<Long> total) {
+        try {
+            if (countTimeout > 0) {
+                return total.get(countTimeout, TimeUnit.MILLISECONDS);
+            }
+            return total.get();
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Count of " + type.getSimpleName() + " exceeded " + countTimeout + " ms",
+                    null, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HibernateException("Interrupted while waiting for the count of " + type.getSimpleName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new HibernateException(e.getCause());
+        }
+    }
+
+    /**
+     * Cancela la consulta COUNT si todavía no ha terminado.
+     */
+    private void cancelCount(final Future<Long> total, final AtomicReference<Session> countSession) {
+        if (!total.isDone()) {
+            total.cancel(true);
+            Session session = countSession.get();
+            if (session != null && session.isOpen()) {
+                try {
+                    session.cancelQuery();
+                } catch (HibernateException e) {
+                    logger.debug("Could not cancel count query", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public List<T> findWithoutCount(final SearchInfo searchInfo) {
+        final SearchInfo frozen = searchInfo.frozenCopy();
+        if (generator.isUnsatisfiable(frozen)) {
+            return new ArrayList<T>();
+        }
+        return loadResult(frozen, new Supplier<List<T>>() {
+            @Override
+            public List<T> get() {
+                return list(frozen);
+            }
+        }, "list");
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public SearchResult<Object[]> findProjection(final SearchInfo searchInfo, final String... fields) {
+        final SearchInfo frozen = searchInfo.frozenCopy();
+        // El transformador devuelve un array también cuando hay un único atributo
+        return findRows(frozen, generator.findProjection(type, frozen, null, getAssociationInspector(),
+                fields), new ProjectionTransformer(null, fields.length));
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public <R> SearchResult<R> findProjection(final SearchInfo searchInfo, final Class<R> resultClass,
+            final String... fields) {
+        final SearchInfo frozen = searchInfo.frozenCopy();
+        AssociationInspector inspector = getAssociationInspector();
+        JPQLResult jpqlResult = generator.findProjection(type, frozen, resultClass, inspector, fields);
+        // Con DISTINCT la sentencia no utiliza la expresión constructor, ya que obtiene columnas adicionales
+        return findRows(frozen, jpqlResult, generator.isDistinctProjection(type, frozen, inspector)
+                ? new ProjectionTransformer(resultClass, fields.length) : null);
+    }
+
+    /**
+     * Ejecuta la sentencia de búsqueda indicada, que no obtiene entidades, aplicando la paginación y el modo de
+     * obtención del número total de resultados de la búsqueda. Como en {@link #find(SearchInfo)}, en los modos
+     * {@link CountMode#HAS_NEXT} y {@link CountMode#LAZY}, y en las búsquedas con cursor, se obtiene un elemento más
+     * que el tamaño de la página. En el modo {@link CountMode#APPROXIMATE} se utiliza el total de la cache de COUNT si
+     * está vigente y si no se ejecuta la consulta COUNT.
+     */
+    protected <R> SearchResult<R> findRows(final SearchInfo searchInfo, final JPQLResult jpqlResult) {
+        return findRows(searchInfo, jpqlResult, null);
+    }
+
+    /**
+     * Ejecuta la sentencia de búsqueda indicada como {@link #findRows(SearchInfo, JPQLResult)}, aplicando a cada fila
+     * el transformador indicado.
+     *
+     * @param transformer Transformador de las filas. Puede ser null.
+     */
+    @SuppressWarnings("unchecked")
+    protected <R> SearchResult<R> findRows(final SearchInfo searchInfo, final JPQLResult jpqlResult,
+            final ResultTransformer transformer) {
+        if (generator.isUnsatisfiable(searchInfo)) {
+            return new SearchResult<R>(new ArrayList<R>(), searchInfo.getCountMode() == CountMode.NONE ? -1 : 0);
+        }
+        Query query = createQuery(jpqlResult.getQuery());
+        addCriteriaParams(query, jpqlResult.getParameters());
+        if (transformer != null) {
+            query.setResultTransformer(transformer);
+        }
+        CountMode countMode = searchInfo.getCountMode();
+        if (!isPaged(searchInfo)) {
+            List<R> elements = query.list();
+            return new SearchResult<R>(elements, countMode == CountMode.NONE ? -1 : elements.size());
+        }
+        int offset = searchInfo.getAfter() == null ? Math.max(searchInfo.getOffset(), 0) : 0;
+        int pageSize = searchInfo.getPageSize();
+        boolean probe = countMode == CountMode.HAS_NEXT || countMode == CountMode.LAZY
+                || (countMode != CountMode.NONE && searchInfo.getAfter() != null);
+        query.setFirstResult(offset);
+        query.setMaxResults(probe ? pageSize + 1 : pageSize);
+        List<R> elements = query.list();
+        boolean hasNext = elements.size() > pageSize;
+        if (hasNext) {
+            elements = new ArrayList<R>(elements.subList(0, pageSize));
+        }
+        SearchResult<R> result = new SearchResult<R>(elements, -1);
+        result.setHasNext(hasNext);
+        switch (countMode) {
+        case NONE:
+        case HAS_NEXT:
+            break;
+        case LAZY:
+            if (!hasNext && searchInfo.getAfter() == null && (!elements.isEmpty() || offset == 0)) {
+                result.setTotalMatches(offset + elements.size());
+            } else {
+                result.setCountLoader(new SearchResult.CountLoader() {
+                    @Override
+                    public long count() {
+                        return DAOImpl.this.count(searchInfo);
+                    }
+                });
+            }
+            break;
+        default:
+            Long cached = countMode == CountMode.APPROXIMATE ? getCachedCount(searchInfo) : null;
+            result.setTotalMatches(cached != null ? cached : count(searchInfo));
+            result.setApproximate(cached != null);
+            if (!probe) {
+                result.setHasNext(offset + elements.size() < result.getTotalMatches());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Obtiene la página de entidades que cumplen con los criterios de búsqueda. En el caso de que la búsqueda contenga
+     * un IN que supere {@link #getInChunkedQueryThreshold()} valores, se ejecuta una consulta por cada trozo de la
+     * lista y se unen los resultados.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<T> list(final SearchInfo searchInfo) {
+        if (searchInfo.getAfter() != null && searchInfo.getOffset() != 0) {
+            // El cursor sustituye al offset
+            return list(searchInfo.withPage(0, searchInfo.getPageSize()));
+        }
+        InConditional oversized = findOversizedIn(searchInfo);
+        if (oversized != null) {
+            return isOrderPreserved(searchInfo) ? listInChunks(searchInfo, oversized)
+                    : listByMatchingIds(searchInfo, oversized);
+        }
+        JPQLResult jpqlResult = generator.find(type, searchInfo);
+        Query query = createQuery(jpqlResult.getQuery());
+        addCriteriaParams(query, jpqlResult.getParameters());
+        applyReadOnly(query, searchInfo);
+
+        int offset = searchInfo.getOffset();
+        int pageSize = searchInfo.getPageSize();
+
+        // TODO Volver a la versión anterior, esta provoca fallos al llegar al final del listado
         if (offset != -1 && pageSize != -1) {
             query.setFirstResult(offset);
             query.setMaxResults(pageSize);
@@ -371,6 +1598,181 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
         return query.list();
     }
 
+    /**
+     * Ejecuta una consulta por cada trozo del IN indicado y une los resultados respetando los ordenes, el offset y el
+     * tamaño de página de la búsqueda. De cada trozo se obtienen como mucho <code>offset + pageSize</code> entidades,
+     * ya que ninguna entidad posterior puede formar parte de la página.
+     * <p>
+     * Los resultados se ordenan en memoria mediante {@link OrderByComparator}, que compara los valores con el método
+     * compareTo de Java y considera los nulos menores que el resto, por lo que sólo se utiliza cuando
+     * {@link #isOrderPreserved(SearchInfo)} garantiza el mismo orden que la BD.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<T> listInChunks(final SearchInfo searchInfo, final InConditional oversized) {
+        int offset = searchInfo.getOffset();
+        int pageSize = searchInfo.getPageSize();
+        boolean paged = offset != -1 && pageSize != -1;
+        // El IN es de la entidad del DAO y sin valores repetidos, por lo que cada entidad cumple un único trozo
+        List<T> merged = new ArrayList<T>();
+        for (SearchInfo chunk : splitSearchInfo(searchInfo, oversized)) {
+            JPQLResult jpqlResult = generator.find(type, chunk);
+            Query query = createQuery(jpqlResult.getQuery());
+            addCriteriaParams(query, jpqlResult.getParameters());
+            applyReadOnly(query, chunk);
+            if (paged) {
+                query.setMaxResults(offset + pageSize);
+            }
+            merged.addAll(query.list());
+        }
+        Collections.sort(merged, new OrderByComparator(searchInfo.getOrders()));
+        if (paged) {
+            merged = new ArrayList<T>(merged.subList(Math.min(offset, merged.size()),
+                    Math.min(offset + pageSize, merged.size())));
+        }
+        return merged;
+    }
+
+    /**
+     * Resuelve la búsqueda con un IN que supera el umbral cuando sus ordenes no permiten unir en memoria los resultados
+     * de cada trozo (ver {@link #isOrderPreserved(SearchInfo)}). Primero se obtienen trozo a trozo los identificadores
+     * de las entidades que cumplen la búsqueda, y después la BD ordena y pagina la búsqueda con el IN sustituido por
+     * esos identificadores, de tal forma que ninguna sentencia supera el umbral.
+     *
+     * @throws HibernateException Si las entidades que cumplen la búsqueda también superan el umbral, ya que la sentencia
+     *             ordenada superaría el número de parámetros que admite la BD.
+     */
+    protected List<T> listByMatchingIds(final SearchInfo searchInfo, final InConditional oversized) {
+        String pkName = getClassMetadata().getIdentifierPropertyName();
+        Set<Serializable> ids = new LinkedHashSet<Serializable>();
+        for (SearchInfo chunk : splitSearchInfo(searchInfo, oversized)) {
+            // El cursor y la paginación se aplican en la búsqueda final
+            SearchInfo idSearch = chunk.withAfter(null).withoutOrders();
+            JPQLResult jpqlResult = generator.findProjection(type, idSearch, null, getAssociationInspector(), pkName);
+            Query query = createQuery(jpqlResult.getQuery());
+            addCriteriaParams(query, jpqlResult.getParameters());
+            query.setResultTransformer(new ProjectionTransformer(null, 1));
+            for (Object row : query.list()) {
+                ids.add((Serializable) ((Object[]) row)[0]);
+            }
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<T>();
+        } else if (ids.size() > inChunkedQueryThreshold) {
+            throw new HibernateException(ids.size() + " " + type.getSimpleName() + " match a search with an IN of "
+                    + oversized.getValues().size() + " values, more than the " + inChunkedQueryThreshold
+                    + " that can be ordered by " + searchInfo.getOrders() + " in a single statement");
+        }
+        SearchInfo matching = new SearchInfo(searchInfo);
+        matching.getCriterias().set(matching.getCriterias().indexOf(oversized),
+                new InConditional(pkName, new ArrayList<Serializable>(ids)));
+        return list(matching);
+    }
+
+    /**
+     * Busca entre los criterios de primer nivel (los que se unen mediante AND) un IN sobre un atributo de la entidad
+     * del DAO que supere el número de valores a partir del cual se ejecutan varias consultas. Los IN sobre las
+     * entidades de los joins no se dividen, ya que una misma entidad podría cumplir varios trozos.
+     *
+     * @return El primer IN que supera el umbral o null si no existe.
+     */
+    protected InConditional findOversizedIn(final SearchInfo searchInfo) {
+        if (inChunkedQueryThreshold <= 0) {
+            return null;
+        }
+        for (Criteria criteria : searchInfo.getCriterias()) {
+            if (criteria instanceof InConditional && ((InConditional) criteria).getEntity() == null
+                    && ((InConditional) criteria).getValues().size() > inChunkedQueryThreshold) {
+                return (InConditional) criteria;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Divide la búsqueda en tantas búsquedas como trozos de {@link #getInChunkedQueryThreshold()} valores tenga el IN
+     * indicado. Los valores repetidos se eliminan, de tal forma que cada fila sólo puede cumplir uno de los trozos.
+     */
+    protected List<SearchInfo> splitSearchInfo(final SearchInfo searchInfo, final InConditional oversized) {
+        Map<Object, Serializable> unique = new LinkedHashMap<Object, Serializable>();
+        for (Serializable value : oversized.getValues()) {
+            Object key = oversized.isCaseSensitive() ? value : value.toString().toUpperCase();
+            if (!unique.containsKey(key)) {
+                unique.put(key, value);
+            }
+        }
+        List<Serializable> values = new ArrayList<Serializable>(unique.values());
+        List<SearchInfo> chunks = new ArrayList<SearchInfo>(values.size() / inChunkedQueryThreshold + 1);
+        for (int from = 0; from < values.size(); from += inChunkedQueryThreshold) {
+            List<Serializable> chunkValues = new ArrayList<Serializable>(
+                    values.subList(from, Math.min(from + inChunkedQueryThreshold, values.size())));
+            InConditional in = new InConditional(oversized.getName(), oversized.getEntity(), chunkValues);
+            in.setCaseSensitive(oversized.isCaseSensitive());
+            SearchInfo chunk = new SearchInfo(searchInfo);
+            chunk.getCriterias().set(chunk.getCriterias().indexOf(oversized), in);
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * Indica si los resultados de varias consultas de la búsqueda se pueden unir en memoria respetando los ordenes
+     * establecidos. Es posible cuando todos los ordenes son atributos de la entidad del DAO.
+     */
+    protected boolean isMergeable(final SearchInfo searchInfo) {
+        if (getClassMetadata() == null) {
+            return false;
+        }
+        for (OrderBy order : searchInfo.getOrders()) {
+            if (order.getEntity() != null || order.getName().contains(".")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Indica si la ordenación en memoria de {@link OrderByComparator} coincide con la de la BD. Es así cuando todos los
+     * ordenes son atributos no nulables de la entidad del DAO de tipo numérico, fecha o booleano: el orden de las
+     * cadenas y de los enumerados depende de la collation y del mapeo en la BD, y la posición de los nulos depende de
+     * la BD.
+     */
+    protected boolean isOrderPreserved(final SearchInfo searchInfo) {
+        if (!isMergeable(searchInfo)) {
+            return false;
+        }
+        ClassMetadata metadata = getClassMetadata();
+        for (OrderBy order : searchInfo.getOrders()) {
+            if (!isNotNullable(order)) {
+                return false;
+            }
+            Class<?> propertyClass = order.getName().equals(metadata.getIdentifierPropertyName())
+                    ? metadata.getIdentifierType().getReturnedClass()
+                    : metadata.getPropertyType(order.getName()).getReturnedClass();
+            if (!Number.class.isAssignableFrom(propertyClass) && !Date.class.isAssignableFrom(propertyClass)
+                    && !Boolean.class.equals(propertyClass) && !(propertyClass.isPrimitive()
+                            && !char.class.equals(propertyClass))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Información sobre las asociaciones de las entidades, utilizada para simplificar las consultas COUNT.
+     */
+    protected AssociationInspector getAssociationInspector() {
+        if (associationInspector == null && sessionFactory != null) {
+            associationInspector = new HibernateAssociationInspector(sessionFactory);
+        }
+        return associationInspector;
+    }
+
+    /**
+     * @return Metadatos de Hibernate correspondientes a la entidad del DAO.
+     */
+    protected ClassMetadata getClassMetadata() {
+        return sessionFactory == null ? null : sessionFactory.getClassMetadata(type);
+    }
     /**
      * {@inheritdoc}
      */
@@ -385,9 +1787,14 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      */
     @SuppressWarnings("unchecked")
     public T findSingle(final SearchInfo searchInfo) {
-        JPQLResult jpqlResult = generator.find(type, searchInfo);
+        final SearchInfo frozen = searchInfo.frozenCopy();
+        if (generator.isUnsatisfiable(frozen)) {
+            return null;
+        }
+        JPQLResult jpqlResult = generator.find(type, frozen);
         Query query = createQuery(jpqlResult.getQuery());
         addCriteriaParams(query, jpqlResult.getParameters());
+        applyReadOnly(query, frozen);
         return (T) query.uniqueResult();
     }
 
@@ -396,85 +1803,342 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      */
     @Override
     public ScrollResult<T> findQueryScroll(Query q) {
-        return new ScrollResult<T>(generateScrollResult(q, null));
+        return new ScrollResult<T>(generateScrollResult(q, null), getSession());
     }
 
     @Override
     public ScrollResult<Map<String, Serializable>> findQueryMapScroll(Query si) {
-        return new ScrollResult<Map<String, Serializable>>(generateScrollResult(si, Transformers.ALIAS_TO_ENTITY_MAP));
+        return new ScrollResult<Map<String, Serializable>>(generateScrollResult(si, Transformers.ALIAS_TO_ENTITY_MAP),
+                getSession());
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public ScrollResult<Serializable> findQueryScroll(Query query, ResultTransformer transformer) {
+        return new ScrollResult<Serializable>(generateScrollResult(query, transformer), getSession());
+    }
+
+    /**
+     * @return Clase que corresponde a la entidad del dominio a la que accede el DAO.
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * Permite establecer/modificar la entidad del dominio a la que accede el DAO.
+     * 
+     * @param type Clase que corresponde a la entidad del dominio a la que accede el DAO.
+     */
+    public void setType(final Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public ScrollResult<T> findScroll(SearchInfo si) {
+        return new ScrollResult<T>(generateScrollResult(si, null), getSession());
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public ScrollResult<Map<String, Serializable>> findMapScroll(SearchInfo si) {
+        return new ScrollResult<Map<String, Serializable>>(generateScrollResult(si, Transformers.ALIAS_TO_ENTITY_MAP),
+                getSession());
+    }
+
+    @Override
+    public ScrollResult<Serializable> findScroll(SearchInfo si, ResultTransformer transformer) {
+        return new ScrollResult<Serializable>(generateScrollResult(si, transformer), getSession());
+    }
+
+    /**
+     *
+     * @param query
+     * @param transformer
+     * @return
+     */
+    protected ScrollableResults generateScrollResult(final Query query, ResultTransformer transformer) {
+        if (transformer != null) {
+            query.setResultTransformer(transformer);
+        }
+        return query.scroll();
+    }
+
+    /**
+     * Genera un ScrollableResults a partir de los criterios de búsquedas indicados en el SearchInfo. En el caso de que
+     * se indique un resultTransformer se aplicará.
+     */
+    protected ScrollableResults generateScrollResult(final SearchInfo si, ResultTransformer transformer) {
+        JPQLResult jpqlResult = generator.find(type, si);
+        Query query = createQuery(jpqlResult.getQuery());
+        addCriteriaParams(query, jpqlResult.getParameters());
+        applyReadOnly(query, si);
+        if (transformer != null) {
+            query.setResultTransformer(transformer);
+        }
+
+        return query.scroll();
+    }
+
+    /**
+     * Indica si la búsqueda carga las entidades en modo de sólo lectura, según el SearchInfo o, si éste no lo indica,
+     * según la configuración del DAO.
+     */
+    protected boolean isReadOnly(final SearchInfo searchInfo) {
+        return searchInfo.getReadOnly() != null ? searchInfo.getReadOnly() : readOnly;
+    }
+
+    /**
+     * Configura la consulta de una búsqueda de sólo lectura: las entidades se cargan sin copia de su estado y la
+     * consulta no sincroniza previamente la sesión con la BD.
+     */
+    protected void applyReadOnly(final Query query, final SearchInfo searchInfo) {
+        if (isReadOnly(searchInfo)) {
+            query.setReadOnly(true);
+            query.setFlushMode(FlushMode.COMMIT);
+        }
+    }
+
+    /**
+     * {@inheritdoc}
+     * <p>
+     * La consulta se ejecuta en una sesión de sólo lectura independiente de la sesión en curso, mediante un cursor
+     * FORWARD_ONLY que obtiene {@link #getStreamFetchSize()} filas en cada acceso a la BD. Cada
+     * {@link #getStreamClearInterval()} entidades se vacía la sesión del stream. Al cerrar el stream, o al llegar al
+     * final del cursor, se cierran el cursor y la sesión.
+     */
+    public Stream<T> stream(final SearchInfo searchInfo) {
+        Session session = openReadOnlySession();
+        try {
+            JPQLResult jpqlResult = generator.find(type, searchInfo);
+            Query query = session.createQuery(jpqlResult.getQuery());
+            addCriteriaParams(query, jpqlResult.getParameters());
+            query.setReadOnly(true);
+            query.setFetchSize(streamFetchSize);
+            if (isPaged(searchInfo)) {
+                query.setFirstResult(searchInfo.getAfter() == null ? Math.max(searchInfo.getOffset(), 0) : 0);
+                query.setMaxResults(searchInfo.getPageSize());
+            }
+            StreamSpliterator spliterator = new StreamSpliterator(session, query.scroll(ScrollMode.FORWARD_ONLY));
+            return StreamSupport.stream(spliterator, false).onClose(spliterator);
+        } catch (RuntimeException e) {
+            closeReadOnlySession(session);
+            throw e;
+        }
     }
 
     /**
      * {@inheritdoc}
+     * <p>
+     * El rango de la clave primaria se obtiene mediante MIN y MAX y se divide en rangos de igual tamaño, por lo que
+     * las particiones están equilibradas cuando los identificadores son consecutivos. Si la clave primaria no es un
+     * número entero se recorre una única partición. Cada partición se recorre mediante un cursor FORWARD_ONLY que
+     * obtiene {@link #getScanBatchSize()} filas en cada acceso a la BD.
+     * <p>
+     * Si falla alguna partición se lanza una HibernateException con el primer error, al que se añaden como suppressed
+     * el resto. Con {@link ScanFailurePolicy#FAIL_FAST} (por defecto) el resto de particiones se detienen tras el
+     * bloque en curso.
      */
-    @Override
-    public ScrollResult<Serializable> findQueryScroll(Query query, ResultTransformer transformer) {
-        return new ScrollResult<Serializable>(generateScrollResult(query, transformer));
+    public void parallelScan(final SearchInfo searchInfo, final int partitions, final Consumer<List<T>> consumer) {
+        List<SearchInfo> ranges = partitionById(searchInfo, partitions);
+        if (ranges.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = scanExecutor != null ? scanExecutor : Executors.newFixedThreadPool(ranges.size());
+        final AtomicBoolean stopped = new AtomicBoolean();
+        List<Throwable> errors = new ArrayList<Throwable>();
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(ranges.size());
+            for (final SearchInfo range : ranges) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            scanPartition(range, consumer, stopped);
+                        } catch (RuntimeException | Error e) {
+                            if (scanFailurePolicy == ScanFailurePolicy.FAIL_FAST) {
+                                stopped.set(true);
+                            }
+                            throw e;
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    errors.add(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            stopped.set(true);
+            Thread.currentThread().interrupt();
+            throw new HibernateException("Interrupted while scanning " + type.getSimpleName(), e);
+        } finally {
+            if (scanExecutor == null) {
+                executor.shutdown();
+            }
+        }
+        if (!errors.isEmpty()) {
+            HibernateException exception = new HibernateException("Parallel scan of " + type.getSimpleName()
+                    + " failed in " + errors.size() + " of " + ranges.size() + " partitions", errors.get(0));
+            for (Throwable error : errors.subList(1, errors.size())) {
+                exception.addSuppressed(error);
+            }
+            throw exception;
+        }
     }
 
     /**
-     * @return Clase que corresponde a la entidad del dominio a la que accede el DAO.
+     * Divide la búsqueda en como mucho el número de particiones indicado, añadiendo a cada una un rango de la clave
+     * primaria. La lista está vacía si no hay ninguna entidad.
      */
-    public Class<T> getType() {
-        return type;
+    protected List<SearchInfo> partitionById(final SearchInfo searchInfo, final int partitions) {
+        String id = getClassMetadata().getIdentifierPropertyName();
+        SearchInfo base = searchInfo.withPage(-1, -1).withAfter(null);
+        if (partitions <= 1 || !isIntegral(getClassMetadata().getIdentifierType().getReturnedClass())) {
+            return Collections.singletonList(base);
+        }
+        // DISTINCT no afecta a MIN y MAX
+        Number[] range = idRange(id, base.withoutFetches().withDistinct(false));
+        if (range[0] == null) {
+            return Collections.emptyList();
+        }
+        long min = range[0].longValue();
+        long max = range[1].longValue();
+        long step = (max - min) / partitions + 1;
+        List<SearchInfo> result = new ArrayList<SearchInfo>(partitions);
+        for (long from = min; from <= max && from >= min; from += step) {
+            List<Criteria> criterias = new ArrayList<Criteria>(base.getCriterias());
+            criterias.add(ValueComparison.ge(id, toId(from, range[0])));
+            criterias.add(ValueComparison.le(id, toId(Math.min(from + step - 1, max), range[0])));
+            result.add(base.withCriterias(criterias));
+        }
+        return result;
+    }
+
+    private boolean isIntegral(final Class<?> clazz) {
+        return clazz == Long.class || clazz == Integer.class || clazz == Short.class || clazz == long.class
+                || clazz == int.class || clazz == short.class;
     }
 
     /**
-     * Permite establecer/modificar la entidad del dominio a la que accede el DAO.
-     * 
-     * @param type Clase que corresponde a la entidad del dominio a la que accede el DAO.
+     * Convierte el valor al tipo de la clave primaria, que es el tipo del valor de referencia.
      */
-    public void setType(final Class<T> type) {
-        this.type = type;
+    private Serializable toId(final long value, final Number reference) {
+        if (reference instanceof Integer) {
+            return Integer.valueOf((int) value);
+        }
+        if (reference instanceof Short) {
+            return Short.valueOf((short) value);
+        }
+        return Long.valueOf(value);
     }
 
     /**
-     * {@inheritdoc}
+     * Obtiene el mínimo y el máximo de la clave primaria de la búsqueda en una sesión de sólo lectura independiente.
+     * Las consultas no utilizan la cache de resultados ni el agrupador de búsquedas: un rango anterior a las últimas
+     * inserciones dejaría fuera del recorrido sus entidades.
      */
-    @Override
-    public ScrollResult<T> findScroll(SearchInfo si) {
-        return new ScrollResult<T>(generateScrollResult(si, null));
+    private Number[] idRange(final String id, final SearchInfo searchInfo) {
+        SearchInfo frozen = searchInfo.frozenCopy();
+        if (generator.isUnsatisfiable(frozen)) {
+            return new Number[2];
+        }
+        Session session = openReadOnlySession();
+        Session previous = sessionOverride.get();
+        try {
+            sessionOverride.set(session);
+            return new Number[] { (Number) aggregateQuery(Aggregate.MIN, id, frozen),
+                    (Number) aggregateQuery(Aggregate.MAX, id, frozen) };
+        } finally {
+            if (previous != null) {
+                sessionOverride.set(previous);
+            } else {
+                sessionOverride.remove();
+            }
+            closeReadOnlySession(session);
+        }
     }
 
     /**
-     * {@inheritdoc}
+     * Recorre una partición de {@link #parallelScan(SearchInfo, int, Consumer)} en una sesión de sólo lectura
+     * independiente, hasta el final o hasta que se indique que ha de detenerse.
      */
-    @Override
-    public ScrollResult<Map<String, Serializable>> findMapScroll(SearchInfo si) {
-        return new ScrollResult<Map<String, Serializable>>(generateScrollResult(si, Transformers.ALIAS_TO_ENTITY_MAP));
+    protected void scanPartition(final SearchInfo searchInfo, final Consumer<List<T>> consumer,
+            final AtomicBoolean stopped) {
+        Session session = openReadOnlySession();
+        try {
+            JPQLResult jpqlResult = generator.find(type, searchInfo);
+            Query query = session.createQuery(jpqlResult.getQuery());
+            addCriteriaParams(query, jpqlResult.getParameters());
+            query.setReadOnly(true);
+            query.setFetchSize(scanBatchSize);
+            ScrollResult<T> results = new ScrollResult<T>(query.scroll(ScrollMode.FORWARD_ONLY), session);
+            try {
+                while (!stopped.get()) {
+                    List<T> batch = results.nextBatch(scanBatchSize);
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+                    consumer.accept(batch);
+                    session.clear();
+                }
+            } finally {
+                results.close();
+            }
+        } finally {
+            closeReadOnlySession(session);
+        }
     }
 
-    @Override
-    public ScrollResult<Serializable> findScroll(SearchInfo si, ResultTransformer transformer) {
-        return new ScrollResult<Serializable>(generateScrollResult(si, transformer));
+    /**
+     * Abre una sesión de sólo lectura independiente de la sesión en curso e inicia una transacción.
+     */
+    private Session openReadOnlySession() {
+        return openReadOnlySession(0);
     }
 
     /**
-     *
-     * @param query
-     * @param transformer
-     * @return
+     * Abre una sesión de sólo lectura independiente de la sesión en curso e inicia una transacción con el tiempo
+     * máximo indicado en segundos (sin límite si es menor o igual que 0).
      */
-    protected ScrollableResults generateScrollResult(final Query query, ResultTransformer transformer) {
-        if (transformer != null) {
-            query.setResultTransformer(transformer);
+    private Session openReadOnlySession(final int timeout) {
+        Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            if (timeout > 0) {
+                session.getTransaction().setTimeout(timeout);
+            }
+            session.beginTransaction();
+            return session;
+        } catch (RuntimeException e) {
+            session.close();
+            throw e;
         }
-        return query.scroll();
     }
 
     /**
-     * Genera un ScrollableResults a partir de los criterios de búsquedas indicados en el SearchInfo. En el caso de que
-     * se indique un resultTransformer se aplicará.
+     * Deshace la transacción de una sesión independiente de la sesión en curso y la cierra.
      */
-    protected ScrollableResults generateScrollResult(final SearchInfo si, ResultTransformer transformer) {
-        JPQLResult jpqlResult = generator.find(type, si);
-        Query query = createQuery(jpqlResult.getQuery());
-        addCriteriaParams(query, jpqlResult.getParameters());
-        if (transformer != null) {
-            query.setResultTransformer(transformer);
+    private void closeReadOnlySession(final Session session) {
+        try {
+            Transaction transaction = session.getTransaction();
+            if (transaction != null && transaction.isActive()) {
+                transaction.rollback();
+            }
+        } finally {
+            session.close();
         }
-
-        return query.scroll();
     }
 
     /**
@@ -511,6 +2175,10 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
      * @return La sesión actual.
      */
     protected Session getSession() {
+        Session session = sessionOverride.get();
+        if (session != null) {
+            return session;
+        }
         if (sessionFactory == null) {
             logger.error("Not found SessionFactory bean");
         }
@@ -521,6 +2189,105 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
         }
     }
 
+    /**
+     * @return Cierto si las búsquedas cargan las entidades en modo de sólo lectura cuando el SearchInfo no lo indica.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Establece si las búsquedas (find, findWithoutCount, findSingle y findScroll) cargan las entidades en modo de
+     * sólo lectura cuando el SearchInfo no lo indica ({@link SearchInfo#setReadOnly(Boolean)}). Hibernate no guarda
+     * una copia del estado de las entidades de sólo lectura, por lo que ocupan menos memoria y no se revisan al
+     * sincronizar la sesión, y sus cambios no se guardan. Las entidades que ya estaban en la sesión conservan su modo.
+     * Además, la consulta no sincroniza previamente la sesión con la BD (FlushMode.COMMIT), por lo que no tiene en
+     * cuenta los cambios pendientes de la sesión. Por defecto es falso.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @return Número de filas que {@link #stream(SearchInfo)} obtiene en cada acceso a la BD.
+     */
+    public int getStreamFetchSize() {
+        return streamFetchSize;
+    }
+
+    /**
+     * Establece el número de filas que {@link #stream(SearchInfo)} obtiene en cada acceso a la BD (JDBC fetch size).
+     * Algunos drivers, como el de PostgreSQL, sólo lo respetan dentro de una transacción, que el stream abre siempre.
+     * Por defecto es {@link #DEFAULT_STREAM_FETCH_SIZE}.
+     */
+    public void setStreamFetchSize(int streamFetchSize) {
+        this.streamFetchSize = streamFetchSize;
+    }
+
+    /**
+     * @return Número de entidades tras el cual {@link #stream(SearchInfo)} vacía la sesión.
+     */
+    public int getStreamClearInterval() {
+        return streamClearInterval > 0 ? streamClearInterval : streamFetchSize;
+    }
+
+    /**
+     * Establece el número de entidades tras el cual {@link #stream(SearchInfo)} vacía la sesión, de tal forma que la
+     * memoria ocupada no depende del número de entidades recorridas. Si es menor o igual que 0 (por defecto) se
+     * utiliza {@link #getStreamFetchSize()}.
+     */
+    public void setStreamClearInterval(int streamClearInterval) {
+        this.streamClearInterval = streamClearInterval;
+    }
+
+    /**
+     * @return Número de entidades de cada bloque de {@link #parallelScan(SearchInfo, int, Consumer)}.
+     */
+    public int getScanBatchSize() {
+        return scanBatchSize;
+    }
+
+    /**
+     * Establece el número de entidades de cada bloque de {@link #parallelScan(SearchInfo, int, Consumer)}, que es
+     * también el número de filas que se obtienen en cada acceso a la BD. Por defecto es
+     * {@link #DEFAULT_SCAN_BATCH_SIZE}.
+     */
+    public void setScanBatchSize(int scanBatchSize) {
+        this.scanBatchSize = scanBatchSize;
+    }
+
+    /**
+     * @return Executor en el que {@link #parallelScan(SearchInfo, int, Consumer)} recorre las particiones.
+     */
+    public ExecutorService getScanExecutor() {
+        return scanExecutor;
+    }
+
+    /**
+     * Establece el executor en el que {@link #parallelScan(SearchInfo, int, Consumer)} recorre las particiones. El
+     * número de particiones que se recorren a la vez está limitado por el número de threads del executor y por el
+     * número de conexiones del pool. Si es null (por defecto) se crea un pool con un thread por partición en cada
+     * recorrido.
+     */
+    public void setScanExecutor(ExecutorService scanExecutor) {
+        this.scanExecutor = scanExecutor;
+    }
+
+    /**
+     * @return Comportamiento de {@link #parallelScan(SearchInfo, int, Consumer)} cuando falla alguna partición.
+     */
+    public ScanFailurePolicy getScanFailurePolicy() {
+        return scanFailurePolicy;
+    }
+
+    /**
+     * Establece el comportamiento de {@link #parallelScan(SearchInfo, int, Consumer)} cuando falla alguna partición.
+     * Por defecto es {@link ScanFailurePolicy#FAIL_FAST}.
+     */
+    public void setScanFailurePolicy(ScanFailurePolicy scanFailurePolicy) {
+        this.scanFailurePolicy = scanFailurePolicy;
+    }
+
     /**
      * Indica si la entidad asociada al DAO utiliza cache de hibernate.
      */
@@ -535,6 +2302,147 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
         this.useCache = useCache;
     }
 
+    /**
+     * @return Número de valores a partir del cual un IN se resuelve mediante varias consultas.
+     */
+    public int getInChunkedQueryThreshold() {
+        return inChunkedQueryThreshold;
+    }
+
+    /**
+     * Establece el número de valores a partir del cual un IN de primer nivel se resuelve ejecutando una consulta por
+     * cada trozo de la lista. <code>find</code> y <code>count</code> devuelven los mismos resultados que la consulta
+     * sin dividir. Si los ordenes de la búsqueda no permiten unir en memoria los resultados de cada trozo, las
+     * entidades que cumplen la búsqueda tampoco pueden superar este número (ver
+     * {@link #listByMatchingIds(SearchInfo, InConditional)}). Si es menor o igual que 0 nunca se ejecutan varias
+     * consultas.
+     */
+    public void setInChunkedQueryThreshold(int inChunkedQueryThreshold) {
+        this.inChunkedQueryThreshold = inChunkedQueryThreshold;
+    }
+
+    /**
+     * @return Executor en el que se ejecuta la consulta COUNT de {@link #find(SearchInfo)}.
+     */
+    public ExecutorService getCountExecutor() {
+        return countExecutor;
+    }
+
+    /**
+     * Establece el executor en el que {@link #find(SearchInfo)} ejecuta la consulta COUNT, en una sesión de sólo
+     * lectura independiente, al mismo tiempo que la consulta de la página. Al ejecutarse en otra sesión y otra
+     * transacción, la consulta COUNT no tiene en cuenta los cambios de la transacción en curso que no se hayan
+     * confirmado. Si es null (por defecto) ambas consultas se ejecutan de forma secuencial en la sesión en curso.
+     */
+    public void setCountExecutor(ExecutorService countExecutor) {
+        this.countExecutor = countExecutor;
+    }
+
+    /**
+     * @return Tiempo máximo de espera, en milisegundos, del resultado de la consulta COUNT ejecutada en el executor.
+     */
+    public long getCountTimeout() {
+        return countTimeout;
+    }
+
+    /**
+     * Establece el tiempo máximo de espera, en milisegundos, del resultado de la consulta COUNT ejecutada en el
+     * executor. Al superarse se cancela la consulta y se lanza una {@link QueryTimeoutException}. Si es menor o igual
+     * que 0 se espera indefinidamente.
+     */
+    public void setCountTimeout(long countTimeout) {
+        this.countTimeout = countTimeout;
+    }
+
+    /**
+     * @return Cache del número de resultados de las consultas COUNT o null si no se cachean.
+     */
+    public CountCache getCountCache() {
+        return countCache;
+    }
+
+    /**
+     * Establece la cache del número de resultados de las consultas COUNT. Puede compartirse entre varios DAO, ya que
+     * la clave incluye la entidad. El DAO elimina las entradas de su entidad cada vez que la modifica, pero la cache no
+     * es transaccional: los cambios de otras aplicaciones o de sentencias ajenas al DAO sólo se reflejan al caducar
+     * las entradas. Si es null (por defecto) no se cachean.
+     */
+    public void setCountCache(CountCache countCache) {
+        this.countCache = countCache;
+    }
+
+    /**
+     * @return Cache de los resultados de las búsquedas o null si no se cachean.
+     */
+    public QueryResultCache getQueryResultCache() {
+        return queryResultCache;
+    }
+
+    /**
+     * Establece la cache de los resultados de find, findWithoutCount, count y aggregate. La clave es la entidad, la
+     * operación y el SearchInfo, que no debe modificarse después de la búsqueda. Se cachean todas las búsquedas salvo
+     * las que lo desactivan mediante {@link SearchInfo#setCacheable(Boolean)}. Puede compartirse entre varios DAO;
+     * cada DAO invalida las entradas de su entidad cada vez que la modifica. Las búsquedas que incluyen otras
+     * entidades mediante joins no se invalidan al modificar éstas, y los cambios de otras aplicaciones o de
+     * sentencias ajenas al DAO sólo se reflejan al caducar las entradas. Las búsquedas de las entidades que ha
+     * modificado la transacción en curso no utilizan la cache, y al terminar la transacción se invalidan de nuevo sus
+     * entradas. Si es null (por defecto) no se cachean.
+     * <p>
+     * La cache no almacena las entidades, sino sus identificadores, y cada llamada carga las entidades en su sesión
+     * sin consultar las que ya están en ella. A diferencia de {@link #setUseCache(boolean)}, que activa la cache de
+     * consultas de hibernate, los resultados se sirven sin ejecutar la búsqueda en la BD.
+     */
+    public void setQueryResultCache(QueryResultCache queryResultCache) {
+        this.queryResultCache = queryResultCache;
+    }
+
+    /**
+     * @return Agrupador de las búsquedas idénticas que se ejecutan a la vez o null si no se agrupan.
+     */
+    public QueryCoalescer getQueryCoalescer() {
+        return queryCoalescer;
+    }
+
+    /**
+     * Establece el agrupador de las búsquedas de find, findWithoutCount, count y aggregate. Las llamadas simultáneas
+     * con la misma entidad, operación y SearchInfo (ver {@link SearchInfo#getFingerprint()}) comparten una única
+     * ejecución de la búsqueda, de tal forma que cuando muchos threads solicitan a la vez la misma búsqueda, por
+     * ejemplo al caducar una página muy utilizada, sólo uno de ellos accede a la BD. Puede compartirse entre varios
+     * DAO.
+     * <p>
+     * La búsqueda se ejecuta en la sesión de la primera llamada, y el resto de llamadas agrupadas obtienen copias de
+     * sus entidades desasociadas de cualquier sesión, sin acceder a la BD. Las copias comparten las entidades
+     * asociadas, de sólo lectura, por lo que no han de modificarse. Si alguna entidad tiene asociaciones sin
+     * inicializar, o la búsqueda también utiliza la cache de resultados, el resto de llamadas obtienen sus
+     * identificadores y cargan las entidades en su propia sesión. No se agrupan las búsquedas de las entidades que ha
+     * modificado la transacción en curso ni las que indican expresamente que sus entidades no son de sólo lectura
+     * (ver {@link SearchInfo#setReadOnly(Boolean)}). Si es null (por defecto) no se agrupan.
+     */
+    public void setQueryCoalescer(QueryCoalescer queryCoalescer) {
+        this.queryCoalescer = queryCoalescer;
+    }
+
+    /**
+     * @return Número de entidades tras el cual {@link #save(Collection)} sincroniza la sesión con la BD y la vacía.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Establece el número de entidades tras el cual {@link #save(Collection)} ejecuta <code>flush()</code> y
+     * <code>clear()</code> sobre la sesión. Tras la llamada todas las entidades de la sesión, incluidas las devueltas,
+     * quedan desasociadas de la misma. Si es menor o igual que 0 la sesión no se vacía.
+     * <p>
+     * Para que las sentencias INSERT de cada bloque se envíen en un único batch JDBC, el SessionFactory ha de
+     * configurarse con <code>hibernate.jdbc.batch_size</code> igual a este valor y <code>hibernate.order_inserts</code>
+     * y <code>hibernate.order_updates</code> a true. Hibernate no permite el batching de inserciones sobre entidades
+     * cuyo identificador se genera con IDENTITY.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     /**
      * @return the sessionFactory
      */
@@ -548,4 +2456,210 @@ public class DAOImpl<T, PK extends Serializable> implements DAO<T, PK> {
     public void setSessionFactory(SessionFactory sessionFactory) {
         this.sessionFactory = sessionFactory;
     }
+
+    /**
+     * Recorre el cursor de {@link #stream(SearchInfo)}, vaciando la sesión periódicamente. Al ejecutarse como
+     * {@link Runnable} cierra el cursor y la sesión.
+     */
+    private class StreamSpliterator extends Spliterators.AbstractSpliterator<T> implements Runnable {
+
+        private final Session session;
+
+        private final ScrollableResults results;
+
+        private final int clearInterval = getStreamClearInterval();
+
+        private long processed = 0;
+
+        private boolean closed = false;
+
+        StreamSpliterator(final Session session, final ScrollableResults results) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.session = session;
+            this.results = results;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public boolean tryAdvance(final Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            if (!results.next()) {
+                run();
+                return false;
+            }
+            if (processed > 0 && processed % clearInterval == 0) {
+                session.clear();
+            }
+            processed++;
+            action.accept((T) results.get(0));
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (!closed) {
+                closed = true;
+                try {
+                    results.close();
+                } finally {
+                    closeReadOnlySession(session);
+                }
+            }
+        }
+    }
+
+    /**
+     * Valor compartido del resultado de find o findWithoutCount (ver {@link #toShared(Object)}): los identificadores
+     * de sus entidades y, en el caso de find, el resto de datos de la página.
+     */
+    private static final class SharedEntities {
+
+        private final List<Serializable> ids;
+
+        /**
+         * Cierto si el resultado es la página de find, falso si es la lista de findWithoutCount.
+         */
+        private final boolean page;
+
+        private final long totalMatches;
+
+        private final boolean hasNext;
+
+        private final boolean approximate;
+
+        private final SearchCursor nextCursor;
+
+        /**
+         * Cierto si el número total de elementos se obtiene al solicitarlo (ver {@link CountMode#LAZY}).
+         */
+        private final boolean countPending;
+
+        /**
+         * Estado de las entidades a partir del que se construyen sus copias o null si cada llamada las carga.
+         */
+        private final List<EntityState> states;
+
+        private SharedEntities(final List<Serializable> ids, final SearchResult<?> page,
+                final List<EntityState> states) {
+            this.ids = ids;
+            this.states = states;
+            this.page = page != null;
+            this.countPending = page != null && page.isCountPending();
+            this.totalMatches = page != null && !countPending ? page.getTotalMatches() : -1;
+            this.hasNext = page != null && page.hasNext();
+            this.approximate = page != null && page.isApproximate();
+            this.nextCursor = page != null ? page.getNextCursor() : null;
+        }
+    }
+
+    /**
+     * Estado de una entidad a partir del que se construyen sus copias (ver {@link DAOImpl#copyOf(EntityState)}).
+     */
+    private static final class EntityState {
+
+        private final String entityName;
+
+        private final Serializable id;
+
+        private final Object[] values;
+
+        private EntityState(final String entityName, final Serializable id, final Object[] values) {
+            this.entityName = entityName;
+            this.id = id;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Transforma cada fila de una proyección en el array de los atributos solicitados o, si se indica la clase del
+     * resultado, en un objeto construido con ellos. Se descartan las columnas posteriores a los atributos, que
+     * obtienen las proyecciones DISTINCT (ver {@link JPQLGenerator#isDistinctProjection}).
+     */
+    private static class ProjectionTransformer implements ResultTransformer {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Class<?> resultClass;
+
+        private final int columns;
+
+        ProjectionTransformer(final Class<?> resultClass, final int columns) {
+            this.resultClass = resultClass;
+            this.columns = columns;
+        }
+
+        @Override
+        public Object transformTuple(final Object[] tuple, final String[] aliases) {
+            Object[] values = Arrays.copyOf(tuple, columns);
+            if (resultClass == null) {
+                return values;
+            }
+            for (Constructor<?> constructor : resultClass.getConstructors()) {
+                if (isApplicable(constructor.getParameterTypes(), values)) {
+                    try {
+                        return constructor.newInstance(values);
+                    } catch (ReflectiveOperationException e) {
+                        throw new HibernateException("Could not instantiate " + resultClass.getName(), e);
+                    }
+                }
+            }
+            throw new HibernateException("No public constructor of " + resultClass.getName()
+                    + " accepts the projected fields");
+        }
+
+        @Override
+        @SuppressWarnings("rawtypes")
+        public List transformList(final List collection) {
+            return collection;
+        }
+
+        private static boolean isApplicable(final Class<?>[] parameterTypes, final Object[] values) {
+            if (parameterTypes.length != values.length) {
+                return false;
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null ? parameterTypes[i].isPrimitive()
+                        : !Primitives.wrap(parameterTypes[i]).isInstance(values[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Compara entidades del DAO según los ordenes de una búsqueda: los ordenes indicados y el identificador como último
+     * criterio. Los valores se comparan mediante compareTo de Java y los nulos se consideran menores que el resto, por
+     * lo que el orden puede diferir del de la BD (ver {@link DAOImpl#isOrderPreserved(SearchInfo)}).
+     */
+    private class OrderByComparator implements Comparator<T> {
+
+        private final List<OrderBy> orders;
+
+        OrderByComparator(final List<OrderBy> orders) {
+            this.orders = orders;
+        }
+
+        @Override
+        public int compare(final T o1, final T o2) {
+            for (OrderBy order : orders) {
+                int result = compareValues(getPropertyValue(o1, order.getName()),
+                        getPropertyValue(o2, order.getName()));
+                if (result != 0) {
+                    return order.isAscendente() ? result : -result;
+                }
+            }
+            return compareValues(getSession().getIdentifier(o1), getSession().getIdentifier(o2));
+        }
+
+        @SuppressWarnings("unchecked")
+        private int compareValues(final Object v1, final Object v2) {
+            if (v1 == null || v2 == null) {
+                return v1 == null ? (v2 == null ? 0 : -1) : 1;
+            }
+            return ((Comparable<Object>) v1).compareTo(v2);
+        }
+    }
 }
@@ -0,0 +1,359 @@
+package com.diwa.dao;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Implementación de {@link QueryResultCache} basada en la cache de Guava, con un número máximo de entradas y un tiempo
+ * de vida.
+ * <p>
+ * Para que las búsquedas que sólo se realizan una vez no desplacen de la cache a las frecuentes, una búsqueda sólo se
+ * almacena la segunda vez que se solicita mientras esté entre las últimas búsquedas solicitadas. El resto de entradas
+ * se descartan por antigüedad de uso.
+ * <p>
+ * Si se indica un tiempo de refresco, las entradas que se utilizan después de ese tiempo se recalculan en segundo
+ * plano, de tal forma que las búsquedas frecuentes se sirven siempre desde la cache.
+ */
+public class DefaultQueryResultCache implements QueryResultCache {
+
+    /**
+     * Logger.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(DefaultQueryResultCache.class);
+
+    /**
+     * Tiempo de vida de las entradas, en milisegundos.
+     */
+    private final long ttl;
+
+    /**
+     * Tiempo, en milisegundos, tras el cual las entradas que se utilizan se recalculan en segundo plano. Si es menor o
+     * igual que 0 no se recalculan.
+     */
+    private final long refreshAfter;
+
+    private final Cache<Key, Entry> entries;
+
+    /**
+     * Últimas búsquedas solicitadas. Una búsqueda se almacena en la cache si ya estaba entre ellas.
+     */
+    private final Cache<Key, Boolean> recent;
+
+    /**
+     * Generación de cada entidad. Forma parte de la clave, de tal forma que al invalidar una entidad sus entradas dejan
+     * de ser accesibles y se descartan cuando caducan o la cache alcanza su tamaño máximo.
+     */
+    private final ConcurrentMap<Class<?>, AtomicLong> generations = new ConcurrentHashMap<Class<?>, AtomicLong>();
+
+    /**
+     * Entradas que se están recalculando en segundo plano.
+     */
+    private final Set<Key> refreshing = Collections.newSetFromMap(new ConcurrentHashMap<Key, Boolean>());
+
+    private final ConcurrentMap<Class<?>, Counters> counters = new ConcurrentHashMap<Class<?>, Counters>();
+
+    /**
+     * Executor en el que se recalculan las entradas.
+     */
+    private Executor refreshExecutor = AsyncDAOImpl.getDefaultExecutor();
+
+    /**
+     * Constructor. Las entradas no se recalculan en segundo plano.
+     *
+     * @param ttl Tiempo de vida de las entradas, en milisegundos.
+     * @param maximumSize Número máximo de entradas.
+     */
+    public DefaultQueryResultCache(final long ttl, final int maximumSize) {
+        this(ttl, 0, maximumSize);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param ttl Tiempo de vida de las entradas, en milisegundos.
+     * @param refreshAfter Tiempo, en milisegundos, tras el cual las entradas que se utilizan se recalculan en segundo
+     *            plano. Ha de ser menor que el tiempo de vida. Si es menor o igual que 0 no se recalculan.
+     * @param maximumSize Número máximo de entradas.
+     */
+    public DefaultQueryResultCache(final long ttl, final long refreshAfter, final int maximumSize) {
+        this.ttl = ttl;
+        this.refreshAfter = refreshAfter;
+        this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .removalListener(new RemovalListener<Key, Entry>() {
+                    @Override
+                    public void onRemoval(final RemovalNotification<Key, Entry> notification) {
+                        if (notification.wasEvicted() && notification.getKey() != null) {
+                            countersOf(notification.getKey().type).evictions.incrementAndGet();
+                        }
+                    }
+                }).build();
+        this.recent = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V> V get(final Class<?> type, final Object key, final Supplier<V> loader,
+            final Supplier<V> backgroundLoader) {
+        final Key cacheKey = new Key(type, getGeneration(type), key);
+        Entry entry = entries.getIfPresent(cacheKey);
+        if (entry != null) {
+            countersOf(type).hits.incrementAndGet();
+            if (refreshAfter > 0 && backgroundLoader != null && entry.getAge() > refreshAfter) {
+                refresh(cacheKey, backgroundLoader);
+            }
+            return (V) entry.value;
+        }
+        countersOf(type).misses.incrementAndGet();
+        final boolean admitted = recent.asMap().putIfAbsent(cacheKey, Boolean.TRUE) != null;
+        final boolean[] loaded = new boolean[1];
+        try {
+            // Los threads que solicitan la misma clave a la vez esperan a que termine el primero
+            entry = entries.get(cacheKey, new Callable<Entry>() {
+                @Override
+                public Entry call() {
+                    loaded[0] = true;
+                    return new Entry(loader.get());
+                }
+            });
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (UncheckedExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        } catch (ExecutionError e) {
+            throw (Error) e.getCause();
+        }
+        if (loaded[0] && !admitted) {
+            entries.invalidate(cacheKey);
+        }
+        return (V) entry.value;
+    }
+
+    /**
+     * Recalcula la entrada en segundo plano si no se está recalculando ya.
+     */
+    private <V> void refresh(final Key cacheKey, final Supplier<V> backgroundLoader) {
+        if (!refreshing.add(cacheKey)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Entry entry = new Entry(backgroundLoader.get());
+                        if (cacheKey.generation == getGeneration(cacheKey.type)) {
+                            entries.put(cacheKey, entry);
+                            countersOf(cacheKey.type).refreshes.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        logger.warn("Could not refresh cached query of " + cacheKey.type.getSimpleName(), e);
+                    } finally {
+                        refreshing.remove(cacheKey);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(cacheKey);
+            logger.warn("Could not schedule the refresh of a cached query", e);
+        }
+    }
+
+    /**
+     * @return Generación actual de la entidad, que cambia cada vez que se invalida.
+     */
+    public long getGeneration(final Class<?> type) {
+        return generationOf(type).get();
+    }
+
+    private AtomicLong generationOf(final Class<?> type) {
+        AtomicLong generation = generations.get(type);
+        if (generation == null) {
+            AtomicLong created = new AtomicLong();
+            generation = generations.putIfAbsent(type, created);
+            if (generation == null) {
+                generation = created;
+            }
+        }
+        return generation;
+    }
+
+    private Counters countersOf(final Class<?> type) {
+        Counters typeCounters = counters.get(type);
+        if (typeCounters == null) {
+            Counters created = new Counters();
+            typeCounters = counters.putIfAbsent(type, created);
+            if (typeCounters == null) {
+                typeCounters = created;
+            }
+        }
+        return typeCounters;
+    }
+
+    /**
+     * {@inheritdoc}
+     * <p>
+     * Se invalidan también las entidades padre e hijas de la indicada, ya que las búsquedas de una entidad padre
+     * devuelven entidades hijas.
+     */
+    @Override
+    public void invalidate(final Class<?> type) {
+        generationOf(type);
+        for (Map.Entry<Class<?>, AtomicLong> generation : generations.entrySet()) {
+            Class<?> cached = generation.getKey();
+            if (cached.isAssignableFrom(type) || type.isAssignableFrom(cached)) {
+                generation.getValue().incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public void invalidateAll() {
+        entries.invalidateAll();
+        recent.invalidateAll();
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    @Override
+    public Map<Class<?>, QueryResultCacheStatistics> getStatistics() {
+        Map<Class<?>, QueryResultCacheStatistics> statistics = new HashMap<Class<?>, QueryResultCacheStatistics>();
+        for (Map.Entry<Class<?>, Counters> entry : counters.entrySet()) {
+            Counters c = entry.getValue();
+            statistics.put(entry.getKey(), new QueryResultCacheStatistics(c.hits.get(), c.misses.get(),
+                    c.evictions.get(), c.refreshes.get()));
+        }
+        return statistics;
+    }
+
+    /**
+     * @return Número de entradas.
+     */
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Tiempo de vida de las entradas, en milisegundos.
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return Tiempo, en milisegundos, tras el cual las entradas que se utilizan se recalculan en segundo plano.
+     */
+    public long getRefreshAfter() {
+        return refreshAfter;
+    }
+
+    /**
+     * @return Executor en el que se recalculan las entradas.
+     */
+    public Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    /**
+     * Establece el executor en el que se recalculan las entradas. Por defecto es
+     * {@link AsyncDAOImpl#getDefaultExecutor()}.
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    @Override
+    public String toString() {
+        return "DefaultQueryResultCache[size=" + size() + ", " + getStatistics() + "]";
+    }
+
+    /**
+     * Contadores de una entidad.
+     */
+    private static final class Counters {
+
+        private final AtomicLong hits = new AtomicLong();
+
+        private final AtomicLong misses = new AtomicLong();
+
+        private final AtomicLong evictions = new AtomicLong();
+
+        private final AtomicLong refreshes = new AtomicLong();
+    }
+
+    /**
+     * Valor almacenado, que puede ser null, y el instante en el que se almacenó.
+     */
+    private static final class Entry {
+
+        private final Object value;
+
+        private final long timestamp = System.currentTimeMillis();
+
+        private Entry(final Object value) {
+            this.value = value;
+        }
+
+        private long getAge() {
+            return System.currentTimeMillis() - timestamp;
+        }
+    }
+
+    /**
+     * Clave de la cache: entidad y su generación, y clave de la búsqueda.
+     */
+    private static final class Key {
+
+        private final Class<?> type;
+
+        private final long generation;
+
+        private final Object key;
+
+        private Key(final Class<?> type, final long generation, final Object key) {
+            this.type = type;
+            this.generation = generation;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(type, generation, key);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return type.equals(other.type) && generation == other.generation && key.equals(other.key);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.diwa.dao;
+
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+/**
+ * Implementación de {@link AssociationInspector} a partir de los metadatos de Hibernate.
+ */
+public class HibernateAssociationInspector implements AssociationInspector {
+
+    private final SessionFactory sessionFactory;
+
+    public HibernateAssociationInspector(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public boolean isToOne(final Class<?> owner, final String property) {
+        Type type = getPropertyType(owner, property);
+        return type != null && type.isEntityType();
+    }
+
+    /**
+     * {@inheritdoc}
+     */
+    public Class<?> getAssociatedType(final Class<?> owner, final String property) {
+        Type type = getPropertyType(owner, property);
+        if (type != null && type.isCollectionType()) {
+            type = ((CollectionType) type).getElementType((SessionFactoryImplementor) sessionFactory);
+        }
+        if (type == null || !type.isEntityType()) {
+            return null;
+        }
+        ClassMetadata metadata = sessionFactory.getClassMetadata(((EntityType) type).getAssociatedEntityName());
+        return metadata == null ? null : metadata.getMappedClass();
+    }
+
+    /**
+     * Devuelve el tipo de Hibernate del atributo indicado o null si la clase no es una entidad o no tiene el atributo.
+     */
+    private Type getPropertyType(final Class<?> owner, final String property) {
+        if (owner == null) {
+            return null;
+        }
+        ClassMetadata metadata = sessionFactory.getClassMetadata(owner);
+        if (metadata == null) {
+            return null;
+        }
+        try {
+            return metadata.getPropertyType(property);
+        } catch (HibernateException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.diwa.dao;
+
+/**
+ * Recibe el progreso de una inserción masiva realizada mediante {@link DAO#insertAll(java.util.Iterator,
+ * InsertProgressListener)}.
+ */
+public interface InsertProgressListener {
+
+    /**
+     * Se invoca cada vez que se confirma la transacción de un bloque de inserciones.
+     *
+     * @param inserted Número total de entidades insertadas y confirmadas hasta el momento.
+     */
+    void onCommit(long inserted);
+}
@@ -12,11 +12,16 @@ import com.diwa.dao.shared.order.OrderBy;
 import com.diwa.dao.shared.order.OrderDirection;
 import com.diwa.dao.shared.search.SearchInfo;
 import com.diwa.dao.utils.DaoUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.Map.Entry;
 
 /**
@@ -32,14 +37,78 @@ public class JPQLGenerator {
      */
     private static final int MAX_JOIN_BUCLE_ITERATION = 20;
 
+    /**
+     * Número máximo de plantillas JPQL que se mantienen en cache por defecto.
+     */
+    public static final int DEFAULT_TEMPLATE_CACHE_SIZE = 500;
+
+    /**
+     * Número máximo de valores por defecto en un IN. Ver {@link InConditional}.
+     */
+    public static final int DEFAULT_MAX_IN_LIST_SIZE = 1000;
+
     /**
      * Logger.
      */
     private final Logger logger = LoggerFactory.getLogger(this.getClass());
 
+    /**
+     * Estrategia utilizada para nombrar los parámetros de las sentencias generadas. Por defecto los parámetros se
+     * nombran según su posición, de tal forma que la misma estructura de criterios genera siempre la misma sentencia.
+     */
+    private volatile ParameterNaming parameterNaming = ParameterNaming.POSITIONAL;
+
+    /**
+     * Indica si se cachean las sentencias generadas por find, count y aggregate en función de la estructura de la
+     * búsqueda. Sólo tiene efecto con {@link ParameterNaming#POSITIONAL}, ya que con el resto de estrategias el texto
+     * de la sentencia depende de los valores.
+     */
+    private volatile boolean templateCacheEnabled = true;
+
+    /**
+     * Indica si las listas de los IN se rellenan hasta el siguiente tamaño potencia de dos repitiendo el último valor.
+     * Por defecto no se rellenan.
+     */
+    private volatile boolean inListPadding = false;
+
+    /**
+     * Número máximo de valores de cada IN. Las listas de mayor tamaño se dividen en varios IN unidos mediante OR. Si
+     * es menor o igual que 0 las listas no se dividen.
+     */
+    private volatile int maxInListSize = DEFAULT_MAX_IN_LIST_SIZE;
+
+    /**
+     * Cache de plantillas JPQL. La clave es el tipo de sentencia, la entidad y la estructura de la búsqueda.
+     */
+    private volatile Cache<String, JPQLTemplate> templateCache = buildTemplateCache(DEFAULT_TEMPLATE_CACHE_SIZE);
+
+    /**
+     * Sentencias generadas y optimización de los criterios de las búsquedas congeladas (ver
+     * {@link SearchInfo#freeze()}), que ya no pueden cambiar. Las búsquedas se comparan por identidad y sus sentencias
+     * se descartan cuando la búsqueda deja de utilizarse. La clave de cada sentencia es el tipo de sentencia y sus
+     * argumentos. Las sentencias se comparten entre llamadas, por lo que no deben modificarse.
+     */
+    private final Cache<SearchInfo, Memo> frozenResults = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * Sentencia del criterio que sustituye a los criterios que no pueden cumplirse nunca.
+     */
+    private static final String NEVER_MATCHES = "1 = 0";
+
+    /**
+     * Indica si los criterios de las búsquedas se optimizan antes de generar las sentencias (ver
+     * {@link CriteriaOptimizer}). Por defecto se optimizan.
+     */
+    private volatile boolean criteriaOptimization = true;
+
+    private final CriteriaOptimizer criteriaOptimizer = new CriteriaOptimizer();
+
     private static JPQLGenerator instance;
 
-    private JPQLGenerator(){
+    /**
+     * Sólo se crean instancias independientes de la compartida ({@link #getInstance()}) en los tests.
+     */
+    JPQLGenerator(){
     }
 
     public static synchronized JPQLGenerator getInstance(){
@@ -49,6 +118,19 @@ public class JPQLGenerator {
         return instance;
     }
 
+    /**
+     * Sustituye la instancia compartida. Permite a los tests utilizar un generador con su propia configuración sin
+     * modificar la del generador compartido.
+     *
+     * @param generator Nueva instancia compartida.
+     * @return Instancia compartida anterior.
+     */
+    static synchronized JPQLGenerator setInstance(final JPQLGenerator generator){
+        JPQLGenerator previous = getInstance();
+        instance = generator;
+        return previous;
+    }
+
     /**
      * {@inheritdoc}
      */
@@ -58,43 +140,217 @@ public class JPQLGenerator {
         cadena.append(String.format(" %s SET ", Criteria.DEFAULT_ENTITY_ALIAS));
         Map<String, Serializable> params = new HashMap<String, Serializable>();
 
-        for (Entry<String, Serializable> att : attribute.entrySet()) {
+        // Los atributos se ordenan por nombre para que la sentencia no dependa del orden de iteración del Map
+        for (Entry<String, Serializable> att : new TreeMap<String, Serializable>(attribute).entrySet()) {
             cadena.append(Criteria.DEFAULT_ENTITY_ALIAS).append(".");
             cadena.append(att.getKey());
             cadena.append(" = :");
-            StringBuilder varname = generateVarName(att.getKey(), att.getValue());
+            StringBuilder varname = generateVarName(att.getKey(), att.getValue(), params);
             cadena.append(varname);
             params.put(varname.toString(), att.getValue());
             cadena.append(",");
         }
         cadena.deleteCharAt(cadena.length() - 1);
-        Map<String, Serializable> parameters = appendWhereClause(cadena, searchInfo);
-        parameters.putAll(params);
-        return new JPQLResult(cadena.toString(), parameters);
+        // Los parámetros del SET y del WHERE comparten el mismo Map para que los nombres posicionales no colisionen
+        appendWhereClause(cadena, optimize(searchInfo), params);
+        return new JPQLResult(cadena.toString(), params);
+    }
+
+    /**
+     * Genera la sentencia DELETE que elimina las entidades que cumplen con los criterios de búsqueda. Al igual que en
+     * el UPDATE sólo se tienen en cuenta los criterios: una sentencia DELETE no admite joins.
+     *
+     * @throws IllegalArgumentException Si la búsqueda tiene entidades relacionadas.
+     */
+    public JPQLResult delete(Class<?> type, final SearchInfo searchInfo) {
+        if (!searchInfo.getEntities().isEmpty()) {
+            throw new IllegalArgumentException("A DELETE statement cannot join other entities");
+        }
+        StringBuilder query = new StringBuilder("DELETE FROM ");
+        query.append(DaoUtils.getEntityName(type));
+        query.append(String.format(" %s", Criteria.DEFAULT_ENTITY_ALIAS));
+        Map<String, Serializable> params = appendWhereClause(query, optimize(searchInfo));
+        return new JPQLResult(query.toString(), params);
     }
 
     /**
      * {@inheritdoc}
      */
     public JPQLResult count(Class<?> type, final SearchInfo searchInfo) {
-        SearchInfo auxInfo = searchInfo;
-        StringBuilder query = new StringBuilder("SELECT COUNT(e)");
-        if (!searchInfo.getFetches().isEmpty()) {
-            auxInfo = new SearchInfo();
-            auxInfo.setDistinct(searchInfo.isDistinct());
-            auxInfo.setEntities(searchInfo.getEntities());
-            auxInfo.setOrders(searchInfo.getOrders());
-            auxInfo.setOffset(searchInfo.getOffset());
-            auxInfo.setPageSize(searchInfo.getPageSize());
-            for (Criteria c : searchInfo.getCriterias()) {
-                if (!(c instanceof PersonalCriteria && !((PersonalCriteria) c).isApplyInCount())) {
-                    auxInfo.addCriteria(c);
+        return count(type, searchInfo, null);
+    }
+
+    /**
+     * Genera la sentencia COUNT de la búsqueda. Sólo se tienen en cuenta los elementos que afectan al número de
+     * resultados: no se incluyen los fetches, los ordenes ni la paginación, ni los criterios personalizados que no se
+     * aplican en los COUNT.
+     * <p>
+     * Si se indica un {@link AssociationInspector}, además se eliminan los LEFT JOIN a asociaciones a una única entidad
+     * que no son referenciados por ningún criterio, y si la búsqueda es DISTINCT los LEFT JOIN no referenciados a
+     * colecciones. Se utiliza <code>COUNT(DISTINCT e)</code> sólo cuando la búsqueda es DISTINCT y alguna de las
+     * entidades restantes puede duplicar filas (colecciones, entidades de dominio o asociaciones desconocidas).
+     *
+     * @param inspector Información sobre las asociaciones de las entidades. Puede ser null, en cuyo caso se mantienen
+     *            todos los joins.
+     */
+    public JPQLResult count(Class<?> type, final SearchInfo searchInfo, final AssociationInspector inspector) {
+        List<Object> memoKey = Arrays.<Object> asList("count", type, inspector);
+        JPQLResult memoized = getMemoized(searchInfo, memoKey);
+        if (memoized != null) {
+            return memoized;
+        }
+        // La búsqueda del COUNT comparte con la original los criterios y las entidades siempre que es posible
+        SearchInfo auxInfo = optimize(searchInfo).withoutFetches().withoutOrders();
+        boolean excluded = false;
+        for (Criteria c : auxInfo.getCriterias()) {
+            if (!isAppliedInCount(c)) {
+                excluded = true;
+                break;
+            }
+        }
+        if (excluded) {
+            List<Criteria> criterias = new ArrayList<Criteria>();
+            for (Criteria c : auxInfo.getCriterias()) {
+                if (isAppliedInCount(c)) {
+                    criterias.add(c);
                 }
             }
+            auxInfo = auxInfo.withCriterias(criterias);
         }
+        if (inspector != null) {
+            auxInfo = auxInfo.withEntities(pruneCountEntities(type, auxInfo.getEntities(), auxInfo, inspector));
+        }
+        boolean distinctCount = auxInfo.isDistinct() && mayDuplicateRows(type, auxInfo.getEntities(), inspector);
+        String key = generateTemplateKey(type, distinctCount ? "count:distinct" : "count", auxInfo);
+        JPQLResult cached = bindTemplate(key, auxInfo);
+        if (cached != null) {
+            return memoize(searchInfo, memoKey, cached);
+        }
+        StringBuilder query = new StringBuilder(distinctCount ? "SELECT COUNT(DISTINCT e)" : "SELECT COUNT(e)");
         query.append(generateFromClause(type, auxInfo));
         Map<String, Serializable> params = appendWhereClause(query, auxInfo);
-        return new JPQLResult(query.toString(), params);
+        return memoize(searchInfo, memoKey, storeTemplate(key, new JPQLResult(query.toString(), params)));
+    }
+
+    /**
+     * Indica si el criterio se aplica en la consulta COUNT. Todos se aplican salvo los criterios personalizados que
+     * indican lo contrario.
+     */
+    private static boolean isAppliedInCount(final Criteria criteria) {
+        return !(criteria instanceof PersonalCriteria && !((PersonalCriteria) criteria).isApplyInCount());
+    }
+
+    /**
+     * Elimina de las entidades de la búsqueda los LEFT JOIN que no afectan al número de resultados de la consulta
+     * COUNT: los que no son referenciados por ningún criterio ni por otro join necesario y, o bien son asociaciones a
+     * una única entidad, o bien la consulta es DISTINCT. Si existe algún criterio personalizado no se elimina ningún
+     * join, ya que su sentencia puede referenciar cualquier alias.
+     */
+    protected List<Entity> pruneCountEntities(final Class<?> type, final List<Entity> entities,
+            final SearchInfo countInfo, final AssociationInspector inspector) {
+        Set<Entity> needed = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+        for (Criteria c : countInfo.getCriterias()) {
+            if (!collectReferencedEntities(c, needed)) {
+                return entities;
+            }
+        }
+        for (Entity e : entities) {
+            if (!(e instanceof JoinEntity)) {
+                needed.add(e);
+            } else if (((JoinEntity) e).getOperator() != JoinOperator.LEFT_JOIN) {
+                // Un INNER JOIN filtra filas
+                needed.add(e);
+            } else if (!countInfo.isDistinct() && !inspector.isToOne(resolveOwnerType(type, (JoinEntity) e,
+                    inspector), ((JoinEntity) e).getName())) {
+                // Sin DISTINCT, un join a una colección duplica filas
+                needed.add(e);
+            }
+        }
+        // Los joins de los que dependen los joins necesarios también son necesarios
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Entity e : new ArrayList<Entity>(needed)) {
+                if (e instanceof JoinEntity) {
+                    Entity parent = ((JoinEntity) e).getEntity();
+                    if (parent != null && needed.add(parent)) {
+                        changed = true;
+                    }
+                }
+            }
+        }
+        List<Entity> result = new ArrayList<Entity>(entities.size());
+        for (Entity e : entities) {
+            if (needed.contains(e)) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Añade al conjunto las entidades referenciadas por el criterio indicado.
+     *
+     * @return Falso si el criterio puede referenciar entidades que no se pueden determinar.
+     */
+    protected boolean collectReferencedEntities(final Criteria criteria, final Set<Entity> entities) {
+        if (criteria instanceof Conditional) {
+            if (((Conditional) criteria).getEntity() != null) {
+                entities.add(((Conditional) criteria).getEntity());
+            }
+            if (criteria instanceof FieldComparison && ((FieldComparison) criteria).getEntity2() != null) {
+                entities.add(((FieldComparison) criteria).getEntity2());
+            }
+            return true;
+        } else if (criteria instanceof NotLogical) {
+            return collectReferencedEntities(((NotLogical) criteria).getExpresion(), entities);
+        } else if (criteria instanceof GroupLogical) {
+            Collection<Criteria> conditionals = ((GroupLogical) criteria).getContitionals();
+            if (conditionals != null) {
+                for (Criteria c : conditionals) {
+                    if (!collectReferencedEntities(c, entities)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indica si alguna de las entidades de la consulta puede hacer que una misma entidad raíz aparezca en varias filas.
+     */
+    protected boolean mayDuplicateRows(final Class<?> type, final List<Entity> entities,
+            final AssociationInspector inspector) {
+        for (Entity e : entities) {
+            if (!(e instanceof JoinEntity) || inspector == null) {
+                return true;
+            }
+            JoinEntity join = (JoinEntity) e;
+            if (!inspector.isToOne(resolveOwnerType(type, join, inspector), join.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve la clase de la entidad sobre la que se realiza el join indicado.
+     *
+     * @return Clase de la entidad o null si no se puede determinar.
+     */
+    protected Class<?> resolveOwnerType(final Class<?> type, final Join join, final AssociationInspector inspector) {
+        Entity parent = join.getEntity();
+        if (parent == null) {
+            return type;
+        } else if (parent instanceof DomainEntity) {
+            return ((DomainEntity) parent).getClase();
+        } else if (parent instanceof Join) {
+            Class<?> owner = resolveOwnerType(type, (Join) parent, inspector);
+            return owner == null ? null : inspector.getAssociatedType(owner, ((Join) parent).getName());
+        }
+        return null;
     }
 
 
@@ -102,35 +358,515 @@ public class JPQLGenerator {
      * {@inheritdoc}
      */
     public JPQLResult aggregate(Class<?> type, Aggregate aggregate, String field, SearchInfo searchInfo) {
+        List<Object> memoKey = Arrays.<Object> asList("aggregate", type, aggregate, field);
+        JPQLResult memoized = getMemoized(searchInfo, memoKey);
+        if (memoized != null) {
+            return memoized;
+        }
+        SearchInfo auxInfo = optimize(searchInfo);
+        String key = generateTemplateKey(type, "aggregate:" + aggregate + ":" + field, auxInfo);
+        JPQLResult cached = bindTemplate(key, auxInfo);
+        if (cached != null) {
+            return memoize(searchInfo, memoKey, cached);
+        }
         StringBuilder query = new StringBuilder("SELECT ");
         query.append(aggregate.getOperator());
-        if (searchInfo.isDistinct()) {
+        if (auxInfo.isDistinct()) {
             query.append("(DISTINCT");
         }
         query.append(String.format("(%s.", Criteria.DEFAULT_ENTITY_ALIAS));
         query.append(field);
         query.append(")");
-        if (searchInfo.isDistinct()) {
+        if (auxInfo.isDistinct()) {
             query.append(")");
         }
-        query.append(generateFromClause(type, searchInfo));
-        Map<String, Serializable> params = appendWhereClause(query, searchInfo);
-        return new JPQLResult(query.toString(), params);
+        query.append(generateFromClause(type, auxInfo));
+        Map<String, Serializable> params = appendWhereClause(query, auxInfo);
+        return memoize(searchInfo, memoKey, storeTemplate(key, new JPQLResult(query.toString(), params)));
     }
 
     /**
      * {@inheritdoc}
      */
     public JPQLResult find(Class<?> type, final SearchInfo searchInfo) {
+        List<Object> memoKey = Arrays.<Object> asList("find", type);
+        JPQLResult memoized = getMemoized(searchInfo, memoKey);
+        if (memoized != null) {
+            return memoized;
+        }
+        SearchInfo auxInfo = optimize(searchInfo);
+        boolean keyset = auxInfo.getAfter() != null;
+        String key = generateTemplateKey(type, keyset ? "find:after" : "find", auxInfo);
+        JPQLResult cached = bindTemplate(key, auxInfo);
+        if (cached != null) {
+            return memoize(searchInfo, memoKey, cached);
+        }
         StringBuilder query = new StringBuilder("SELECT ");
-        if (searchInfo.isDistinct()) {
+        if (auxInfo.isDistinct()) {
             query.append("DISTINCT ");
         }
         query.append(Criteria.DEFAULT_ENTITY_ALIAS);
-        query.append(generateFromClause(type, searchInfo));
-        Map<String, Serializable> params = appendWhereClause(query, searchInfo);
-        query.append(generateOrderClause(searchInfo));
-        return new JPQLResult(query.toString(), params);
+        query.append(generateFromClause(type, auxInfo));
+        Map<String, Serializable> params = appendWhereClause(query, auxInfo);
+        appendKeysetClause(query, auxInfo, params);
+        query.append(generateOrderClause(auxInfo));
+        return memoize(searchInfo, memoKey, storeTemplate(key, new JPQLResult(query.toString(), params), keyset));
+    }
+
+    /**
+     * Genera la sentencia de búsqueda que obtiene únicamente los atributos indicados de cada entidad, con las mismas
+     * cláusulas FROM, WHERE y ORDER BY que {@link #find(Class, SearchInfo)}. No se incluyen los fetches de la búsqueda.
+     *
+     * @param fields Atributos de la entidad, que pueden ser rutas como <code>role.name</code>.
+     * @see #findProjection(Class, SearchInfo, Class, AssociationInspector, String...)
+     */
+    public JPQLResult findProjection(Class<?> type, final SearchInfo searchInfo, final String... fields) {
+        return findProjection(type, searchInfo, null, null, fields);
+    }
+
+    /**
+     * Genera la sentencia de búsqueda que obtiene los atributos indicados de cada entidad mediante una expresión
+     * constructor (<code>SELECT NEW resultClass(e.a, e.b)</code>).
+     *
+     * @param resultClass Clase del resultado, con un constructor público cuyos parámetros corresponden a los atributos
+     *            indicados. Si es null cada fila es el conjunto de valores de los atributos.
+     * @param fields Atributos de la entidad, que pueden ser rutas como <code>role.name</code>.
+     * @see #findProjection(Class, SearchInfo, Class, AssociationInspector, String...)
+     */
+    public JPQLResult findProjection(Class<?> type, final SearchInfo searchInfo, final Class<?> resultClass,
+            final String... fields) {
+        return findProjection(type, searchInfo, resultClass, null, fields);
+    }
+
+    /**
+     * Genera la sentencia de búsqueda que obtiene los atributos indicados de cada entidad. Las rutas como
+     * <code>role.name</code> se resuelven mediante LEFT JOIN, de tal forma que las entidades con la asociación nula se
+     * obtienen igualmente, con el valor nulo.
+     * <p>
+     * Si la búsqueda es DISTINCT y alguna de sus entidades puede duplicar filas (ver
+     * {@link #isDistinctProjection(Class, SearchInfo, AssociationInspector)}) se genera <code>SELECT DISTINCT</code>
+     * seguido de los atributos indicados, del identificador y de los atributos de ordenación, de tal forma que cada
+     * fila corresponde a una entidad, como en la consulta COUNT, y la BD puede ordenar las filas. En ese caso no se
+     * utiliza la expresión constructor: las columnas adicionales han de descartarse y el resultado construirse al
+     * obtener las filas.
+     *
+     * @param resultClass Clase del resultado, con un constructor público cuyos parámetros corresponden a los atributos
+     *            indicados. Si es null cada fila es el conjunto de valores de los atributos.
+     * @param inspector Información sobre las asociaciones de las entidades. Puede ser null, en cuyo caso no se
+     *            comprueban las rutas y se considera que cualquier join puede duplicar filas.
+     * @param fields Atributos de la entidad, que pueden ser rutas a través de asociaciones a una única entidad.
+     * @throws IllegalArgumentException Si alguna ruta atraviesa una colección, ya que duplicaría las filas.
+     */
+    public JPQLResult findProjection(Class<?> type, final SearchInfo searchInfo, final Class<?> resultClass,
+            final AssociationInspector inspector, final String... fields) {
+        if (fields.length == 0) {
+            throw new IllegalArgumentException("A projection needs at least one field");
+        }
+        List<Object> memoKey = Arrays.<Object> asList("projection", type, resultClass, inspector,
+                Arrays.asList(fields));
+        JPQLResult memoized = getMemoized(searchInfo, memoKey);
+        if (memoized != null) {
+            return memoized;
+        }
+        SearchInfo auxInfo = optimize(searchInfo);
+        if (!auxInfo.getFetches().isEmpty()) {
+            auxInfo = auxInfo.withoutFetches();
+        }
+        boolean distinct = isDistinctProjection(type, auxInfo, inspector);
+        Map<String, String> aliases = new HashMap<String, String>();
+        StringBuilder joins = new StringBuilder();
+        List<String> columns = new ArrayList<String>(fields.length);
+        for (String field : fields) {
+            columns.add(resolveProjectionPath(type, field, inspector, aliases, joins));
+        }
+        if (distinct) {
+            // DISTINCT exige que las columnas del ORDER BY formen parte del SELECT
+            List<String> extra = new ArrayList<String>();
+            extra.add(Criteria.DEFAULT_ENTITY_ALIAS + ".id");
+            for (OrderBy order : getSortKeys(auxInfo)) {
+                StringBuilder path = new StringBuilder();
+                appendOrderPath(path, order);
+                extra.add(path.toString());
+            }
+            for (String column : extra) {
+                if (!columns.contains(column)) {
+                    columns.add(column);
+                }
+            }
+        }
+        boolean constructor = resultClass != null && !distinct;
+        StringBuilder select = new StringBuilder(distinct ? "SELECT DISTINCT " : "SELECT ");
+        if (constructor) {
+            select.append("NEW ").append(resultClass.getName()).append("(");
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                select.append(", ");
+            }
+            select.append(columns.get(i));
+        }
+        if (constructor) {
+            select.append(")");
+        }
+        boolean keyset = auxInfo.getAfter() != null;
+        String key = generateTemplateKey(type, (keyset ? "projection:after:" : "projection:") + select + joins,
+                auxInfo);
+        JPQLResult cached = bindTemplate(key, auxInfo);
+        if (cached != null) {
+            return memoize(searchInfo, memoKey, cached);
+        }
+        StringBuilder query = select;
+        query.append(generateFromClause(type, auxInfo));
+        query.append(joins);
+        Map<String, Serializable> params = appendWhereClause(query, auxInfo);
+        appendKeysetClause(query, auxInfo, params);
+        query.append(generateOrderClause(auxInfo));
+        return memoize(searchInfo, memoKey, storeTemplate(key, new JPQLResult(query.toString(), params), keyset));
+    }
+
+    /**
+     * Indica si la proyección de la búsqueda se genera con <code>SELECT DISTINCT</code>: la búsqueda es DISTINCT y
+     * alguna de sus entidades puede duplicar filas. En ese caso la sentencia obtiene columnas adicionales tras los
+     * atributos indicados y no utiliza la expresión constructor.
+     *
+     * @param inspector Información sobre las asociaciones de las entidades. Puede ser null.
+     */
+    public boolean isDistinctProjection(Class<?> type, final SearchInfo searchInfo,
+            final AssociationInspector inspector) {
+        return searchInfo.isDistinct() && mayDuplicateRows(type, searchInfo.getEntities(), inspector);
+    }
+
+    /**
+     * Devuelve la expresión JPQL de un atributo de la proyección. Cada asociación de la ruta se resuelve mediante un
+     * LEFT JOIN, que se añade a los joins indicados la primera vez que se utiliza, ya que la navegación implícita
+     * generaría un INNER JOIN que descartaría las entidades con la asociación nula.
+     *
+     * @param aliases Alias de los joins generados para cada ruta.
+     * @param joins Joins generados para la proyección.
+     */
+    protected String resolveProjectionPath(Class<?> type, final String field, final AssociationInspector inspector,
+            final Map<String, String> aliases, final StringBuilder joins) {
+        String[] names = field.split("\\.");
+        String owner = Criteria.DEFAULT_ENTITY_ALIAS;
+        Class<?> ownerType = type;
+        String path = null;
+        for (int i = 0; i < names.length; i++) {
+            boolean last = i == names.length - 1;
+            boolean toOne = inspector != null && inspector.isToOne(ownerType, names[i]);
+            if (last && !toOne) {
+                return owner + "." + names[i];
+            }
+            if (inspector != null && !toOne) {
+                throw new IllegalArgumentException(String.format(
+                        "The projection path %s goes through %s, which is not a single-valued association", field,
+                        names[i]));
+            }
+            path = path == null ? names[i] : path + "." + names[i];
+            String alias = aliases.get(path);
+            if (alias == null) {
+                alias = "p_" + path.replace('.', '_');
+                aliases.put(path, alias);
+                joins.append(" ").append(JoinOperator.LEFT_JOIN.getOperator()).append(" ").append(owner).append(".")
+                        .append(names[i]).append(" ").append(alias);
+            }
+            owner = alias;
+            ownerType = inspector == null ? null : inspector.getAssociatedType(ownerType, names[i]);
+        }
+        return owner;
+    }
+
+    /**
+     * Devuelve la búsqueda con sus criterios optimizados (ver {@link CriteriaOptimizer}), o la misma búsqueda si no
+     * se optimizan o no se han podido simplificar. Si los criterios no pueden cumplirse nunca se sustituyen por un
+     * criterio constante falso, de tal forma que la sentencia sigue siendo válida.
+     */
+    protected SearchInfo optimize(final SearchInfo searchInfo) {
+        if (!criteriaOptimization) {
+            return searchInfo;
+        }
+        Optimization optimization = getOptimization(searchInfo);
+        return optimization.optimized != null ? optimization.optimized : searchInfo;
+    }
+
+    /**
+     * Indica si los criterios de la búsqueda no pueden cumplirse nunca, en cuyo caso no es necesario ejecutar sus
+     * sentencias. Siempre es falso si los criterios no se optimizan.
+     */
+    public boolean isUnsatisfiable(final SearchInfo searchInfo) {
+        return criteriaOptimization && getOptimization(searchInfo).unsatisfiable;
+    }
+
+    /**
+     * Optimiza los criterios de la búsqueda. Si está congelada se optimizan una única vez y la comprobación de los
+     * criterios y la generación de sus sentencias comparten el resultado. La búsqueda optimizada, que también está
+     * congelada, se registra como ya optimizada para no optimizarla de nuevo al generar sus sentencias.
+     */
+    private Optimization getOptimization(final SearchInfo searchInfo) {
+        Memo memo = searchInfo.isFrozen() ? getMemo(searchInfo) : null;
+        if (memo != null && memo.optimization != null) {
+            return memo.optimization;
+        }
+        List<Criteria> criterias = searchInfo.getCriterias();
+        List<Criteria> optimized = criteriaOptimizer.optimize(criterias);
+        Optimization optimization;
+        if (optimized == criterias) {
+            optimization = new Optimization(null, false);
+        } else {
+            boolean unsatisfiable = optimized == null;
+            SearchInfo optimizedInfo = searchInfo.withCriterias(unsatisfiable
+                    ? Collections.<Criteria> singletonList(new PersonalCriteria(NEVER_MATCHES)) : optimized);
+            getMemo(optimizedInfo).optimization = new Optimization(null, unsatisfiable);
+            optimization = new Optimization(optimizedInfo, unsatisfiable);
+        }
+        if (memo != null) {
+            memo.optimization = optimization;
+        }
+        return optimization;
+    }
+
+    /**
+     * Obtiene la sentencia generada anteriormente para la búsqueda, si está congelada.
+     *
+     * @param key Tipo de sentencia y sus argumentos.
+     * @return Sentencia o null si la búsqueda no está congelada o no se ha generado todavía la sentencia.
+     */
+    protected JPQLResult getMemoized(final SearchInfo searchInfo, final List<Object> key) {
+        if (!searchInfo.isFrozen()) {
+            return null;
+        }
+        Memo memo = frozenResults.getIfPresent(searchInfo);
+        return memo == null ? null : memo.results.get(key);
+    }
+
+    /**
+     * Almacena la sentencia generada para la búsqueda si está congelada.
+     *
+     * @param key Tipo de sentencia y sus argumentos.
+     * @return La misma sentencia indicada.
+     */
+    protected JPQLResult memoize(final SearchInfo searchInfo, final List<Object> key, final JPQLResult result) {
+        if (searchInfo.isFrozen()) {
+            getMemo(searchInfo).results.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Devuelve los resultados memorizados de la búsqueda congelada, creándolos si no existen.
+     */
+    private Memo getMemo(final SearchInfo searchInfo) {
+        Memo memo = frozenResults.getIfPresent(searchInfo);
+        if (memo == null) {
+            Memo created = new Memo();
+            memo = frozenResults.asMap().putIfAbsent(searchInfo, created);
+            if (memo == null) {
+                memo = created;
+            }
+        }
+        return memo;
+    }
+
+    /**
+     * Obtiene de la cache la plantilla asociada a la clave indicada y le asocia los valores de la búsqueda.
+     *
+     * @param key Clave de la plantilla. Si es null no se consulta la cache.
+     * @return Sentencia y parámetros de la búsqueda o null si la plantilla no se encuentra en la cache.
+     */
+    protected JPQLResult bindTemplate(final String key, final SearchInfo searchInfo) {
+        if (key == null) {
+            return null;
+        }
+        JPQLTemplate template = templateCache.getIfPresent(key);
+        if (template == null) {
+            return null;
+        }
+        return template.bind(searchInfo);
+    }
+
+    /**
+     * Almacena en la cache la plantilla de una sentencia que puede incluir el predicado de paginación mediante keyset.
+     *
+     * @param keyset Indica si la sentencia incluye el predicado del cursor de la búsqueda.
+     * @return El mismo resultado indicado.
+     */
+    protected JPQLResult storeTemplate(final String key, final JPQLResult result, final boolean keyset) {
+        if (key != null) {
+            templateCache.put(key, new JPQLTemplate(result.getQuery(), this, keyset));
+        }
+        return result;
+    }
+
+    /**
+     * Almacena en la cache la sentencia generada como plantilla asociada a la clave indicada.
+     *
+     * @param key Clave de la plantilla. Si es null no se almacena.
+     * @return El mismo resultado indicado.
+     */
+    protected JPQLResult storeTemplate(final String key, final JPQLResult result) {
+        if (key != null) {
+            templateCache.put(key, new JPQLTemplate(result.getQuery(), this));
+        }
+        return result;
+    }
+
+    /**
+     * Genera la clave de la plantilla correspondiente a la búsqueda. La clave refleja la estructura de la búsqueda
+     * (entidades, joins, fetches, criterios y ordenes) pero no los valores con los que se compara, de tal forma que
+     * dos búsquedas que sólo difieren en los valores comparten plantilla.
+     *
+     * @param type Entidad sobre la que se realiza la búsqueda.
+     * @param statement Tipo de sentencia (find, count, ...).
+     * @return Clave de la plantilla o null si la sentencia no se puede cachear.
+     */
+    protected String generateTemplateKey(final Class<?> type, final String statement, final SearchInfo searchInfo) {
+        if (!templateCacheEnabled || parameterNaming != ParameterNaming.POSITIONAL) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder(type.getName());
+        key.append('|').append(statement);
+        key.append('|').append(searchInfo.isDistinct());
+        key.append("|E");
+        for (Entity e : searchInfo.getEntities()) {
+            appendEntityShape(key, e);
+        }
+        key.append("|F");
+        for (FetchJoin f : searchInfo.getFetches()) {
+            appendEntityShape(key, f);
+        }
+        key.append("|W");
+        for (Criteria c : searchInfo.getCriterias()) {
+            if (!appendCriteriaShape(key, c)) {
+                return null;
+            }
+        }
+        key.append("|O");
+        for (OrderBy order : searchInfo.getOrders()) {
+            key.append('(').append(order.getEntity() == null ? null : order.getEntity().getAlias());
+            key.append('.').append(order.getName()).append(' ').append(order.getDirection()).append(')');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Añade a la clave de la plantilla la estructura de la entidad indicada.
+     */
+    private void appendEntityShape(final StringBuilder key, final Entity entity) {
+        key.append('(');
+        if (entity instanceof DomainEntity) {
+            key.append(((DomainEntity) entity).getClase().getName());
+        } else if (entity instanceof Join) {
+            Join join = (Join) entity;
+            key.append(join.getOperator()).append(' ');
+            key.append(join.getEntity() == null ? null : join.getEntity().getAlias());
+            key.append('.').append(join.getName());
+        } else {
+            key.append(entity.getClass().getName());
+        }
+        key.append(' ').append(entity.getAlias()).append(')');
+    }
+
+    /**
+     * Añade a la clave de la plantilla la estructura del criterio indicado.
+     *
+     * @return false si el criterio no es conocido y por tanto la sentencia no se puede cachear.
+     */
+    private boolean appendCriteriaShape(final StringBuilder key, final Criteria criteria) {
+        key.append('(');
+        if (criteria instanceof Conditional) {
+            Conditional conditional = (Conditional) criteria;
+            key.append(conditional.getClass().getSimpleName()).append(' ');
+            key.append(conditional.getEntity() == null ? null : conditional.getEntity().getAlias());
+            key.append('.').append(conditional.getName()).append(' ').append(conditional.getOperator());
+            if (conditional instanceof CaseSensitiveConditional) {
+                key.append(' ').append(((CaseSensitiveConditional) conditional).isCaseSensitive());
+            }
+            if (conditional instanceof InConditional) {
+                // La sentencia sólo varía si la lista tiene 0, 1 o más elementos y según el número de trozos
+                int size = ((InConditional) conditional).getValues().size();
+                key.append(' ').append(size <= 1 ? String.valueOf(size) : "n" + splitList(size).size());
+            } else if (conditional instanceof FieldComparison) {
+                FieldComparison fieldComparison = (FieldComparison) conditional;
+                key.append(' ').append(fieldComparison.getEntity2() == null ? null : fieldComparison.getEntity2().getAlias());
+                key.append('.').append(fieldComparison.getField());
+            }
+        } else if (criteria instanceof NotLogical) {
+            key.append("NOT");
+            if (!appendCriteriaShape(key, ((NotLogical) criteria).getExpresion())) {
+                return false;
+            }
+        } else if (criteria instanceof GroupLogical) {
+            GroupLogical groupLogical = (GroupLogical) criteria;
+            key.append(groupLogical.getOperator());
+            if (groupLogical.getContitionals() != null) {
+                for (Criteria c : groupLogical.getContitionals()) {
+                    if (!appendCriteriaShape(key, c)) {
+                        return false;
+                    }
+                }
+            }
+        } else if (criteria instanceof PersonalCriteria) {
+            PersonalCriteria personalCriteria = (PersonalCriteria) criteria;
+            key.append(personalCriteria.getQuery().length()).append(':').append(personalCriteria.getQuery());
+            for (Entry<String, PersonalCriteria.ReplaceProperty> p : personalCriteria.getProperties().entrySet()) {
+                Entity entity = p.getValue().getReferenceEntity();
+                key.append(' ').append(p.getKey()).append('=');
+                key.append(entity == null ? null : entity.getAlias()).append('.').append(p.getValue().getTargetProperty());
+            }
+            key.append(' ').append(new TreeSet<String>(personalCriteria.getParameters().keySet()));
+        } else {
+            return false;
+        }
+        key.append(')');
+        return true;
+    }
+
+    /**
+     * Extrae los parámetros de los criterios de la búsqueda sin generar la sentencia JPQL. Los parámetros coinciden
+     * con los que se obtendrían al generar la sentencia para la misma búsqueda.
+     *
+     * @param searchInfo Búsqueda de la que se extraen los valores.
+     * @return Parámetros de la búsqueda.
+     */
+    protected Map<String, Serializable> bindParameters(final SearchInfo searchInfo) {
+        return bindParameters(searchInfo, false);
+    }
+
+    /**
+     * Igual que {@link #bindParameters(SearchInfo)}, añadiendo si se indica los valores del cursor de la búsqueda.
+     *
+     * @param keyset Indica si la sentencia incluye el predicado del cursor de la búsqueda.
+     */
+    protected Map<String, Serializable> bindParameters(final SearchInfo searchInfo, final boolean keyset) {
+        Map<String, Serializable> params = new HashMap<String, Serializable>();
+        for (Criteria criteria : searchInfo.getCriterias()) {
+            bindCriteriaParams(criteria, params);
+        }
+        if (keyset) {
+            bindKeysetParams(searchInfo, params);
+        }
+        return params;
+    }
+
+    /**
+     * Recorre el criterio indicado en el mismo orden en el que se genera su cadena JPQL añadiendo sus valores al
+     * conjunto de parámetros.
+     */
+    protected void bindCriteriaParams(final Criteria criteria, final Map<String, Serializable> params) {
+        if (criteria instanceof Conditional) {
+            bindConditionalParams((Conditional) criteria, params);
+        } else if (criteria instanceof NotLogical) {
+            bindCriteriaParams(((NotLogical) criteria).getExpresion(), params);
+        } else if (criteria instanceof GroupLogical) {
+            Collection<Criteria> conditionals = ((GroupLogical) criteria).getContitionals();
+            if (conditionals != null) {
+                for (Criteria c : conditionals) {
+                    bindCriteriaParams(c, params);
+                }
+            }
+        } else if (criteria instanceof PersonalCriteria) {
+            PersonalCriteria personalCriteria = (PersonalCriteria) criteria;
+            bindPersonalCriteriaParams(personalCriteria, resolvePersonalCriteria(personalCriteria), params);
+        }
     }
 
     /**
@@ -242,7 +978,19 @@ public class JPQLGenerator {
      *         los valores con los que tenemos que comparar.
      */
     protected Map<String, Serializable> appendWhereClause (final StringBuilder query, final SearchInfo searchInfo) {
-        Map<String, Serializable> params = new HashMap<String, Serializable>();
+        return appendWhereClause(query, searchInfo, new HashMap<String, Serializable>());
+    }
+
+    /**
+     * Igual que {@link #appendWhereClause(StringBuilder, SearchInfo)}, pero añadiendo los parámetros generados al Map
+     * indicado. Permite componer sentencias cuyos parámetros no provienen sólo de los criterios (por ejemplo el SET de
+     * un UPDATE) sin que los nombres de los parámetros colisionen.
+     *
+     * @param params Conjunto de parámetros de la sentencia (E/S).
+     * @return El mismo Map de parámetros indicado.
+     */
+    protected Map<String, Serializable> appendWhereClause (final StringBuilder query, final SearchInfo searchInfo,
+            final Map<String, Serializable> params) {
         List<Criteria> criterias = searchInfo.getCriterias();
         if (!criterias.isEmpty()) {
             query.append(" WHERE ");
@@ -258,6 +1006,93 @@ public class JPQLGenerator {
         return params;
     }
 
+    /**
+     * Añade a la sentencia el predicado que selecciona los elementos posteriores al cursor de la búsqueda
+     * ({@link SearchInfo#getAfter()}) según los atributos de ordenación ({@link #getSortKeys(SearchInfo)}). Para los
+     * atributos k1..kn se genera la forma expandida de la comparación de tuplas <code>(k1, .., kn) &gt; (v1, .., vn)</code>,
+     * ya que no todas las BD la soportan y cada atributo puede tener una dirección diferente:
+     * <p>
+     * <code>(k1 &gt; :v1) OR (k1 = :v1 AND k2 &gt; :v2) OR ...</code>
+     * <p>
+     * Para los ordenes descendentes se utiliza <code>&lt;</code>. Los atributos de ordenación no deben admitir valores
+     * nulos: la comparación con NULL nunca se cumple, por lo que se omitirían filas. Por eso el cursor no puede
+     * contener valores nulos y DAOImpl sólo genera cursores para atributos que no admiten nulos.
+     *
+     * @param params Conjunto de parámetros de la sentencia (E/S).
+     */
+    protected void appendKeysetClause(final StringBuilder query, final SearchInfo searchInfo,
+            final Map<String, Serializable> params) {
+        if (searchInfo.getAfter() == null) {
+            return;
+        }
+        List<OrderBy> keys = getSortKeys(searchInfo);
+        List<String> varNames = bindKeysetParams(searchInfo, params);
+        query.append(searchInfo.getCriterias().isEmpty() ? " WHERE (" : " AND (");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                query.append(" OR ");
+            }
+            query.append('(');
+            for (int j = 0; j < i; j++) {
+                appendOrderPath(query, keys.get(j));
+                query.append(" = :").append(varNames.get(j)).append(" AND ");
+            }
+            appendOrderPath(query, keys.get(i));
+            query.append(keys.get(i).isAscendente() ? " > :" : " < :").append(varNames.get(i));
+            query.append(')');
+        }
+        query.append(')');
+    }
+
+    /**
+     * Añade al conjunto de parámetros los valores del cursor de la búsqueda.
+     *
+     * @return Nombres de las variables de cada atributo de ordenación.
+     */
+    protected List<String> bindKeysetParams(final SearchInfo searchInfo, final Map<String, Serializable> params) {
+        List<OrderBy> keys = getSortKeys(searchInfo);
+        List<Serializable> values = searchInfo.getAfter().getValues();
+        if (values.size() != keys.size()) {
+            throw new IllegalArgumentException("The cursor has " + values.size() + " values but the search is ordered by "
+                    + keys.size() + " attributes");
+        }
+        List<String> varNames = new ArrayList<String>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (values.get(i) == null) {
+                throw new IllegalArgumentException("The cursor value of " + keys.get(i).getName() + " is null");
+            }
+            varNames.add(bindParam("after_" + keys.get(i).getName(), values.get(i), values.get(i), params));
+        }
+        return varNames;
+    }
+
+    /**
+     * Devuelve los atributos por los que se ordenan los resultados de la búsqueda: los ordenes indicados seguidos del
+     * identificador si éste no se encuentra entre ellos. Coinciden con los generados en
+     * {@link #generateOrderClause(SearchInfo)}.
+     */
+    protected List<OrderBy> getSortKeys(final SearchInfo searchInfo) {
+        List<OrderBy> keys = new ArrayList<OrderBy>(searchInfo.getOrders());
+        boolean orderedById = false;
+        for (OrderBy order : keys) {
+            if ("id".equalsIgnoreCase(order.getName())) {
+                orderedById = true;
+            }
+        }
+        if (!orderedById) {
+            keys.add(OrderBy.asc("id"));
+        }
+        return keys;
+    }
+
+    /**
+     * Añade la ruta JPQL del atributo de ordenación indicado.
+     */
+    private void appendOrderPath(final StringBuilder query, final OrderBy order) {
+        query.append(order.getEntity() == null ? Criteria.DEFAULT_ENTITY_ALIAS : order.getEntity().getAlias());
+        query.append('.').append(order.getName());
+    }
+
     /**
      * Genera una cadena JPQL asociada a los diferentes criterios de ordenación establecidos en la búsqueda. Esta cadena
      * generada corresponde a la parte del ORDER BY de una consulta a BD.
@@ -360,58 +1195,44 @@ public class JPQLGenerator {
         result.append(" ");
         result.append(conditional.getOperator().getOperator());
         result.append(" ");
+        List<String> varNames = bindConditionalParams(conditional, params);
         if (conditional instanceof BetweenConditional) {
-            BetweenConditional betweenConditional = (BetweenConditional) conditional;
-            StringBuilder varName = generateVarName(betweenConditional.getName(), betweenConditional.getValue1());
             result.append(":");
-            result.append(varName);
-            params.put(varName.toString(), betweenConditional.getValue1());
+            result.append(varNames.get(0));
             result.append(" AND ");
-            StringBuilder varName2 = generateVarName(betweenConditional.getName(), betweenConditional.getValue2());
             result.append(":");
-            result.append(varName2);
-            params.put(varName2.toString(), betweenConditional.getValue2());
+            result.append(varNames.get(1));
         } else if (conditional instanceof InConditional) {
             InConditional inConditional = (InConditional) conditional;
-            StringBuilder varName = generateVarName(conditional.getName(), inConditional.getValues());
             if (inConditional.getValues().size() == 1) {
                 // En el caso de sólo 1 elemento creamos un EQ
                 result.replace(result.lastIndexOf(ConditionalOperator.IN.getOperator()), result.length() - 1,
                         ConditionalOperator.EQ.getOperator());
                 result.append(":");
-                result.append(varName);
-                if (inConditional.isCaseSensitive()) {
-                    params.put(varName.toString(), inConditional.getValues().get(0));
-                } else {
-                    params.put(varName.toString(), inConditional.getValues().get(0).toString().toUpperCase());
-                }
-            } else if (inConditional.getValues().size() > 1) {
+                result.append(varNames.get(0));
+            } else if (varNames.size() == 1) {
                 // Añadimos paréntesis aunque no lo diga la especificación de JPA 2.
                 // Ver incidencia : https://hibernate.onjira.com/browse/HHH-7407
                 result.append("(");
                 result.append(":");
-                result.append(varName);
+                result.append(varNames.get(0));
                 result.append(")");
-                if (inConditional.isCaseSensitive()) {
-                    params.put(varName.toString(), (Serializable) inConditional.getValues());
-                } else {
-                    ArrayList<String> upperList = new ArrayList<String>(inConditional.getValues().size());
-                    for (Serializable e : inConditional.getValues()) {
-                        upperList.add(e.toString().toUpperCase());
+            } else if (varNames.size() > 1) {
+                // La lista supera el tamaño máximo: generamos un IN por cada trozo unidos mediante OR
+                String prefix = result.toString();
+                result.setLength(0);
+                result.append("(");
+                for (Iterator<String> it = varNames.iterator(); it.hasNext();) {
+                    result.append(prefix).append("(:").append(it.next()).append(")");
+                    if (it.hasNext()) {
+                        result.append(" OR ");
                     }
-                    params.put(varName.toString(), upperList);
                 }
+                result.append(")");
             }
         } else if (conditional instanceof ValueComparison) {
-            ValueComparison valueComparison = (ValueComparison) conditional;
-            StringBuilder varName = generateVarName(valueComparison.getName(), valueComparison.getValue());
             result.append(":");
-            result.append(varName);
-            if (valueComparison.isCaseSensitive()) {
-                params.put(varName.toString(), valueComparison.getValue());
-            } else {
-                params.put(varName.toString(), valueComparison.getValue().toString().toUpperCase());
-            }
+            result.append(varNames.get(0));
         } else if (conditional instanceof FieldComparison) {
             FieldComparison fieldComparison = (FieldComparison) conditional;
             String comparison;
@@ -427,10 +1248,71 @@ public class JPQLGenerator {
                 result.append("UPPER(").append(comparison).append(")");
             }
         } else if (conditional instanceof LikeConditional) {
-            LikeConditional likeConditional = (LikeConditional) conditional;
-            StringBuilder varName = generateVarName(likeConditional.getName(), likeConditional.getValue());
             result.append(":");
-            result.append(varName);
+            result.append(varNames.get(0));
+        }
+        return result;
+    }
+
+    /**
+     * Añade al conjunto de parámetros los valores de la condición indicada, aplicando las transformaciones necesarias
+     * (mayúsculas, comodines, ...). Se utiliza tanto al generar la cadena JPQL como al extraer los valores para una
+     * plantilla cacheada, de forma que ambos caminos generan exactamente los mismos parámetros.
+     *
+     * @param conditional Criterio de tipo condicional del que se extraen los valores.
+     * @param params Conjunto de parámetros que van a ser utilizados en la Query (E/S).
+     * @return Nombres de las variables generadas, en el mismo orden en el que aparecen en la cadena JPQL.
+     */
+    protected List<String> bindConditionalParams (final Conditional conditional, final Map<String, Serializable> params) {
+        List<String> varNames = new ArrayList<String>(2);
+        if (conditional instanceof BetweenConditional) {
+            BetweenConditional betweenConditional = (BetweenConditional) conditional;
+            varNames.add(bindParam(betweenConditional.getName(), betweenConditional.getValue1(),
+                    betweenConditional.getValue1(), params));
+            varNames.add(bindParam(betweenConditional.getName(), betweenConditional.getValue2(),
+                    betweenConditional.getValue2(), params));
+        } else if (conditional instanceof InConditional) {
+            InConditional inConditional = (InConditional) conditional;
+            List<? extends Serializable> values = inConditional.getValues();
+            if (values.size() == 1) {
+                Serializable value = values.get(0);
+                if (!inConditional.isCaseSensitive()) {
+                    value = value.toString().toUpperCase();
+                }
+                varNames.add(bindParam(conditional.getName(), values, value, params));
+            } else if (values.size() > 1) {
+                List<? extends Serializable> list = values;
+                if (!inConditional.isCaseSensitive()) {
+                    ArrayList<String> upperList = new ArrayList<String>(values.size());
+                    for (Serializable e : values) {
+                        upperList.add(e.toString().toUpperCase());
+                    }
+                    list = upperList;
+                }
+                List<int[]> chunks = splitList(list.size());
+                for (int[] chunk : chunks) {
+                    Serializable value;
+                    if (chunks.size() == 1) {
+                        value = (Serializable) list;
+                    } else {
+                        value = new ArrayList<Serializable>(list.subList(chunk[0], chunk[1]));
+                    }
+                    if (inListPadding) {
+                        value = (Serializable) DaoUtils.padToPowerOfTwo((Collection<?>) value);
+                    }
+                    // Con ParameterNaming.VALUE_HASH cada trozo se nombra a partir de sus propios valores
+                    varNames.add(bindParam(conditional.getName(), chunks.size() == 1 ? values : value, value, params));
+                }
+            }
+        } else if (conditional instanceof ValueComparison) {
+            ValueComparison valueComparison = (ValueComparison) conditional;
+            Serializable value = valueComparison.getValue();
+            if (!valueComparison.isCaseSensitive()) {
+                value = value.toString().toUpperCase();
+            }
+            varNames.add(bindParam(valueComparison.getName(), valueComparison.getValue(), value, params));
+        } else if (conditional instanceof LikeConditional) {
+            LikeConditional likeConditional = (LikeConditional) conditional;
             String value = likeConditional.getValue();
             if (!likeConditional.isCaseSensitive()) {
                 value = value.toUpperCase();
@@ -441,9 +1323,47 @@ public class JPQLGenerator {
             if (likeConditional.isRightWildcard()) {
                 value = value + "%";
             }
-            params.put(varName.toString(), value);
+            varNames.add(bindParam(likeConditional.getName(), likeConditional.getValue(), value, params));
         }
-        return result;
+        return varNames;
+    }
+
+    /**
+     * Divide una lista del tamaño indicado en trozos que no superen el tamaño máximo de un IN. Si se rellenan las
+     * listas hasta potencias de dos, el tamaño de los trozos es la mayor potencia de dos que no supera el máximo, de
+     * forma que el relleno nunca supera el máximo.
+     *
+     * @param size Tamaño de la lista.
+     * @return Índices inicial (incluido) y final (excluido) de cada trozo.
+     */
+    protected List<int[]> splitList(final int size) {
+        int chunkSize = maxInListSize;
+        if (chunkSize > 0 && inListPadding) {
+            chunkSize = Integer.highestOneBit(chunkSize);
+        }
+        if (chunkSize <= 0 || size <= chunkSize) {
+            return Collections.singletonList(new int[] {0, size});
+        }
+        List<int[]> chunks = new ArrayList<int[]>(size / chunkSize + 1);
+        for (int from = 0; from < size; from += chunkSize) {
+            chunks.add(new int[] {from, Math.min(from + chunkSize, size)});
+        }
+        return chunks;
+    }
+
+    /**
+     * Genera el nombre de la variable y añade el valor al conjunto de parámetros.
+     *
+     * @param field Nombre del atributo.
+     * @param original Valor original del criterio, utilizado para nombrar la variable.
+     * @param value Valor que se pasará a la Query.
+     * @return Nombre de la variable generada.
+     */
+    private String bindParam (final String field, final Object original, final Serializable value,
+            final Map<String, Serializable> params) {
+        String varName = generateVarName(field, original, params).toString();
+        params.put(varName, value);
+        return varName;
     }
 
     /**
@@ -453,6 +1373,15 @@ public class JPQLGenerator {
      * @return Cadena JPQL correspondiente al criterio.
      */
     protected StringBuilder generatePersonalCriteriaClause (final PersonalCriteria criteria, final Map<String, Serializable> params) {
+        String query = resolvePersonalCriteria(criteria);
+        bindPersonalCriteriaParams(criteria, query, params);
+        return new StringBuilder(query);
+    }
+
+    /**
+     * Sustituye en la sentencia del criterio personalizado las propiedades definidas por su atributo correspondiente.
+     */
+    protected String resolvePersonalCriteria (final PersonalCriteria criteria) {
         String query = criteria.getQuery();
         for (Entry<String, PersonalCriteria.ReplaceProperty> p : criteria.getProperties().entrySet()) {
             String nuevo;
@@ -465,6 +1394,16 @@ public class JPQLGenerator {
             }
             query = query.replaceAll(p.getKey(), nuevo);
         }
+        return query;
+    }
+
+    /**
+     * Añade al conjunto de parámetros aquellos parámetros del criterio personalizado que son utilizados en la sentencia.
+     *
+     * @param query Sentencia del criterio una vez sustituidas las propiedades.
+     */
+    protected void bindPersonalCriteriaParams (final PersonalCriteria criteria, final String query,
+            final Map<String, Serializable> params) {
         for (Entry<String, Serializable> p : criteria.getParameters().entrySet()) {
             if (query.contains(":" + p.getKey())) {
                 params.put(p.getKey(), p.getValue());
@@ -472,7 +1411,6 @@ public class JPQLGenerator {
                 logger.warn("Se pasa como parámetro una variable que no es utilizada en el criterio.");
             }
         }
-        return new StringBuilder(query);
     }
 
     /**
@@ -514,9 +1452,29 @@ public class JPQLGenerator {
         return clausule;
     }
 
+    /**
+     * Genera el nombre de variable para el atributo indicado según la estrategia de nombrado establecida
+     * ({@link #getParameterNaming()}).
+     *
+     * @param field Nombre del atributo
+     * @param value Valor que tiene el atributo y con el cual vamos a comparar.
+     * @param params Parámetros generados hasta el momento para la sentencia. Su tamaño determina la posición del nuevo
+     *            parámetro.
+     * @return Nombre generado para la variable.
+     */
+    protected StringBuilder generateVarName(final String field, final Object value, final Map<String, Serializable> params) {
+        if (parameterNaming == ParameterNaming.VALUE_HASH) {
+            return generateVarName(field, value);
+        }
+        StringBuilder varName = new StringBuilder(field.replace(".", "_"));
+        varName.append("_");
+        varName.append(params.size());
+        return varName;
+    }
+
     /**
      * Genera un nombre de variable para el atributo indicado y el valor con el que vamos a comparar. Para ello tenemos
-     * en cuenta el hashCode del valor.
+     * en cuenta el hashCode del valor ({@link ParameterNaming#VALUE_HASH}).
      * 
      * @param field Nombre del atributo
      * @param value Valor que tiene el atributo y con el cual vamos a comparar.
@@ -531,4 +1489,152 @@ public class JPQLGenerator {
         return varName;
     }
 
+    /**
+     * @return Estrategia utilizada para nombrar los parámetros de las sentencias generadas.
+     */
+    public ParameterNaming getParameterNaming() {
+        return parameterNaming;
+    }
+
+    /**
+     * Establece la estrategia utilizada para nombrar los parámetros de las sentencias generadas.
+     *
+     * @param parameterNaming Estrategia de nombrado de parámetros.
+     */
+    public void setParameterNaming(final ParameterNaming parameterNaming) {
+        this.parameterNaming = parameterNaming;
+        frozenResults.invalidateAll();
+    }
+
+    /**
+     * @return Si se cachean las sentencias generadas en función de la estructura de la búsqueda.
+     */
+    public boolean isTemplateCacheEnabled() {
+        return templateCacheEnabled;
+    }
+
+    /**
+     * Establece si se cachean las sentencias generadas en función de la estructura de la búsqueda.
+     */
+    public void setTemplateCacheEnabled(final boolean templateCacheEnabled) {
+        this.templateCacheEnabled = templateCacheEnabled;
+    }
+
+    /**
+     * @return Si las listas de los IN se rellenan hasta el siguiente tamaño potencia de dos.
+     */
+    public boolean isInListPadding() {
+        return inListPadding;
+    }
+
+    /**
+     * Establece si las listas de los IN se rellenan hasta el siguiente tamaño potencia de dos repitiendo el último
+     * valor. Hibernate expande cada lista en tantos parámetros SQL como elementos tenga, por lo que sin relleno cada
+     * tamaño diferente genera una sentencia SQL diferente, tanto para la QueryPlanCache de Hibernate como para la
+     * cache de sentencias de la BD.
+     */
+    public void setInListPadding(final boolean inListPadding) {
+        this.inListPadding = inListPadding;
+        frozenResults.invalidateAll();
+    }
+
+    /**
+     * @return Número máximo de valores de cada IN.
+     */
+    public int getMaxInListSize() {
+        return maxInListSize;
+    }
+
+    /**
+     * Establece el número máximo de valores de cada IN. Las listas de mayor tamaño se dividen en varios IN del tamaño
+     * máximo unidos mediante OR dentro de la misma sentencia. Si es menor o igual que 0 las listas no se dividen.
+     */
+    public void setMaxInListSize(final int maxInListSize) {
+        this.maxInListSize = maxInListSize;
+        frozenResults.invalidateAll();
+    }
+
+    /**
+     * @return Si los criterios de las búsquedas se optimizan antes de generar las sentencias.
+     */
+    public boolean isCriteriaOptimization() {
+        return criteriaOptimization;
+    }
+
+    /**
+     * Establece si los criterios de las búsquedas se optimizan antes de generar las sentencias (ver
+     * {@link CriteriaOptimizer}): se simplifican los grupos, los NOT y los OR de igualdades, y las búsquedas cuyos
+     * criterios no pueden cumplirse nunca no acceden a la BD.
+     */
+    public void setCriteriaOptimization(final boolean criteriaOptimization) {
+        this.criteriaOptimization = criteriaOptimization;
+        frozenResults.invalidateAll();
+    }
+
+    /**
+     * Establece el número máximo de plantillas que se mantienen en cache. Las plantillas cacheadas hasta el momento se
+     * descartan.
+     */
+    public void setTemplateCacheSize(final int size) {
+        this.templateCache = buildTemplateCache(size);
+    }
+
+    /**
+     * @return Estadísticas de la cache de plantillas: aciertos ({@link CacheStats#hitCount()}), fallos
+     *         ({@link CacheStats#missCount()}) y plantillas descartadas ({@link CacheStats#evictionCount()}).
+     */
+    public CacheStats getTemplateCacheStats() {
+        return templateCache.stats();
+    }
+
+    /**
+     * Descarta todas las plantillas cacheadas.
+     */
+    public void clearTemplateCache() {
+        templateCache.invalidateAll();
+    }
+
+    /**
+     * Crea una cache de plantillas concurrente y limitada al tamaño indicado.
+     */
+    private static Cache<String, JPQLTemplate> buildTemplateCache(final int size) {
+        return CacheBuilder.newBuilder().maximumSize(size).recordStats().build();
+    }
+
+    /**
+     * Resultados memorizados de una búsqueda congelada: la optimización de sus criterios y sus sentencias.
+     */
+    private static final class Memo {
+
+        /**
+         * Optimización de los criterios o null si aún no se han optimizado.
+         */
+        private volatile Optimization optimization;
+
+        private final ConcurrentMap<List<Object>, JPQLResult> results =
+                new ConcurrentHashMap<List<Object>, JPQLResult>();
+    }
+
+    /**
+     * Resultado de optimizar los criterios de una búsqueda.
+     */
+    private static final class Optimization {
+
+        /**
+         * Búsqueda con los criterios optimizados o null si la optimización no la modifica. No se guarda la propia
+         * búsqueda para que la cache de búsquedas congeladas, cuyas claves son débiles, no la retenga.
+         */
+        private final SearchInfo optimized;
+
+        /**
+         * Cierto si los criterios no pueden cumplirse nunca.
+         */
+        private final boolean unsatisfiable;
+
+        private Optimization(final SearchInfo optimized, final boolean unsatisfiable) {
+            this.optimized = optimized;
+            this.unsatisfiable = unsatisfiable;
+        }
+    }
+
 }
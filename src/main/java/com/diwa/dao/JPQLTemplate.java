@@ -0,0 +1,49 @@
+package com.diwa.dao;
+
+import com.diwa.dao.shared.search.SearchInfo;
+
+/**
+ * Plantilla JPQL cacheada por {@link JPQLGenerator}. Contiene la sentencia ya generada para una estructura de búsqueda
+ * (entidad, joins, criterios y ordenes, sin tener en cuenta los valores) y permite obtener el
+ * <code>JPQLResult</code> de cualquier <code>SearchInfo</code> con esa misma estructura extrayendo únicamente los
+ * valores de sus criterios.
+ */
+public class JPQLTemplate {
+
+    private final String query;
+
+    private final JPQLGenerator generator;
+
+    /**
+     * Indica si la sentencia incluye el predicado del cursor de la búsqueda.
+     */
+    private final boolean keyset;
+
+    JPQLTemplate(final String query, final JPQLGenerator generator) {
+        this(query, generator, false);
+    }
+
+    JPQLTemplate(final String query, final JPQLGenerator generator, final boolean keyset) {
+        this.query = query;
+        this.generator = generator;
+        this.keyset = keyset;
+    }
+
+    /**
+     * @return Sentencia JPQL de la plantilla.
+     */
+    public String getQuery () {
+        return query;
+    }
+
+    /**
+     * Asocia a la plantilla los valores de los criterios del <code>SearchInfo</code> indicado. El
+     * <code>SearchInfo</code> ha de tener la misma estructura que el utilizado para generar la plantilla.
+     *
+     * @param searchInfo Búsqueda de la que se extraen los valores.
+     * @return Sentencia JPQL junto a sus parámetros.
+     */
+    public JPQLResult bind (final SearchInfo searchInfo) {
+        return new JPQLResult(query, generator.bindParameters(searchInfo, keyset));
+    }
+}
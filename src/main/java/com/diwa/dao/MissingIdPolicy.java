@@ -0,0 +1,20 @@
+package com.diwa.dao;
+
+/**
+ * Comportamiento de {@link DAO#readAll(java.util.Collection, MissingIdPolicy, com.diwa.dao.shared.entity.FetchJoin...)}
+ * cuando alguno de los identificadores indicados no corresponde a ninguna entidad de la BD.
+ */
+public enum MissingIdPolicy {
+    /**
+     * Los identificadores que no existen se omiten del resultado.
+     */
+    SKIP,
+    /**
+     * Se devuelve null en la posición de los identificadores que no existen.
+     */
+    NULL,
+    /**
+     * Se lanza una {@link org.hibernate.ObjectNotFoundException} con el primer identificador que no existe.
+     */
+    FAIL
+}
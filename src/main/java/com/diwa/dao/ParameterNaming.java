@@ -0,0 +1,22 @@
+package com.diwa.dao;
+
+/**
+ * Estrategias disponibles para nombrar los parámetros de las sentencias JPQL generadas por {@link JPQLGenerator}.
+ */
+public enum ParameterNaming {
+    /**
+     * El nombre del parámetro se compone a partir del atributo y del hashCode del valor: <code>atributo_hash</code>.
+     * <p>
+     * Cada valor diferente genera una sentencia JPQL diferente, por lo que Hibernate no puede reutilizar el plan de la
+     * consulta. Además, dos valores con el mismo hashCode sobre el mismo atributo comparten nombre de parámetro.
+     */
+    VALUE_HASH,
+    /**
+     * El nombre del parámetro se compone a partir del atributo y de la posición del parámetro en la sentencia:
+     * <code>atributo_posicion</code>.
+     * <p>
+     * La misma estructura de criterios genera siempre la misma sentencia JPQL, independientemente de los valores, de
+     * tal forma que Hibernate reutiliza el plan de la consulta almacenado en su QueryPlanCache.
+     */
+    POSITIONAL
+}
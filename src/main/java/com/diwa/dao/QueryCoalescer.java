@@ -0,0 +1,149 @@
+package com.diwa.dao;
+
+import com.google.common.base.Objects;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa las búsquedas idénticas que se ejecutan a la vez (ver {@link DAOImpl#setQueryCoalescer(QueryCoalescer)}).
+ * Mientras una búsqueda está en curso, el resto de llamadas con la misma entidad y la misma clave no la ejecutan de
+ * nuevo, sino que esperan a que termine y obtienen su mismo resultado o su misma excepción.
+ * <p>
+ * Sólo se agrupan las llamadas simultáneas: el resultado no se almacena una vez terminada la búsqueda (ver
+ * {@link QueryResultCache} para ello). Puede compartirse entre varios DAO.
+ */
+public class QueryCoalescer {
+
+    /**
+     * Búsquedas en curso.
+     */
+    private final ConcurrentMap<Key, CompletableFuture<Object>> inFlight =
+            new ConcurrentHashMap<Key, CompletableFuture<Object>>();
+
+    private final ConcurrentMap<Class<?>, Counters> counters = new ConcurrentHashMap<Class<?>, Counters>();
+
+    /**
+     * Devuelve el resultado de la búsqueda en curso con la misma entidad y clave o, si no hay ninguna, ejecuta el loader
+     * en el thread actual.
+     *
+     * @param type Entidad de la búsqueda.
+     * @param key Clave de la búsqueda, que ha de ser inmutable.
+     * @param loader Ejecuta la búsqueda. Su resultado se comparte con las llamadas que se agrupan con ella, por lo que
+     *            no ha de contener objetos de la sesión del thread actual que éstas puedan modificar.
+     * @return Resultado de la búsqueda.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(final Class<?> type, final Object key, final Supplier<V> loader) {
+        Key callKey = new Key(type, key);
+        CompletableFuture<Object> call = new CompletableFuture<Object>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(callKey, call);
+        if (running != null) {
+            countersOf(type).coalesced.incrementAndGet();
+            try {
+                return (V) running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                } else if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw e;
+            }
+        }
+        countersOf(type).executions.incrementAndGet();
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(callKey, call);
+            call.completeExceptionally(e);
+            throw e;
+        }
+        // Las llamadas posteriores ejecutan de nuevo la búsqueda
+        inFlight.remove(callKey, call);
+        call.complete(value);
+        return value;
+    }
+
+    /**
+     * @return Número de búsquedas en curso.
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return Estadísticas de cada entidad.
+     */
+    public Map<Class<?>, QueryCoalescerStatistics> getStatistics() {
+        Map<Class<?>, QueryCoalescerStatistics> statistics = new HashMap<Class<?>, QueryCoalescerStatistics>();
+        for (Map.Entry<Class<?>, Counters> entry : counters.entrySet()) {
+            statistics.put(entry.getKey(), new QueryCoalescerStatistics(entry.getValue().executions.get(),
+                    entry.getValue().coalesced.get()));
+        }
+        return statistics;
+    }
+
+    private Counters countersOf(final Class<?> type) {
+        Counters typeCounters = counters.get(type);
+        if (typeCounters == null) {
+            Counters created = new Counters();
+            typeCounters = counters.putIfAbsent(type, created);
+            if (typeCounters == null) {
+                typeCounters = created;
+            }
+        }
+        return typeCounters;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryCoalescer[inFlight=" + getInFlightCount() + ", " + getStatistics() + "]";
+    }
+
+    /**
+     * Contadores de una entidad.
+     */
+    private static final class Counters {
+
+        private final AtomicLong executions = new AtomicLong();
+
+        private final AtomicLong coalesced = new AtomicLong();
+    }
+
+    /**
+     * Clave de una búsqueda en curso: entidad y clave de la búsqueda.
+     */
+    private static final class Key {
+
+        private final Class<?> type;
+
+        private final Object key;
+
+        private Key(final Class<?> type, final Object key) {
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(type, key);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return type.equals(other.type) && key.equals(other.key);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.diwa.dao;
+
+/**
+ * Estadísticas de una entidad en el {@link QueryCoalescer}.
+ */
+public final class QueryCoalescerStatistics {
+
+    private final long executionCount;
+
+    private final long coalescedCount;
+
+    /**
+     * Constructor.
+     *
+     * @param executionCount Número de búsquedas ejecutadas.
+     * @param coalescedCount Número de llamadas que han obtenido el resultado de una búsqueda en curso sin ejecutarla.
+     */
+    public QueryCoalescerStatistics(final long executionCount, final long coalescedCount) {
+        this.executionCount = executionCount;
+        this.coalescedCount = coalescedCount;
+    }
+
+    /**
+     * @return Número de búsquedas ejecutadas.
+     */
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    /**
+     * @return Número de llamadas que han obtenido el resultado de una búsqueda en curso sin ejecutarla.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return Proporción de llamadas que no han ejecutado la búsqueda.
+     */
+    public double getCoalescedRate() {
+        long total = executionCount + coalescedCount;
+        return total == 0 ? 0 : (double) coalescedCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[executions=%d, coalesced=%d, coalescedRate=%.2f]", executionCount, coalescedCount,
+                getCoalescedRate());
+    }
+}
@@ -0,0 +1,45 @@
+package com.diwa.dao;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Cache de los resultados de las búsquedas de los DAO (ver {@link DAOImpl#setQueryResultCache(QueryResultCache)}).
+ * Cada entrada pertenece a una entidad y los DAO que comparten la cache invalidan las entradas de su entidad cada vez
+ * que la modifican.
+ * <p>
+ * Los resultados almacenados se comparten entre todas las llamadas, por lo que no deben modificarse. Los DAO no
+ * almacenan entidades sino sus identificadores, y cada llamada carga las entidades en su propia sesión (ver
+ * {@link DAOImpl#toShared(Object)}).
+ */
+public interface QueryResultCache {
+
+    /**
+     * Devuelve el valor almacenado para la clave o, si no está en la cache, lo obtiene mediante el loader y lo
+     * almacena. Si varios threads solicitan a la vez una clave que no está en la cache, sólo uno de ellos ejecuta el
+     * loader y el resto esperan su resultado.
+     *
+     * @param type Entidad a la que pertenece la entrada.
+     * @param key Clave de la entrada, que ha de ser inmutable.
+     * @param loader Obtiene el valor en el thread actual.
+     * @param backgroundLoader Obtiene el valor desde otro thread, por lo que no puede utilizar la sesión en curso. Se
+     *            utiliza para recalcular en segundo plano las entradas que van a caducar. Puede ser null.
+     * @return Valor almacenado u obtenido.
+     */
+    <V> V get(Class<?> type, Object key, Supplier<V> loader, Supplier<V> backgroundLoader);
+
+    /**
+     * Invalida las entradas de la entidad indicada y de las entidades de su jerarquía.
+     */
+    void invalidate(Class<?> type);
+
+    /**
+     * Elimina todas las entradas.
+     */
+    void invalidateAll();
+
+    /**
+     * @return Estadísticas de cada entidad.
+     */
+    Map<Class<?>, QueryResultCacheStatistics> getStatistics();
+}
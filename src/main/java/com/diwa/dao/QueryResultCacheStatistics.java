@@ -0,0 +1,73 @@
+package com.diwa.dao;
+
+/**
+ * Estadísticas de una entidad en la {@link QueryResultCache}.
+ */
+public final class QueryResultCacheStatistics {
+
+    private final long hitCount;
+
+    private final long missCount;
+
+    private final long evictionCount;
+
+    private final long refreshCount;
+
+    /**
+     * Constructor.
+     *
+     * @param hitCount Número de búsquedas servidas desde la cache.
+     * @param missCount Número de búsquedas que no estaban en la cache.
+     * @param evictionCount Número de entradas descartadas por falta de espacio.
+     * @param refreshCount Número de entradas recalculadas en segundo plano antes de caducar.
+     */
+    public QueryResultCacheStatistics(final long hitCount, final long missCount, final long evictionCount,
+            final long refreshCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.refreshCount = refreshCount;
+    }
+
+    /**
+     * @return Número de búsquedas servidas desde la cache.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return Número de búsquedas que no estaban en la cache.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return Número de entradas descartadas por falta de espacio.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return Número de entradas recalculadas en segundo plano antes de caducar.
+     */
+    public long getRefreshCount() {
+        return refreshCount;
+    }
+
+    /**
+     * @return Proporción de búsquedas servidas desde la cache.
+     */
+    public double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[hits=%d, misses=%d, evictions=%d, refreshes=%d, hitRate=%.2f]", hitCount, missCount,
+                evictionCount, refreshCount, getHitRate());
+    }
+}
@@ -0,0 +1,16 @@
+package com.diwa.dao;
+
+/**
+ * Comportamiento de {@link DAO#parallelScan(com.diwa.dao.shared.search.SearchInfo, int, java.util.function.Consumer)}
+ * cuando falla el recorrido de alguna de las particiones.
+ */
+public enum ScanFailurePolicy {
+    /**
+     * El resto de particiones se detienen tras procesar el bloque en curso.
+     */
+    FAIL_FAST,
+    /**
+     * El resto de particiones se recorren hasta el final.
+     */
+    CONTINUE
+}
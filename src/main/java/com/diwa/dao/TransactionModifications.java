@@ -0,0 +1,102 @@
+package com.diwa.dao;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Entidades modificadas por los DAO en la transacción de Spring en curso. Hasta que la transacción termina sus cambios
+ * sólo son visibles desde su sesión, por lo que las búsquedas de estas entidades no utilizan la cache de resultados
+ * ni se agrupan con las de otros threads (ver {@link DAOImpl#isResultCacheable(com.diwa.dao.shared.search.SearchInfo)}
+ * y {@link DAOImpl#isCoalesced(com.diwa.dao.shared.search.SearchInfo)}). Al terminar la transacción se invalidan de
+ * nuevo sus entradas en la cache de resultados, ya que otros threads han podido almacenar resultados anteriores a la
+ * confirmación de los cambios.
+ */
+final class TransactionModifications {
+
+    /**
+     * Clave del recurso de la transacción: caches de resultados de cada entidad modificada.
+     */
+    private static final Object RESOURCE = TransactionModifications.class;
+
+    private TransactionModifications() {
+    }
+
+    /**
+     * Registra la modificación de la entidad en la transacción en curso. Si no hay transacción no hace nada.
+     *
+     * @param cache Cache de resultados que se invalida al terminar la transacción. Puede ser null.
+     */
+    static void register(final Class<?> type, final QueryResultCache cache) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        Map<Class<?>, Set<QueryResultCache>> modified = getModified();
+        Set<QueryResultCache> caches = modified.get(type);
+        if (caches == null) {
+            caches = new HashSet<QueryResultCache>();
+            modified.put(type, caches);
+        }
+        if (cache != null) {
+            caches.add(cache);
+        }
+    }
+
+    /**
+     * Indica si la transacción en curso ha modificado la entidad o alguna de las entidades de su jerarquía.
+     */
+    @SuppressWarnings("unchecked")
+    static boolean isModified(final Class<?> type) {
+        Map<Class<?>, Set<QueryResultCache>> modified =
+                (Map<Class<?>, Set<QueryResultCache>>) TransactionSynchronizationManager.getResource(RESOURCE);
+        if (modified != null) {
+            for (Class<?> modifiedType : modified.keySet()) {
+                if (modifiedType.isAssignableFrom(type) || type.isAssignableFrom(modifiedType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Devuelve las entidades modificadas en la transacción en curso. La primera vez las asocia a la transacción y
+     * registra la sincronización que invalida sus caches al terminar.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Class<?>, Set<QueryResultCache>> getModified() {
+        Map<Class<?>, Set<QueryResultCache>> modified =
+                (Map<Class<?>, Set<QueryResultCache>>) TransactionSynchronizationManager.getResource(RESOURCE);
+        if (modified == null) {
+            final Map<Class<?>, Set<QueryResultCache>> types = new HashMap<Class<?>, Set<QueryResultCache>>();
+            TransactionSynchronizationManager.bindResource(RESOURCE, types);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void suspend() {
+                    TransactionSynchronizationManager.unbindResource(RESOURCE);
+                }
+
+                @Override
+                public void resume() {
+                    TransactionSynchronizationManager.bindResource(RESOURCE, types);
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(RESOURCE);
+                    for (Map.Entry<Class<?>, Set<QueryResultCache>> entry : types.entrySet()) {
+                        for (QueryResultCache cache : entry.getValue()) {
+                            cache.invalidate(entry.getKey());
+                        }
+                    }
+                }
+            });
+            modified = types;
+        }
+        return modified;
+    }
+}
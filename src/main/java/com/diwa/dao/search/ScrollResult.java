@@ -2,18 +2,43 @@ package com.diwa.dao.search;
 
 import org.hibernate.HibernateException;
 import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * Wrapper de la clase ScrollResult. Facilita la conversión de tipos y la obtención de los datos.
+ * <p>
+ * Permite recorrer los resultados mediante un bucle <code>for</code> ({@link #iterator()}) o por bloques
+ * ({@link #nextBatch(int, boolean)}), y cerrarlos mediante try-with-resources.
  * 
- * @param <T> Clase de los elementos que componen el listado
+ * @param <T> Clase de los elementos que componen el listado. Si cada fila tiene varias columnas es
+ *            <code>Object[]</code>.
  */
-public class ScrollResult<T> {
+public class ScrollResult<T> implements Iterable<T>, AutoCloseable {
     /**
      * Entidad envuelta. Delegamos en ella
      */
     private ScrollableResults entity;
 
+    /**
+     * Sesión en la que se ejecuta la consulta. Si es null no se pueden desasociar las entidades de la sesión.
+     */
+    private Session session;
+
+    /**
+     * Indica si la fila actual del cursor ya ha sido leída por el iterador.
+     */
+    private boolean consumed = true;
+
+    /**
+     * Indica si el cursor ha llegado al final.
+     */
+    private boolean exhausted = false;
+
     /**
      * Constructor.
      * 
@@ -23,6 +48,18 @@ public class ScrollResult<T> {
         entity = e;
     }
 
+    /**
+     * Constructor.
+     * 
+     * @param e Elementos resultantes de realizar la búsqueda en BD
+     * @param session Sesión en la que se ejecuta la consulta, de la que se desasocian las entidades en
+     *            {@link #nextBatch(int, boolean)}.
+     */
+    public ScrollResult(final ScrollableResults e, final Session session) {
+        entity = e;
+        this.session = session;
+    }
+
     /**
      * @return
      * @throws HibernateException
@@ -112,7 +149,9 @@ public class ScrollResult<T> {
     }
 
     /**
-     * @param i
+     * Devuelve la primera columna de la fila actual, también si la fila tiene varias columnas. Para obtener todas
+     * las columnas se utiliza {@link #getRow()}.
+     * 
      * @return
      * @throws HibernateException
      * @see org.hibernate.ScrollableResults#get(int)
@@ -122,6 +161,110 @@ public class ScrollResult<T> {
         return (T) entity.get(0);
     }
 
+    /**
+     * @return Todas las columnas de la fila actual.
+     * @throws HibernateException
+     * @see org.hibernate.ScrollableResults#get()
+     */
+    public Object[] getRow() throws HibernateException {
+        return entity.get();
+    }
+
+    /**
+     * Elemento de la fila actual que devuelven el iterador y {@link #nextBatch(int, boolean)}: el valor de la columna
+     * si la fila tiene una única columna y el array con todas ellas si tiene varias.
+     */
+    @SuppressWarnings("unchecked")
+    private T element() throws HibernateException {
+        Object[] row = entity.get();
+        return (T) (row.length == 1 ? row[0] : row);
+    }
+
+    /**
+     * Obtiene como mucho los n elementos siguientes.
+     * 
+     * @param n Número máximo de elementos.
+     * @return Elementos siguientes. Si está vacía se ha llegado al final.
+     * @see #nextBatch(int, boolean)
+     */
+    public List<T> nextBatch(final int n) throws HibernateException {
+        return nextBatch(n, false);
+    }
+
+    /**
+     * Obtiene como mucho los n elementos siguientes, de tal forma que se pueden procesar por bloques. Si se indica,
+     * las entidades de los elementos obtenidos se desasocian de la sesión, por lo que la memoria ocupada no crece con
+     * el número de elementos recorridos; las entidades desasociadas no pueden cargar sus asociaciones lazy.
+     * <p>
+     * Se puede combinar con {@link #next()}, pero no con un iterador en curso.
+     * 
+     * @param n Número máximo de elementos.
+     * @param evict Indica si las entidades de los elementos obtenidos se desasocian de la sesión.
+     * @return Elementos siguientes. Si está vacía se ha llegado al final.
+     */
+    public List<T> nextBatch(final int n, final boolean evict) throws HibernateException {
+        List<T> batch = new ArrayList<T>(n);
+        while (batch.size() < n && advance()) {
+            batch.add(element());
+            consumed = true;
+            if (evict && session != null) {
+                for (Object value : entity.get()) {
+                    if (value != null && session.contains(value)) {
+                        session.evict(value);
+                    }
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Devuelve un iterador sobre los elementos que quedan por recorrer. El cursor sólo se puede recorrer una vez, por
+     * lo que todos los iteradores comparten la posición.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return advance();
+            }
+
+            @Override
+            public T next() {
+                if (!advance()) {
+                    throw new NoSuchElementException();
+                }
+                consumed = true;
+                return element();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Avanza el cursor a la siguiente fila si la fila actual ya ha sido leída.
+     * 
+     * @return Cierto si existe una fila pendiente de leer.
+     */
+    private boolean advance() {
+        if (exhausted) {
+            return false;
+        }
+        if (consumed) {
+            if (!entity.next()) {
+                exhausted = true;
+                return false;
+            }
+            consumed = false;
+        }
+        return true;
+    }
+
     /**
      * @return
      * @throws HibernateException
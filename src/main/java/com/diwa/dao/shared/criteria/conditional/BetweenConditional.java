@@ -123,7 +123,7 @@ public class BetweenConditional extends Conditional {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(getOperator(), value1, value2);
+        return Objects.hashCode(super.hashCode(), value1, value2);
     }
 
     @Override
@@ -138,7 +138,7 @@ public class BetweenConditional extends Conditional {
         BetweenConditional f = (BetweenConditional) obj;
 
         Conditional other = (Conditional) obj;
-        return (super.equals(other) && value1.equals(f.value1) && value2.equals(f.value2));
+        return (super.equals(other) && Objects.equal(value1, f.value1) && Objects.equal(value2, f.value2));
     }
 
 }
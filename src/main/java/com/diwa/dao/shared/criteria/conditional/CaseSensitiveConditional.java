@@ -72,7 +72,7 @@ public abstract class CaseSensitiveConditional extends Conditional {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(getOperator(), caseSensitive);
+        return Objects.hashCode(super.hashCode(), caseSensitive);
     }
 
     @Override
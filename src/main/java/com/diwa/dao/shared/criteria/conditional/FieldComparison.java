@@ -394,10 +394,7 @@ public class FieldComparison extends CaseSensitiveConditional {
 
     @Override
     public int hashCode() {
-        if (entity2 == null)
-            return Objects.hashCode(getOperator(), field);
-        else
-            return Objects.hashCode(getOperator(), field, entity2);
+        return Objects.hashCode(super.hashCode(), field, entity2);
     }
 
     @Override
@@ -410,10 +407,10 @@ public class FieldComparison extends CaseSensitiveConditional {
             return false;
 
         FieldComparison f = (FieldComparison) obj;
-        if ((entity2 == null && f.getEntity2() != null) || (entity2 != null && f.getEntity2() == null))
+        if (!Objects.equal(entity2, f.entity2))
             return false;
 
         Conditional other = (Conditional) obj;
-        return (super.equals(other) && field.equals(f.field));
+        return (super.equals(other) && Objects.equal(field, f.field));
     }
 }
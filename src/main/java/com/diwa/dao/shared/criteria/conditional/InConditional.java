@@ -105,7 +105,7 @@ public class InConditional extends CaseSensitiveConditional {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(getOperator(), values);
+        return Objects.hashCode(super.hashCode(), values);
     }
 
     @Override
@@ -117,7 +117,7 @@ public class InConditional extends CaseSensitiveConditional {
         if (getClass() != obj.getClass())
             return false;
         Conditional other = (Conditional) obj;
-        return (super.equals(other) && values.equals(((InConditional) obj).values));
+        return (super.equals(other) && Objects.equal(values, ((InConditional) obj).values));
     }
 
 }
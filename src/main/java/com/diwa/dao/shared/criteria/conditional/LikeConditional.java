@@ -168,7 +168,7 @@ public class LikeConditional extends CaseSensitiveConditional {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(getOperator(), value, leftWildcard, rightWildcard);
+        return Objects.hashCode(super.hashCode(), value, leftWildcard, rightWildcard);
     }
 
     @Override
@@ -181,7 +181,7 @@ public class LikeConditional extends CaseSensitiveConditional {
             return false;
         Conditional other = (Conditional) obj;
         LikeConditional lk = (LikeConditional) obj;
-        return (super.equals(other) && value.equals(lk.value) && rightWildcard == lk.rightWildcard && leftWildcard == lk.leftWildcard);
+        return (super.equals(other) && Objects.equal(value, lk.value) && rightWildcard == lk.rightWildcard && leftWildcard == lk.leftWildcard);
     }
 
 }
@@ -267,7 +267,7 @@ public class ValueComparison extends CaseSensitiveConditional {
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(getOperator(), value);
+        return Objects.hashCode(super.hashCode(), value);
     }
 
     @Override
@@ -279,7 +279,7 @@ public class ValueComparison extends CaseSensitiveConditional {
         if (getClass() != obj.getClass())
             return false;
         Conditional other = (Conditional) obj;
-        return (super.equals(other) && value.equals(((ValueComparison) obj).value));
+        return (super.equals(other) && Objects.equal(value, ((ValueComparison) obj).value));
     }
 
 }
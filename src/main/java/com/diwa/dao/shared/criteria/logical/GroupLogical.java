@@ -1,7 +1,6 @@
 package com.diwa.dao.shared.criteria.logical;
 
 import com.diwa.dao.shared.criteria.Criteria;
-import com.diwa.dao.shared.criteria.conditional.Conditional;
 import com.google.common.base.Objects;
 
 import java.util.Collection;
@@ -116,8 +115,6 @@ public class GroupLogical extends Logical {
             return false;
 
         GroupLogical f = (GroupLogical) obj;
-
-        Conditional other = (Conditional) obj;
-        return (super.equals(other) && contitionals.equals(f.contitionals) && operator.equals(f.operator));
+        return (Objects.equal(contitionals, f.contitionals) && operator == f.operator);
     }
 }
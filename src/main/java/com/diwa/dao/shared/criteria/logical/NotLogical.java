@@ -106,9 +106,7 @@ public class NotLogical extends Logical {
             return false;
 
         NotLogical f = (NotLogical) obj;
-
-        Conditional other = (Conditional) obj;
-        return (super.equals(other) && expresion.equals(f.expresion) && operator.equals(f.operator));
+        return (Objects.equal(expresion, f.expresion) && operator == f.operator);
     }
 
 }
@@ -77,4 +77,16 @@ public class DomainEntity implements Entity {
     public int hashCode() {
         return Objects.hashCode(clase);
     }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        DomainEntity other = (DomainEntity) obj;
+        return Objects.equal(clase, other.clase) && Objects.equal(alias, other.alias);
+    }
 }
@@ -151,7 +151,6 @@ public class FetchJoin extends Join implements Entity {
 
     @Override
     public boolean equals(Object obj) {
-        FetchJoin other = (FetchJoin) obj;
-        return super.equals(obj) && alias == other .getAlias();
+        return super.equals(obj) && Objects.equal(alias, ((FetchJoin) obj).getAlias());
     }
 }
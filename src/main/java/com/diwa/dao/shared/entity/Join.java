@@ -109,6 +109,6 @@ public abstract class Join implements Serializable {
         if (getClass() != obj.getClass())
             return false;
         Join other = (Join) obj;
-        return (super.equals(other) && getName().equals(other.getName()));
+        return (operator == other.operator && Objects.equal(name, other.name) && Objects.equal(entity, other.entity));
     }
 }
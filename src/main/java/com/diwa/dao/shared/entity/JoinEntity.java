@@ -216,7 +216,6 @@ public class JoinEntity extends Join implements Entity {
 
     @Override
     public boolean equals(Object obj) {
-        JoinEntity other = (JoinEntity) obj;
-        return super.equals(obj) && alias == other .getAlias();
+        return super.equals(obj) && Objects.equal(alias, ((JoinEntity) obj).getAlias());
     }
 }
@@ -195,12 +195,7 @@ public class OrderBy implements Serializable {
             return false;
 
         OrderBy f = (OrderBy) obj;
-
-        if (entity != null)
-            return (direction.equals(f.direction) && entity.equals(f.entity));
-        else
-            return (direction.equals(f.direction) && name.equals(f.name));
-
+        return (direction == f.direction && Objects.equal(name, f.name) && Objects.equal(entity, f.entity));
     }
 
 }
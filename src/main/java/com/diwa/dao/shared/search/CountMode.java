@@ -0,0 +1,43 @@
+package com.diwa.dao.shared.search;
+
+import java.io.Serializable;
+
+/**
+ * Forma en la que se obtiene el número total de resultados de una búsqueda paginada. Los diferentes modos son:
+ * <ul>
+ * <li>EXACT => Se ejecuta la consulta COUNT junto a la consulta de la página.</li>
+ * <li>NONE => No se obtiene el número total de resultados.</li>
+ * <li>LAZY => La consulta COUNT se ejecuta la primera vez que se solicita el número total de resultados.</li>
+ * <li>HAS_NEXT => No se ejecuta la consulta COUNT. Se obtiene un elemento más que el tamaño de la página para saber
+ * si existe una página siguiente.</li>
+ * <li>APPROXIMATE => Se devuelve el número total de resultados almacenado en la cache de COUNT o una estimación del
+ * mismo.</li>
+ * </ul>
+ */
+public enum CountMode implements Serializable {
+    /**
+     * Se ejecuta la consulta COUNT junto a la consulta de la página.
+     */
+    EXACT,
+    /**
+     * No se ejecuta la consulta COUNT. El número total de resultados es -1.
+     */
+    NONE,
+    /**
+     * La consulta COUNT se ejecuta la primera vez que se llama a {@link SearchResult#getTotalMatches()}, por lo que
+     * ha de llamarse mientras la sesión de la búsqueda siga abierta.
+     */
+    LAZY,
+    /**
+     * No se ejecuta la consulta COUNT: se obtiene un elemento más que el tamaño de la página y se indica mediante
+     * {@link SearchResult#hasNext()} si existe una página siguiente. El número total de resultados es -1.
+     */
+    HAS_NEXT,
+    /**
+     * Se obtiene un elemento más que el tamaño de la página, como en {@link #HAS_NEXT}. Si la página no es la última,
+     * el número total de resultados se obtiene de la cache de COUNT del DAO aunque haya caducado o, si no está en la
+     * cache, se estima como el mínimo conocido mientras se calcula en segundo plano. En esos casos
+     * {@link SearchResult#isApproximate()} es cierto.
+     */
+    APPROXIMATE
+}
@@ -0,0 +1,72 @@
+package com.diwa.dao.shared.search;
+
+import com.google.common.base.Objects;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Posición de una búsqueda paginada mediante keyset (seek). Contiene los valores de los atributos de ordenación del
+ * último elemento de una página, en el mismo orden que los ordenes de la búsqueda y seguidos del identificador.
+ * <p>
+ * El cliente no ha de interpretar su contenido: basta con devolver el cursor obtenido en
+ * {@link SearchResult#getNextCursor()} mediante {@link SearchInfo#setAfter(SearchCursor)} para obtener la página
+ * siguiente, sin que la BD tenga que recorrer las filas de las páginas anteriores.
+ */
+public class SearchCursor implements Serializable {
+
+    /**
+     * serial version uid.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Valores de los atributos de ordenación del último elemento de la página.
+     */
+    private ArrayList<Serializable> values = new ArrayList<Serializable>();
+
+    /**
+     * Constructor vacío necesario para serialización en GWT.
+     */
+    public SearchCursor() {
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param values Valores de los atributos de ordenación del último elemento de la página.
+     */
+    public SearchCursor(final List<? extends Serializable> values) {
+        this.values.addAll(values);
+    }
+
+    /**
+     * @return Valores de los atributos de ordenación del último elemento de la página.
+     */
+    public List<Serializable> getValues() {
+        return values;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(values);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        SearchCursor other = (SearchCursor) obj;
+        return values.equals(other.values);
+    }
+
+    @Override
+    public String toString() {
+        return "after" + values;
+    }
+}
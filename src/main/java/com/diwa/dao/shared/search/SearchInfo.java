@@ -4,10 +4,10 @@ import com.diwa.dao.shared.criteria.Criteria;
 import com.diwa.dao.shared.entity.Entity;
 import com.diwa.dao.shared.entity.FetchJoin;
 import com.diwa.dao.shared.order.OrderBy;
-import com.google.common.base.Objects;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -30,6 +30,15 @@ import java.util.List;
  *       search.addCriteria(Comparison.eq("atributo", valor));<p>
  *       dao.find(search);
  * </code>
+ * <p>
+ * Dos búsquedas son iguales si lo son sus formas canónicas (ver {@link #getCanonicalForm()}), que no dependen del orden
+ * en el que se añaden los criterios. Una vez terminada de construir, la búsqueda se puede congelar mediante
+ * {@link #freeze()}: a partir de ese momento no se puede modificar y su forma canónica y su huella se calculan una
+ * única vez, por lo que puede utilizarse como clave de caches.
+ * <p>
+ * Los métodos <code>with...</code> devuelven copias congeladas de la búsqueda con alguna modificación (otra página,
+ * sin fetches, ...). Si la búsqueda está congelada las copias comparten con ella las listas que no se modifican, por
+ * lo que obtenerlas no supone copiar los criterios.
  */
 public class SearchInfo implements Serializable {
 
@@ -80,6 +89,49 @@ public class SearchInfo implements Serializable {
      */
     private boolean distinct = true;
 
+    /**
+     * Forma en la que se obtiene el número total de resultados. Por defecto se ejecuta la consulta COUNT.
+     */
+    private CountMode countMode = CountMode.EXACT;
+
+    /**
+     * Posición a partir de la cual se obtiene la página (paginación mediante keyset). Si es null se utiliza el offset.
+     */
+    private SearchCursor after;
+
+    /**
+     * Indica si las entidades obtenidas se cargan en modo de sólo lectura. Si es null se utiliza la configuración del
+     * DAO.
+     */
+    private Boolean readOnly;
+
+    /**
+     * Indica si el resultado de la búsqueda se almacena en la cache de resultados del DAO. Si es null se almacena
+     * siempre que el DAO tenga cache de resultados.
+     */
+    private Boolean cacheable;
+
+    /**
+     * Indica si la búsqueda está congelada y por tanto no se puede modificar.
+     */
+    private boolean frozen;
+
+    /**
+     * Forma canónica, calculada una única vez cuando la búsqueda está congelada.
+     */
+    private transient String canonicalForm;
+
+    /**
+     * Forma canónica de los criterios, calculada una única vez cuando la búsqueda está congelada. Se comparte con las
+     * copias que comparten los criterios.
+     */
+    private transient String criteriaForm;
+
+    /**
+     * Huella de la forma canónica, calculada una única vez cuando la búsqueda está congelada.
+     */
+    private transient String fingerprint;
+
     /**
      * Constructor vacío necesario para serialización en GWT.
      */
@@ -87,13 +139,25 @@ public class SearchInfo implements Serializable {
     }
 
     /**
-     * Constructor a partir de otro SearchInfo.
-     */
-    /*
-     * public SearchInfo(final SearchInfo searchInfo) { super(); this.criterias.addAll(searchInfo.getCriterias());
-     * this.entities.addAll(searchInfo.getEntities()); this.fetches.addAll(searchInfo.getFetches()); this.orders.addAll(searchInfo.getOrders());
-     * this.pageSize = searchInfo.getPageSize(); this.pageNumber = searchInfo.getPageNumber(); this.distinct = searchInfo.isDistinct(); }
+     * Constructor a partir de otro SearchInfo. Las listas de criterios, entidades, fetches y ordenes se copian, de tal
+     * forma que pueden ser modificadas sin afectar al SearchInfo original. La copia no está congelada.
+     * 
+     * @param searchInfo
+     *            SearchInfo a partir del cual se crea el nuevo.
      */
+    public SearchInfo(final SearchInfo searchInfo) {
+        this.criterias.addAll(searchInfo.getCriterias());
+        this.entities.addAll(searchInfo.getEntities());
+        this.fetches.addAll(searchInfo.getFetches());
+        this.orders.addAll(searchInfo.getOrders());
+        this.pageSize = searchInfo.getPageSize();
+        this.offset = searchInfo.getOffset();
+        this.distinct = searchInfo.isDistinct();
+        this.countMode = searchInfo.getCountMode();
+        this.after = searchInfo.getAfter();
+        this.readOnly = searchInfo.getReadOnly();
+        this.cacheable = searchInfo.getCacheable();
+    }
 
     /**
      * Devuelve si se permitirán o no duplicado en los valores mostrados.
@@ -111,9 +175,96 @@ public class SearchInfo implements Serializable {
      *            Cierto en el caso de que no se permitan duplicados y false en caso contrario.
      */
     public void setDistinct(final boolean distinct) {
+        checkNotFrozen();
         this.distinct = distinct;
     }
 
+    /**
+     * Devuelve la forma en la que se obtiene el número total de resultados de la búsqueda.
+     * 
+     * @return Modo de obtención del número total de resultados.
+     */
+    public CountMode getCountMode() {
+        return countMode;
+    }
+
+    /**
+     * Establece la forma en la que se obtiene el número total de resultados de la búsqueda.
+     * 
+     * @param countMode
+     *            Modo de obtención del número total de resultados.
+     */
+    public void setCountMode(final CountMode countMode) {
+        checkNotFrozen();
+        this.countMode = countMode;
+    }
+
+    /**
+     * Devuelve la posición a partir de la cual se obtiene la página. Los elementos de la página son los que siguen, según
+     * los ordenes de la búsqueda, al elemento indicado por el cursor.
+     * 
+     * @return Cursor de la página o null si la página se obtiene a partir del offset.
+     */
+    public SearchCursor getAfter() {
+        return after;
+    }
+
+    /**
+     * Establece la posición a partir de la cual se obtiene la página. Cuando se indica un cursor se ignora el offset y
+     * la BD no ha de recorrer las filas de las páginas anteriores. El cursor ha de haberse obtenido de una búsqueda con
+     * los mismos ordenes.
+     * 
+     * @param after
+     *            Cursor obtenido mediante {@link SearchResult#getNextCursor()}.
+     */
+    public void setAfter(final SearchCursor after) {
+        checkNotFrozen();
+        this.after = after;
+    }
+
+    /**
+     * Devuelve si las entidades obtenidas se cargan en modo de sólo lectura.
+     * 
+     * @return Cierto o falso si se ha establecido para la búsqueda, o null si se utiliza la configuración del DAO.
+     */
+    public Boolean getReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * Establece si las entidades obtenidas se cargan en modo de sólo lectura: Hibernate no guarda una copia de su
+     * estado para detectar los cambios, por lo que ocupan menos memoria y no se revisan al sincronizar la sesión. Los
+     * cambios que se realicen sobre ellas no se guardan en la BD.
+     * 
+     * @param readOnly
+     *            Cierto o falso para la búsqueda, o null para utilizar la configuración del DAO.
+     */
+    public void setReadOnly(final Boolean readOnly) {
+        checkNotFrozen();
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Devuelve si el resultado de la búsqueda se almacena en la cache de resultados del DAO.
+     * 
+     * @return Cierto o falso si se ha establecido para la búsqueda, o null si se utiliza la configuración del DAO.
+     */
+    public Boolean getCacheable() {
+        return cacheable;
+    }
+
+    /**
+     * Establece si el resultado de la búsqueda se almacena en la cache de resultados del DAO (ver
+     * <code>DAOImpl.setQueryResultCache</code>). Sólo tiene efecto si el DAO tiene cache de resultados.
+     * 
+     * @param cacheable
+     *            Cierto o falso para la búsqueda, o null para utilizar la configuración del DAO.
+     */
+    public void setCacheable(final Boolean cacheable) {
+        checkNotFrozen();
+        this.cacheable = cacheable;
+    }
+
     /**
      * Devuelve el número máximo de elementos que serán mostrados en la página. Por defecto el valor de este atributo es -1, en este caso el
      * atributo será ignorado a la hora de realizar la búsqueda.
@@ -131,6 +282,7 @@ public class SearchInfo implements Serializable {
      *            Número máximo de elementos que van a ser devueltos en la consulta.
      */
     public void setPageSize(final int pageSize) {
+        checkNotFrozen();
         this.pageSize = pageSize;
     }
     
@@ -159,6 +311,7 @@ public class SearchInfo implements Serializable {
      * @param firstResult Número de elemento a mostrar.
      */
     public void setOffset(int offset) {
+        checkNotFrozen();
         this.offset = offset;
     }
 
@@ -168,7 +321,7 @@ public class SearchInfo implements Serializable {
      * @return Criterios de búsqueda
      */
     public List<Criteria> getCriterias() {
-        return criterias;
+        return view(criterias);
     }
 
     /**
@@ -178,7 +331,7 @@ public class SearchInfo implements Serializable {
      * @return Ordenes utilizados a la hora de mostrar los datos
      */
     public List<OrderBy> getOrders() {
-        return orders;
+        return view(orders);
     }
 
     /**
@@ -188,7 +341,7 @@ public class SearchInfo implements Serializable {
      * @return Listados de entidades de la consulta
      */
     public List<Entity> getEntities() {
-        return entities;
+        return view(entities);
     }
 
     /**
@@ -197,7 +350,7 @@ public class SearchInfo implements Serializable {
      * @return Conjunto de join fetch utilizados en la consulta
      */
     public List<FetchJoin> getFetches() {
-        return fetches;
+        return view(fetches);
     }
 
     /**
@@ -208,6 +361,7 @@ public class SearchInfo implements Serializable {
      *            Criterios variables, que serán añadidos para la búsqueda.
      */
     public void addCriteria(Criteria criteria) {
+        checkNotFrozen();
         criterias.add(criteria);
     }
 
@@ -219,6 +373,7 @@ public class SearchInfo implements Serializable {
      *            Ordenes variables, que serán añadidos para la búsqueda.
      */
     public void addOrder(OrderBy order) {
+        checkNotFrozen();
         orders.add(order);
     }
 
@@ -231,6 +386,7 @@ public class SearchInfo implements Serializable {
      */
 
     public void addEntity(Entity entity) {
+        checkNotFrozen();
         entities.add(entity);
     }
 
@@ -241,6 +397,7 @@ public class SearchInfo implements Serializable {
      *            Fetchs que se utilizarán para optimizar las consultas sobre la BD.
      */
     public void addFetch(FetchJoin fetch) {
+        checkNotFrozen();
         fetches.add(fetch);
     }
 
@@ -249,6 +406,7 @@ public class SearchInfo implements Serializable {
      *            the criterias to set
      */
     public void setCriterias(List<Criteria> criterias) {
+        checkNotFrozen();
         this.criterias = criterias;
     }
 
@@ -257,6 +415,7 @@ public class SearchInfo implements Serializable {
      *            the orders to set
      */
     public void setOrders(List<OrderBy> orders) {
+        checkNotFrozen();
         this.orders = orders;
     }
 
@@ -265,6 +424,7 @@ public class SearchInfo implements Serializable {
      *            the entities to set
      */
     public void setEntities(List<Entity> entities) {
+        checkNotFrozen();
         this.entities = entities;
     }
 
@@ -273,38 +433,259 @@ public class SearchInfo implements Serializable {
      *            the fetches to set
      */
     public void setFetches(List<FetchJoin> fetches) {
+        checkNotFrozen();
         this.fetches = fetches;
     }
 
-    @Override
-    public int hashCode() {
-        int hashCode = 31;
-        if (criterias != null) {
-            for (Criteria crit : criterias) {
-                hashCode += Objects.hashCode(crit);
-            }
+    /**
+     * Congela la búsqueda: a partir de este momento cualquier intento de modificarla lanza una
+     * {@link IllegalStateException} y las listas que devuelve no se pueden modificar. Las listas indicadas antes
+     * mediante <code>setCriterias</code>, <code>setOrders</code>, ... se copian, de tal forma que modificarlas
+     * después no afecta a la búsqueda.
+     * <p>
+     * Los criterios, entidades, fetches y ordenes no se copian, por lo que deben tratarse como inmutables una vez
+     * congelada la búsqueda: su forma canónica, su huella y las sentencias generadas a partir de ella se calculan una
+     * única vez y no reflejarían los cambios.
+     * 
+     * @return La propia búsqueda.
+     */
+    public SearchInfo freeze() {
+        if (!frozen) {
+            criterias = copy(criterias);
+            orders = copy(orders);
+            entities = copy(entities);
+            fetches = copy(fetches);
+            frozen = true;
         }
-        if (entities != null) {
-            for (Entity entity : entities) {
-                hashCode += Objects.hashCode(entity);
-            }
+        return this;
+    }
+
+    /**
+     * @return Cierto si la búsqueda está congelada y por tanto no se puede modificar.
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return La propia búsqueda si está congelada o, en caso contrario, una copia congelada de la misma.
+     */
+    public SearchInfo frozenCopy() {
+        return frozen ? this : new SearchInfo(this).freeze();
+    }
+
+    /**
+     * Devuelve una copia congelada de la búsqueda con la paginación indicada.
+     * 
+     * @param offset
+     *            Primer elemento a mostrar.
+     * @param pageSize
+     *            Número máximo de elementos de la página.
+     * @return Búsqueda con la paginación indicada.
+     */
+    public SearchInfo withPage(final int offset, final int pageSize) {
+        if (frozen && offset == this.offset && pageSize == this.pageSize) {
+            return this;
         }
+        SearchInfo derived = derive();
+        derived.offset = offset;
+        derived.pageSize = pageSize;
+        return derived;
+    }
 
-        if (fetches != null) {
-            for (FetchJoin fetch : fetches) {
-                hashCode += Objects.hashCode(fetch);
-            }
+    /**
+     * Devuelve una copia congelada de la búsqueda que obtiene la página siguiente mediante el offset.
+     * 
+     * @return Búsqueda de la página siguiente.
+     * @throws IllegalStateException
+     *             Si la búsqueda no está paginada.
+     */
+    public SearchInfo nextPage() {
+        if (pageSize <= 0) {
+            throw new IllegalStateException("The SearchInfo has no page size");
         }
-        if (orders != null) {
-            for (OrderBy order : orders) {
-                hashCode += Objects.hashCode(order);
+        return withPage(Math.max(offset, 0) + pageSize, pageSize);
+    }
+
+    /**
+     * Devuelve una copia congelada de la búsqueda que obtiene la página a partir del cursor indicado.
+     * 
+     * @param after
+     *            Cursor de la página o null para obtenerla a partir del offset.
+     * @return Búsqueda con el cursor indicado.
+     */
+    public SearchInfo withAfter(final SearchCursor after) {
+        if (frozen && after == this.after) {
+            return this;
+        }
+        SearchInfo derived = derive();
+        derived.after = after;
+        return derived;
+    }
+
+    /**
+     * Devuelve una copia congelada de la búsqueda que aplica o no DISTINCT.
+     * 
+     * @param distinct
+     *            Cierto si no se permiten duplicados.
+     * @return Búsqueda con el distinct indicado.
+     */
+    public SearchInfo withDistinct(final boolean distinct) {
+        if (frozen && distinct == this.distinct) {
+            return this;
+        }
+        SearchInfo derived = derive();
+        derived.distinct = distinct;
+        return derived;
+    }
+
+    /**
+     * @return Copia congelada de la búsqueda sin fetches.
+     */
+    public SearchInfo withoutFetches() {
+        if (frozen && (fetches == null || fetches.isEmpty())) {
+            return this;
+        }
+        SearchInfo derived = derive();
+        derived.fetches = new ArrayList<FetchJoin>();
+        return derived;
+    }
+
+    /**
+     * @return Copia congelada de la búsqueda sin ordenes.
+     */
+    public SearchInfo withoutOrders() {
+        if (frozen && (orders == null || orders.isEmpty())) {
+            return this;
+        }
+        SearchInfo derived = derive();
+        derived.orders = new ArrayList<OrderBy>();
+        return derived;
+    }
+
+    /**
+     * Devuelve una copia congelada de la búsqueda con los criterios indicados en lugar de los suyos.
+     * 
+     * @param criterias
+     *            Criterios de la copia. La lista se copia.
+     * @return Búsqueda con los criterios indicados.
+     */
+    public SearchInfo withCriterias(final List<Criteria> criterias) {
+        SearchInfo derived = derive();
+        derived.criterias = new ArrayList<Criteria>(criterias);
+        derived.criteriaForm = null;
+        return derived;
+    }
+
+    /**
+     * Devuelve una copia congelada de la búsqueda con las entidades indicadas en lugar de las suyas.
+     * 
+     * @param entities
+     *            Entidades de la copia. La lista se copia.
+     * @return Búsqueda con las entidades indicadas.
+     */
+    public SearchInfo withEntities(final List<Entity> entities) {
+        SearchInfo derived = derive();
+        derived.entities = new ArrayList<Entity>(entities);
+        return derived;
+    }
+
+    /**
+     * Crea una copia congelada que comparte las listas de la búsqueda congelada, o de una copia congelada de la misma
+     * si no lo está.
+     */
+    private SearchInfo derive() {
+        SearchInfo source = frozenCopy();
+        SearchInfo derived = new SearchInfo();
+        derived.criterias = source.criterias;
+        derived.orders = source.orders;
+        derived.entities = source.entities;
+        derived.fetches = source.fetches;
+        derived.pageSize = source.pageSize;
+        derived.offset = source.offset;
+        derived.distinct = source.distinct;
+        derived.countMode = source.countMode;
+        derived.after = source.after;
+        derived.readOnly = source.readOnly;
+        derived.cacheable = source.cacheable;
+        derived.criteriaForm = source.criteriaForm;
+        derived.frozen = true;
+        return derived;
+    }
+
+    /**
+     * Devuelve la forma canónica de la búsqueda: una cadena que describe sin ambigüedad sus criterios, entidades,
+     * fetches, ordenes, paginación, distinct, modo de conteo y modo de sólo lectura. Los criterios se combinan mediante
+     * AND u OR, por lo que su orden no se tiene en cuenta. No incluye si la búsqueda se almacena en la cache de
+     * resultados, ya que no afecta al resultado.
+     * <p>
+     * Si la búsqueda está congelada se calcula una única vez.
+     * 
+     * @return Forma canónica de la búsqueda.
+     */
+    public String getCanonicalForm() {
+        if (canonicalForm != null) {
+            return canonicalForm;
+        }
+        String criteria = criteriaForm;
+        if (criteria == null) {
+            criteria = SearchInfoCanonicalizer.canonicalCriterias(criterias);
+            if (frozen) {
+                criteriaForm = criteria;
             }
         }
+        String result = SearchInfoCanonicalizer.canonicalForm(this, criteria);
+        if (frozen) {
+            canonicalForm = result;
+        }
+        return result;
+    }
+
+    /**
+     * Devuelve la huella de la búsqueda: el hash de 128 bits (MurmurHash3) de su forma canónica, en hexadecimal. Dos
+     * búsquedas iguales tienen la misma huella, por lo que puede utilizarse como clave de caches.
+     * <p>
+     * Si la búsqueda está congelada se calcula una única vez.
+     * 
+     * @return Huella de la búsqueda (32 caracteres hexadecimales).
+     */
+    public String getFingerprint() {
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        String result = SearchInfoCanonicalizer.fingerprint(getCanonicalForm());
+        if (frozen) {
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    /**
+     * Lanza una excepción si la búsqueda está congelada.
+     */
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("The SearchInfo is frozen");
+        }
+    }
 
-        hashCode += Objects.hashCode(offset);
-        hashCode += Objects.hashCode(pageSize);
+    /**
+     * @return Copia de la lista indicada, que sólo referencia la búsqueda, o null si es null.
+     */
+    private static <E> List<E> copy(final List<E> list) {
+        return list == null ? null : new ArrayList<E>(list);
+    }
+
+    /**
+     * @return La lista indicada o, si la búsqueda está congelada, una vista de la misma que no se puede modificar.
+     */
+    private <E> List<E> view(final List<E> list) {
+        return frozen && list != null ? Collections.unmodifiableList(list) : list;
+    }
 
-        return hashCode;
+    @Override
+    public int hashCode() {
+        return getCanonicalForm().hashCode();
     }
 
     @Override
@@ -316,33 +697,7 @@ public class SearchInfo implements Serializable {
         if (getClass() != obj.getClass())
             return false;
         SearchInfo other = (SearchInfo) obj;
-        if (criterias == null) {
-            if (other.criterias != null)
-                return false;
-        } else if (!criterias.equals(other.criterias))
-            return false;
-        if (distinct != other.distinct)
-            return false;
-        if (entities == null) {
-            if (other.entities != null)
-                return false;
-        } else if (!entities.equals(other.entities))
-            return false;
-        if (fetches == null) {
-            if (other.fetches != null)
-                return false;
-        } else if (!fetches.equals(other.fetches))
-            return false;
-        if (orders == null) {
-            if (other.orders != null)
-                return false;
-        } else if (!orders.equals(other.orders))
-            return false;
-        if (offset != other.offset)
-            return false;
-        if (pageSize != other.pageSize)
-            return false;
-        return true;
+        return getCanonicalForm().equals(other.getCanonicalForm());
     }
 
     public boolean equalss(Object obj) {
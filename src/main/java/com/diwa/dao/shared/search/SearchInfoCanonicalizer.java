@@ -0,0 +1,376 @@
+package com.diwa.dao.shared.search;
+
+import com.diwa.dao.shared.criteria.Criteria;
+import com.diwa.dao.shared.criteria.PersonalCriteria;
+import com.diwa.dao.shared.criteria.PersonalCriteria.ReplaceProperty;
+import com.diwa.dao.shared.criteria.conditional.BetweenConditional;
+import com.diwa.dao.shared.criteria.conditional.CaseSensitiveConditional;
+import com.diwa.dao.shared.criteria.conditional.Conditional;
+import com.diwa.dao.shared.criteria.conditional.EmptyConditional;
+import com.diwa.dao.shared.criteria.conditional.FieldComparison;
+import com.diwa.dao.shared.criteria.conditional.InConditional;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.criteria.conditional.NullConditional;
+import com.diwa.dao.shared.criteria.conditional.ValueComparison;
+import com.diwa.dao.shared.criteria.logical.GroupLogical;
+import com.diwa.dao.shared.criteria.logical.NotLogical;
+import com.diwa.dao.shared.entity.DomainEntity;
+import com.diwa.dao.shared.entity.Entity;
+import com.diwa.dao.shared.entity.Join;
+import com.diwa.dao.shared.order.OrderBy;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Obtiene la forma canónica de un {@link SearchInfo} y su huella (ver {@link SearchInfo#getFingerprint()}).
+ * <p>
+ * La forma canónica es una cadena que describe sin ambigüedad la búsqueda: las cadenas se preceden de su longitud y
+ * los valores de su clase, de tal forma que, por ejemplo, <code>eq("a", 1)</code>, <code>eq("b", 1)</code> y
+ * <code>eq("a", "1")</code> tienen formas distintas. Los criterios de un mismo grupo AND u OR y los valores de un IN
+ * se ordenan, ya que su orden no afecta al resultado.
+ * <p>
+ * Sólo utiliza clases emuladas por GWT.
+ */
+final class SearchInfoCanonicalizer {
+
+    private static final String NULL = "~";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final long C1 = 0x87c37b91114253d5L;
+
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private SearchInfoCanonicalizer() {
+    }
+
+    /**
+     * @param criteriaForm Forma canónica de los criterios de la búsqueda (ver {@link #canonicalCriterias(Collection)}).
+     * @return Forma canónica de la búsqueda.
+     */
+    static String canonicalForm(final SearchInfo searchInfo, final String criteriaForm) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("criteria").append(criteriaForm);
+        builder.append("entities[");
+        if (searchInfo.getEntities() != null) {
+            for (Entity entity : searchInfo.getEntities()) {
+                appendEntity(builder, entity);
+            }
+        }
+        builder.append("]fetches[");
+        if (searchInfo.getFetches() != null) {
+            for (Entity fetch : searchInfo.getFetches()) {
+                appendEntity(builder, fetch);
+            }
+        }
+        builder.append("]orders[");
+        if (searchInfo.getOrders() != null) {
+            for (OrderBy order : searchInfo.getOrders()) {
+                builder.append('(');
+                appendAlias(builder, order.getEntity());
+                appendString(builder, order.getName());
+                builder.append(order.getDirection()).append(')');
+            }
+        }
+        builder.append("]offset=").append(searchInfo.getOffset());
+        builder.append(";pageSize=").append(searchInfo.getPageSize());
+        builder.append(";distinct=").append(searchInfo.isDistinct());
+        builder.append(";countMode=").append(searchInfo.getCountMode());
+        builder.append(";readOnly=").append(searchInfo.getReadOnly());
+        builder.append(";after=");
+        if (searchInfo.getAfter() == null) {
+            builder.append(NULL);
+        } else {
+            appendValues(builder, searchInfo.getAfter().getValues(), false);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return Forma canónica de los criterios de una búsqueda, que se combinan mediante AND.
+     */
+    static String canonicalCriterias(final Collection<Criteria> criterias) {
+        StringBuilder builder = new StringBuilder();
+        appendCriterias(builder, criterias);
+        return builder.toString();
+    }
+
+    /**
+     * Añade los criterios ordenados, ya que se combinan mediante AND u OR y su orden no afecta al resultado.
+     */
+    private static void appendCriterias(final StringBuilder builder, final Collection<Criteria> criterias) {
+        if (criterias == null) {
+            builder.append(NULL);
+            return;
+        }
+        List<String> canonical = new ArrayList<String>(criterias.size());
+        for (Criteria criteria : criterias) {
+            StringBuilder c = new StringBuilder();
+            appendCriteria(c, criteria);
+            canonical.add(c.toString());
+        }
+        Collections.sort(canonical);
+        builder.append('[');
+        for (String c : canonical) {
+            builder.append(c);
+        }
+        builder.append(']');
+    }
+
+    private static void appendCriteria(final StringBuilder builder, final Criteria criteria) {
+        builder.append('(');
+        if (criteria == null) {
+            builder.append(NULL);
+        } else if (criteria instanceof Conditional) {
+            appendConditional(builder, (Conditional) criteria);
+        } else if (criteria instanceof NotLogical) {
+            builder.append("NOT");
+            appendCriteria(builder, ((NotLogical) criteria).getExpresion());
+        } else if (criteria instanceof GroupLogical) {
+            GroupLogical groupLogical = (GroupLogical) criteria;
+            builder.append(groupLogical.getOperator());
+            appendCriterias(builder, groupLogical.getContitionals());
+        } else if (criteria instanceof PersonalCriteria) {
+            PersonalCriteria personalCriteria = (PersonalCriteria) criteria;
+            builder.append("QUERY");
+            appendString(builder, personalCriteria.getQuery());
+            builder.append(personalCriteria.isApplyInCount());
+            List<String> entries = new ArrayList<String>();
+            for (Map.Entry<String, ReplaceProperty> p : personalCriteria.getProperties().entrySet()) {
+                StringBuilder entry = new StringBuilder("p");
+                appendString(entry, p.getKey());
+                appendAlias(entry, p.getValue().getReferenceEntity());
+                appendString(entry, p.getValue().getTargetProperty());
+                entries.add(entry.toString());
+            }
+            for (Map.Entry<String, Serializable> p : personalCriteria.getParameters().entrySet()) {
+                StringBuilder entry = new StringBuilder("v");
+                appendString(entry, p.getKey());
+                appendValue(entry, p.getValue());
+                entries.add(entry.toString());
+            }
+            Collections.sort(entries);
+            for (String entry : entries) {
+                builder.append(entry);
+            }
+        } else {
+            appendString(builder, criteria.getClass().getName());
+            appendString(builder, criteria.toString());
+        }
+        builder.append(')');
+    }
+
+    private static void appendConditional(final StringBuilder builder, final Conditional conditional) {
+        builder.append(conditional.getOperator());
+        appendAlias(builder, conditional.getEntity());
+        appendString(builder, conditional.getName());
+        if (conditional instanceof CaseSensitiveConditional) {
+            builder.append(((CaseSensitiveConditional) conditional).isCaseSensitive() ? 'S' : 'I');
+        }
+        if (conditional instanceof ValueComparison) {
+            appendValue(builder, ((ValueComparison) conditional).getValue());
+        } else if (conditional instanceof BetweenConditional) {
+            BetweenConditional between = (BetweenConditional) conditional;
+            appendValue(builder, between.getValue1());
+            appendValue(builder, between.getValue2());
+        } else if (conditional instanceof InConditional) {
+            appendValues(builder, ((InConditional) conditional).getValues(), true);
+        } else if (conditional instanceof LikeConditional) {
+            LikeConditional like = (LikeConditional) conditional;
+            builder.append(like.isLeftWildcard() ? '%' : '.');
+            appendString(builder, like.getValue());
+            builder.append(like.isRightWildcard() ? '%' : '.');
+        } else if (conditional instanceof FieldComparison) {
+            FieldComparison fieldComparison = (FieldComparison) conditional;
+            appendAlias(builder, fieldComparison.getEntity2());
+            appendString(builder, fieldComparison.getField());
+        } else if (!(conditional instanceof NullConditional || conditional instanceof EmptyConditional)) {
+            appendString(builder, conditional.getClass().getName());
+            appendString(builder, conditional.toString());
+        }
+    }
+
+    private static void appendEntity(final StringBuilder builder, final Entity entity) {
+        builder.append('(');
+        if (entity instanceof DomainEntity) {
+            Class<?> clase = ((DomainEntity) entity).getClase();
+            appendString(builder, clase == null ? null : clase.getName());
+        } else if (entity instanceof Join) {
+            Join join = (Join) entity;
+            builder.append(join.getOperator());
+            appendAlias(builder, join.getEntity());
+            appendString(builder, join.getName());
+        } else if (entity != null) {
+            appendString(builder, entity.getClass().getName());
+        }
+        appendAlias(builder, entity);
+        builder.append(')');
+    }
+
+    private static void appendAlias(final StringBuilder builder, final Entity entity) {
+        appendString(builder, entity == null ? null : entity.getAlias());
+    }
+
+    private static void appendValues(final StringBuilder builder, final Collection<? extends Serializable> values,
+            final boolean sort) {
+        if (values == null) {
+            builder.append(NULL);
+            return;
+        }
+        List<String> canonical = new ArrayList<String>(values.size());
+        for (Serializable value : values) {
+            StringBuilder v = new StringBuilder();
+            appendValue(v, value);
+            canonical.add(v.toString());
+        }
+        if (sort) {
+            Collections.sort(canonical);
+        }
+        builder.append('[');
+        for (String v : canonical) {
+            builder.append(v);
+        }
+        builder.append(']');
+    }
+
+    /**
+     * Añade el valor precedido de su clase. Las fechas se representan mediante sus milisegundos, ya que su
+     * <code>toString</code> no los incluye.
+     */
+    private static void appendValue(final StringBuilder builder, final Object value) {
+        if (value == null) {
+            builder.append(NULL);
+        } else if (value instanceof Collection) {
+            appendString(builder, value.getClass().getName());
+            builder.append('[');
+            for (Object v : (Collection<?>) value) {
+                appendValue(builder, v);
+            }
+            builder.append(']');
+        } else if (value.getClass() == Date.class) {
+            appendString(builder, Date.class.getName());
+            appendString(builder, String.valueOf(((Date) value).getTime()));
+        } else {
+            appendString(builder, value.getClass().getName());
+            appendString(builder, value.toString());
+        }
+    }
+
+    /**
+     * Añade la cadena precedida de su longitud, de tal forma que su contenido no se pueda confundir con el resto de la
+     * forma canónica.
+     */
+    private static void appendString(final StringBuilder builder, final String value) {
+        if (value == null) {
+            builder.append(NULL);
+        } else {
+            builder.append(value.length()).append(':').append(value);
+        }
+    }
+
+    /**
+     * Calcula el hash MurmurHash3 x64 de 128 bits (semilla 0) de los caracteres de la cadena, codificados en UTF-16
+     * little-endian. Coincide con <code>Hashing.murmur3_128().hashUnencodedChars(value)</code> de Guava, que no está
+     * disponible en GWT.
+     *
+     * @return Hash en hexadecimal (32 caracteres).
+     */
+    static String fingerprint(final String value) {
+        int length = value.length() * 2;
+        byte[] data = new byte[length];
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            data[2 * i] = (byte) c;
+            data[2 * i + 1] = (byte) (c >>> 8);
+        }
+        long h1 = 0;
+        long h2 = 0;
+        int blocks = length / 16;
+        for (int i = 0; i < blocks; i++) {
+            long k1 = getLong(data, i * 16, 8);
+            long k2 = getLong(data, i * 16 + 8, 8);
+            h1 ^= mixK1(k1);
+            h1 = rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52dce729;
+            h2 ^= mixK2(k2);
+            h2 = rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495ab5;
+        }
+        int tail = blocks * 16;
+        int remaining = length - tail;
+        if (remaining > 8) {
+            h2 ^= mixK2(getLong(data, tail + 8, remaining - 8));
+        }
+        if (remaining > 0) {
+            h1 ^= mixK1(getLong(data, tail, Math.min(remaining, 8)));
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        StringBuilder hex = new StringBuilder(32);
+        appendHex(hex, h1);
+        appendHex(hex, h2);
+        return hex.toString();
+    }
+
+    /**
+     * @return Long little-endian formado por los <code>count</code> bytes a partir de la posición indicada.
+     */
+    private static long getLong(final byte[] data, final int offset, final int count) {
+        long result = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            result = (result << 8) | (data[offset + i] & 0xffL);
+        }
+        return result;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long rotateLeft(final long value, final int distance) {
+        return (value << distance) | (value >>> (64 - distance));
+    }
+
+    /**
+     * Añade los bytes del long en orden little-endian, igual que <code>HashCode.toString()</code> de Guava.
+     */
+    private static void appendHex(final StringBuilder hex, final long value) {
+        for (int i = 0; i < 8; i++) {
+            int b = (int) (value >>> (8 * i)) & 0xff;
+            hex.append(HEX[b >>> 4]).append(HEX[b & 0xf]);
+        }
+    }
+}
@@ -35,6 +35,29 @@ public class SearchResult<T> implements Serializable {
      */
     private long totalMatches = -1;
 
+    /**
+     * Indica si existen más elementos tras los de la página devuelta.
+     */
+    private boolean hasNext = false;
+
+    /**
+     * Cursor que permite obtener la página siguiente mediante {@link SearchInfo#setAfter(SearchCursor)}.
+     */
+    private SearchCursor nextCursor;
+
+    /**
+     * Indica si el número total de elementos es aproximado (ver {@link CountMode#APPROXIMATE}).
+     */
+    private boolean approximate = false;
+
+    /**
+     * Obtiene el número total de elementos la primera vez que se solicita (ver {@link CountMode#LAZY}). No se
+     * serializa: la serialización Java obtiene antes el número total (ver {@link #writeReplace()}), pero con otros
+     * mecanismos de serialización (GWT RPC) se debe llamar a {@link #getTotalMatches()} antes de serializar el
+     * resultado, mientras la sesión de la búsqueda sigue abierta.
+     */
+    private transient CountLoader countLoader;
+
     /**
      * Constructor por defecto.
      */
@@ -79,6 +102,10 @@ public class SearchResult<T> implements Serializable {
      * @return Número de elementos que hay en BD y coinciden con los criterios de búsqueda establecidos.
      */
     public long getTotalMatches() {
+        if (countLoader != null) {
+            totalMatches = countLoader.count();
+            countLoader = null;
+        }
         return totalMatches;
     }
 
@@ -87,11 +114,95 @@ public class SearchResult<T> implements Serializable {
      */
     public void setTotalMatches(final long totalMatches) {
         this.totalMatches = totalMatches;
+        this.countLoader = null;
+    }
+
+    /**
+     * @return Cierto si existen más elementos tras los de la página devuelta.
+     */
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    /**
+     * @param hasNext Cierto si existen más elementos tras los de la página devuelta.
+     */
+    public void setHasNext(final boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    /**
+     * @return Cursor que permite obtener la página siguiente o null si no existe o no se puede generar.
+     */
+    public SearchCursor getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * @param nextCursor Cursor que permite obtener la página siguiente.
+     */
+    public void setNextCursor(final SearchCursor nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return Cierto si el número total de elementos es aproximado: se ha obtenido de la cache de COUNT o es una
+     *         estimación.
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * @param approximate Cierto si el número total de elementos es aproximado.
+     */
+    public void setApproximate(final boolean approximate) {
+        this.approximate = approximate;
+    }
+
+    /**
+     * @return Cierto si el número total de elementos aún no se ha obtenido y se obtendrá la primera vez que se solicite.
+     */
+    public boolean isCountPending() {
+        return countLoader != null;
+    }
+
+    /**
+     * @param countLoader Objeto que obtendrá el número total de elementos la primera vez que se solicite.
+     */
+    public void setCountLoader(final CountLoader countLoader) {
+        this.countLoader = countLoader;
     }
 
+    /**
+     * Obtiene el número de elementos que hay en BD y coinciden con los criterios de búsqueda cuando éste se solicita
+     * por primera vez.
+     */
+    public interface CountLoader {
+
+        /**
+         * @return Número de elementos que hay en BD y coinciden con los criterios de búsqueda establecidos.
+         */
+        long count();
+    }
+
+    /**
+     * Obtiene el número total de elementos pendiente antes de serializar el resultado mediante la serialización Java,
+     * ya que el objeto que lo obtiene no se serializa.
+     * 
+     * @return Este resultado.
+     */
+    protected Object writeReplace() {
+        getTotalMatches();
+        return this;
+    }
+
+    /**
+     * Compara el número total de elementos ya obtenido, sin obtener el pendiente (ver {@link CountMode#LAZY}).
+     */
     @Override
     public int hashCode() {
-        return Objects.hashCode(elements, totalMatches);
+        return Objects.hashCode(elements, totalMatches, hasNext, approximate);
     }
 
     @SuppressWarnings("unchecked")
@@ -111,6 +222,10 @@ public class SearchResult<T> implements Serializable {
             return false;
         if (totalMatches != other.totalMatches)
             return false;
+        if (hasNext != other.hasNext)
+            return false;
+        if (approximate != other.approximate)
+            return false;
         return true;
     }
 }
@@ -4,6 +4,9 @@ import javax.persistence.Entity;
 import javax.persistence.Id;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Contiene un conjunto de métodos que son de utilidad para la generación de la consultas que van a ser generadas.
@@ -132,6 +135,29 @@ public final class DaoUtils {
         return pkName;
     }
 
+    /**
+     * Rellena la colección indicada repitiendo su último elemento hasta que su tamaño sea una potencia de dos. De esta
+     * forma el número de sentencias SQL diferentes generadas al expandir un IN crece de forma logarítmica con el
+     * tamaño de las listas.
+     *
+     * @param values Valores de la lista.
+     * @return Lista con los valores indicados y tamaño potencia de dos. Si el tamaño ya es potencia de dos (o la
+     *         colección está vacía) se devuelve una copia con los mismos valores.
+     */
+    public static <E> List<E> padToPowerOfTwo(final Collection<E> values) {
+        int size = values.size();
+        int padded = size <= 1 ? size : Integer.highestOneBit(size - 1) << 1;
+        List<E> result = new ArrayList<E>(padded);
+        result.addAll(values);
+        if (size > 0) {
+            E last = result.get(size - 1);
+            while (result.size() < padded) {
+                result.add(last);
+            }
+        }
+        return result;
+    }
+
     /**
      * Obtiene el <code>Field</code> de la clase a la que corresponde el objeto y que coincide con el nombre indicado.
      * Para obtener el <code>Field</code> se consultará tanto la clase del objeto como sus super-clases.
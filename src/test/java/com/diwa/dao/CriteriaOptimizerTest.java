@@ -0,0 +1,174 @@
+package com.diwa.dao;
+
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.Criteria;
+import com.diwa.dao.shared.criteria.conditional.BetweenConditional;
+import com.diwa.dao.shared.criteria.conditional.InConditional;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.criteria.conditional.NullConditional;
+import com.diwa.dao.shared.criteria.conditional.ValueComparison;
+import com.diwa.dao.shared.criteria.logical.GroupLogical;
+import com.diwa.dao.shared.criteria.logical.NotLogical;
+import com.diwa.dao.shared.search.SearchInfo;
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CriteriaOptimizerTest extends TestCase {
+
+    private final CriteriaOptimizer optimizer = new CriteriaOptimizer();
+
+    public void testUnchanged() throws Exception {
+        List<Criteria> criterias = criterias(ValueComparison.eq("name", "a"),
+                GroupLogical.or(criterias(ValueComparison.eq("id", 1L), new LikeConditional("name", "b", true))));
+        Assert.assertSame(criterias, optimizer.optimize(criterias));
+        List<Criteria> empty = new ArrayList<Criteria>();
+        Assert.assertSame(empty, optimizer.optimize(empty));
+    }
+
+    public void testFlatten() throws Exception {
+        List<Criteria> criterias = criterias(GroupLogical.and(criterias(ValueComparison.eq("name", "a"),
+                GroupLogical.and(criterias(ValueComparison.gt("id", 1L))))), ValueComparison.eq("name", "a"),
+                GroupLogical.or(criterias(new LikeConditional("name", "b", true))));
+        Assert.assertEquals(criterias(ValueComparison.eq("name", "a"), ValueComparison.gt("id", 1L),
+                new LikeConditional("name", "b", true)), optimizer.optimize(criterias));
+        // Los criterios indicados no se modifican
+        Assert.assertEquals(3, criterias.size());
+        Assert.assertEquals(2, ((GroupLogical) criterias.get(0)).getContitionals().size());
+    }
+
+    public void testMergeEqualities() throws Exception {
+        List<Criteria> criterias = criterias(GroupLogical.or(criterias(ValueComparison.eq("id", 1L),
+                new LikeConditional("name", "a", true), GroupLogical.or(criterias(ValueComparison.eq("id", 2L),
+                        new InConditional("id", Arrays.<Serializable> asList(3L, 1L)))))));
+        Assert.assertEquals(criterias(GroupLogical.or(criterias(
+                new InConditional("id", Arrays.<Serializable> asList(1L, 2L, 3L)), new LikeConditional("name", "a", true)))),
+                optimizer.optimize(criterias));
+
+        // Sólo se unen las igualdades sobre el mismo atributo y con las mismas mayúsculas
+        ValueComparison upper = (ValueComparison) ValueComparison.eq("name", "b");
+        upper.setCaseSensitive(false);
+        criterias = criterias(GroupLogical.or(criterias(ValueComparison.eq("name", "a"), upper,
+                ValueComparison.eq("id", 1L))));
+        Assert.assertSame(criterias, optimizer.optimize(criterias));
+    }
+
+    public void testPushNot() throws Exception {
+        Assert.assertEquals(criterias(NullConditional.isNotNull("name")),
+                optimizer.optimize(criterias(new NotLogical(NullConditional.isNull("name")))));
+        Assert.assertEquals(criterias(ValueComparison.eq("name", "a")),
+                optimizer.optimize(criterias(new NotLogical(new NotLogical(ValueComparison.eq("name", "a"))))));
+        // De Morgan
+        Assert.assertEquals(criterias(GroupLogical.or(criterias(ValueComparison.ge("id", 5L),
+                new NotLogical(new LikeConditional("name", "a", true))))),
+                optimizer.optimize(criterias(new NotLogical(GroupLogical.and(criterias(ValueComparison.lt("id", 5L),
+                        new LikeConditional("name", "a", true)))))));
+        Assert.assertEquals(criterias(ValueComparison.ne("id", 1L), NullConditional.isNotNull("name")),
+                optimizer.optimize(criterias(new NotLogical(GroupLogical.or(criterias(ValueComparison.eq("id", 1L),
+                        NullConditional.isNull("name")))))));
+        // El OR de igualdades se une antes de negarlo
+        Assert.assertEquals(criterias(new NotLogical(new InConditional("id", Arrays.<Serializable> asList(1L, 2L)))),
+                optimizer.optimize(criterias(new NotLogical(GroupLogical.or(criterias(ValueComparison.eq("id", 1L),
+                        ValueComparison.eq("id", 2L)))))));
+    }
+
+    public void testContradictions() throws Exception {
+        Assert.assertNull(optimizer.optimize(criterias(NullConditional.isNull("name"), NullConditional.isNotNull("name"))));
+        Assert.assertNull(optimizer.optimize(criterias(NullConditional.isNull("name"), new LikeConditional("name", "a", true))));
+        Assert.assertNull(optimizer.optimize(criterias(ValueComparison.eq("name", "a"),
+                new NotLogical(ValueComparison.eq("name", "a")))));
+        Assert.assertNull(optimizer.optimize(criterias(ValueComparison.eq("id", 1L), ValueComparison.eq("id", 2))));
+        Assert.assertNull(optimizer.optimize(criterias(ValueComparison.gt("id", 10L), ValueComparison.le("id", 10L))));
+        Assert.assertNull(optimizer.optimize(criterias(new BetweenConditional("id", 1L, 5L), ValueComparison.gt("id", 7L))));
+        Assert.assertNull(optimizer.optimize(criterias(new InConditional("id", Arrays.<Serializable> asList(1L, 2L)),
+                ValueComparison.ge("id", 3L))));
+        Assert.assertNull(optimizer.optimize(criterias(new InConditional("id", Collections.<Serializable> emptyList()))));
+        // La contradicción de un grupo anidado se propaga
+        Assert.assertNull(optimizer.optimize(criterias(GroupLogical.or(criterias(
+                GroupLogical.and(criterias(ValueComparison.lt("id", 1L), ValueComparison.gt("id", 1L))),
+                new InConditional("id", Collections.<Serializable> emptyList()))))));
+        // Un OR con una alternativa contradictoria se simplifica
+        Assert.assertEquals(criterias(ValueComparison.eq("name", "a")), optimizer.optimize(criterias(
+                GroupLogical.or(criterias(ValueComparison.eq("name", "a"), GroupLogical.and(criterias(
+                        NullConditional.isNull("name"), NullConditional.isNotNull("name"))))))));
+    }
+
+    public void testSatisfiable() throws Exception {
+        // Las cadenas no se comparan: el resultado depende de la collation de la BD
+        List<Criteria> strings = criterias(ValueComparison.eq("name", "a"), ValueComparison.eq("name", "A"));
+        Assert.assertSame(strings, optimizer.optimize(strings));
+        List<Criteria> range = criterias(ValueComparison.ge("id", 10L), ValueComparison.le("id", 10L),
+                new InConditional("id", Arrays.<Serializable> asList(5L, 10L)));
+        Assert.assertSame(range, optimizer.optimize(range));
+        // Sin el IS NULL del mismo atributo la comparación puede cumplirse
+        List<Criteria> nulls = criterias(NullConditional.isNull("name"), ValueComparison.eq("id", 1L));
+        Assert.assertSame(nulls, optimizer.optimize(nulls));
+        // IS NULL OR IS NOT NULL se cumple siempre
+        Assert.assertEquals(criterias(ValueComparison.eq("id", 1L)), optimizer.optimize(criterias(
+                ValueComparison.eq("id", 1L), GroupLogical.or(criterias(NullConditional.isNull("name"),
+                        NullConditional.isNotNull("name"))))));
+    }
+
+    public void testGenerator() throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(GroupLogical.or(criterias(ValueComparison.eq("id", 1L), ValueComparison.eq("id", 2L))));
+        searchInfo.addCriteria(new NotLogical(NullConditional.isNull("name")));
+        Assert.assertEquals("SELECT DISTINCT e FROM entityUser AS e WHERE e.id IN (:id_0) AND e.name IS NOT NULL "
+                + " ORDER BY e.id ASC", generator.find(User.class, searchInfo).getQuery());
+        Assert.assertFalse(generator.isUnsatisfiable(searchInfo));
+
+        searchInfo.addCriteria(ValueComparison.eq("id", 3L));
+        Assert.assertTrue(generator.isUnsatisfiable(searchInfo));
+        JPQLResult count = generator.count(User.class, searchInfo);
+        Assert.assertEquals("SELECT COUNT(e) FROM entityUser AS e WHERE 1 = 0", count.getQuery());
+        Assert.assertTrue(count.getParameters().isEmpty());
+
+        generator.setCriteriaOptimization(false);
+        try {
+            Assert.assertFalse(generator.isUnsatisfiable(searchInfo));
+            Assert.assertTrue(generator.count(User.class, searchInfo).getQuery().contains("e.id = :id_0 OR e.id = :id_1"));
+        } finally {
+            generator.setCriteriaOptimization(true);
+        }
+    }
+
+    public void testMemoizedOptimization() throws Exception {
+        JPQLGenerator generator = new JPQLGenerator();
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(GroupLogical.or(criterias(ValueComparison.eq("id", 1L), ValueComparison.eq("id", 2L))));
+        // Las búsquedas sin congelar se optimizan en cada llamada
+        Assert.assertNotSame(generator.optimize(searchInfo), generator.optimize(searchInfo));
+
+        searchInfo.freeze();
+        SearchInfo optimized = generator.optimize(searchInfo);
+        Assert.assertNotSame(searchInfo, optimized);
+        Assert.assertSame(optimized, generator.optimize(searchInfo));
+        // La búsqueda optimizada no se optimiza de nuevo al generar sus sentencias
+        Assert.assertSame(optimized, generator.optimize(optimized));
+        Assert.assertEquals(generator.find(User.class, searchInfo).getQuery(),
+                generator.find(User.class, optimized).getQuery());
+
+        SearchInfo unsatisfiable = new SearchInfo();
+        unsatisfiable.addCriteria(ValueComparison.eq("id", 1L));
+        unsatisfiable.addCriteria(ValueComparison.eq("id", 2L));
+        unsatisfiable.freeze();
+        Assert.assertTrue(generator.isUnsatisfiable(unsatisfiable));
+        Assert.assertTrue(generator.isUnsatisfiable(generator.optimize(unsatisfiable)));
+        Assert.assertSame(generator.optimize(unsatisfiable), generator.optimize(unsatisfiable));
+
+        // Al desactivar la optimización se descartan las optimizaciones memorizadas
+        generator.setCriteriaOptimization(false);
+        Assert.assertFalse(generator.isUnsatisfiable(unsatisfiable));
+        Assert.assertSame(unsatisfiable, generator.optimize(unsatisfiable));
+    }
+
+    private static List<Criteria> criterias(final Criteria... criterias) {
+        return new ArrayList<Criteria>(Arrays.asList(criterias));
+    }
+}
@@ -1,5 +1,6 @@
 package com.diwa.dao;
 
+import com.diwa.dao.domain.ArticleSummary;
 import com.diwa.dao.domain.Profile;
 import com.diwa.dao.domain.Role;
 import com.diwa.dao.domain.User;
@@ -13,6 +14,7 @@ import com.diwa.dao.shared.entity.DomainEntity;
 import com.diwa.dao.shared.entity.FetchJoin;
 import com.diwa.dao.shared.entity.JoinEntity;
 import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchCursor;
 import com.diwa.dao.shared.search.SearchInfo;
 import junit.framework.TestCase;
 import org.junit.Assert;
@@ -20,13 +22,32 @@ import org.junit.Assert;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class JPQLGeneratorTest extends TestCase {
 
+    private JPQLGenerator shared;
+
+    @Override
+    protected void setUp () throws Exception {
+        // Cada test utiliza un generador propio; el compartido por los DAO no se modifica
+        JPQLGenerator generator = new JPQLGenerator();
+        // Los nombres esperados se calculan a partir del hashCode de los valores
+        generator.setParameterNaming(ParameterNaming.VALUE_HASH);
+        shared = JPQLGenerator.setInstance(generator);
+    }
+
+    @Override
+    protected void tearDown () throws Exception {
+        JPQLGenerator.setInstance(shared);
+    }
+
     public void testUpdate () throws Exception {
         JPQLGenerator generator = JPQLGenerator.getInstance();
         Map<String, Serializable> atts = new HashMap<String, Serializable>();
@@ -46,6 +67,25 @@ public class JPQLGeneratorTest extends TestCase {
         Assert.assertEquals("fieldValue3", query.getParameters().get(p3));
     }
 
+    public void testDelete () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(ValueComparison.eq("fieldName", "fieldValue"));
+        String parameterName = generator.generateVarName("fieldName", "fieldValue").toString();
+        JPQLResult jpqlResult = generator.delete(User.class, searchInfo);
+        Assert.assertEquals(String.format("DELETE FROM entityUser e WHERE e.fieldName = :%s", parameterName), jpqlResult.getQuery());
+        Assert.assertEquals("fieldValue", jpqlResult.getParameters().get(parameterName));
+        Assert.assertEquals("DELETE FROM entityUser e", generator.delete(User.class, new SearchInfo()).getQuery());
+
+        searchInfo.addEntity(JoinEntity.join("role", "r"));
+        try {
+            generator.delete(User.class, searchInfo);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // La sentencia DELETE no admite joins
+        }
+    }
+
     public void testCount () throws Exception {
         JPQLGenerator generator = JPQLGenerator.getInstance();
         SearchInfo search = new SearchInfo();
@@ -386,4 +426,318 @@ public class JPQLGeneratorTest extends TestCase {
         StringBuilder varName = generator.generateVarName("entity.fieldName", value);
         Assert.assertEquals("entity_fieldName_" + value.hashCode(), varName.toString());
     }
-}
\ No newline at end of file
+
+    public void testGenerateVarNamePositional () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        Map<String, Serializable> params = new HashMap<String, Serializable>();
+        Assert.assertEquals("entity_fieldName_0", generator.generateVarName("entity.fieldName", "a", params).toString());
+        params.put("entity_fieldName_0", "a");
+        Assert.assertEquals("entity_fieldName_1", generator.generateVarName("entity.fieldName", "b", params).toString());
+    }
+
+    public void testPositionalNamingSameValueHash () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        // "Aa" y "BB" tienen el mismo hashCode
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(ValueComparison.eq("name", "Aa"));
+        searchInfo.addCriteria(ValueComparison.ne("name", "BB"));
+        JPQLResult result = generator.find(User.class, searchInfo);
+        Assert.assertEquals("SELECT DISTINCT e FROM entityUser AS e WHERE e.name = :name_0 AND e.name <> :name_1 ORDER BY e.id ASC",
+                result.getQuery());
+        Assert.assertEquals("Aa", result.getParameters().get("name_0"));
+        Assert.assertEquals("BB", result.getParameters().get("name_1"));
+    }
+
+    public void testPositionalNamingUpdate () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        Map<String, Serializable> atts = new LinkedHashMap<String, Serializable>();
+        atts.put("name", "new");
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(ValueComparison.eq("name", "old"));
+        JPQLResult result = generator.update(User.class, atts, searchInfo);
+        Assert.assertEquals("UPDATE entityUser e SET e.name = :name_0 WHERE e.name = :name_1", result.getQuery());
+        Assert.assertEquals("new", result.getParameters().get("name_0"));
+        Assert.assertEquals("old", result.getParameters().get("name_1"));
+    }
+
+    /**
+     * Simula N llamadas con valores diferentes y calcula la tasa de aciertos que tendría la QueryPlanCache de
+     * Hibernate: cada sentencia JPQL diferente es un fallo (parseo y traducción a SQL), el resto son aciertos.
+     */
+    public void testPlanCacheHitRate () throws Exception {
+        int calls = 200;
+        Map<ParameterNaming, Map<String, Double>> hitRates = new HashMap<ParameterNaming, Map<String, Double>>();
+        for (ParameterNaming naming : ParameterNaming.values()) {
+            JPQLGenerator generator = JPQLGenerator.getInstance();
+            generator.setParameterNaming(naming);
+            Set<String> find = new HashSet<String>();
+            Set<String> count = new HashSet<String>();
+            Set<String> update = new HashSet<String>();
+            Set<String> aggregate = new HashSet<String>();
+            for (int i = 0; i < calls; i++) {
+                SearchInfo searchInfo = new SearchInfo();
+                searchInfo.addCriteria(ValueComparison.eq("name", "user" + i));
+                searchInfo.addCriteria(new BetweenConditional("id", (long) i, (long) i + 10));
+                find.add(generator.find(User.class, searchInfo).getQuery());
+                count.add(generator.count(User.class, searchInfo).getQuery());
+                aggregate.add(generator.aggregate(User.class, Aggregate.MAX, "id", searchInfo).getQuery());
+                Map<String, Serializable> atts = new HashMap<String, Serializable>();
+                atts.put("name", "renamed" + i);
+                update.add(generator.update(User.class, atts, searchInfo).getQuery());
+            }
+            Map<String, Double> rates = new LinkedHashMap<String, Double>();
+            rates.put("find", 1 - (double) find.size() / calls);
+            rates.put("count", 1 - (double) count.size() / calls);
+            rates.put("update", 1 - (double) update.size() / calls);
+            rates.put("aggregate", 1 - (double) aggregate.size() / calls);
+            hitRates.put(naming, rates);
+        }
+        for (Double rate : hitRates.get(ParameterNaming.VALUE_HASH).values()) {
+            Assert.assertEquals(0d, rate, 0.001d);
+        }
+        for (Double rate : hitRates.get(ParameterNaming.POSITIONAL).values()) {
+            Assert.assertEquals(1d - 1d / calls, rate, 0.001d);
+        }
+    }
+
+    public void testTemplateCache () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        generator.setTemplateCacheSize(JPQLGenerator.DEFAULT_TEMPLATE_CACHE_SIZE);
+        JPQLResult first = generator.find(User.class, templateSearchInfo("a", 1L, "x", "y"));
+        JPQLResult second = generator.find(User.class, templateSearchInfo("b", 2L, "z", "w"));
+        Assert.assertEquals(1, generator.getTemplateCacheStats().missCount());
+        Assert.assertEquals(1, generator.getTemplateCacheStats().hitCount());
+        Assert.assertEquals(first.getQuery(), second.getQuery());
+
+        // Los parámetros obtenidos de la plantilla coinciden con los de la sentencia generada sin cache
+        generator.setTemplateCacheEnabled(false);
+        JPQLResult uncached = generator.find(User.class, templateSearchInfo("b", 2L, "z", "w"));
+        generator.setTemplateCacheEnabled(true);
+        Assert.assertEquals(uncached.getQuery(), second.getQuery());
+        Assert.assertEquals(uncached.getParameters(), second.getParameters());
+        Assert.assertEquals("B", second.getParameters().get("name_0"));
+    }
+
+    public void testTemplateCacheShape () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        generator.setTemplateCacheSize(JPQLGenerator.DEFAULT_TEMPLATE_CACHE_SIZE);
+        SearchInfo one = new SearchInfo();
+        List<Long> values = new ArrayList<Long>();
+        values.add(1L);
+        one.addCriteria(new InConditional("id", values));
+        SearchInfo many = new SearchInfo();
+        many.addCriteria(new InConditional("id", new ArrayList<Long>(java.util.Arrays.asList(1L, 2L))));
+        Assert.assertEquals("SELECT COUNT(e) FROM entityUser AS e WHERE e.id = :id_0", generator.count(User.class, one).getQuery());
+        Assert.assertEquals("SELECT COUNT(e) FROM entityUser AS e WHERE e.id IN (:id_0)", generator.count(User.class, many).getQuery());
+        Assert.assertEquals(0, generator.getTemplateCacheStats().hitCount());
+        Assert.assertEquals(2, generator.getTemplateCacheStats().missCount());
+    }
+
+    public void testTemplateCacheEviction () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        generator.setTemplateCacheSize(2);
+        for (int i = 0; i < 5; i++) {
+            SearchInfo searchInfo = new SearchInfo();
+            searchInfo.addCriteria(ValueComparison.eq("field" + i, i));
+            generator.aggregate(User.class, Aggregate.SUM, "amount", searchInfo);
+        }
+        Assert.assertEquals(5, generator.getTemplateCacheStats().missCount());
+        Assert.assertEquals(3, generator.getTemplateCacheStats().evictionCount());
+        generator.setTemplateCacheSize(JPQLGenerator.DEFAULT_TEMPLATE_CACHE_SIZE);
+    }
+
+    public void testTemplateCacheDisabledWithValueHash () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setTemplateCacheSize(JPQLGenerator.DEFAULT_TEMPLATE_CACHE_SIZE);
+        generator.find(User.class, templateSearchInfo("a", 1L, "x", "y"));
+        generator.find(User.class, templateSearchInfo("a", 1L, "x", "y"));
+        Assert.assertEquals(0, generator.getTemplateCacheStats().requestCount());
+    }
+
+    private SearchInfo templateSearchInfo (String name, Long id, String role1, String role2) {
+        SearchInfo searchInfo = new SearchInfo();
+        DomainEntity role = new DomainEntity(Role.class, "r");
+        searchInfo.addEntity(role);
+        ValueComparison nameComparison = (ValueComparison) ValueComparison.eq("name", name);
+        nameComparison.setCaseSensitive(false);
+        searchInfo.addCriteria(nameComparison);
+        List<Criteria> or = new ArrayList<Criteria>();
+        or.add(ValueComparison.ge("id", id));
+        or.add(new NotLogical(new LikeConditional("name", role1, role)));
+        or.add(new InConditional("name", role, new ArrayList<String>(java.util.Arrays.asList(role1, role2))));
+        searchInfo.addCriteria(GroupLogical.or(or));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        return searchInfo;
+    }
+
+    public void testGenerateConditionalClauseInPadding () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        generator.setInListPadding(true);
+        try {
+            InConditional conditional = new InConditional("name", new ArrayList<String>(java.util.Arrays.asList("a", "b", "c")));
+            conditional.setCaseSensitive(false);
+            HashMap<String, Serializable> parameters = new HashMap<String, Serializable>();
+            StringBuilder query = generator.generateConditionalClause(conditional, parameters);
+            Assert.assertEquals("UPPER(e.name) IN (:name_0)", query.toString());
+            Assert.assertEquals(java.util.Arrays.asList("A", "B", "C", "C"), parameters.get("name_0"));
+        } finally {
+            generator.setInListPadding(false);
+        }
+    }
+
+    public void testGenerateConditionalClauseInSplit () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        generator.setMaxInListSize(2);
+        try {
+            InConditional conditional = new InConditional("id", new ArrayList<Long>(java.util.Arrays.asList(1L, 2L, 3L, 4L, 5L)));
+            HashMap<String, Serializable> parameters = new HashMap<String, Serializable>();
+            StringBuilder query = generator.generateConditionalClause(conditional, parameters);
+            Assert.assertEquals("(e.id IN (:id_0) OR e.id IN (:id_1) OR e.id IN (:id_2))", query.toString());
+            Assert.assertEquals(java.util.Arrays.asList(1L, 2L), parameters.get("id_0"));
+            Assert.assertEquals(java.util.Arrays.asList(3L, 4L), parameters.get("id_1"));
+            Assert.assertEquals(java.util.Arrays.asList(5L), parameters.get("id_2"));
+        } finally {
+            generator.setMaxInListSize(JPQLGenerator.DEFAULT_MAX_IN_LIST_SIZE);
+        }
+    }
+
+    public void testGenerateConditionalClauseInSplitValueHash () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        List<Long> values = new ArrayList<Long>();
+        for (long i = 0; i < 2500; i++) {
+            values.add(i);
+        }
+        HashMap<String, Serializable> parameters = new HashMap<String, Serializable>();
+        StringBuilder query = generator.generateConditionalClause(new InConditional("id", values), parameters);
+        // Cada trozo tiene su propio parámetro con sus valores
+        Assert.assertEquals(3, parameters.size());
+        List<Serializable> bound = new ArrayList<Serializable>();
+        for (String name : parameters.keySet()) {
+            Assert.assertTrue(query.toString().contains("e.id IN (:" + name + ")"));
+            bound.addAll((List<? extends Serializable>) parameters.get(name));
+        }
+        Assert.assertEquals(values.size(), bound.size());
+        Assert.assertEquals(new HashSet<Serializable>(values), new HashSet<Serializable>(bound));
+    }
+
+        public void testFindKeyset () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(ValueComparison.eq("fieldName", "fieldValue"));
+        searchInfo.addOrder(OrderBy.desc("name"));
+        searchInfo.setAfter(new SearchCursor(java.util.Arrays.asList("b", 7L)));
+        for (int i = 0; i < 2; i++) {
+            JPQLResult jpqlResult = generator.find(User.class, searchInfo);
+            Assert.assertEquals("SELECT DISTINCT e FROM entityUser AS e WHERE e.fieldName = :fieldName_0"
+                    + " AND ((e.name < :after_name_1) OR (e.name = :after_name_1 AND e.id > :after_id_2))"
+                    + " ORDER BY e.name DESC, e.id ASC", jpqlResult.getQuery());
+            Assert.assertEquals("b", jpqlResult.getParameters().get("after_name_1"));
+            Assert.assertEquals(7L, jpqlResult.getParameters().get("after_id_2"));
+        }
+        // El COUNT no tiene en cuenta el cursor
+        Assert.assertEquals(1, generator.count(User.class, searchInfo).getParameters().size());
+    }
+
+    public void testFindKeysetNullValue () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addOrder(OrderBy.asc("name"));
+        searchInfo.setAfter(new SearchCursor(java.util.Arrays.<Serializable> asList(null, 7L)));
+        try {
+            generator.find(User.class, searchInfo);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // e.name > NULL omitiría todas las filas
+        }
+    }
+
+    public void testFindProjection () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(ValueComparison.eq("name", "fieldValue"));
+        searchInfo.addFetch(FetchJoin.leftJoinFetch("roles"));
+        searchInfo.addOrder(OrderBy.desc("name"));
+        JPQLResult jpqlResult = generator.findProjection(User.class, searchInfo, "id", "name");
+        // Los fetches no se aplican a las proyecciones
+        Assert.assertEquals("SELECT e.id, e.name FROM entityUser AS e WHERE e.name = :name_0 ORDER BY e.name DESC, e.id ASC",
+                jpqlResult.getQuery());
+        Assert.assertEquals("fieldValue", jpqlResult.getParameters().get("name_0"));
+        Assert.assertEquals("SELECT NEW com.diwa.dao.domain.ArticleSummary(e.id, e.name) FROM entityUser AS e"
+                + " WHERE e.name = :name_0 ORDER BY e.name DESC, e.id ASC",
+                generator.findProjection(User.class, searchInfo, ArticleSummary.class, "id", "name").getQuery());
+        Assert.assertEquals(1, searchInfo.getFetches().size());
+    }
+
+    public void testCountPrunesJoins () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        AssociationInspector inspector = new AssociationInspector() {
+            @Override
+            public boolean isToOne (Class<?> owner, String property) {
+                return "role".equals(property);
+            }
+
+            @Override
+            public Class<?> getAssociatedType (Class<?> owner, String property) {
+                return "role".equals(property) ? Role.class : null;
+            }
+        };
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.setDistinct(false);
+        JoinEntity role = JoinEntity.leftJoin("role", "r");
+        JoinEntity tags = JoinEntity.leftJoin("tags", "t");
+        searchInfo.addEntity(role);
+        searchInfo.addEntity(tags);
+        searchInfo.addCriteria(ValueComparison.eq("name", "fieldValue"));
+        searchInfo.addOrder(OrderBy.asc("name", role));
+        // Sin DISTINCT se mantiene el join a la colección, que multiplica las filas
+        Assert.assertEquals("SELECT COUNT(e) FROM Profile AS e LEFT JOIN e.tags t WHERE e.name = :name_0",
+                generator.count(Profile.class, searchInfo, inspector).getQuery());
+        // Con DISTINCT ningún LEFT JOIN no referenciado afecta al resultado
+        searchInfo.setDistinct(true);
+        Assert.assertEquals("SELECT COUNT(e) FROM Profile AS e WHERE e.name = :name_0",
+                generator.count(Profile.class, searchInfo, inspector).getQuery());
+        // Un join referenciado por un criterio se mantiene, y si es una colección obliga a contar con DISTINCT
+        searchInfo.addCriteria(ValueComparison.ne("name", "admin", role));
+        searchInfo.addCriteria(GroupLogical.or(java.util.Arrays.<Criteria>asList(ValueComparison.eq("elements", "a", tags))));
+        Assert.assertEquals("SELECT COUNT(DISTINCT e) FROM Profile AS e LEFT JOIN e.role r LEFT JOIN e.tags t"
+                + " WHERE e.name = :name_0 AND r.name <> :name_1 AND t.elements = :elements_2",
+                generator.count(Profile.class, searchInfo, inspector).getQuery());
+        // Sin información de las asociaciones se mantienen todos los joins y se cuenta con DISTINCT
+        Assert.assertEquals("SELECT COUNT(DISTINCT e) FROM Profile AS e LEFT JOIN e.role r LEFT JOIN e.tags t"
+                + " WHERE e.name = :name_0 AND r.name <> :name_1 AND t.elements = :elements_2",
+                generator.count(Profile.class, searchInfo).getQuery());
+    }
+
+    public void testFrozenSearchInfo () throws Exception {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(ValueComparison.eq("name", "fieldValue"));
+        searchInfo.addFetch(FetchJoin.leftJoinFetch("roles"));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        JPQLResult count = generator.count(User.class, searchInfo);
+        JPQLResult find = generator.find(User.class, searchInfo);
+        searchInfo.freeze();
+        JPQLResult frozenCount = generator.count(User.class, searchInfo);
+        Assert.assertEquals(count.getQuery(), frozenCount.getQuery());
+        Assert.assertEquals(count.getParameters(), frozenCount.getParameters());
+        Assert.assertEquals(find.getQuery(), generator.find(User.class, searchInfo).getQuery());
+        // Las sentencias de una búsqueda congelada se generan una única vez
+        Assert.assertSame(frozenCount, generator.count(User.class, searchInfo));
+        Assert.assertSame(generator.find(User.class, searchInfo), generator.find(User.class, searchInfo));
+        Assert.assertEquals(find.getQuery(), generator.find(User.class, searchInfo.withPage(10, 10)).getQuery());
+        // Al cambiar la configuración del generador se vuelven a generar
+        generator.setParameterNaming(ParameterNaming.POSITIONAL);
+        Assert.assertNotSame(frozenCount, generator.count(User.class, searchInfo));
+    }
+}
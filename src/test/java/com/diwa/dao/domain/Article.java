@@ -0,0 +1,117 @@
+package com.diwa.dao.domain;
+
+import javax.persistence.*;
+
+/**
+ * Entidad con muchos atributos y una asociación, utilizada para comparar las búsquedas de entidades completas con las
+ * proyecciones.
+ */
+@Entity
+public class Article {
+
+    @Id
+    @GeneratedValue(strategy= GenerationType.AUTO)
+    private Long id;
+
+    @Column(nullable = false)
+    private String title;
+
+    private String author;
+
+    @Column(length = 1000)
+    private String summary;
+
+    @Column(length = 4000)
+    private String body;
+
+    private String keywords;
+
+    private String language;
+
+    private String status;
+
+    private String source;
+
+    @ManyToOne
+    private Role category;
+
+    public Long getId () {
+        return id;
+    }
+
+    public void setId (Long id) {
+        this.id = id;
+    }
+
+    public String getTitle () {
+        return title;
+    }
+
+    public void setTitle (String title) {
+        this.title = title;
+    }
+
+    public String getAuthor () {
+        return author;
+    }
+
+    public void setAuthor (String author) {
+        this.author = author;
+    }
+
+    public String getSummary () {
+        return summary;
+    }
+
+    public void setSummary (String summary) {
+        this.summary = summary;
+    }
+
+    public String getBody () {
+        return body;
+    }
+
+    public void setBody (String body) {
+        this.body = body;
+    }
+
+    public String getKeywords () {
+        return keywords;
+    }
+
+    public void setKeywords (String keywords) {
+        this.keywords = keywords;
+    }
+
+    public String getLanguage () {
+        return language;
+    }
+
+    public void setLanguage (String language) {
+        this.language = language;
+    }
+
+    public String getStatus () {
+        return status;
+    }
+
+    public void setStatus (String status) {
+        this.status = status;
+    }
+
+    public String getSource () {
+        return source;
+    }
+
+    public void setSource (String source) {
+        this.source = source;
+    }
+
+    public Role getCategory () {
+        return category;
+    }
+
+    public void setCategory (Role category) {
+        this.category = category;
+    }
+}
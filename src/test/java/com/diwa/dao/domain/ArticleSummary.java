@@ -0,0 +1,24 @@
+package com.diwa.dao.domain;
+
+/**
+ * Resumen de un {@link Article} obtenido mediante una proyección.
+ */
+public class ArticleSummary {
+
+    private final Long id;
+
+    private final String title;
+
+    public ArticleSummary (Long id, String title) {
+        this.id = id;
+        this.title = title;
+    }
+
+    public Long getId () {
+        return id;
+    }
+
+    public String getTitle () {
+        return title;
+    }
+}
@@ -1,6 +1,8 @@
 package com.diwa.dao.domain;
 
 import javax.persistence.*;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Created by josemo on 5/1/15.
@@ -15,6 +17,12 @@ public class Profile {
     @Column(nullable = false, unique = true)
     private String name;
 
+    @ManyToOne
+    private Role role;
+
+    @ElementCollection
+    private Set<String> tags = new HashSet<String>();
+
     public Long getId () {
         return id;
     }
@@ -30,4 +38,20 @@ public class Profile {
     public void setName (String name) {
         this.name = name;
     }
-}
+
+    public Role getRole () {
+        return role;
+    }
+
+    public void setRole (Role role) {
+        this.role = role;
+    }
+
+    public Set<String> getTags () {
+        return tags;
+    }
+
+    public void setTags (Set<String> tags) {
+        this.tags = tags;
+    }
+}
\ No newline at end of file
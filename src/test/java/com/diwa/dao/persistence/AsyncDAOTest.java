@@ -0,0 +1,178 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.AsyncDAOImpl;
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.QueryTimeoutException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Comprueba las operaciones de {@link AsyncDAOImpl}, su cancelación y su tiempo máximo.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class AsyncDAOTest {
+
+    private static final int USERS = 500;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    /**
+     * DAO cuya consulta COUNT tarda 3 segundos. Registra el número de consultas y el tiempo máximo de su transacción.
+     */
+    private DAOImpl<User, Long> slowDao;
+
+    private final AtomicInteger transactionTimeout = new AtomicInteger(-1);
+
+    private final AtomicInteger slowCounts = new AtomicInteger();
+
+    private ExecutorService executor;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        slowDao = new DAOImpl<User, Long>(User.class, sessionFactory) {
+            @Override
+            protected Long countQuery(final SearchInfo searchInfo) {
+                slowCounts.incrementAndGet();
+                transactionTimeout.set(getSession().getTransaction().getTimeout());
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.countQuery(searchInfo);
+            }
+        };
+        executor = Executors.newFixedThreadPool(2);
+        prefix = "async-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + String.format("%03d", i));
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        // Las tareas en curso no deben ejecutar consultas durante las pruebas siguientes
+        executor.shutdownNow();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testFanOut() throws Exception {
+        AsyncDAOImpl<User, Long> async = new AsyncDAOImpl<User, Long>(userDao);
+        SearchInfo page = search();
+        page.setOffset(0);
+        page.setPageSize(10);
+        CompletableFuture<Long> count = async.count(search());
+        CompletableFuture<SearchResult<User>> find = async.find(page);
+        CompletableFuture<List<User>> all = async.findWithoutCount(search());
+        CompletableFuture.allOf(count, find, all).get(30, TimeUnit.SECONDS);
+
+        Assert.assertEquals(USERS, count.get().longValue());
+        Assert.assertEquals(USERS, find.get().getTotalMatches());
+        Assert.assertEquals(prefix + "000", find.get().getElements().get(0).getName());
+        Assert.assertEquals(USERS, all.get().size());
+        User first = async.read(all.get().get(0).getId()).get(30, TimeUnit.SECONDS);
+        Assert.assertEquals(prefix + "000", first.getName());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        AsyncDAOImpl<User, Long> async = new AsyncDAOImpl<User, Long>(slowDao, executor);
+        async.setTimeout(1);
+        long start = System.currentTimeMillis();
+        try {
+            async.count(search()).get(60, TimeUnit.SECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof QueryTimeoutException);
+        }
+        Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        // El tiempo máximo se aplica a la transacción y de ella al query timeout de las sentencias JDBC
+        Assert.assertEquals(1, transactionTimeout.get());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            final AtomicReference<Session> cancelled = new AtomicReference<Session>();
+            AsyncDAOImpl<User, Long> async = new AsyncDAOImpl<User, Long>(slowDao, single) {
+                @Override
+                protected void cancelQuery(final Session session) {
+                    cancelled.set(session);
+                    super.cancelQuery(session);
+                }
+            };
+            CompletableFuture<Long> slow = async.count(search());
+            CompletableFuture<Long> pending = async.count(search());
+            Thread.sleep(500);
+            Assert.assertTrue(slow.cancel(true));
+            try {
+                slow.get();
+                Assert.fail();
+            } catch (CancellationException e) {
+                // Se cancela la consulta en curso en la sesión de la operación
+                Assert.assertNotNull(cancelled.get());
+            }
+            // La operación cancelada antes de empezar no se ejecuta
+            Assert.assertTrue(pending.cancel(true));
+            single.shutdown();
+            Assert.assertTrue(single.awaitTermination(30, TimeUnit.SECONDS));
+            Assert.assertEquals(1, slowCounts.get());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        return searchInfo;
+    }
+}
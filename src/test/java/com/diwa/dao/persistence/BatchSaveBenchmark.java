@@ -0,0 +1,124 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mide el rendimiento (filas por segundo y pico de memoria) de {@link DAOImpl#save(java.util.Collection)} con y sin
+ * vaciado periódico de la sesión. Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class BatchSaveBenchmark {
+
+    private static final int ROWS = 50000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "batch-save-" + System.nanoTime() + "-";
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchInfo searchInfo = new SearchInfo();
+                searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+                userDao.delete(searchInfo);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkBatchedSave() {
+        long[] plain = run(0);
+        long[] batched = run(SpringTestConfig.BATCH_SIZE);
+        logger.info(String.format("save sin batch: %d filas/s, pico de heap %d KB, %d entidades en sesión",
+                plain[0], plain[1] / 1024, plain[2]));
+        logger.info(String.format("save con batch: %d filas/s, pico de heap %d KB, %d entidades en sesión",
+                batched[0], batched[1] / 1024, batched[2]));
+    }
+
+    /**
+     * Inserta las filas y devuelve las filas por segundo, el pico de memoria heap y el número de entidades que quedan
+     * en la sesión.
+     */
+    private long[] run(final int batchSize) {
+        userDao.setBatchSize(batchSize);
+        final List<User> users = new ArrayList<User>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            User user = new User();
+            user.setName(prefix + batchSize + "-" + i);
+            users.add(user);
+        }
+        System.gc();
+        resetPeakUsage();
+        long start = System.nanoTime();
+        Integer entities = new TransactionTemplate(txManager).execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                userDao.save(users);
+                int entities = sessionFactory.getCurrentSession().getStatistics().getEntityCount();
+                sessionFactory.getCurrentSession().flush();
+                return entities;
+            }
+        });
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        return new long[] {ROWS * 1000000000L / elapsed, peakUsage(), entities};
+    }
+
+    private void resetPeakUsage() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private long peakUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,85 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comprueba que {@link DAOImpl#save(java.util.Collection)} guarda todas las filas y, con vaciado periódico de la
+ * sesión, no mantiene las entidades guardadas en la sesión. La medición de su rendimiento está en
+ * {@link BatchSaveBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class BatchSaveTest {
+
+    private static final int ROWS = 5000;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+    }
+
+    @Test
+    public void testBatchedSave() {
+        Assert.assertEquals(ROWS, run(0));
+        Assert.assertEquals(0, run(SpringTestConfig.BATCH_SIZE));
+    }
+
+    /**
+     * Inserta las filas, comprueba que se han guardado todas y devuelve el número de entidades que quedan en la sesión.
+     */
+    private int run(final int batchSize) {
+        userDao.setBatchSize(batchSize);
+        final String prefix = "batch-" + batchSize + "-" + System.nanoTime() + "-";
+        final List<User> users = new ArrayList<User>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            User user = new User();
+            user.setName(prefix + i);
+            users.add(user);
+        }
+        Integer entities = new TransactionTemplate(txManager).execute(new TransactionCallback<Integer>() {
+            @Override
+            public Integer doInTransaction(TransactionStatus status) {
+                userDao.save(users);
+                int entities = sessionFactory.getCurrentSession().getStatistics().getEntityCount();
+                sessionFactory.getCurrentSession().flush();
+                return entities;
+            }
+        });
+        Long saved = new TransactionTemplate(txManager).execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                SearchInfo searchInfo = new SearchInfo();
+                searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+                return userDao.count(searchInfo);
+            }
+        });
+        Assert.assertEquals(ROWS, saved.longValue());
+        return entities;
+    }
+}
@@ -0,0 +1,234 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.JPQLGenerator;
+import com.diwa.dao.domain.Article;
+import com.diwa.dao.domain.Profile;
+import com.diwa.dao.domain.Role;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.criteria.conditional.ValueComparison;
+import com.diwa.dao.shared.entity.JoinEntity;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Comprueba los borrados mediante sentencias DELETE de {@link DAOImpl#delete(SearchInfo)} y
+ * {@link DAOImpl#delete(java.util.Collection)}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class BulkDeleteTest {
+
+    private static final int USERS = 25;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    private final List<User> users = new ArrayList<User>();
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "delete-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + i);
+                    users.add(userDao.save(user));
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testDeleteSearchInfo() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                User managed = userDao.read(users.get(0).getId());
+                Assert.assertTrue(sessionFactory.getCurrentSession().contains(managed));
+                Assert.assertEquals(USERS, userDao.delete(prefixSearch()));
+                Assert.assertFalse(sessionFactory.getCurrentSession().contains(managed));
+                Assert.assertNull(userDao.read(users.get(0).getId()));
+                return null;
+            }
+        });
+        Assert.assertEquals(Long.valueOf(0), count());
+    }
+
+    @Test
+    public void testEvictDeletedOnly() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Session session = sessionFactory.getCurrentSession();
+                User deleted = userDao.read(users.get(0).getId());
+                User kept = userDao.read(users.get(1).getId());
+                SearchInfo searchInfo = new SearchInfo();
+                searchInfo.addCriteria(ValueComparison.eq("name", prefix + 0));
+                Assert.assertEquals(1, userDao.delete(searchInfo));
+                Assert.assertFalse(session.contains(deleted));
+                Assert.assertTrue(session.contains(kept));
+
+                userDao.delete(Arrays.asList(users.get(2), users.get(3)));
+                Assert.assertTrue(session.contains(kept));
+                userDao.delete(kept.getId());
+                Assert.assertFalse(session.contains(kept));
+                return null;
+            }
+        });
+        Assert.assertEquals(Long.valueOf(USERS - 4), count());
+    }
+
+    @Test
+    public void testDeleteWithCollections() {
+        final DAOImpl<Profile, Long> profileDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory);
+        final SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < 3; i++) {
+                    Profile profile = new Profile();
+                    profile.setName(prefix + i);
+                    profile.setTags(new HashSet<String>(Arrays.asList("a" + i, "b" + i)));
+                    profileDao.save(profile);
+                }
+                return null;
+            }
+        });
+        // Los registros de la colección tags se eliminan junto con cada perfil
+        Assert.assertEquals(Integer.valueOf(3), new TransactionTemplate(txManager).execute(
+                new TransactionCallback<Integer>() {
+                    @Override
+                    public Integer doInTransaction(TransactionStatus status) {
+                        return profileDao.delete(searchInfo);
+                    }
+                }));
+        Assert.assertEquals(Long.valueOf(0), new TransactionTemplate(txManager).execute(
+                new TransactionCallback<Long>() {
+                    @Override
+                    public Long doInTransaction(TransactionStatus status) {
+                        return profileDao.count(searchInfo);
+                    }
+                }));
+    }
+
+    @Test
+    public void testDeleteWithJoins() {
+        final DAOImpl<Article, Long> articleDao = new DAOImpl<Article, Long>(Article.class, sessionFactory);
+        final DAOImpl<Profile, Long> profileDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Role deleted = new Role();
+                deleted.setName(prefix + "deleted");
+                sessionFactory.getCurrentSession().save(deleted);
+                Role kept = new Role();
+                kept.setName(prefix + "kept");
+                sessionFactory.getCurrentSession().save(kept);
+                for (int i = 0; i < 5; i++) {
+                    Article article = new Article();
+                    article.setTitle(prefix + i);
+                    article.setCategory(i < 3 ? deleted : kept);
+                    articleDao.save(article);
+                }
+                for (int i = 0; i < 3; i++) {
+                    Profile profile = new Profile();
+                    profile.setName(prefix + i);
+                    profile.setTags(new HashSet<String>(Arrays.asList("a" + i, "b" + i)));
+                    profileDao.save(profile);
+                }
+                return null;
+            }
+        });
+        // Los criterios sobre entidades relacionadas no se pueden aplicar en una sentencia DELETE
+        final SearchInfo byCategory = new SearchInfo();
+        JoinEntity category = JoinEntity.join("category", "c");
+        byCategory.addEntity(category);
+        byCategory.addCriteria(ValueComparison.eq("name", prefix + "deleted", category));
+        // El join a la colección repite cada perfil una vez por etiqueta
+        final SearchInfo byTags = new SearchInfo();
+        byTags.addEntity(JoinEntity.leftJoin("tags", "t"));
+        byTags.addCriteria(new LikeConditional("name", prefix, true));
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertEquals(3, articleDao.delete(byCategory));
+                Assert.assertEquals(3, profileDao.delete(byTags));
+                return null;
+            }
+        });
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchInfo articles = new SearchInfo();
+                articles.addCriteria(new LikeConditional("title", prefix, true));
+                Assert.assertEquals(Long.valueOf(2), articleDao.count(articles));
+                Assert.assertEquals(Long.valueOf(0), profileDao.count(byTags));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testDeleteCollection() {
+        JPQLGenerator generator = JPQLGenerator.getInstance();
+        generator.setMaxInListSize(4);
+        try {
+            new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+                @Override
+                public Object doInTransaction(TransactionStatus status) {
+                    userDao.delete(users.subList(0, USERS - 1));
+                    return null;
+                }
+            });
+        } finally {
+            generator.setMaxInListSize(JPQLGenerator.DEFAULT_MAX_IN_LIST_SIZE);
+        }
+        Assert.assertEquals(Long.valueOf(1), count());
+    }
+
+    private SearchInfo prefixSearch() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        return searchInfo;
+    }
+
+    private Long count() {
+        return new TransactionTemplate(txManager).execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                return userDao.count(prefixSearch());
+            }
+        });
+    }
+}
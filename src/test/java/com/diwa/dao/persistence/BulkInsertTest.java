@@ -0,0 +1,92 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.InsertProgressListener;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Comprueba la inserción masiva mediante {@link DAOImpl#insertAll(Iterator, InsertProgressListener)}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class BulkInsertTest {
+
+    private static final int ROWS = 5500;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+    }
+
+    @Test
+    public void testInsertAll() {
+        final String prefix = "bulk-" + System.nanoTime() + "-";
+        final List<Long> progress = new ArrayList<Long>();
+        long inserted = userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < ROWS;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + i++);
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }, new InsertProgressListener() {
+            @Override
+            public void onCommit(long inserted) {
+                progress.add(inserted);
+            }
+        });
+
+        Assert.assertEquals(ROWS, inserted);
+        Assert.assertEquals(6, progress.size());
+        Assert.assertEquals(Long.valueOf(DAOImpl.DEFAULT_INSERT_BATCH_SIZE), progress.get(0));
+        Assert.assertEquals(Long.valueOf(ROWS), progress.get(progress.size() - 1));
+
+        Long count = new TransactionTemplate(txManager).execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                SearchInfo searchInfo = new SearchInfo();
+                searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+                return userDao.count(searchInfo);
+            }
+        });
+        Assert.assertEquals(Long.valueOf(ROWS), count);
+    }
+}
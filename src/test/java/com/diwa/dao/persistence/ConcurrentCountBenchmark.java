@@ -0,0 +1,119 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Compara la latencia de {@link DAOImpl#find(SearchInfo)} ejecutando la consulta COUNT de forma secuencial y en un
+ * executor. Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ConcurrentCountBenchmark {
+
+    private static final int USERS = 2000;
+
+    private static final int QUERIES = 100;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private ExecutorService executor;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        executor = Executors.newFixedThreadPool(2);
+        prefix = "count-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + i);
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void benchmarkConcurrentCount() {
+        long[] sequential = run(null);
+        long[] concurrent = run(executor);
+        logger.info(String.format("find secuencial: p50 %d us, p95 %d us, p99 %d us",
+                sequential[0], sequential[1], sequential[2]));
+        logger.info(String.format("find concurrente: p50 %d us, p95 %d us, p99 %d us",
+                concurrent[0], concurrent[1], concurrent[2]));
+    }
+
+    /**
+     * Ejecuta las búsquedas y devuelve los percentiles 50, 95 y 99 de la latencia en microsegundos.
+     */
+    private long[] run(final ExecutorService countExecutor) {
+        userDao.setCountExecutor(countExecutor);
+        final long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long start = System.nanoTime();
+            SearchResult<User> result = new TransactionTemplate(txManager).execute(
+                    new TransactionCallback<SearchResult<User>>() {
+                        @Override
+                        public SearchResult<User> doInTransaction(TransactionStatus status) {
+                            return userDao.find(search());
+                        }
+                    });
+            latencies[i] = (System.nanoTime() - start) / 1000;
+            Assert.assertEquals(USERS, result.getTotalMatches());
+            Assert.assertEquals(20, result.getElements().size());
+        }
+        Arrays.sort(latencies);
+        return new long[] {latencies[QUERIES / 2], latencies[QUERIES * 95 / 100], latencies[QUERIES * 99 / 100]};
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.desc("name"));
+        searchInfo.setOffset(100);
+        searchInfo.setPageSize(20);
+        return searchInfo;
+    }
+}
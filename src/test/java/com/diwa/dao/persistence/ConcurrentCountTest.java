@@ -0,0 +1,146 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.QueryTimeoutException;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Comprueba que {@link DAOImpl#find(SearchInfo)} obtiene el mismo resultado ejecutando la consulta COUNT de forma
+ * secuencial y en un executor, y la cancelación de la consulta COUNT al superar el tiempo de espera. La comparación de
+ * latencias está en {@link ConcurrentCountBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ConcurrentCountTest {
+
+    private static final int USERS = 200;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private ExecutorService executor;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        executor = Executors.newFixedThreadPool(2);
+        prefix = "count-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + i);
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        // Las tareas en curso no deben ejecutar consultas durante las pruebas siguientes
+        executor.shutdownNow();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentCount() {
+        SearchResult<User> sequential = run(null);
+        SearchResult<User> concurrent = run(executor);
+        Assert.assertEquals(USERS, sequential.getTotalMatches());
+        Assert.assertEquals(sequential.getTotalMatches(), concurrent.getTotalMatches());
+        Assert.assertEquals(20, concurrent.getElements().size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(sequential.getElements().get(i).getId(), concurrent.getElements().get(i).getId());
+        }
+    }
+
+    @Test
+    public void testCountTimeout() {
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final DAOImpl<User, Long> slowDao = new DAOImpl<User, Long>(User.class, sessionFactory) {
+            @Override
+            protected Long countQuery(final SearchInfo searchInfo) {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    // No se ejecuta la consulta: su sesión ya no está disponible
+                    interrupted.set(true);
+                    return null;
+                }
+                return super.countQuery(searchInfo);
+            }
+        };
+        slowDao.setCountExecutor(executor);
+        slowDao.setCountTimeout(100);
+        long start = System.currentTimeMillis();
+        try {
+            new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+                @Override
+                public Object doInTransaction(TransactionStatus status) {
+                    return slowDao.find(search());
+                }
+            });
+            Assert.fail();
+        } catch (QueryTimeoutException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        Assert.assertTrue(interrupted.get());
+    }
+
+    private SearchResult<User> run(final ExecutorService countExecutor) {
+        userDao.setCountExecutor(countExecutor);
+        return new TransactionTemplate(txManager).execute(new TransactionCallback<SearchResult<User>>() {
+            @Override
+            public SearchResult<User> doInTransaction(TransactionStatus status) {
+                return userDao.find(search());
+            }
+        });
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.desc("name"));
+        searchInfo.setOffset(100);
+        searchInfo.setPageSize(20);
+        return searchInfo;
+    }
+}
@@ -0,0 +1,284 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.CountCache;
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.JPQLGenerator;
+import com.diwa.dao.JPQLResult;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Comprueba la cache de COUNT y el modo {@link CountMode#APPROXIMATE} de {@link DAOImpl#find(SearchInfo)}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class CountCacheTest {
+
+    private static final int USERS = 25;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    /**
+     * Consultas COUNT ejecutadas por el DAO. No se utilizan las estadísticas de Hibernate porque incluyen las consultas
+     * de otros threads.
+     */
+    private final AtomicInteger counts = new AtomicInteger();
+
+    private ExecutorService executor;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory) {
+            @Override
+            protected Long countQuery(final SearchInfo searchInfo) {
+                counts.incrementAndGet();
+                return super.countQuery(searchInfo);
+            }
+        };
+        prefix = "count-cache-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + i);
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        // Las tareas en curso no deben ejecutar consultas durante las pruebas siguientes
+        executor.shutdownNow();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCachedCount() {
+        final CountCache cache = new CountCache(60000);
+        userDao.setCountCache(cache);
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertEquals(USERS, userDao.find(search(CountMode.EXACT, 0)).getTotalMatches());
+                Assert.assertEquals(1, counts.get());
+                // Otra página de la misma búsqueda reutiliza el total
+                Assert.assertEquals(USERS, userDao.find(search(CountMode.EXACT, 10)).getTotalMatches());
+                Assert.assertEquals(1, counts.get());
+                Assert.assertEquals(1, cache.getHitCount());
+                Assert.assertEquals(1, cache.getMissCount());
+
+                // Al guardar una entidad se invalida la cache
+                User user = new User();
+                user.setName(prefix + USERS);
+                userDao.save(user);
+                Assert.assertEquals(USERS + 1, userDao.count(search(CountMode.EXACT, 0)).longValue());
+                Assert.assertEquals(2, counts.get());
+                Assert.assertEquals(1.0 / 3, cache.getHitRate(), 0.001);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidateOnRollback() {
+        CountCache cache = new CountCache(60000);
+        userDao.setCountCache(cache);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                User user = new User();
+                user.setName(prefix + USERS);
+                userDao.save(user);
+                // El valor incluye cambios sin confirmar, por lo que no se almacena
+                Assert.assertEquals(USERS + 1, userDao.count(search(CountMode.EXACT, 0)).longValue());
+                status.setRollbackOnly();
+                return null;
+            }
+        });
+        Assert.assertEquals(0, cache.size());
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertEquals(USERS, userDao.count(search(CountMode.EXACT, 0)).longValue());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidateAfterCommit() throws Exception {
+        final CountCache cache = new CountCache(60000);
+        userDao.setCountCache(cache);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                final JPQLResult key = JPQLGenerator.getInstance().count(User.class, search(CountMode.EXACT, 0));
+                User user = new User();
+                user.setName(prefix + USERS);
+                userDao.save(user);
+                try {
+                    // Otra transacción almacena el total anterior a la confirmación de los cambios
+                    executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            cache.put(User.class, key, USERS, cache.getGeneration(User.class));
+                        }
+                    }).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                Assert.assertEquals(1, cache.size());
+                return null;
+            }
+        });
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertEquals(USERS + 1, userDao.count(search(CountMode.EXACT, 0)).longValue());
+                Assert.assertEquals(1, counts.get());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testInvalidateHierarchy() {
+        CountCache cache = new CountCache(60000);
+        JPQLResult key = JPQLGenerator.getInstance().count(User.class, search(CountMode.EXACT, 0));
+        cache.put(Number.class, key, 1, cache.getGeneration(Number.class));
+        cache.put(Integer.class, key, 2, cache.getGeneration(Integer.class));
+        cache.put(String.class, key, 3, cache.getGeneration(String.class));
+
+        // Al invalidar una entidad se invalidan también su entidad padre y sus entidades hijas
+        cache.invalidate(Integer.class);
+        Assert.assertNull(cache.get(Number.class, key));
+        Assert.assertNull(cache.get(Integer.class, key));
+        Assert.assertEquals(3, cache.get(String.class, key).longValue());
+
+        cache.put(Number.class, key, 1, cache.getGeneration(Number.class));
+        cache.put(Integer.class, key, 2, cache.getGeneration(Integer.class));
+        cache.invalidate(Number.class);
+        Assert.assertNull(cache.get(Number.class, key));
+        Assert.assertNull(cache.get(Integer.class, key));
+    }
+
+    @Test
+    public void testExpiredCount() throws Exception {
+        CountCache cache = new CountCache(50);
+        userDao.setCountCache(cache);
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.count(search(CountMode.EXACT, 0));
+                return null;
+            }
+        });
+        Thread.sleep(100);
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.count(search(CountMode.EXACT, 0));
+                Assert.assertEquals(1, counts.get());
+                return null;
+            }
+        });
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testApproximate() throws Exception {
+        final CountCache cache = new CountCache(50);
+        userDao.setCountCache(cache);
+        userDao.setCountExecutor(executor);
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                // Sin valor en la cache se devuelve el mínimo conocido y se calcula en segundo plano
+                SearchResult<User> first = userDao.find(search(CountMode.APPROXIMATE, 0));
+                Assert.assertTrue(first.isApproximate());
+                Assert.assertEquals(11, first.getTotalMatches());
+                Assert.assertTrue(first.hasNext());
+
+                // En la última página el total es exacto
+                SearchResult<User> last = userDao.find(search(CountMode.APPROXIMATE, 20));
+                Assert.assertFalse(last.isApproximate());
+                Assert.assertEquals(USERS, last.getTotalMatches());
+                return null;
+            }
+        });
+        waitForEntry(cache);
+        Thread.sleep(100);
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                // Se devuelve el valor caducado de la cache
+                SearchResult<User> second = userDao.find(search(CountMode.APPROXIMATE, 10));
+                Assert.assertTrue(second.isApproximate());
+                Assert.assertEquals(USERS, second.getTotalMatches());
+                return null;
+            }
+        });
+        Assert.assertEquals(1, cache.getEstimateCount());
+        Assert.assertEquals(1, cache.getStaleHitCount());
+        Assert.assertTrue(cache.getMaxStaleness() >= 100);
+    }
+
+    private void waitForEntry(final CountCache cache) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, cache.size());
+    }
+
+    private void execute(final TransactionCallback<Object> callback) {
+        counts.set(0);
+        new TransactionTemplate(txManager).execute(callback);
+    }
+
+    private SearchInfo search(final CountMode countMode, final int offset) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        searchInfo.setCountMode(countMode);
+        searchInfo.setOffset(offset);
+        searchInfo.setPageSize(10);
+        return searchInfo;
+    }
+}
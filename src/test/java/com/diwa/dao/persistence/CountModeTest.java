@@ -0,0 +1,152 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Comprueba los diferentes modos de obtención del número total de resultados de {@link DAOImpl#find(SearchInfo)}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class CountModeTest {
+
+    private static final int USERS = 25;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "count-mode-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + i);
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testExact() {
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchResult<User> result = userDao.find(search(CountMode.EXACT, 0));
+                Assert.assertEquals(2, queries());
+                Assert.assertEquals(USERS, result.getTotalMatches());
+                Assert.assertTrue(result.hasNext());
+                Assert.assertFalse(userDao.find(search(CountMode.EXACT, 20)).hasNext());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testNone() {
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchResult<User> result = userDao.find(search(CountMode.NONE, 0));
+                Assert.assertEquals(1, queries());
+                Assert.assertEquals(-1, result.getTotalMatches());
+                Assert.assertEquals(10, result.getElements().size());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testHasNext() {
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchResult<User> first = userDao.find(search(CountMode.HAS_NEXT, 10));
+                SearchResult<User> last = userDao.find(search(CountMode.HAS_NEXT, 20));
+                Assert.assertEquals(2, queries());
+                Assert.assertEquals(10, first.getElements().size());
+                Assert.assertTrue(first.hasNext());
+                Assert.assertEquals(5, last.getElements().size());
+                Assert.assertFalse(last.hasNext());
+                Assert.assertEquals(-1, first.getTotalMatches());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testLazy() {
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchResult<User> first = userDao.find(search(CountMode.LAZY, 0));
+                Assert.assertEquals(1, queries());
+                Assert.assertTrue(first.hasNext());
+                Assert.assertEquals(USERS, first.getTotalMatches());
+                Assert.assertEquals(USERS, first.getTotalMatches());
+                Assert.assertEquals(2, queries());
+
+                // En la última página el total se deduce sin consulta COUNT
+                SearchResult<User> last = userDao.find(search(CountMode.LAZY, 20));
+                Assert.assertEquals(USERS, last.getTotalMatches());
+                Assert.assertEquals(3, queries());
+                return null;
+            }
+        });
+    }
+
+    private void execute(final TransactionCallback<Object> callback) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            new TransactionTemplate(txManager).execute(callback);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    private long queries() {
+        return sessionFactory.getStatistics().getQueryExecutionCount();
+    }
+
+    private SearchInfo search(final CountMode countMode, final int offset) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        searchInfo.setCountMode(countMode);
+        searchInfo.setOffset(offset);
+        searchInfo.setPageSize(10);
+        return searchInfo;
+    }
+}
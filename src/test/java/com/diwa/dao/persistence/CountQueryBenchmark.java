@@ -0,0 +1,130 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.AssociationInspector;
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.HibernateAssociationInspector;
+import com.diwa.dao.JPQLGenerator;
+import com.diwa.dao.domain.Profile;
+import com.diwa.dao.domain.Role;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.entity.JoinEntity;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compara el tiempo de la consulta COUNT simplificada, sin los joins que no afectan al resultado, con el de la
+ * consulta COUNT que mantiene todos los joins de la búsqueda. Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class CountQueryBenchmark {
+
+    private static final int PROFILES = 3000;
+
+    private static final int TAGS = 5;
+
+    private static final int RUNS = 50;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<Profile, Long> profileDao;
+
+    /**
+     * DAO que no dispone de información de las asociaciones, por lo que mantiene todos los joins en el COUNT.
+     */
+    private DAOImpl<Profile, Long> fullJoinDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        profileDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory);
+        fullJoinDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory) {
+            @Override
+            protected AssociationInspector getAssociationInspector() {
+                return null;
+            }
+        };
+        prefix = "count-query-benchmark-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Role role = new Role();
+                role.setName(prefix + "role");
+                sessionFactory.getCurrentSession().save(role);
+                for (int i = 0; i < PROFILES; i++) {
+                    Profile profile = new Profile();
+                    profile.setName(prefix + i);
+                    profile.setRole(i % 2 == 0 ? role : null);
+                    for (int j = 0; j < TAGS; j++) {
+                        profile.getTags().add("tag-" + j);
+                    }
+                    profileDao.save(profile);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkCountWithoutJoins() {
+        final SearchInfo searchInfo = search();
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                JPQLGenerator generator = JPQLGenerator.getInstance();
+                logger.info("count con joins: " + generator.count(Profile.class, searchInfo).getQuery());
+                logger.info("count simplificado: "
+                        + generator.count(Profile.class, searchInfo, inspector()).getQuery());
+                // Primera ejecución para que la medición no incluya la preparación de las consultas
+                Assert.assertEquals(PROFILES, fullJoinDao.count(searchInfo).longValue());
+                Assert.assertEquals(PROFILES, profileDao.count(searchInfo).longValue());
+                long full = time(fullJoinDao, searchInfo);
+                long lean = time(profileDao, searchInfo);
+                logger.info(String.format("%d COUNT con joins: %d ms, simplificado: %d ms", RUNS, full, lean));
+                return null;
+            }
+        });
+    }
+
+    private long time(final DAOImpl<Profile, Long> dao, final SearchInfo searchInfo) {
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < RUNS; i++) {
+            dao.count(searchInfo);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addEntity(JoinEntity.leftJoin("role", "r"));
+        searchInfo.addEntity(JoinEntity.leftJoin("tags", "t"));
+        searchInfo.addCriteria(new LikeConditional("name", prefix));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        return searchInfo;
+    }
+
+    private AssociationInspector inspector() {
+        return new HibernateAssociationInspector(sessionFactory);
+    }
+}
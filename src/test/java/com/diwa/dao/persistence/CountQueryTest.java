@@ -0,0 +1,133 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.AssociationInspector;
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.HibernateAssociationInspector;
+import com.diwa.dao.JPQLGenerator;
+import com.diwa.dao.domain.Profile;
+import com.diwa.dao.domain.Role;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.entity.JoinEntity;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Comprueba que la consulta COUNT simplificada, sin los joins que no afectan al resultado, obtiene el mismo resultado
+ * que la consulta COUNT que mantiene todos los joins de la búsqueda. La comparación de sus tiempos está en
+ * {@link CountQueryBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class CountQueryTest {
+
+    private static final int PROFILES = 300;
+
+    private static final int TAGS = 5;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<Profile, Long> profileDao;
+
+    /**
+     * DAO que no dispone de información de las asociaciones, por lo que mantiene todos los joins en el COUNT.
+     */
+    private DAOImpl<Profile, Long> fullJoinDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        profileDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory);
+        fullJoinDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory) {
+            @Override
+            protected AssociationInspector getAssociationInspector() {
+                return null;
+            }
+        };
+        prefix = "count-query-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Role role = new Role();
+                role.setName(prefix + "role");
+                sessionFactory.getCurrentSession().save(role);
+                for (int i = 0; i < PROFILES; i++) {
+                    Profile profile = new Profile();
+                    profile.setName(prefix + i);
+                    profile.setRole(i % 2 == 0 ? role : null);
+                    for (int j = 0; j < TAGS; j++) {
+                        profile.getTags().add("tag-" + j);
+                    }
+                    profileDao.save(profile);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testCountWithoutJoins() {
+        final SearchInfo searchInfo = search();
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                JPQLGenerator generator = JPQLGenerator.getInstance();
+                String full = generator.count(Profile.class, searchInfo).getQuery();
+                Assert.assertTrue(full, full.contains("COUNT(DISTINCT e)"));
+                Assert.assertTrue(full, full.contains("JOIN e.tags"));
+                String lean = generator.count(Profile.class, searchInfo, inspector()).getQuery();
+                Assert.assertTrue(lean, lean.startsWith("SELECT COUNT(e) FROM"));
+                Assert.assertFalse(lean, lean.contains("JOIN"));
+                Assert.assertEquals(PROFILES, profileDao.count(searchInfo).longValue());
+                Assert.assertEquals(PROFILES, fullJoinDao.count(searchInfo).longValue());
+                Assert.assertEquals(PROFILES, profileDao.findWithoutCount(searchInfo).size());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testCountWithReferencedJoin() {
+        final SearchInfo searchInfo = search();
+        JoinEntity role = (JoinEntity) searchInfo.getEntities().get(0);
+        searchInfo.addCriteria(new LikeConditional("name", prefix + "role", role));
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertEquals(PROFILES / 2, profileDao.count(searchInfo).longValue());
+                Assert.assertEquals(PROFILES / 2, profileDao.findWithoutCount(searchInfo).size());
+                return null;
+            }
+        });
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        JoinEntity role = JoinEntity.leftJoin("role", "r");
+        searchInfo.addEntity(role);
+        searchInfo.addEntity(JoinEntity.leftJoin("tags", "t"));
+        searchInfo.addCriteria(new LikeConditional("name", prefix));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        return searchInfo;
+    }
+
+    private AssociationInspector inspector() {
+        return new HibernateAssociationInspector(sessionFactory);
+    }
+}
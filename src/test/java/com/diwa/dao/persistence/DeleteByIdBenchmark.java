@@ -0,0 +1,104 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compara el tiempo del borrado por clave primaria mediante sentencia DELETE con el del borrado cargando previamente
+ * la entidad. Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class DeleteByIdBenchmark {
+
+    private static final int USERS = 5000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+    }
+
+    @Test
+    public void benchmarkDeleteById() {
+        final List<Long> loaded = insert();
+        final List<Long> direct = insert();
+        long[] loadedRun = run(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (Long id : loaded) {
+                    userDao.delete(userDao.read(id));
+                }
+                return null;
+            }
+        });
+        long[] directRun = run(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (Long id : direct) {
+                    userDao.delete(id);
+                }
+                return null;
+            }
+        });
+        logger.info(String.format("delete cargando la entidad: %d ms, %d entidades cargadas", loadedRun[0],
+                loadedRun[1]));
+        logger.info(String.format("delete por id: %d ms, %d entidades cargadas", directRun[0], directRun[1]));
+    }
+
+    private List<Long> insert() {
+        return new TransactionTemplate(txManager).execute(new TransactionCallback<List<Long>>() {
+            @Override
+            public List<Long> doInTransaction(TransactionStatus status) {
+                List<Long> ids = new ArrayList<Long>(USERS);
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName("delete-id-" + System.nanoTime() + "-" + i);
+                    ids.add(userDao.save(user).getId());
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Ejecuta los borrados y devuelve el tiempo empleado y el número de entidades cargadas.
+     */
+    private long[] run(final TransactionCallback<Object> callback) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        long start = System.currentTimeMillis();
+        new TransactionTemplate(txManager).execute(callback);
+        long elapsed = System.currentTimeMillis() - start;
+        long loads = statistics.getEntityLoadCount();
+        statistics.setStatisticsEnabled(false);
+        return new long[] {elapsed, loads};
+    }
+}
@@ -0,0 +1,106 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comprueba que el borrado por clave primaria mediante sentencia DELETE no carga las entidades, a diferencia del
+ * borrado cargando previamente la entidad. La comparación de sus tiempos está en {@link DeleteByIdBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class DeleteByIdTest {
+
+    private static final int USERS = 500;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+    }
+
+    @Test
+    public void testDeleteById() {
+        final List<Long> loaded = insert();
+        final List<Long> direct = insert();
+        long loadedRun = run(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (Long id : loaded) {
+                    userDao.delete(userDao.read(id));
+                }
+                return null;
+            }
+        });
+        long directRun = run(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (Long id : direct) {
+                    userDao.delete(id);
+                }
+                return null;
+            }
+        });
+        Assert.assertEquals(USERS, loadedRun);
+        Assert.assertEquals(0, directRun);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertNull(userDao.read(direct.get(0)));
+                Assert.assertNull(userDao.read(direct.get(USERS - 1)));
+                return null;
+            }
+        });
+    }
+
+    private List<Long> insert() {
+        return new TransactionTemplate(txManager).execute(new TransactionCallback<List<Long>>() {
+            @Override
+            public List<Long> doInTransaction(TransactionStatus status) {
+                List<Long> ids = new ArrayList<Long>(USERS);
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName("delete-id-" + System.nanoTime() + "-" + i);
+                    ids.add(userDao.save(user).getId());
+                }
+                return ids;
+            }
+        });
+    }
+
+    /**
+     * Ejecuta los borrados y devuelve el número de entidades cargadas.
+     */
+    private long run(final TransactionCallback<Object> callback) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        new TransactionTemplate(txManager).execute(callback);
+        long loads = statistics.getEntityLoadCount();
+        statistics.setStatisticsEnabled(false);
+        return loads;
+    }
+}
@@ -0,0 +1,153 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.InConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Comprueba que un IN que se resuelve mediante varias consultas devuelve los mismos resultados que la consulta sin
+ * dividir.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class InChunkedQueryTest {
+
+    private static final int USERS = 40;
+
+    /**
+     * Trozos de 7 valores de los 45 valores distintos del IN.
+     */
+    private static final int CHUNKS = 7;
+
+    /**
+     * Umbral con el que los usuarios que cumplen el IN caben en una única sentencia: trozos de 30 valores.
+     */
+    private static final int MATCHES_THRESHOLD = 30;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private final List<Long> ids = new ArrayList<Long>();
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName("chunked-" + System.nanoTime() + "-" + (i % 7));
+                    ids.add(userDao.save(user).getId());
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testChunkedFindAndCount() {
+        List<Long> values = values();
+        SearchResult<User> plain = find(values, 0, OrderBy.desc("name"));
+        SearchResult<User> chunked = find(values, MATCHES_THRESHOLD, OrderBy.desc("name"));
+        Assert.assertEquals(USERS / 2 + 5, plain.getTotalMatches());
+        Assert.assertEquals(plain.getTotalMatches(), chunked.getTotalMatches());
+        Assert.assertEquals(10, plain.getElements().size());
+        Assert.assertEquals(ids(plain.getElements()), ids(chunked.getElements()));
+    }
+
+    @Test
+    public void testMergedOrder() {
+        List<Long> values = values();
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            // El orden de las cadenas depende de la BD: se obtienen por trozos los identificadores que cumplen la
+            // búsqueda y la BD ordena la página con ellos
+            statistics.clear();
+            find(values, MATCHES_THRESHOLD, OrderBy.desc("name"));
+            Assert.assertEquals(2 + 2 + 1, statistics.getQueryExecutionCount());
+
+            // El orden por identificador se puede unir en memoria
+            statistics.clear();
+            SearchResult<User> chunked = find(values, 7, OrderBy.desc("id"));
+            Assert.assertEquals(CHUNKS + CHUNKS, statistics.getQueryExecutionCount());
+            Assert.assertEquals(ids(find(values, 0, OrderBy.desc("id")).getElements()), ids(chunked.getElements()));
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    @Test
+    public void testTooManyMatches() {
+        // Los 25 usuarios que cumplen el IN no caben en una única sentencia ordenada por la BD
+        try {
+            find(values(), 7, OrderBy.desc("name"));
+            Assert.fail();
+        } catch (HibernateException e) {
+            Assert.assertTrue(e.getMessage().contains("25 User"));
+        }
+    }
+
+    /**
+     * Valores del IN: la mitad de los usuarios, identificadores inexistentes y valores repetidos que pueden caer en
+     * trozos diferentes.
+     */
+    private List<Long> values() {
+        List<Long> values = new ArrayList<Long>();
+        for (int i = 0; i < ids.size(); i += 2) {
+            values.add(ids.get(i));
+            values.add(-1L - i);
+        }
+        values.addAll(ids.subList(0, 10));
+        return values;
+    }
+
+    private SearchResult<User> find(final List<Long> values, final int threshold, final OrderBy order) {
+        userDao.setInChunkedQueryThreshold(threshold);
+        return new TransactionTemplate(txManager).execute(new TransactionCallback<SearchResult<User>>() {
+            @Override
+            public SearchResult<User> doInTransaction(TransactionStatus status) {
+                SearchInfo searchInfo = new SearchInfo();
+                searchInfo.addCriteria(new InConditional("id", new ArrayList<Long>(values)));
+                searchInfo.addOrder(order);
+                searchInfo.setOffset(5);
+                searchInfo.setPageSize(10);
+                return userDao.find(searchInfo);
+            }
+        });
+    }
+
+    private List<Long> ids(final List<User> users) {
+        List<Long> result = new ArrayList<Long>();
+        for (User user : users) {
+            result.add(user.getId());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,106 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.JPQLGenerator;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.InConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comprueba el número de sentencias diferentes que genera un IN con listas de tamaño aleatorio, con y sin relleno de
+ * las listas hasta potencias de dos.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class InListPaddingTest {
+
+    private static final int USERS = 300;
+
+    private static final int QUERIES = 200;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private final List<Long> ids = new ArrayList<Long>();
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName("padding-" + System.nanoTime() + "-" + i);
+                    ids.add(userDao.save(user).getId());
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testStatementChurn() {
+        long[] plain = run(false);
+        long[] padded = run(true);
+        // Los mismos resultados con y sin relleno
+        Assert.assertEquals(plain[1], padded[1]);
+        // Tamaños entre 2 y 256: como mucho 8 potencias de dos diferentes
+        Assert.assertTrue(padded[0] <= 8);
+        Assert.assertTrue(padded[0] < plain[0]);
+    }
+
+    /**
+     * Ejecuta las consultas y devuelve el número de sentencias diferentes y el número total de resultados.
+     */
+    private long[] run(final boolean padding) {
+        final Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        JPQLGenerator.getInstance().setInListPadding(padding);
+        final Random random = new Random(42);
+        Long results;
+        try {
+            results = new TransactionTemplate(txManager).execute(new TransactionCallback<Long>() {
+                @Override
+                public Long doInTransaction(TransactionStatus status) {
+                    long total = 0;
+                    for (int i = 0; i < QUERIES; i++) {
+                        int size = 2 + random.nextInt(255);
+                        SearchInfo searchInfo = new SearchInfo();
+                        searchInfo.addCriteria(new InConditional("id", new ArrayList<Long>(ids.subList(0, size))));
+                        total += userDao.findWithoutCount(searchInfo).size();
+                    }
+                    return total;
+                }
+            });
+        } finally {
+            JPQLGenerator.getInstance().setInListPadding(false);
+        }
+        long statements = statistics.getQueries().length;
+        statistics.setStatisticsEnabled(false);
+        return new long[] {statements, results};
+    }
+}
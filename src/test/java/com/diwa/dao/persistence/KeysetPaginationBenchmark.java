@@ -0,0 +1,127 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchCursor;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Compara la latencia de las páginas según su profundidad con la paginación mediante cursor y mediante offset. Sólo
+ * se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class KeysetPaginationBenchmark {
+
+    private static final int USERS = 20000;
+
+    private static final int PAGE_SIZE = 50;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "keyset-" + System.nanoTime() + "-";
+        userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < USERS;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + String.format("%05d", i++));
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkLatencyByDepth() {
+        final int[] depths = {0, USERS / 4, USERS / 2, USERS - PAGE_SIZE};
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int depth : depths) {
+                    SearchCursor cursor = null;
+                    if (depth > 0) {
+                        SearchResult<User> previous = userDao.find(search(depth - PAGE_SIZE, null));
+                        cursor = previous.getNextCursor();
+                    }
+                    long offsetTime = time(search(depth, null));
+                    long keysetTime = time(search(cursor == null ? 0 : -1, cursor));
+                    logger.info(String.format("profundidad %d: offset %d us, keyset %d us", depth,
+                            offsetTime, keysetTime));
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Devuelve la mediana del tiempo, en microsegundos, de obtener la página indicada.
+     */
+    private long time(final SearchInfo searchInfo) {
+        long[] times = new long[5];
+        for (int i = 0; i < times.length; i++) {
+            long start = System.nanoTime();
+            Assert.assertEquals(PAGE_SIZE, userDao.findWithoutCount(searchInfo).size());
+            times[i] = (System.nanoTime() - start) / 1000;
+            sessionFactory.getCurrentSession().clear();
+        }
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    private SearchInfo search(final int offset, final SearchCursor after) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.desc("name"));
+        searchInfo.setCountMode(CountMode.HAS_NEXT);
+        searchInfo.setDistinct(false);
+        searchInfo.setOffset(offset);
+        searchInfo.setPageSize(PAGE_SIZE);
+        searchInfo.setAfter(after);
+        return searchInfo;
+    }
+}
@@ -0,0 +1,145 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.Article;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchCursor;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Comprueba que la paginación mediante cursor obtiene las mismas páginas que la paginación mediante offset. La
+ * comparación de la latencia según la profundidad de la página está en {@link KeysetPaginationBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class KeysetPaginationTest {
+
+    private static final int USERS = 500;
+
+    private static final int PAGE_SIZE = 50;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "keyset-" + System.nanoTime() + "-";
+        userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < USERS;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + String.format("%05d", i++));
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @Test
+    public void testKeysetMatchesOffset() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchCursor cursor = null;
+                for (int page = 0; page < 5; page++) {
+                    SearchResult<User> byOffset = userDao.find(search(page * PAGE_SIZE, null));
+                    SearchResult<User> byCursor = userDao.find(search(cursor == null ? 0 : -1, cursor));
+                    Assert.assertEquals(ids(byOffset.getElements()), ids(byCursor.getElements()));
+                    Assert.assertTrue(byCursor.hasNext());
+                    cursor = byCursor.getNextCursor();
+                    Assert.assertNotNull(cursor);
+                }
+                SearchResult<User> last = userDao.find(search(USERS - PAGE_SIZE, null));
+                Assert.assertFalse(last.hasNext());
+                Assert.assertNull(last.getNextCursor());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testNullableSortKey() {
+        final DAOImpl<Article, Long> articleDao = new DAOImpl<Article, Long>(Article.class, sessionFactory);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < 3; i++) {
+                    Article article = new Article();
+                    article.setTitle(prefix + i);
+                    article.setAuthor(i == 0 ? prefix : null);
+                    articleDao.save(article);
+                }
+                // Con un atributo de ordenación que admite nulos no se genera cursor: omitiría los nulos
+                SearchInfo searchInfo = new SearchInfo();
+                searchInfo.addCriteria(new LikeConditional("title", prefix, true));
+                searchInfo.addOrder(OrderBy.asc("author"));
+                searchInfo.setCountMode(CountMode.HAS_NEXT);
+                searchInfo.setOffset(0);
+                searchInfo.setPageSize(1);
+                SearchResult<Article> page = articleDao.find(searchInfo);
+                Assert.assertTrue(page.hasNext());
+                Assert.assertNull(page.getNextCursor());
+                return null;
+            }
+        });
+    }
+
+    private SearchInfo search(final int offset, final SearchCursor after) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.desc("name"));
+        searchInfo.setCountMode(CountMode.HAS_NEXT);
+        searchInfo.setDistinct(false);
+        searchInfo.setOffset(offset);
+        searchInfo.setPageSize(PAGE_SIZE);
+        searchInfo.setAfter(after);
+        return searchInfo;
+    }
+
+    private List<Long> ids(final List<User> users) {
+        List<Long> result = new ArrayList<Long>();
+        for (User user : users) {
+            result.add(user.getId());
+        }
+        return result;
+    }
+}
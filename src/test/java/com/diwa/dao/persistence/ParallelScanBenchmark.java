@@ -0,0 +1,119 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Mide la escalabilidad de 1 a 8 threads del recorrido en paralelo de
+ * {@link DAOImpl#parallelScan(SearchInfo, int, Consumer)}. Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ParallelScanBenchmark {
+
+    private static final int USERS = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        userDao.setScanBatchSize(1000);
+        prefix = "scan-" + System.nanoTime() + "-";
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.delete(search());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkScaling() {
+        insert(USERS);
+        long single = 0;
+        for (int threads = 1; threads <= 8; threads *= 2) {
+            final AtomicInteger processed = new AtomicInteger();
+            long start = System.currentTimeMillis();
+            userDao.parallelScan(search(), threads, new Consumer<List<User>>() {
+                @Override
+                public void accept(List<User> batch) {
+                    processed.addAndGet(batch.size());
+                }
+            });
+            long elapsed = System.currentTimeMillis() - start;
+            if (threads == 1) {
+                single = elapsed;
+            }
+            Assert.assertEquals(USERS, processed.get());
+            logger.info(String.format("parallelScan de %d entidades con %d threads: %d ms (x%.2f)",
+                    USERS, threads, elapsed, (double) single / Math.max(elapsed, 1)));
+        }
+    }
+
+    private void insert(final int count) {
+        userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + i++);
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        return searchInfo;
+    }
+}
@@ -0,0 +1,224 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.DefaultQueryResultCache;
+import com.diwa.dao.ScanFailurePolicy;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.HibernateException;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Comprueba el recorrido en paralelo por rangos de la clave primaria de
+ * {@link DAOImpl#parallelScan(SearchInfo, int, Consumer)}. La medición de su escalabilidad está en
+ * {@link ParallelScanBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ParallelScanTest {
+
+    private static final int USERS = 10000;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        userDao.setScanBatchSize(500);
+        prefix = "scan-" + System.nanoTime() + "-";
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.delete(search());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testScan() {
+        insert(USERS);
+        final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        final Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final AtomicInteger duplicates = new AtomicInteger();
+        userDao.parallelScan(search(), 4, new Consumer<List<User>>() {
+            @Override
+            public void accept(List<User> batch) {
+                Assert.assertTrue(batch.size() <= 500);
+                threads.add(Thread.currentThread().getName());
+                for (User user : batch) {
+                    if (!ids.add(user.getId())) {
+                        duplicates.incrementAndGet();
+                    }
+                }
+            }
+        });
+        Assert.assertEquals(USERS, ids.size());
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(4, threads.size());
+    }
+
+    @Test
+    public void testEmptyScan() {
+        final AtomicInteger batches = new AtomicInteger();
+        userDao.parallelScan(search(), 4, new Consumer<List<User>>() {
+            @Override
+            public void accept(List<User> batch) {
+                batches.incrementAndGet();
+            }
+        });
+        Assert.assertEquals(0, batches.get());
+    }
+
+    @Test
+    public void testCachedRange() {
+        userDao.setQueryResultCache(new DefaultQueryResultCache(60000, 1000));
+        insert(userDao, prefix, 100);
+        // La cache sólo almacena las búsquedas repetidas
+        Assert.assertEquals(100, scan());
+        Assert.assertEquals(100, scan());
+        // Las inserciones de otro proceso no invalidan la cache del DAO, pero el rango no ha de utilizarla
+        insert(new DAOImpl<User, Long>(User.class, sessionFactory), prefix + "new-", 100);
+        Assert.assertEquals(200, scan());
+    }
+
+    @Test
+    public void testFailure() {
+        insert(USERS);
+        // La partición que falla se interrumpe; con FAIL_FAST el resto se detienen tras el bloque en curso
+        int failFast = failingScan(ScanFailurePolicy.FAIL_FAST);
+        int continued = failingScan(ScanFailurePolicy.CONTINUE);
+        Assert.assertTrue(failFast < USERS / 2);
+        Assert.assertTrue(continued >= USERS / 2);
+        Assert.assertTrue(failFast < continued);
+    }
+
+    /**
+     * Recorre las entidades con un consumidor que falla en el bloque que contiene la primera entidad.
+     *
+     * @return Número de entidades procesadas.
+     */
+    private int failingScan(final ScanFailurePolicy policy) {
+        userDao.setScanFailurePolicy(policy);
+        final AtomicInteger processed = new AtomicInteger();
+        final Long first = firstId();
+        try {
+            userDao.parallelScan(search(), 4, new Consumer<List<User>>() {
+                @Override
+                public void accept(List<User> batch) {
+                    for (User user : batch) {
+                        if (user.getId().equals(first)) {
+                            throw new IllegalStateException("Fallo en " + first);
+                        }
+                    }
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    processed.addAndGet(batch.size());
+                }
+            });
+            Assert.fail();
+        } catch (HibernateException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        return processed.get();
+    }
+
+    private Long firstId() {
+        return new TransactionTemplate(txManager).execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                SearchInfo searchInfo = search();
+                searchInfo.addOrder(OrderBy.asc("id"));
+                searchInfo.setOffset(0);
+                searchInfo.setPageSize(1);
+                return userDao.findWithoutCount(searchInfo).get(0).getId();
+            }
+        });
+    }
+
+    /**
+     * Recorre las entidades de la búsqueda.
+     *
+     * @return Número de entidades recorridas.
+     */
+    private int scan() {
+        final AtomicInteger scanned = new AtomicInteger();
+        userDao.parallelScan(search(), 4, new Consumer<List<User>>() {
+            @Override
+            public void accept(List<User> batch) {
+                scanned.addAndGet(batch.size());
+            }
+        });
+        return scanned.get();
+    }
+
+    private void insert(final int count) {
+        insert(userDao, prefix, count);
+    }
+
+    private void insert(final DAOImpl<User, Long> dao, final String namePrefix, final int count) {
+        dao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(namePrefix + i++);
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        return searchInfo;
+    }
+}
@@ -0,0 +1,168 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.Article;
+import com.diwa.dao.domain.ArticleSummary;
+import com.diwa.dao.domain.Role;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compara el tiempo y la memoria retenida de la búsqueda de entidades completas con los de una proyección sobre una
+ * entidad con muchos atributos. Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ProjectionBenchmark {
+
+    private static final int ARTICLES = 2000;
+
+    private static final int PAGE_SIZE = 500;
+
+    private static final int RUNS = 20;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<Article, Long> articleDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        articleDao = new DAOImpl<Article, Long>(Article.class, sessionFactory);
+        articleDao.setBatchSize(SpringTestConfig.BATCH_SIZE);
+        prefix = "projection-benchmark-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Role category = new Role();
+                category.setName(prefix + "category");
+                sessionFactory.getCurrentSession().save(category);
+                char[] text = new char[3000];
+                Arrays.fill(text, 'x');
+                List<Article> articles = new ArrayList<Article>(ARTICLES);
+                for (int i = 0; i < ARTICLES; i++) {
+                    Article article = new Article();
+                    article.setTitle(prefix + String.format("%05d", i));
+                    article.setAuthor("author " + i);
+                    article.setSummary(new String(text, 0, 500));
+                    article.setBody(new String(text));
+                    article.setKeywords("keywords " + i);
+                    article.setLanguage("es");
+                    article.setStatus("PUBLISHED");
+                    article.setSource("source " + i);
+                    article.setCategory(category);
+                    articles.add(article);
+                }
+                articleDao.save(articles);
+                return null;
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                articleDao.delete(search());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkProjection() {
+        final SearchInfo searchInfo = search();
+        long[] entities = measure(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                List<Article> elements = articleDao.find(searchInfo).getElements();
+                Assert.assertEquals(PAGE_SIZE, elements.size());
+                return elements;
+            }
+        });
+        long[] projection = measure(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                List<ArticleSummary> elements = articleDao.findProjection(searchInfo, ArticleSummary.class, "id",
+                        "title").getElements();
+                Assert.assertEquals(PAGE_SIZE, elements.size());
+                return elements;
+            }
+        });
+        logger.info(String.format("find de entidades: %d ms, %d KB retenidos", entities[0], entities[1] / 1024));
+        logger.info(String.format("proyección: %d ms, %d KB retenidos", projection[0], projection[1] / 1024));
+    }
+
+    /**
+     * Ejecuta la búsqueda {@link #RUNS} veces y devuelve el tiempo total y la memoria retenida por el resultado de la
+     * última ejecución, incluidas las entidades de la sesión.
+     */
+    private long[] measure(final TransactionCallback<Object> callback) {
+        // Primera ejecución para que la medición no incluya la preparación de la consulta
+        new TransactionTemplate(txManager).execute(callback);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < RUNS; i++) {
+            new TransactionTemplate(txManager).execute(callback);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        final long[] retained = new long[1];
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                long before = usedMemory();
+                Object result = callback.doInTransaction(status);
+                retained[0] = usedMemory() - before;
+                Assert.assertNotNull(result);
+                return null;
+            }
+        });
+        return new long[] {elapsed, retained[0]};
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("title", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("title"));
+        searchInfo.setCountMode(CountMode.NONE);
+        searchInfo.setOffset(0);
+        searchInfo.setPageSize(PAGE_SIZE);
+        return searchInfo;
+    }
+}
@@ -0,0 +1,206 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.Article;
+import com.diwa.dao.domain.ArticleSummary;
+import com.diwa.dao.domain.Profile;
+import com.diwa.dao.domain.Role;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.entity.JoinEntity;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Comprueba las proyecciones sobre una entidad con muchos atributos frente a la búsqueda de entidades completas. La
+ * comparación de su tiempo y memoria está en {@link ProjectionBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ProjectionTest {
+
+    private static final int ARTICLES = 2000;
+
+    private static final int PAGE_SIZE = 500;
+
+    private static final int PROFILES = 20;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<Article, Long> articleDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        articleDao = new DAOImpl<Article, Long>(Article.class, sessionFactory);
+        articleDao.setBatchSize(SpringTestConfig.BATCH_SIZE);
+        prefix = "projection-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Role category = new Role();
+                category.setName(prefix + "category");
+                sessionFactory.getCurrentSession().save(category);
+                char[] text = new char[3000];
+                Arrays.fill(text, 'x');
+                List<Article> articles = new ArrayList<Article>(ARTICLES);
+                for (int i = 0; i < ARTICLES; i++) {
+                    Article article = new Article();
+                    article.setTitle(prefix + String.format("%05d", i));
+                    article.setAuthor("author " + i);
+                    article.setSummary(new String(text, 0, 500));
+                    article.setBody(new String(text));
+                    article.setKeywords("keywords " + i);
+                    article.setLanguage("es");
+                    article.setStatus("PUBLISHED");
+                    article.setSource("source " + i);
+                    article.setCategory(category);
+                    articles.add(article);
+                }
+                articleDao.save(articles);
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testProjection() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchInfo searchInfo = search(CountMode.EXACT);
+                SearchResult<Object[]> rows = articleDao.findProjection(searchInfo, "id", "title");
+                SearchResult<ArticleSummary> summaries = articleDao.findProjection(searchInfo, ArticleSummary.class,
+                        "id", "title");
+                List<Article> articles = articleDao.find(searchInfo).getElements();
+                Assert.assertEquals(ARTICLES, rows.getTotalMatches());
+                Assert.assertEquals(ARTICLES, summaries.getTotalMatches());
+                Assert.assertTrue(rows.hasNext());
+                Assert.assertEquals(PAGE_SIZE, rows.getElements().size());
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    Assert.assertEquals(articles.get(i).getId(), rows.getElements().get(i)[0]);
+                    Assert.assertEquals(articles.get(i).getTitle(), rows.getElements().get(i)[1]);
+                    Assert.assertEquals(articles.get(i).getTitle(), summaries.getElements().get(i).getTitle());
+                }
+                // Con un único atributo cada fila sigue siendo un array
+                SearchResult<Object[]> titles = articleDao.findProjection(search(CountMode.HAS_NEXT), "title");
+                Assert.assertEquals(articles.get(0).getTitle(), titles.getElements().get(0)[0]);
+                Assert.assertTrue(titles.hasNext());
+                Assert.assertEquals(-1, titles.getTotalMatches());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testNoManagedEntities() {
+        final SearchInfo searchInfo = search(CountMode.NONE);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertEquals(PAGE_SIZE, articleDao.find(searchInfo).getElements().size());
+                Assert.assertTrue(sessionFactory.getCurrentSession().getStatistics().getEntityCount() >= PAGE_SIZE);
+                return null;
+            }
+        });
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                // Las proyecciones no cargan entidades en la sesión
+                Assert.assertEquals(PAGE_SIZE, articleDao.findProjection(searchInfo, ArticleSummary.class, "id",
+                        "title").getElements().size());
+                Assert.assertEquals(0, sessionFactory.getCurrentSession().getStatistics().getEntityCount());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testDistinctJoinsAndPaths() {
+        final DAOImpl<Profile, Long> profileDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Role role = new Role();
+                role.setName(prefix + "role");
+                sessionFactory.getCurrentSession().save(role);
+                for (int i = 0; i < PROFILES; i++) {
+                    Profile profile = new Profile();
+                    profile.setName(prefix + String.format("%05d", i));
+                    profile.setRole(i % 2 == 0 ? role : null);
+                    profile.getTags().addAll(Arrays.asList("a", "b", "c"));
+                    profileDao.save(profile);
+                }
+                return null;
+            }
+        });
+        final SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addEntity(JoinEntity.leftJoin("tags", "t"));
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.desc("name"));
+        searchInfo.setCountMode(CountMode.EXACT);
+        searchInfo.setOffset(0);
+        searchInfo.setPageSize(PROFILES / 2);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                // El join a la colección triplica las filas: cada fila ha de seguir siendo una entidad
+                SearchResult<Object[]> rows = profileDao.findProjection(searchInfo, "name", "role.name");
+                Assert.assertEquals(PROFILES, rows.getTotalMatches());
+                Assert.assertEquals(PROFILES / 2, rows.getElements().size());
+                for (int i = 0; i < PROFILES / 2; i++) {
+                    Object[] row = rows.getElements().get(i);
+                    Assert.assertEquals(2, row.length);
+                    Assert.assertEquals(prefix + String.format("%05d", PROFILES - 1 - i), row[0]);
+                    // La ruta se resuelve mediante LEFT JOIN, por lo que los perfiles sin rol se obtienen igualmente
+                    Assert.assertEquals((PROFILES - 1 - i) % 2 == 0 ? prefix + "role" : null, row[1]);
+                }
+
+                SearchResult<ArticleSummary> summaries = profileDao.findProjection(searchInfo, ArticleSummary.class,
+                        "id", "name");
+                Assert.assertEquals(PROFILES, summaries.getTotalMatches());
+                Assert.assertEquals(PROFILES / 2, summaries.getElements().size());
+                Assert.assertEquals(rows.getElements().get(0)[0], summaries.getElements().get(0).getTitle());
+                return null;
+            }
+        });
+        try {
+            profileDao.findProjection(searchInfo, "tags.name");
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            // Las rutas a través de colecciones duplicarían las filas
+        }
+    }
+
+    private SearchInfo search(final CountMode countMode) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("title", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("title"));
+        searchInfo.setCountMode(countMode);
+        searchInfo.setOffset(0);
+        searchInfo.setPageSize(PAGE_SIZE);
+        return searchInfo;
+    }
+}
@@ -0,0 +1,282 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.QueryCoalescer;
+import com.diwa.dao.QueryCoalescerStatistics;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Comprueba el agrupador de búsquedas de {@link DAOImpl}: las llamadas simultáneas idénticas comparten una única
+ * ejecución, su resultado y su excepción, y las llamadas posteriores ejecutan de nuevo la búsqueda. La búsqueda se
+ * ejecuta en la sesión de la llamada, el resto de llamadas obtienen copias de sus entidades sin acceder a la BD y no
+ * se agrupa si la transacción ha modificado la entidad.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class QueryCoalescerTest {
+
+    private static final int USERS = 20;
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private QueryCoalescer coalescer;
+
+    private final AtomicInteger counts = new AtomicInteger();
+
+    private volatile boolean failing;
+
+    private ExecutorService executor;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory) {
+            @Override
+            protected Long countQuery(final SearchInfo searchInfo) {
+                counts.incrementAndGet();
+                try {
+                    // Da tiempo a que el resto de threads se agrupen con la búsqueda en curso
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (failing) {
+                    throw new IllegalStateException("count");
+                }
+                return super.countQuery(searchInfo);
+            }
+        };
+        coalescer = new QueryCoalescer();
+        userDao.setQueryCoalescer(coalescer);
+        prefix = "coalescer-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + i);
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        // Las tareas en curso no deben ejecutar consultas durante las pruebas siguientes
+        executor.shutdownNow();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCoalescedCount() throws Exception {
+        for (Future<Long> result : submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return userDao.count(search());
+            }
+        })) {
+            Assert.assertEquals(USERS, result.get().longValue());
+        }
+        QueryCoalescerStatistics statistics = coalescer.getStatistics().get(User.class);
+        Assert.assertEquals(1, counts.get());
+        Assert.assertEquals(1, statistics.getExecutionCount());
+        Assert.assertEquals(THREADS - 1, statistics.getCoalescedCount());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+
+        // Las llamadas posteriores ejecutan de nuevo la búsqueda
+        Assert.assertEquals(USERS, userDao.count(search()).longValue());
+        Assert.assertEquals(2, counts.get());
+    }
+
+    @Test
+    public void testCoalescedFind() throws Exception {
+        final AtomicInteger managed = new AtomicInteger();
+        List<SearchResult<User>> results = new ArrayList<SearchResult<User>>();
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            for (Future<SearchResult<User>> result : submit(new Callable<SearchResult<User>>() {
+                @Override
+                public SearchResult<User> call() throws Exception {
+                    SearchResult<User> page = userDao.find(search());
+                    for (User user : page.getElements()) {
+                        if (sessionFactory.getCurrentSession().contains(user)) {
+                            managed.incrementAndGet();
+                        }
+                    }
+                    return page;
+                }
+            })) {
+                results.add(result.get());
+            }
+            // Sólo la primera llamada accede a la BD: la consulta de la página y el COUNT
+            Assert.assertEquals(2, statistics.getPrepareStatementCount());
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        for (SearchResult<User> result : results) {
+            Assert.assertEquals(USERS, result.getTotalMatches());
+            Assert.assertEquals(10, result.getElements().size());
+            Assert.assertEquals(prefix + 0, result.getElements().get(0).getName());
+            // Cada llamada obtiene sus propias entidades
+            if (result != results.get(0)) {
+                Assert.assertNotSame(results.get(0).getElements().get(0), result.getElements().get(0));
+            }
+        }
+        // La primera llamada obtiene las entidades de su sesión y el resto copias desasociadas
+        Assert.assertEquals(10, managed.get());
+        Assert.assertEquals(1, counts.get());
+        Assert.assertEquals(THREADS - 1, coalescer.getStatistics().get(User.class).getCoalescedCount());
+    }
+
+    @Test
+    public void testCoalescedFailure() throws Exception {
+        failing = true;
+        for (Future<Long> result : submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return userDao.count(search());
+            }
+        })) {
+            try {
+                result.get();
+                Assert.fail();
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        Assert.assertEquals(1, counts.get());
+        Assert.assertEquals(0, coalescer.getInFlightCount());
+
+        failing = false;
+        Assert.assertEquals(USERS, userDao.count(search()).longValue());
+    }
+
+    @Test
+    public void testCallerSession() throws Exception {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                // La búsqueda se ejecuta en la sesión en curso
+                for (User user : userDao.find(search()).getElements()) {
+                    Assert.assertTrue(sessionFactory.getCurrentSession().contains(user));
+                }
+                Assert.assertEquals(1, coalescer.getStatistics().get(User.class).getExecutionCount());
+
+                // Las búsquedas de las entidades modificadas por la transacción ven sus cambios y no se agrupan
+                User user = new User();
+                user.setName(prefix + USERS);
+                userDao.save(user);
+                Assert.assertEquals(USERS + 1, userDao.count(search()).longValue());
+                Assert.assertEquals(1, coalescer.getStatistics().get(User.class).getExecutionCount());
+                return null;
+            }
+        });
+        Assert.assertEquals(USERS + 1, userDao.count(search()).longValue());
+        Assert.assertEquals(2, coalescer.getStatistics().get(User.class).getExecutionCount());
+    }
+
+    @Test
+    public void testNotReadOnly() throws Exception {
+        // Las búsquedas cuyas entidades no son de sólo lectura no se agrupan
+        for (Future<Long> result : submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                final SearchInfo searchInfo = search();
+                searchInfo.setReadOnly(false);
+                return userDao.callInNewSession(new Supplier<Long>() {
+                    @Override
+                    public Long get() {
+                        return userDao.count(searchInfo);
+                    }
+                }, 0, null);
+            }
+        })) {
+            Assert.assertEquals(USERS, result.get().longValue());
+        }
+        Assert.assertEquals(THREADS, counts.get());
+        Assert.assertNull(coalescer.getStatistics().get(User.class));
+    }
+
+    /**
+     * Ejecuta la búsqueda a la vez en todos los threads, cada uno en su propia transacción.
+     */
+    private <V> List<Future<V>> submit(final Callable<V> search) {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<V>> results = new ArrayList<Future<V>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<V>() {
+                @Override
+                public V call() throws Exception {
+                    start.await();
+                    return new TransactionTemplate(txManager).execute(new TransactionCallback<V>() {
+                        @Override
+                        public V doInTransaction(TransactionStatus status) {
+                            try {
+                                return search.call();
+                            } catch (RuntimeException e) {
+                                throw e;
+                            } catch (Exception e) {
+                                throw new IllegalStateException(e);
+                            }
+                        }
+                    });
+                }
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        searchInfo.setOffset(0);
+        searchInfo.setPageSize(10);
+        return searchInfo;
+    }
+}
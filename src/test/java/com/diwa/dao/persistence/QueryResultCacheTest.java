@@ -0,0 +1,328 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.DefaultQueryResultCache;
+import com.diwa.dao.QueryResultCacheStatistics;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.aggregate.Aggregate;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Comprueba la cache de resultados de {@link DAOImpl}: aciertos, entidades cargadas en la sesión de cada llamada,
+ * invalidación al modificar la entidad y al confirmar la transacción, carga única de las búsquedas solicitadas a la
+ * vez y recálculo en segundo plano.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class QueryResultCacheTest {
+
+    private static final int USERS = 20;
+
+    private static final int THREADS = 8;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private final AtomicInteger counts = new AtomicInteger();
+
+    private ExecutorService executor;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory) {
+            @Override
+            protected Long countQuery(final SearchInfo searchInfo) {
+                counts.incrementAndGet();
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.countQuery(searchInfo);
+            }
+        };
+        prefix = "result-cache-" + System.nanoTime() + "-";
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    save(prefix + i);
+                }
+                return null;
+            }
+        });
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        // Las tareas en curso no deben ejecutar consultas durante las pruebas siguientes
+        executor.shutdownNow();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCachedQueries() {
+        final DefaultQueryResultCache cache = new DefaultQueryResultCache(60000, 1000);
+        userDao.setQueryResultCache(cache);
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                // La primera vez no se almacena: sólo se almacenan las búsquedas repetidas
+                for (int i = 0; i < 2; i++) {
+                    userDao.find(search());
+                    userDao.findWithoutCount(search());
+                    userDao.aggregate(Aggregate.MAX, "id", aggregateSearch());
+                }
+                sessionFactory.getStatistics().clear();
+                Assert.assertEquals(USERS, userDao.find(search()).getTotalMatches());
+                Assert.assertEquals(10, userDao.findWithoutCount(search()).size());
+                Assert.assertNotNull(userDao.aggregate(Aggregate.MAX, "id", aggregateSearch()));
+                Assert.assertEquals(0, queries());
+
+                // Las búsquedas que desactivan la cache acceden a la BD
+                SearchInfo uncached = search();
+                uncached.setCacheable(false);
+                userDao.findWithoutCount(uncached);
+                userDao.findWithoutCount(uncached);
+                Assert.assertEquals(2, queries());
+                return null;
+            }
+        });
+        QueryResultCacheStatistics statistics = cache.getStatistics().get(User.class);
+        Assert.assertEquals(3, statistics.getHitCount());
+        Assert.assertEquals(6, statistics.getMissCount());
+        Assert.assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testInvalidation() {
+        DefaultQueryResultCache cache = new DefaultQueryResultCache(60000, 1000);
+        userDao.setQueryResultCache(cache);
+        // Otro DAO de la misma entidad que comparte la cache
+        final DAOImpl<User, Long> otherDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        otherDao.setQueryResultCache(cache);
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.count(search());
+                userDao.count(search());
+                Assert.assertEquals(USERS, userDao.count(search()).longValue());
+                Assert.assertEquals(2, counts.get());
+
+                User user = new User();
+                user.setName(prefix + USERS);
+                otherDao.save(user);
+                Assert.assertEquals(USERS + 1, userDao.count(search()).longValue());
+                Assert.assertEquals(3, counts.get());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testSessionEntities() {
+        DefaultQueryResultCache cache = new DefaultQueryResultCache(60000, 1000);
+        userDao.setQueryResultCache(cache);
+        final List<User> cached = new ArrayList<User>();
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.find(search());
+                cached.addAll(userDao.find(search()).getElements());
+                return null;
+            }
+        });
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                // La cache devuelve las entidades cargadas en la sesión en curso, sin ejecutar la búsqueda ni el COUNT
+                SearchResult<User> result = userDao.find(search());
+                Assert.assertEquals(USERS, result.getTotalMatches());
+                Assert.assertEquals(cached.size(), result.getElements().size());
+                for (int i = 0; i < cached.size(); i++) {
+                    User user = result.getElements().get(i);
+                    Assert.assertEquals(cached.get(i).getId(), user.getId());
+                    Assert.assertNotSame(cached.get(i), user);
+                    Assert.assertTrue(sessionFactory.getCurrentSession().contains(user));
+                }
+                Assert.assertEquals(1, queries());
+                return null;
+            }
+        });
+        Assert.assertEquals(1, cache.getStatistics().get(User.class).getHitCount());
+    }
+
+    @Test
+    public void testInvalidateAfterCommit() {
+        final DefaultQueryResultCache cache = new DefaultQueryResultCache(60000, 1000);
+        userDao.setQueryResultCache(cache);
+        final List<Object> key = Arrays.<Object> asList("count", search().getFingerprint());
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                save(prefix + USERS);
+                // La transacción no utiliza la cache para la entidad que ha modificado
+                Assert.assertEquals(USERS + 1, userDao.count(search()).longValue());
+                Assert.assertEquals(USERS + 1, userDao.count(search()).longValue());
+                Assert.assertEquals(2, counts.get());
+                Assert.assertEquals(0, cache.size());
+                try {
+                    // Otra transacción almacena el resultado anterior a la confirmación de los cambios
+                    executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int i = 0; i < 2; i++) {
+                                cache.get(User.class, key, new Supplier<Long>() {
+                                    @Override
+                                    public Long get() {
+                                        return (long) USERS;
+                                    }
+                                }, null);
+                            }
+                        }
+                    }).get();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                Assert.assertEquals(1, cache.size());
+                return null;
+            }
+        });
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertEquals(USERS + 1, userDao.count(search()).longValue());
+                Assert.assertEquals(3, counts.get());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testSingleLoad() throws Exception {
+        DefaultQueryResultCache cache = new DefaultQueryResultCache(60000, 1000);
+        userDao.setQueryResultCache(cache);
+        count();
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<Future<Long>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    start.await();
+                    return count();
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Long> result : results) {
+            Assert.assertEquals(USERS, result.get().longValue());
+        }
+        // Una consulta la primera vez y otra para todos los threads
+        Assert.assertEquals(2, counts.get());
+    }
+
+    @Test
+    public void testRefreshAhead() throws Exception {
+        DefaultQueryResultCache cache = new DefaultQueryResultCache(60000, 200, 1000);
+        cache.setRefreshExecutor(executor);
+        userDao.setQueryResultCache(cache);
+        count();
+        count();
+        Thread.sleep(300);
+        // Se sirve el valor almacenado y se recalcula en segundo plano
+        Assert.assertEquals(USERS, count().longValue());
+        long deadline = System.currentTimeMillis() + 5000;
+        while (cache.getStatistics().get(User.class).getRefreshCount() == 0
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(1, cache.getStatistics().get(User.class).getRefreshCount());
+        Assert.assertEquals(3, counts.get());
+        Assert.assertEquals(USERS, count().longValue());
+        Assert.assertEquals(3, counts.get());
+    }
+
+    private Long count() {
+        return userDao.callInNewSession(new Supplier<Long>() {
+            @Override
+            public Long get() {
+                return userDao.count(search());
+            }
+        }, 0, null);
+    }
+
+    private void save(final String name) {
+        User user = new User();
+        user.setName(name);
+        userDao.save(user);
+    }
+
+    private void execute(final TransactionCallback<Object> callback) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            new TransactionTemplate(txManager).execute(callback);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    private long queries() {
+        return sessionFactory.getStatistics().getQueryExecutionCount();
+    }
+
+    private SearchInfo aggregateSearch() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.setDistinct(false);
+        return searchInfo;
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        searchInfo.setOffset(0);
+        searchInfo.setPageSize(10);
+        return searchInfo;
+    }
+}
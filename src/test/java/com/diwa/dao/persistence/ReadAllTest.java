@@ -0,0 +1,139 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.JPQLGenerator;
+import com.diwa.dao.MissingIdPolicy;
+import com.diwa.dao.domain.Profile;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.entity.FetchJoin;
+import org.hibernate.Hibernate;
+import org.hibernate.ObjectNotFoundException;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Comprueba la carga de varias entidades por identificador mediante {@link DAOImpl#readAll}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ReadAllTest {
+
+    private static final int USERS = 30;
+
+    private static final Long MISSING = -1L;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private final List<Long> ids = new ArrayList<Long>();
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName("read-all-" + System.nanoTime() + "-" + i);
+                    ids.add(userDao.save(user).getId());
+                }
+                return null;
+            }
+        });
+        Collections.reverse(ids);
+    }
+
+    @Test
+    public void testReadAll() {
+        final List<Long> request = new ArrayList<Long>(ids);
+        request.add(5, MISSING);
+        request.add(ids.get(0));
+        JPQLGenerator.getInstance().setMaxInListSize(10);
+        try {
+            new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+                @Override
+                public Object doInTransaction(TransactionStatus status) {
+                    User cached = userDao.read(ids.get(3));
+                    Statistics statistics = sessionFactory.getStatistics();
+                    statistics.setStatisticsEnabled(true);
+                    statistics.clear();
+                    List<User> users = userDao.readAll(request);
+                    Assert.assertEquals(3, statistics.getQueryExecutionCount());
+                    statistics.setStatisticsEnabled(false);
+
+                    Assert.assertEquals(USERS + 1, users.size());
+                    Assert.assertSame(cached, users.get(3));
+                    for (int i = 0; i < USERS; i++) {
+                        Assert.assertEquals(ids.get(i), users.get(i).getId());
+                    }
+                    Assert.assertSame(users.get(0), users.get(USERS));
+
+                    List<User> withNulls = userDao.readAll(request, MissingIdPolicy.NULL);
+                    Assert.assertEquals(request.size(), withNulls.size());
+                    Assert.assertNull(withNulls.get(5));
+                    try {
+                        userDao.readAll(request, MissingIdPolicy.FAIL);
+                        Assert.fail();
+                    } catch (ObjectNotFoundException e) {
+                        Assert.assertEquals(MISSING, e.getIdentifier());
+                    }
+                    return null;
+                }
+            });
+        } finally {
+            JPQLGenerator.getInstance().setMaxInListSize(JPQLGenerator.DEFAULT_MAX_IN_LIST_SIZE);
+        }
+    }
+
+    @Test
+    public void testFetchInSession() {
+        final DAOImpl<Profile, Long> profileDao = new DAOImpl<Profile, Long>(Profile.class, sessionFactory);
+        final Long id = new TransactionTemplate(txManager).execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                Profile profile = new Profile();
+                profile.setName("read-all-" + System.nanoTime());
+                profile.setTags(new HashSet<String>(Arrays.asList("a", "b")));
+                return profileDao.save(profile).getId();
+            }
+        });
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Profile cached = profileDao.read(id);
+                Assert.assertFalse(Hibernate.isInitialized(cached.getTags()));
+
+                // La entidad de la sesión se consulta de nuevo para inicializar las asociaciones indicadas
+                List<Profile> profiles = profileDao.readAll(Arrays.asList(id), FetchJoin.leftJoinFetch("tags"));
+                Assert.assertEquals(1, profiles.size());
+                Assert.assertSame(cached, profiles.get(0));
+                Assert.assertTrue(Hibernate.isInitialized(cached.getTags()));
+                Assert.assertEquals(2, cached.getTags().size());
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,131 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Compara la memoria retenida y el tiempo de sincronización de la sesión tras leer 100.000 entidades en modo normal
+ * y en modo de sólo lectura. Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ReadOnlyQueryBenchmark {
+
+    private static final int USERS = 100000;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "read-only-" + System.nanoTime() + "-";
+        userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < USERS;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + i++);
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.delete(search(null));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkReadOnly() {
+        // Primera lectura para que la medición no incluya la preparación de la consulta
+        read(search(null), false);
+        long[] managed = read(search(null), false);
+        long[] readOnly = read(search(Boolean.TRUE), true);
+        logger.info(String.format("lectura normal: %d KB retenidos, flush %d ms", managed[0] / 1024, managed[1]));
+        logger.info(String.format("lectura de sólo lectura: %d KB retenidos, flush %d ms", readOnly[0] / 1024,
+                readOnly[1]));
+    }
+
+    /**
+     * Lee todas las entidades y devuelve la memoria retenida por la sesión y el tiempo de sincronización.
+     */
+    private long[] read(final SearchInfo searchInfo, final boolean expectedReadOnly) {
+        return new TransactionTemplate(txManager).execute(new TransactionCallback<long[]>() {
+            @Override
+            public long[] doInTransaction(TransactionStatus status) {
+                Session session = sessionFactory.getCurrentSession();
+                long before = usedMemory();
+                List<User> users = userDao.findWithoutCount(searchInfo);
+                long retained = usedMemory() - before;
+                Assert.assertEquals(USERS, users.size());
+                Assert.assertEquals(expectedReadOnly, session.isReadOnly(users.get(0)));
+                long start = System.currentTimeMillis();
+                session.flush();
+                return new long[] {retained, System.currentTimeMillis() - start};
+            }
+        });
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private SearchInfo search(final Boolean readOnly) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.setReadOnly(readOnly);
+        return searchInfo;
+    }
+}
@@ -0,0 +1,136 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Comprueba la lectura de entidades en modo normal y en modo de sólo lectura. La comparación de la memoria retenida y
+ * del tiempo de sincronización de la sesión está en {@link ReadOnlyQueryBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ReadOnlyQueryTest {
+
+    private static final int USERS = 200;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "read-only-" + System.nanoTime() + "-";
+        userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < USERS;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + i++);
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.delete(search(null));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testReadOnly() {
+        read(search(null), false);
+        read(search(Boolean.TRUE), true);
+
+        // La configuración del DAO se aplica cuando el SearchInfo no la indica
+        userDao.setReadOnly(true);
+        read(search(null), true);
+        read(search(Boolean.FALSE), false);
+    }
+
+    @Test
+    public void testChangesAreNotSaved() {
+        final SearchInfo searchInfo = search(Boolean.TRUE);
+        searchInfo.setOffset(0);
+        searchInfo.setPageSize(1);
+        final Long id = new TransactionTemplate(txManager).execute(new TransactionCallback<Long>() {
+            @Override
+            public Long doInTransaction(TransactionStatus status) {
+                User user = userDao.findWithoutCount(searchInfo).get(0);
+                user.setName(prefix + "changed");
+                return user.getId();
+            }
+        });
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Assert.assertNotEquals(prefix + "changed", userDao.read(id).getName());
+                return null;
+            }
+        });
+    }
+
+    private void read(final SearchInfo searchInfo, final boolean expectedReadOnly) {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Session session = sessionFactory.getCurrentSession();
+                List<User> users = userDao.findWithoutCount(searchInfo);
+                Assert.assertEquals(USERS, users.size());
+                for (User user : users) {
+                    Assert.assertEquals(expectedReadOnly, session.isReadOnly(user));
+                }
+                return null;
+            }
+        });
+    }
+
+    private SearchInfo search(final Boolean readOnly) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.setReadOnly(readOnly);
+        return searchInfo;
+    }
+}
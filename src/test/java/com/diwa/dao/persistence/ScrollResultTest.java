@@ -0,0 +1,146 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.search.ScrollResult;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Comprueba el recorrido por bloques y mediante iterador de {@link ScrollResult}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class ScrollResultTest {
+
+    private static final int USERS = 50;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "scroll-" + System.nanoTime() + "-";
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + String.format("%02d", i));
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testNextBatch() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Session session = sessionFactory.getCurrentSession();
+                session.clear();
+                try (ScrollResult<User> scroll = userDao.findScroll(search())) {
+                    List<User> batch = scroll.nextBatch(20, true);
+                    Assert.assertEquals(20, batch.size());
+                    Assert.assertEquals(prefix + "00", batch.get(0).getName());
+                    Assert.assertFalse(session.contains(batch.get(0)));
+
+                    batch = scroll.nextBatch(20);
+                    Assert.assertEquals(20, batch.size());
+                    Assert.assertEquals(prefix + "20", batch.get(0).getName());
+                    Assert.assertTrue(session.contains(batch.get(0)));
+
+                    Assert.assertEquals(10, scroll.nextBatch(20, true).size());
+                    Assert.assertTrue(scroll.nextBatch(20, true).isEmpty());
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testIterator() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                try (ScrollResult<User> scroll = userDao.findScroll(search())) {
+                    Assert.assertEquals(5, scroll.nextBatch(5).size());
+                    int i = 5;
+                    for (User user : scroll) {
+                        Assert.assertEquals(prefix + String.format("%02d", i++), user.getName());
+                    }
+                    Assert.assertEquals(USERS, i);
+                    Assert.assertFalse(scroll.iterator().hasNext());
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testTupleRows() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                Query query = sessionFactory.getCurrentSession()
+                        .createQuery("select u.id, u.name from entityUser u where u.name like :name order by u.name");
+                query.setParameter("name", prefix + "%");
+                try (ScrollResult<Object[]> scroll = scrollRows(query)) {
+                    List<Object[]> batch = scroll.nextBatch(USERS, true);
+                    Assert.assertEquals(USERS, batch.size());
+                    Assert.assertEquals(2, batch.get(0).length);
+                    Assert.assertTrue(batch.get(0)[0] instanceof Long);
+                    Assert.assertEquals(prefix + "00", batch.get(0)[1]);
+                }
+                // get() devuelve la primera columna y getRow() todas ellas
+                try (ScrollResult<?> scroll = userDao.findQueryScroll(query)) {
+                    Assert.assertTrue(scroll.next());
+                    Object first = scroll.get();
+                    Assert.assertTrue(first instanceof Long);
+                    Assert.assertEquals(first, scroll.getRow()[0]);
+                    Assert.assertEquals(prefix + "00", scroll.getRow()[1]);
+                }
+                return null;
+            }
+        });
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private ScrollResult<Object[]> scrollRows(final Query query) {
+        return (ScrollResult) userDao.findQueryScroll(query);
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.addOrder(OrderBy.asc("name"));
+        return searchInfo;
+    }
+}
@@ -38,6 +38,8 @@ import java.util.Properties;
 @ComponentScan("com.diwa.dao")
 public class SpringTestConfig {
 
+    public static final int BATCH_SIZE = 50;
+
     @Bean(name ="datasource")
     public DataSource dataSource() {
          return new EmbeddedDatabaseBuilder()
@@ -51,6 +53,10 @@ public class SpringTestConfig {
         sessionBuilder.scanPackages("com.diwa.dao.domain");
         sessionBuilder.setProperty("hibernate.hbm2ddl.auto", "create");
         sessionBuilder.setProperty("hibernate.show_sql", "true");
+        sessionBuilder.setProperty("hibernate.id.new_generator_mappings", "true");
+        sessionBuilder.setProperty("hibernate.jdbc.batch_size", String.valueOf(BATCH_SIZE));
+        sessionBuilder.setProperty("hibernate.order_inserts", "true");
+        sessionBuilder.setProperty("hibernate.order_updates", "true");
         return sessionBuilder.buildSessionFactory();
     }
 
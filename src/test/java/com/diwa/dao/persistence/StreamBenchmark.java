@@ -0,0 +1,147 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Comprueba que {@link DAOImpl#stream(SearchInfo)} recorre 1.000.000 de entidades sin que aumente la memoria ocupada.
+ * Sólo se ejecuta con el perfil <code>benchmark</code>.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class StreamBenchmark {
+
+    private static final int USERS = 1000000;
+
+    private static final int CHECKPOINT = 100000;
+
+    /**
+     * Crecimiento máximo admitido de la memoria ocupada entre el primer y el último punto de control.
+     */
+    private static final long MAX_HEAP_GROWTH = 16 * 1024 * 1024;
+
+    private final Logger logger = LoggerFactory.getLogger(this.getClass());
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "stream-" + System.nanoTime() + "-";
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.delete(search());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void benchmarkConstantHeap() {
+        insert(USERS);
+        final List<Long> heap = new ArrayList<Long>();
+        final long[] processed = new long[1];
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        long start = System.currentTimeMillis();
+        try (Stream<User> users = userDao.stream(search())) {
+            users.forEach(new Consumer<User>() {
+                @Override
+                public void accept(User user) {
+                    Assert.assertNotNull(user.getName());
+                    if (++processed[0] % CHECKPOINT == 0) {
+                        heap.add(usedMemory());
+                    }
+                }
+            });
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        StringBuilder checkpoints = new StringBuilder();
+        for (Long used : heap) {
+            checkpoints.append(used / (1024 * 1024)).append(" MB ");
+        }
+        logger.info(String.format("stream de %d entidades: %d ms, memoria ocupada: %s", processed[0], elapsed,
+                checkpoints));
+        Assert.assertEquals(USERS, processed[0]);
+        Assert.assertEquals(USERS / CHECKPOINT, heap.size());
+        Assert.assertTrue(heap.get(heap.size() - 1) - heap.get(0) < MAX_HEAP_GROWTH);
+        Assert.assertEquals(statistics.getSessionOpenCount(), statistics.getSessionCloseCount());
+    }
+
+    private void insert(final int count) {
+        userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + i++);
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        return searchInfo;
+    }
+}
@@ -0,0 +1,146 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.order.OrderBy;
+import com.diwa.dao.shared.search.SearchInfo;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Comprueba que {@link DAOImpl#stream(SearchInfo)} recorre todas las entidades y cierra su sesión. La medición de la
+ * memoria ocupada recorriendo 1.000.000 de entidades está en {@link StreamBenchmark}.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class StreamTest {
+
+    private static final int USERS = 2000;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "stream-" + System.nanoTime() + "-";
+    }
+
+    @After
+    public void tearDown() {
+        new TransactionTemplate(txManager).execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                userDao.delete(search());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testStream() {
+        insert(USERS);
+        final long[] processed = new long[1];
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try (Stream<User> users = userDao.stream(search())) {
+            users.forEach(new Consumer<User>() {
+                @Override
+                public void accept(User user) {
+                    Assert.assertTrue(user.getName().startsWith(prefix));
+                    processed[0]++;
+                }
+            });
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+        Assert.assertEquals(USERS, processed[0]);
+        Assert.assertEquals(1, statistics.getSessionOpenCount());
+        Assert.assertEquals(statistics.getSessionOpenCount(), statistics.getSessionCloseCount());
+    }
+
+    @Test
+    public void testPagedStream() {
+        insert(100);
+        final SearchInfo searchInfo = search();
+        searchInfo.addOrder(OrderBy.desc("name"));
+        searchInfo.setOffset(10);
+        searchInfo.setPageSize(25);
+        List<User> expected = new TransactionTemplate(txManager).execute(new TransactionCallback<List<User>>() {
+            @Override
+            public List<User> doInTransaction(TransactionStatus status) {
+                return userDao.findWithoutCount(searchInfo);
+            }
+        });
+        List<String> names;
+        try (Stream<User> users = userDao.stream(searchInfo)) {
+            names = users.map(new Function<User, String>() {
+                @Override
+                public String apply(User user) {
+                    return user.getName();
+                }
+            }).collect(Collectors.<String>toList());
+        }
+        Assert.assertEquals(25, names.size());
+        for (int i = 0; i < names.size(); i++) {
+            Assert.assertEquals(expected.get(i).getName(), names.get(i));
+        }
+    }
+
+    private void insert(final int count) {
+        userDao.insertAll(new Iterator<User>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < count;
+            }
+
+            @Override
+            public User next() {
+                User user = new User();
+                user.setName(prefix + i++);
+                return user;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        });
+    }
+
+    private SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        return searchInfo;
+    }
+}
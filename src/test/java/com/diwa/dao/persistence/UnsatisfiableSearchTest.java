@@ -0,0 +1,136 @@
+package com.diwa.dao.persistence;
+
+import com.diwa.dao.DAOImpl;
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.aggregate.Aggregate;
+import com.diwa.dao.shared.criteria.Criteria;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.criteria.conditional.NullConditional;
+import com.diwa.dao.shared.criteria.conditional.ValueComparison;
+import com.diwa.dao.shared.criteria.logical.GroupLogical;
+import com.diwa.dao.shared.criteria.logical.NotLogical;
+import com.diwa.dao.shared.search.CountMode;
+import com.diwa.dao.shared.search.SearchInfo;
+import com.diwa.dao.shared.search.SearchResult;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Comprueba que las búsquedas cuyos criterios no pueden cumplirse nunca no acceden a la BD, y que las sentencias de
+ * los criterios optimizados obtienen los mismos resultados.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = SpringTestConfig.class)
+public class UnsatisfiableSearchTest {
+
+    private static final int USERS = 10;
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private PlatformTransactionManager txManager;
+
+    private DAOImpl<User, Long> userDao;
+
+    private String prefix;
+
+    @Before
+    public void setUp() {
+        userDao = new DAOImpl<User, Long>(User.class, sessionFactory);
+        prefix = "unsatisfiable-" + System.nanoTime() + "-";
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                for (int i = 0; i < USERS; i++) {
+                    User user = new User();
+                    user.setName(prefix + i);
+                    userDao.save(user);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testWithoutQueries() {
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                sessionFactory.getStatistics().clear();
+                SearchInfo searchInfo = search(NullConditional.isNull("name"));
+                SearchResult<User> result = userDao.find(searchInfo);
+                Assert.assertTrue(result.getElements().isEmpty());
+                Assert.assertEquals(0, result.getTotalMatches());
+                Assert.assertTrue(userDao.findWithoutCount(searchInfo).isEmpty());
+                Assert.assertEquals(0, userDao.count(searchInfo).longValue());
+                Assert.assertNull(userDao.aggregate(Aggregate.MAX, "id", searchInfo, Long.class));
+                Assert.assertNull(userDao.findSingle(searchInfo));
+                Assert.assertEquals(0, userDao.delete(searchInfo));
+                searchInfo.setCountMode(CountMode.NONE);
+                Assert.assertEquals(-1, userDao.find(searchInfo).getTotalMatches());
+                Assert.assertEquals(0, sessionFactory.getStatistics().getQueryExecutionCount());
+
+                // Las operaciones que no comprueban los criterios ejecutan una sentencia válida sin resultados
+                List<User> streamed = userDao.stream(searchInfo).collect(Collectors.<User> toList());
+                Assert.assertTrue(streamed.isEmpty());
+                Assert.assertEquals(USERS, userDao.count(search()).longValue());
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testOptimizedResults() {
+        execute(new TransactionCallback<Object>() {
+            @Override
+            public Object doInTransaction(TransactionStatus status) {
+                SearchInfo names = search(GroupLogical.or(Arrays.<Criteria> asList(
+                        ValueComparison.eq("name", prefix + 1), ValueComparison.eq("name", prefix + 2),
+                        GroupLogical.or(Arrays.<Criteria> asList(ValueComparison.eq("name", prefix + 3))))),
+                        new NotLogical(NullConditional.isNull("name")));
+                Assert.assertEquals(3, userDao.count(names).longValue());
+                Assert.assertEquals(3, userDao.find(names).getElements().size());
+
+                SearchInfo notNames = search(new NotLogical(GroupLogical.or(Arrays.<Criteria> asList(
+                        ValueComparison.eq("name", prefix + 1), ValueComparison.eq("name", prefix + 2)))));
+                Assert.assertEquals(USERS - 2, userDao.count(notNames).longValue());
+                return null;
+            }
+        });
+    }
+
+    private SearchInfo search(final Criteria... criterias) {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addCriteria(new LikeConditional("name", prefix, true));
+        searchInfo.getCriterias().addAll(Arrays.asList(criterias));
+        searchInfo.setDistinct(false);
+        return searchInfo;
+    }
+
+    private void execute(final TransactionCallback<Object> callback) {
+        Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        try {
+            new TransactionTemplate(txManager).execute(callback);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.diwa.dao.shared.search;
+
+import com.diwa.dao.domain.User;
+import com.diwa.dao.shared.criteria.Criteria;
+import com.diwa.dao.shared.criteria.conditional.InConditional;
+import com.diwa.dao.shared.criteria.conditional.LikeConditional;
+import com.diwa.dao.shared.criteria.conditional.ValueComparison;
+import com.diwa.dao.shared.criteria.logical.GroupLogical;
+import com.diwa.dao.shared.criteria.logical.NotLogical;
+import com.diwa.dao.shared.entity.DomainEntity;
+import com.diwa.dao.shared.entity.FetchJoin;
+import com.diwa.dao.shared.order.OrderBy;
+import com.google.common.hash.Hashing;
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class SearchInfoTest extends TestCase {
+
+    public void testCriteriaOrder() throws Exception {
+        SearchInfo s1 = search();
+        s1.addCriteria(ValueComparison.eq("name", "a"));
+        s1.addCriteria(ValueComparison.gt("id", 1L));
+        SearchInfo s2 = search();
+        s2.addCriteria(ValueComparison.gt("id", 1L));
+        s2.addCriteria(ValueComparison.eq("name", "a"));
+        Assert.assertEquals(s1, s2);
+        Assert.assertEquals(s1.hashCode(), s2.hashCode());
+        Assert.assertEquals(s1.getFingerprint(), s2.getFingerprint());
+    }
+
+    public void testNestedGroupOrder() throws Exception {
+        SearchInfo s1 = search();
+        s1.addCriteria(GroupLogical.or(Arrays.<Criteria> asList(ValueComparison.eq("name", "a"), ValueComparison.eq("name", "b"))));
+        s1.addCriteria(new InConditional("id", Arrays.<Serializable> asList(1L, 2L)));
+        SearchInfo s2 = search();
+        s2.addCriteria(new InConditional("id", Arrays.<Serializable> asList(2L, 1L)));
+        s2.addCriteria(GroupLogical.or(Arrays.<Criteria> asList(ValueComparison.eq("name", "b"), ValueComparison.eq("name", "a"))));
+        Assert.assertEquals(s1.getFingerprint(), s2.getFingerprint());
+        Assert.assertTrue(GroupLogical.or(Arrays.<Criteria> asList(ValueComparison.eq("name", "a"))).equals(
+                GroupLogical.or(Arrays.<Criteria> asList(ValueComparison.eq("name", "a")))));
+        Assert.assertEquals(new NotLogical(ValueComparison.eq("name", "a")), new NotLogical(ValueComparison.eq("name", "a")));
+    }
+
+    public void testDifferentSearches() throws Exception {
+        Assert.assertFalse(ValueComparison.eq("a", 1).equals(ValueComparison.eq("b", 1)));
+        Assert.assertFalse(ValueComparison.eq("a", 1).hashCode() == ValueComparison.eq("b", 1).hashCode());
+        assertDifferent(withCriteria(ValueComparison.eq("a", 1)), withCriteria(ValueComparison.eq("b", 1)));
+        assertDifferent(withCriteria(ValueComparison.eq("a", 1)), withCriteria(ValueComparison.eq("a", "1")));
+        assertDifferent(withCriteria(ValueComparison.eq("a", 1)), withCriteria(ValueComparison.eq("a", 1L)));
+        assertDifferent(withCriteria(ValueComparison.eq("a", "x-y")),
+                withCriteria(ValueComparison.eq("a", "x"), ValueComparison.eq("y", "")));
+        assertDifferent(withCriteria(new LikeConditional("a", "x", true)), withCriteria(new LikeConditional("a", "x", false)));
+        assertDifferent(withCriteria(ValueComparison.eq("a", 1)), withCriteria(new NotLogical(ValueComparison.eq("a", 1))));
+
+        SearchInfo distinct = search();
+        SearchInfo notDistinct = search();
+        notDistinct.setDistinct(false);
+        assertDifferent(distinct, notDistinct);
+
+        SearchInfo page = search();
+        page.setOffset(10);
+        assertDifferent(search(), page);
+
+        SearchInfo desc = search();
+        desc.getOrders().set(0, OrderBy.desc("name"));
+        assertDifferent(search(), desc);
+
+        SearchInfo fetch = search();
+        fetch.addFetch(FetchJoin.leftJoinFetch("roles"));
+        assertDifferent(search(), fetch);
+
+        SearchInfo entity = search();
+        entity.addEntity(new DomainEntity(User.class, "u"));
+        assertDifferent(search(), entity);
+    }
+
+    public void testFreeze() throws Exception {
+        SearchInfo searchInfo = search().freeze();
+        Assert.assertTrue(searchInfo.isFrozen());
+        String fingerprint = searchInfo.getFingerprint();
+        Assert.assertSame(fingerprint, searchInfo.getFingerprint());
+        Assert.assertSame(searchInfo.getCanonicalForm(), searchInfo.getCanonicalForm());
+        try {
+            searchInfo.setPageSize(5);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // La búsqueda congelada no se puede modificar
+        }
+        try {
+            searchInfo.getCriterias().add(ValueComparison.eq("name", "a"));
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // Tampoco sus listas
+        }
+        SearchInfo copy = new SearchInfo(searchInfo);
+        Assert.assertFalse(copy.isFrozen());
+        Assert.assertEquals(searchInfo, copy);
+        copy.setPageSize(5);
+        Assert.assertFalse(fingerprint.equals(copy.getFingerprint()));
+    }
+
+    public void testFreezeCopiesLists() throws Exception {
+        List<Criteria> criterias = new ArrayList<Criteria>();
+        criterias.add(ValueComparison.eq("name", "a"));
+        List<OrderBy> orders = new ArrayList<OrderBy>();
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.setCriterias(criterias);
+        searchInfo.setOrders(orders);
+        searchInfo.freeze();
+        String canonicalForm = searchInfo.getCanonicalForm();
+
+        // Las listas indicadas antes de congelar la búsqueda ya no le afectan
+        criterias.add(ValueComparison.eq("name", "b"));
+        orders.add(OrderBy.asc("name"));
+        Assert.assertEquals(1, searchInfo.getCriterias().size());
+        Assert.assertTrue(searchInfo.getOrders().isEmpty());
+        Assert.assertEquals(canonicalForm, new SearchInfo(searchInfo).getCanonicalForm());
+    }
+
+    public void testDerivedCopies() throws Exception {
+        SearchInfo searchInfo = search();
+        searchInfo.addCriteria(ValueComparison.eq("name", "a"));
+        searchInfo.addFetch(FetchJoin.leftJoinFetch("roles"));
+        searchInfo.freeze();
+
+        SearchInfo next = searchInfo.nextPage();
+        Assert.assertTrue(next.isFrozen());
+        Assert.assertEquals(10, next.getOffset());
+        Assert.assertEquals(10, next.getPageSize());
+        Assert.assertEquals(20, next.nextPage().getOffset());
+        Assert.assertEquals(0, searchInfo.getOffset());
+        Assert.assertEquals(searchInfo.getFingerprint(), next.withPage(0, 10).getFingerprint());
+        // La copia comparte las listas de la búsqueda congelada
+        Field criterias = SearchInfo.class.getDeclaredField("criterias");
+        criterias.setAccessible(true);
+        Assert.assertSame(criterias.get(searchInfo), criterias.get(next));
+
+        SearchInfo withoutFetches = searchInfo.withoutFetches();
+        Assert.assertTrue(withoutFetches.getFetches().isEmpty());
+        Assert.assertEquals(1, searchInfo.getFetches().size());
+        Assert.assertSame(withoutFetches, withoutFetches.withoutFetches());
+        Assert.assertSame(criterias.get(searchInfo), criterias.get(withoutFetches));
+
+        // Las copias de una búsqueda no congelada no se ven afectadas por sus cambios
+        SearchInfo mutable = search();
+        SearchInfo page = mutable.withPage(5, 5);
+        mutable.addCriteria(ValueComparison.eq("name", "a"));
+        Assert.assertTrue(page.getCriterias().isEmpty());
+        Assert.assertFalse(mutable.isFrozen());
+        try {
+            searchInfo.withoutOrders().nextPage().setOffset(0);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // Las copias están congeladas
+        }
+    }
+
+    public void testMurmur3() throws Exception {
+        Random random = new Random(42);
+        for (int length = 0; length < 100; length++) {
+            StringBuilder value = new StringBuilder();
+            for (int i = 0; i < length; i++) {
+                value.append((char) random.nextInt(0x3000));
+            }
+            Assert.assertEquals(Hashing.murmur3_128().hashUnencodedChars(value).toString(),
+                    SearchInfoCanonicalizer.fingerprint(value.toString()));
+        }
+    }
+
+    private static void assertDifferent(final SearchInfo s1, final SearchInfo s2) {
+        Assert.assertFalse(s1.equals(s2));
+        Assert.assertFalse(s1.getFingerprint().equals(s2.getFingerprint()));
+    }
+
+    private static SearchInfo withCriteria(final Criteria... criterias) {
+        SearchInfo searchInfo = search();
+        searchInfo.getCriterias().addAll(Arrays.asList(criterias));
+        return searchInfo;
+    }
+
+    private static SearchInfo search() {
+        SearchInfo searchInfo = new SearchInfo();
+        searchInfo.addOrder(OrderBy.asc("name"));
+        searchInfo.setOffset(0);
+        searchInfo.setPageSize(10);
+        return searchInfo;
+    }
+}
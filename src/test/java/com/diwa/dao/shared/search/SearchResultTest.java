@@ -0,0 +1,53 @@
+package com.diwa.dao.shared.search;
+
+import junit.framework.TestCase;
+import org.junit.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class SearchResultTest extends TestCase {
+
+    public void testEqualsWithoutCount() throws Exception {
+        final int[] counts = new int[1];
+        SearchResult<String> lazy = lazy(counts);
+        SearchResult<String> other = lazy(counts);
+        Assert.assertEquals(lazy, other);
+        Assert.assertEquals(lazy.hashCode(), other.hashCode());
+        Assert.assertEquals(0, counts[0]);
+
+        Assert.assertEquals(42, lazy.getTotalMatches());
+        Assert.assertFalse(lazy.equals(other));
+        Assert.assertEquals(1, counts[0]);
+    }
+
+    public void testSerializeLazyCount() throws Exception {
+        final int[] counts = new int[1];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(lazy(counts));
+        out.close();
+        Assert.assertEquals(1, counts[0]);
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        SearchResult<?> result = (SearchResult<?>) in.readObject();
+        Assert.assertEquals(42, result.getTotalMatches());
+        Assert.assertEquals(Arrays.asList("a", "b"), result.getElements());
+    }
+
+    private SearchResult<String> lazy(final int[] counts) {
+        SearchResult<String> result = new SearchResult<String>(new ArrayList<String>(Arrays.asList("a", "b")), -1);
+        result.setCountLoader(new SearchResult.CountLoader() {
+            @Override
+            public long count() {
+                counts[0]++;
+                return 42;
+            }
+        });
+        return result;
+    }
+}
@@ -5,6 +5,12 @@ import com.diwa.dao.domain.User;
 import junit.framework.TestCase;
 import org.junit.Assert;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class DaoUtilsTest extends TestCase {
 
     public void testGetEntityNameNameAttribute () throws Exception {
@@ -38,4 +44,24 @@ public class DaoUtilsTest extends TestCase {
     public void testGetPrimaryKeyNameMethodAnnotated () throws Exception {
         Assert.assertEquals("roleId", DaoUtils.getPrimaryKeyName(Role.class));
     }
-}
\ No newline at end of file
+
+    public void testPadToPowerOfTwo () throws Exception {
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 3), DaoUtils.padToPowerOfTwo(Arrays.asList(1, 2, 3)));
+        Assert.assertEquals(Arrays.asList(1, 2), DaoUtils.padToPowerOfTwo(Arrays.asList(1, 2)));
+        Assert.assertEquals(Arrays.asList(7), DaoUtils.padToPowerOfTwo(Arrays.asList(7)));
+        Assert.assertTrue(DaoUtils.padToPowerOfTwo(new ArrayList<Integer>()).isEmpty());
+        Assert.assertEquals(1024, DaoUtils.padToPowerOfTwo(Arrays.asList(new Integer[513])).size());
+    }
+
+    public void testPadToPowerOfTwoBuckets () throws Exception {
+        Set<Integer> sizes = new HashSet<Integer>();
+        for (int size = 1; size <= 1000; size++) {
+            List<Integer> values = new ArrayList<Integer>();
+            for (int i = 0; i < size; i++) {
+                values.add(i);
+            }
+            sizes.add(DaoUtils.padToPowerOfTwo(values).size());
+        }
+        Assert.assertEquals(11, sizes.size());
+    }
+}